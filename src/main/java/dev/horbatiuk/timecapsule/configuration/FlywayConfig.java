@@ -0,0 +1,27 @@
+package dev.horbatiuk.timecapsule.configuration;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/**
+ * Indexes on existing tables are built and dropped {@code CONCURRENTLY}, so the tables stay
+ * writable while a migration runs against a live database. PostgreSQL refuses such a
+ * statement inside a transaction; Flyway recognises it and runs the script without one,
+ * which is why those scripts contain nothing else.
+ */
+@Configuration
+public class FlywayConfig {
+
+    /**
+     * Flyway holds its migration lock in an open transaction by default, and
+     * {@code CREATE INDEX CONCURRENTLY} waits for every open transaction to finish, so such
+     * a migration would wait on Flyway itself. A session-level lock avoids that.
+     */
+    @Bean
+    public FlywayConfigurationCustomizer postgresSessionLockCustomizer() {
+        return configuration -> configuration.configuration(Map.of("flyway.postgresql.transactional.lock", "false"));
+    }
+}
@@ -0,0 +1,13 @@
+package dev.horbatiuk.timecapsule.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * All {@code @Scheduled} jobs share the pool sized by {@code spring.task.scheduling.pool.size}.
+ * Keep it at least as large as the number of jobs: a job waiting for a free thread runs late.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
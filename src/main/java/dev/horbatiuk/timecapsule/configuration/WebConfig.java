@@ -1,14 +1,42 @@
 package dev.horbatiuk.timecapsule.configuration;
 
+import jakarta.persistence.EntityManagerFactory;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * Attachment uploads and downloads run for as long as the client takes, and an entity
+     * manager held open for the request keeps its database connection until the end. Their
+     * services return DTOs, so these endpoints do without one.
+     */
+    static final String[] WITHOUT_OPEN_ENTITY_MANAGER = {"/api/v1/user/capsule/*/attachments/**"};
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public WebConfig(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         registry.addResourceHandler("/static/**")
                 .addResourceLocations("classpath:/static/");
     }
+
+    /**
+     * Replaces the interceptor of {@code spring.jpa.open-in-view}, which applies to every path.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(interceptor)
+                .excludePathPatterns(WITHOUT_OPEN_ENTITY_MANAGER);
+    }
 }
@@ -5,7 +5,6 @@ import dev.horbatiuk.timecapsule.exception.controller.AppException;
 import dev.horbatiuk.timecapsule.persistence.UserRepository;
 import dev.horbatiuk.timecapsule.persistence.dto.user.CheckUserVerificationResponse;
 import dev.horbatiuk.timecapsule.persistence.dto.user.VerifyRequestDTO;
-import dev.horbatiuk.timecapsule.persistence.entities.User;
 import dev.horbatiuk.timecapsule.security.CustomUserDetails;
 import dev.horbatiuk.timecapsule.service.UserService;
 import dev.horbatiuk.timecapsule.service.security.UserVerificationService;
@@ -17,7 +16,6 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.mail.MessagingException;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,27 +46,24 @@ public class AccountVerificationController {
     private final UserService userService;
 
     @GetMapping("/send")
-    @Operation(summary = "Send verification email", description = "Sends a verification email to the currently authenticated user")
+    @Operation(summary = "Send verification email", description = "Queues a verification email for the currently authenticated user")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Verification email sent successfully"),
+            @ApiResponse(responseCode = "200", description = "Verification email queued for delivery"),
             @ApiResponse(responseCode = "404", description = "User not found", content = @Content),
-            @ApiResponse(responseCode = "500", description = "Internal server error while sending email", content = @Content)
+            @ApiResponse(responseCode = "500", description = "Internal server error while queueing email", content = @Content)
     })
     @SecurityRequirement(name = "bearerAuth")
     public ResponseEntity<?> sendVerificationEmail(
             @Parameter(hidden = true) @AuthenticationPrincipal CustomUserDetails userDetails
     ) {
         try {
-            User user = userService.findUserByEmail(userDetails.getEmail());
+            CustomUserDetails user = userService.findUserDetailsByEmail(userDetails.getEmail());
             userVerificationService.sendVerificationEmail(user.getId(), user.getEmail(), user.isVerified());
-            logger.info("Verification email sent to user: {}", user.getEmail());
+            logger.info("Verification email queued for user: {}", user.getEmail());
             return ResponseEntity.ok().build();
         } catch (NotFoundException e) {
             logger.warn("User not found for verification email: {}", userDetails.getEmail(), e);
             throw new AppException("User not found", HttpStatus.NOT_FOUND);
-        } catch (MessagingException e) {
-            logger.error("Error sending verification email", e);
-            throw new AppException("Error sending verification email", HttpStatus.INTERNAL_SERVER_ERROR);
         } catch (Exception e) {
             logger.error("Unexpected error during verification email sending", e);
             throw new AppException("Could not send verification email", HttpStatus.INTERNAL_SERVER_ERROR);
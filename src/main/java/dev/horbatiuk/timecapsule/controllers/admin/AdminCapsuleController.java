@@ -2,16 +2,18 @@ package dev.horbatiuk.timecapsule.controllers.admin;
 
 import dev.horbatiuk.timecapsule.exception.NotFoundException;
 import dev.horbatiuk.timecapsule.exception.controller.AppException;
-import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.CapsuleOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.CountMode;
+import dev.horbatiuk.timecapsule.persistence.dto.CursorPageDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleBulkDeleteReportDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.EditCapsuleDTO;
-import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
 import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
 import dev.horbatiuk.timecapsule.service.AttachmentService;
+import dev.horbatiuk.timecapsule.service.CapsuleBulkDeleteService;
 import dev.horbatiuk.timecapsule.service.CapsuleService;
-import dev.horbatiuk.timecapsule.service.aws.EventBridgeScheduledService;
-import dev.horbatiuk.timecapsule.service.aws.S3Service;
+import dev.horbatiuk.timecapsule.service.scheduler.CapsuleScheduler;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -23,14 +25,10 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-import software.amazon.awssdk.services.scheduler.model.GetScheduleResponse;
 
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeParseException;
@@ -48,37 +46,34 @@ public class AdminCapsuleController {
     private static final Logger logger = LoggerFactory.getLogger(AdminCapsuleController.class);
 
     private final CapsuleService capsuleService;
-    private final CapsuleRepository capsuleRepository;
-    private final S3Service s3Service;
-    private final EventBridgeScheduledService eventBridgeScheduledService;
+    private final CapsuleBulkDeleteService capsuleBulkDeleteService;
+    private final CapsuleOutboxRepository capsuleOutboxRepository;
+    private final CapsuleScheduler capsuleScheduler;
     private final AttachmentService attachmentService;
 
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping
-    @Operation(summary = "List capsules (admin) with filters and pagination")
+    @Operation(summary = "List capsules (admin) with filters and pagination",
+            description = "Newest first. Pass the returned nextCursor as cursor to get the next page")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Filtered list returned",
                     content = @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = CapsuleResponseDTO.class))),
+                            schema = @Schema(implementation = CursorPageDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid date range or cursor")
     })
-    public ResponseEntity<Page<CapsuleResponseDTO>> listCapsules(
+    public ResponseEntity<CursorPageDTO<CapsuleResponseDTO>> listCapsules(
             @Parameter(description = "Filter by user email") @RequestParam(required = false) String email,
             @Parameter(description = "Filter by userId (UUID)") @RequestParam(required = false) UUID userId,
             @Parameter(description = "Filter by capsule status") @RequestParam(required = false) CapsuleStatus status,
-            @Parameter(description = "Filter by title (contains)") @RequestParam(required = false) String title,
+            @Parameter(description = "Filter by exact title") @RequestParam(required = false) String title,
             @Parameter(description = "OpenAt from (ISO-8601)") @RequestParam(required = false) String openFrom,
             @Parameter(description = "OpenAt to (ISO-8601)") @RequestParam(required = false) String openTo,
-            @Parameter(description = "Page index (0..N)") @RequestParam(defaultValue = "0") int page,
-            @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size,
-            @Parameter(description = "Sort, e.g. createdAt,desc") @RequestParam(defaultValue = "createdAt,desc") String sort
+            @Parameter(description = "Cursor from the previous page, omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (1..100)") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Total count: NONE, ESTIMATED or EXACT") @RequestParam(defaultValue = "NONE") CountMode count
     ) {
         logger.info("Admin listing capsules with filters email={}, userId={}, status={}, title={}", email, userId, status, title);
 
-        String[] sortParts = sort.split(",");
-        String sortBy = sortParts[0];
-        Sort.Direction dir = sortParts.length > 1 && "asc".equalsIgnoreCase(sortParts[1]) ? Sort.Direction.ASC : Sort.Direction.DESC;
-        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(dir, sortBy));
-
         OffsetDateTime from = null, to = null;
         try {
             if (openFrom != null && !openFrom.isBlank()) from = OffsetDateTime.parse(openFrom);
@@ -88,8 +83,8 @@ public class AdminCapsuleController {
             return ResponseEntity.badRequest().build();
         }
 
-        Page<CapsuleResponseDTO> result = capsuleService.findCapsulesByFilters(
-                email, userId, status, title, from, to, pageRequest
+        CursorPageDTO<CapsuleResponseDTO> result = capsuleService.findCapsulesByFilters(
+                email, userId, status, title, from, to, cursor, size, count
         );
         return ResponseEntity.ok(result);
     }
@@ -176,37 +171,15 @@ public class AdminCapsuleController {
 
     @PreAuthorize("hasRole('ADMIN')")
     @PatchMapping("/{capsuleId}/status")
-    @Operation(summary = "Set capsule status (admin)")
+    @Operation(summary = "Set capsule status (admin)",
+            description = "The capsule's data upload and schedule are updated in the background shortly after")
     public ResponseEntity<Void> setStatus(
             @PathVariable UUID capsuleId,
             @RequestParam CapsuleStatus status
     ) {
         logger.info("Admin setting status for {} -> {}", capsuleId, status);
         try {
-            CapsuleResponseDTO dto = capsuleService.findCapsuleById(capsuleId);
             capsuleService.setCapsuleStatus(capsuleId, status);
-
-            GetScheduleResponse scheduleResponse = null;
-            try {
-                scheduleResponse = eventBridgeScheduledService.getSchedule(capsuleId);
-            } catch (NotFoundException e) {
-                logger.info("Schedule not found for capsule {}, will create new one", capsuleId);
-            }
-
-            if (status == CapsuleStatus.ACTIVE) {
-                try {
-                    eventBridgeScheduledService.updateSchedule(scheduleResponse, true, capsuleId);
-                } catch (NotFoundException e) {
-                    eventBridgeScheduledService.createNewSchedule(capsuleId, dto.getOpenAt().toInstant());
-                }
-                s3Service.uploadCapsuleData(dto);
-            } else {
-                try {
-                    eventBridgeScheduledService.updateSchedule(scheduleResponse, true, capsuleId);
-                } catch (NotFoundException e) {
-                    logger.info("No schedule to disable for capsule {}", capsuleId);
-                }
-            }
             return ResponseEntity.ok().build();
         } catch (NotFoundException e) {
             throw new AppException("Capsule not found", HttpStatus.NOT_FOUND);
@@ -218,24 +191,21 @@ public class AdminCapsuleController {
 
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/{capsuleId}/resync")
-    @Operation(summary = "Force re-upload to S3 and recreate schedule")
+    @Operation(summary = "Force re-upload to S3 and recreate schedule",
+            description = "Queues a sync of the capsule's S3 data and schedule with its current state; "
+                    + "it is applied in the background")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Sync queued"),
+            @ApiResponse(responseCode = "404", description = "Capsule not found")
+    })
     public ResponseEntity<Void> resyncCapsule(@PathVariable UUID capsuleId) {
         logger.info("Admin resync requested for capsule {}", capsuleId);
         try {
-            CapsuleResponseDTO dto = capsuleService.findCapsuleById(capsuleId);
-            // re-upload to s3
-            s3Service.uploadCapsuleData(dto);
-            // recreate schedule (delete/create)
-            try {
-                eventBridgeScheduledService.deleteSchedule(capsuleId);
-            } catch (NotFoundException ignored) {}
-            eventBridgeScheduledService.createNewSchedule(capsuleId, dto.getOpenAt().toInstant());
-            return ResponseEntity.ok().build();
+            capsuleService.findCapsuleById(capsuleId);
+            capsuleOutboxRepository.enqueue(capsuleId);
+            return ResponseEntity.accepted().build();
         } catch (NotFoundException e) {
             throw new AppException("Capsule not found", HttpStatus.NOT_FOUND);
-        } catch (Exception e) {
-            logger.error("Failed to resync capsule {}", capsuleId, e);
-            throw new AppException("Failed to resync capsule", HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
@@ -245,12 +215,9 @@ public class AdminCapsuleController {
     public ResponseEntity<Void> deleteCapsule(@PathVariable UUID capsuleId) {
         logger.info("Admin requested deletion of capsule {}", capsuleId);
         try {
-            try {
-                eventBridgeScheduledService.deleteSchedule(capsuleId);
-            } catch (NotFoundException ignored) {}
+            capsuleScheduler.cancel(capsuleId);
             attachmentService.deleteAllAttachmentsFromCapsule(capsuleId);
-            Capsule c = capsuleService.findCapsuleEntityById(capsuleId);
-            capsuleRepository.delete(c);
+            capsuleService.deleteCapsule(capsuleId);
             return ResponseEntity.noContent().build();
         } catch (NotFoundException e) {
             throw new AppException("Capsule not found", HttpStatus.NOT_FOUND);
@@ -262,19 +229,26 @@ public class AdminCapsuleController {
 
     @PreAuthorize("hasRole('ADMIN')")
     @DeleteMapping("/by-email")
-    @Operation(summary = "Delete all capsules for given email (admin) — USE WITH CAUTION")
+    @Operation(summary = "Delete all capsules for given email (admin) — USE WITH CAUTION",
+            description = "Removes schedules, S3 objects, attachments and capsules. If some schedules or objects "
+                    + "could not be removed the capsules are kept and the request can be repeated")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "204", description = "Deleted"),
+            @ApiResponse(responseCode = "200", description = "Deleted",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CapsuleBulkDeleteReportDTO.class))),
             @ApiResponse(responseCode = "400", description = "Email missing"),
+            @ApiResponse(responseCode = "404", description = "User not found"),
+            @ApiResponse(responseCode = "502", description = "Partly cleaned up, nothing deleted from the database"),
             @ApiResponse(responseCode = "500", description = "Error")
     })
-    public ResponseEntity<Void> deleteByEmail(@RequestParam String email) {
+    public ResponseEntity<CapsuleBulkDeleteReportDTO> deleteByEmail(@RequestParam String email) {
         if (email == null || email.isBlank()) return ResponseEntity.badRequest().build();
         logger.warn("Admin initiating bulk delete for email {}", email);
         try {
-            // TODO: implement efficient service method to delete all capsules for email (handles s3/schedules/attachments)
-            capsuleService.deleteAllCapsulesByEmail(email);
-            return ResponseEntity.noContent().build();
+            CapsuleBulkDeleteReportDTO report = capsuleBulkDeleteService.deleteAllCapsulesByEmail(email);
+            return ResponseEntity.status(report.isCompleted() ? HttpStatus.OK : HttpStatus.BAD_GATEWAY).body(report);
+        } catch (AppException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Failed bulk delete for email {}", email, e);
             throw new AppException("Failed bulk delete", HttpStatus.INTERNAL_SERVER_ERROR);
@@ -0,0 +1,75 @@
+package dev.horbatiuk.timecapsule.controllers.admin;
+
+import dev.horbatiuk.timecapsule.exception.NotFoundException;
+import dev.horbatiuk.timecapsule.exception.controller.AppException;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.ScheduleReconciliationRunDTO;
+import dev.horbatiuk.timecapsule.service.aws.ScheduleReconciliationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/admin/schedules")
+@ConditionalOnProperty(value = "app.capsule.scheduler.backend", havingValue = "eventbridge", matchIfMissing = true)
+@RequiredArgsConstructor
+@Tag(name = "Administrator Schedule Controller", description = "Endpoints for checking capsule schedules against the database")
+@SecurityRequirement(name = "bearerAuth")
+@CrossOrigin(origins = "http://localhost:5173", allowedHeaders = "*")
+public class AdminScheduleController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminScheduleController.class);
+
+    private final ScheduleReconciliationService scheduleReconciliationService;
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/reconciliation")
+    @Operation(summary = "Start a reconciliation of ACTIVE capsules against their schedules",
+            description = "Runs in the background. Only mismatches are touched, and nothing at all with dryRun. " +
+                    "Poll the returned run for its report; failed repairs are counted and retried by the next run")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Reconciliation started",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ScheduleReconciliationRunDTO.class))),
+            @ApiResponse(responseCode = "409", description = "A reconciliation is already running")
+    })
+    public ResponseEntity<ScheduleReconciliationRunDTO> startReconciliation(
+            @RequestParam(defaultValue = "false") boolean dryRun) {
+        ScheduleReconciliationRunDTO run = scheduleReconciliationService.start(dryRun);
+        logger.info("Admin started schedule reconciliation {} (dry run: {})", run.getId(), dryRun);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/admin/schedules/reconciliation/" + run.getId()))
+                .body(run);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/reconciliation/{runId}")
+    @Operation(summary = "Get the status of a reconciliation run, and its report once it has finished")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Run returned",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ScheduleReconciliationRunDTO.class))),
+            @ApiResponse(responseCode = "404", description = "Run not found")
+    })
+    public ResponseEntity<ScheduleReconciliationRunDTO> getReconciliation(@PathVariable UUID runId) {
+        try {
+            return ResponseEntity.ok(scheduleReconciliationService.findRun(runId));
+        } catch (NotFoundException e) {
+            throw new AppException("Reconciliation run not found", HttpStatus.NOT_FOUND);
+        }
+    }
+}
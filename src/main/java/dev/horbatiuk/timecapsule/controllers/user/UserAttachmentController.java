@@ -3,10 +3,17 @@ package dev.horbatiuk.timecapsule.controllers.user;
 import dev.horbatiuk.timecapsule.exception.NotFoundException;
 import dev.horbatiuk.timecapsule.exception.aws.s3.S3ActionException;
 import dev.horbatiuk.timecapsule.exception.controller.AppException;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentCommitRequestDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentUploadRequestDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.PresignedDownloadDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.PresignedUploadDTO;
 import dev.horbatiuk.timecapsule.security.CustomUserDetails;
 import dev.horbatiuk.timecapsule.service.AttachmentService;
-import dev.horbatiuk.timecapsule.service.CapsuleService;
+import dev.horbatiuk.timecapsule.service.CapsuleAccessService;
+import dev.horbatiuk.timecapsule.service.aws.S3Service;
+import dev.horbatiuk.timecapsule.service.upload.DeclaredSizeInputStream;
+import dev.horbatiuk.timecapsule.service.upload.MultipartStreamReader;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -16,19 +23,27 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.persistence.PersistenceException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.AccessDeniedException;
 import java.util.List;
 import java.util.UUID;
@@ -54,6 +69,8 @@ public class UserAttachmentController {
 
     private static final Logger logger = LoggerFactory.getLogger(UserAttachmentController.class);
 
+    private static final int MAX_FORM_FIELD_BYTES = 64 * 1024;
+
     @Value("${app.user-max-attachments-per-capsule}")
     int userMaxAttachmentsPerCapsule;
 
@@ -63,8 +80,11 @@ public class UserAttachmentController {
     @Value("${aws.s3.max-file-size}")
     DataSize maxFileSize;
 
+    @Value("${aws.s3.premium-max-file-size}")
+    DataSize premiumMaxFileSize;
+
     private final AttachmentService attachmentService;
-    private final CapsuleService capsuleService;
+    private final CapsuleAccessService capsuleAccessService;
 
     @GetMapping("/{capsuleId}/attachments")
     @Operation(summary = "Get attachments by capsule ID", description = "Returns a list of attachments for a specific capsule owned by the authenticated user")
@@ -78,7 +98,7 @@ public class UserAttachmentController {
             @Parameter(description = "Capsule ID") @PathVariable UUID capsuleId,
             @Parameter(hidden = true) @AuthenticationPrincipal CustomUserDetails customUserDetails
     ) {
-        if (!capsuleService.userHasAccess(capsuleId, customUserDetails.getEmail())) {
+        if (capsuleAccessService.findOwned(capsuleId, customUserDetails.getId()).isEmpty()) {
             logger.warn("User {} tried to access attachments of capsule {} without permission",
                     customUserDetails.getEmail(), capsuleId);
             throw new AppException("You do not have access to this capsule", HttpStatus.FORBIDDEN);
@@ -89,11 +109,110 @@ public class UserAttachmentController {
         return ResponseEntity.ok(attachments);
     }
 
+    /**
+     * Streams the file from S3 to the client without holding more than one buffer of it in
+     * memory. A single {@code Range} is answered with 206; several ranges, or one that cannot
+     * be parsed, are ignored and the whole file is sent, as RFC 9110 allows.
+     */
+    @GetMapping("/{capsuleId}/attachments/{attachmentId}/content")
+    @Operation(summary = "Download attachment", description = "Streams the file of an attachment, supporting Range and If-None-Match")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "File content"),
+            @ApiResponse(responseCode = "206", description = "Requested range of the file"),
+            @ApiResponse(responseCode = "304", description = "File matches If-None-Match"),
+            @ApiResponse(responseCode = "403", description = "Access denied to this capsule"),
+            @ApiResponse(responseCode = "404", description = "Attachment not found"),
+            @ApiResponse(responseCode = "416", description = "Range outside the file"),
+            @ApiResponse(responseCode = "500", description = "Error reading the file")
+    })
+    public ResponseEntity<StreamingResponseBody> downloadAttachment(
+            @Parameter(description = "Capsule ID") @PathVariable UUID capsuleId,
+            @Parameter(description = "Attachment ID") @PathVariable UUID attachmentId,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @Parameter(hidden = true) @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @Parameter(hidden = true) @AuthenticationPrincipal CustomUserDetails user
+    ) {
+        if (capsuleAccessService.findOwned(capsuleId, user.getId()).isEmpty()) {
+            logger.warn("User {} tried to download attachment {} of capsule {} without permission",
+                    user.getEmail(), attachmentId, capsuleId);
+            throw new AppException("You do not have access to this capsule", HttpStatus.FORBIDDEN);
+        }
+
+        AttachmentResponseDTO attachment;
+        S3Service.FileDownload download;
+        try {
+            attachment = attachmentService.getAttachment(capsuleId, attachmentId);
+            download = attachmentService.openAttachment(attachment, singleRange(range), ifNoneMatch);
+        } catch (NotFoundException e) {
+            logger.warn("Attachment {} not found in capsule {}", attachmentId, capsuleId);
+            throw new AppException(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (S3ActionException e) {
+            logger.error("File storage error: {}", e.getMessage(), e);
+            throw new AppException("Attachment could not be read", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (download.eTag() != null) {
+            headers.set(HttpHeaders.ETAG, download.eTag());
+        }
+        if (download.contentRange() != null) {
+            headers.set(HttpHeaders.CONTENT_RANGE, download.contentRange());
+        }
+        if (download.body() == null) {
+            return ResponseEntity.status(download.status()).headers(headers).build();
+        }
+
+        if (download.contentLength() != null) {
+            headers.setContentLength(download.contentLength());
+        }
+        headers.setContentType(mediaTypeOf(download.contentType()));
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(attachment.getFilename(), StandardCharsets.UTF_8)
+                .build());
+        logger.info("User {} downloading attachment {} of capsule {} ({})", user.getEmail(), attachmentId,
+                capsuleId, download.status());
+        return ResponseEntity.status(download.status()).headers(headers).body(download::writeTo);
+    }
+
+    private long maxFileSizeFor(CustomUserDetails user) {
+        return (user.isPremiumUser() ? premiumMaxFileSize : maxFileSize).toBytes();
+    }
+
+    /**
+     * @return {@code range} if it holds exactly one valid byte range, otherwise null
+     */
+    static String singleRange(String range) {
+        if (range == null || range.isBlank()) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? HttpRange.toString(ranges) : null;
+        } catch (IllegalArgumentException e) {
+            logger.debug("Ignoring invalid Range header '{}'", range);
+            return null;
+        }
+    }
+
+    private static MediaType mediaTypeOf(String contentType) {
+        if (contentType == null) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
     @PostMapping(
             value = "/{capsuleId}/attachments",
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE
     )
-    @Operation(summary = "Add attachment to capsule", description = "Adds a new attachment (file + description) to a capsule")
+    @Operation(summary = "Add attachment to capsule",
+            description = "Adds a new attachment (file + description) to a capsule. Takes files up to the regular size limit; " +
+                    "larger files of premium users go through the stream or direct upload endpoints")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Attachment added successfully"),
             @ApiResponse(responseCode = "403", description = "Attachment limit reached or access denied"),
@@ -107,22 +226,19 @@ public class UserAttachmentController {
             @Parameter(description = "File to upload") @RequestPart("file") MultipartFile file
     ) {
         int max = user.isPremiumUser() ? premiumUserMaxAttachmentsPerCapsule : userMaxAttachmentsPerCapsule;
-        int current = attachmentService.getAttachmentsByCapsuleId(capsuleId).size();
 
-        if (file.getSize() > maxFileSize.toBytes()) {
+        // the container has already spooled the file, so this endpoint keeps to the regular limit
+        long maxSize = maxFileSize.toBytes();
+        if (file.getSize() > maxSize) {
             logger.warn("User {} attempted to upload file exceeding max size ({} bytes) to capsule {}",
-                    user.getEmail(), maxFileSize.toBytes(), capsuleId);
-            throw new AppException("File size exceeded", HttpStatus.PAYLOAD_TOO_LARGE);
-        }
-
-        if (current >= max) {
-            logger.warn("User {} exceeded max attachments per capsule ({}), capsule: {}",
-                    user.getEmail(), max, capsuleId);
-            throw new AppException("Maximum number of attachments exceeded", HttpStatus.FORBIDDEN);
+                    user.getEmail(), maxSize, capsuleId);
+            throw new AppException(user.isPremiumUser()
+                    ? "File size exceeded, upload larger files through the stream or direct upload endpoints"
+                    : "File size exceeded", HttpStatus.PAYLOAD_TOO_LARGE);
         }
 
         try {
-            attachmentService.addAttachmentToCapsule(capsuleId, description, user.getEmail(), file);
+            attachmentService.addAttachmentToCapsule(capsuleId, description, user.getEmail(), file, max);
             logger.info("User {} added new attachment to capsule {}", user.getEmail(), capsuleId);
         } catch (AccessDeniedException e) {
             logger.warn("Access denied: {}", e.getMessage());
@@ -145,6 +261,211 @@ public class UserAttachmentController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Takes the same form as {@link #addAttachment}, but reads it straight from the request
+     * instead of letting the servlet container spool it to disk first, and pipes the file into
+     * storage as it arrives. The form fields must come before the file: {@code description},
+     * and {@code size} with the file's length in bytes, which is checked against the limit
+     * before any of the file is read and enforced while it streams.
+     */
+    @PostMapping(
+            value = "/{capsuleId}/attachments/stream",
+            consumes = MediaType.MULTIPART_FORM_DATA_VALUE
+    )
+    @Operation(summary = "Stream attachment to capsule",
+            description = "Adds a new attachment from a multipart form of description, size and file, in that order, without buffering the file")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Attachment added successfully"),
+            @ApiResponse(responseCode = "400", description = "Malformed form, or file not of the declared size"),
+            @ApiResponse(responseCode = "403", description = "Attachment limit reached or access denied"),
+            @ApiResponse(responseCode = "404", description = "Capsule not found"),
+            @ApiResponse(responseCode = "413", description = "File size exceeded limit"),
+            @ApiResponse(responseCode = "500", description = "Error adding attachment")
+    })
+    public ResponseEntity<Void> streamAttachment(
+            @Parameter(description = "Capsule ID to add attachment to") @PathVariable UUID capsuleId,
+            @Parameter(hidden = true) @AuthenticationPrincipal CustomUserDetails user,
+            @Parameter(hidden = true) HttpServletRequest request
+    ) {
+        int max = user.isPremiumUser() ? premiumUserMaxAttachmentsPerCapsule : userMaxAttachmentsPerCapsule;
+        long maxSize = maxFileSizeFor(user);
+
+        String boundary = MultipartStreamReader.boundaryOf(request.getContentType());
+        if (boundary == null) {
+            throw new AppException("Expected a multipart/form-data body", HttpStatus.BAD_REQUEST);
+        }
+
+        String description = null;
+        Long size = null;
+        MultipartStreamReader.Part filePart;
+        try {
+            MultipartStreamReader reader = new MultipartStreamReader(request.getInputStream(), boundary);
+            while ((filePart = reader.next()) != null && !filePart.isFile()) {
+                if ("description".equals(filePart.name())) {
+                    description = filePart.readString(MAX_FORM_FIELD_BYTES);
+                } else if ("size".equals(filePart.name())) {
+                    size = parseSize(filePart.readString(MAX_FORM_FIELD_BYTES));
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Malformed attachment upload to capsule {}: {}", capsuleId, e.getMessage());
+            throw new AppException("Malformed multipart body: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        if (filePart == null || description == null || size == null) {
+            throw new AppException("Fields description and size must come before the file", HttpStatus.BAD_REQUEST);
+        }
+        if (size == 0) {
+            throw new AppException("Attachment file is missing", HttpStatus.BAD_REQUEST);
+        }
+        if (size > maxSize) {
+            logger.warn("User {} attempted to upload file exceeding max size ({} bytes) to capsule {}",
+                    user.getEmail(), maxSize, capsuleId);
+            throw new AppException("File size exceeded", HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+
+        DeclaredSizeInputStream content = new DeclaredSizeInputStream(filePart.body(), size);
+        try {
+            attachmentService.addAttachmentToCapsule(capsuleId, description, user.getEmail(),
+                    filePart.filename(), filePart.contentType(), size, () -> content, max);
+            logger.info("User {} streamed new attachment of {} bytes to capsule {}", user.getEmail(), size, capsuleId);
+        } catch (AccessDeniedException e) {
+            logger.warn("Access denied: {}", e.getMessage());
+            throw new AppException(e.getMessage(), HttpStatus.FORBIDDEN);
+        } catch (NotFoundException e) {
+            logger.warn("Capsule not found: {}", capsuleId);
+            throw new AppException(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (AppException e) {
+            throw e;
+        } catch (Exception e) {
+            // the storage client wraps the stream's exception, so ask the stream what went wrong
+            if (content.isTooLong() || content.isTooShort()) {
+                logger.warn("User {} streamed a file that is not the declared {} bytes to capsule {}",
+                        user.getEmail(), size, capsuleId);
+                throw new AppException("File is not the declared size of " + size + " bytes", HttpStatus.BAD_REQUEST);
+            }
+            if (e instanceof PersistenceException) {
+                logger.error("Database error: {}", e.getMessage(), e);
+                throw new AppException("Attachment saving failed", HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            logger.error("File storage error: {}", e.getMessage(), e);
+            throw new AppException("Attachment could not be saved", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    private static long parseSize(String value) {
+        long size = Long.parseLong(value.trim());
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative");
+        }
+        return size;
+    }
+
+    @PostMapping("/{capsuleId}/attachments/uploads")
+    @Operation(summary = "Start direct upload", description = "Returns a short-lived URL to PUT an attachment file straight to storage")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Upload URL issued",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PresignedUploadDTO.class))),
+            @ApiResponse(responseCode = "403", description = "Attachment limit reached or access denied"),
+            @ApiResponse(responseCode = "404", description = "Capsule not found"),
+            @ApiResponse(responseCode = "413", description = "File size exceeded limit")
+    })
+    public ResponseEntity<PresignedUploadDTO> startUpload(
+            @Parameter(description = "Capsule ID to add attachment to") @PathVariable UUID capsuleId,
+            @Parameter(hidden = true) @AuthenticationPrincipal CustomUserDetails user,
+            @Valid @RequestBody AttachmentUploadRequestDTO request
+    ) {
+        int max = user.isPremiumUser() ? premiumUserMaxAttachmentsPerCapsule : userMaxAttachmentsPerCapsule;
+
+        long maxSize = maxFileSizeFor(user);
+        if (request.getSize() > maxSize) {
+            logger.warn("User {} attempted to upload file exceeding max size ({} bytes) to capsule {}",
+                    user.getEmail(), maxSize, capsuleId);
+            throw new AppException("File size exceeded", HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+
+        try {
+            PresignedUploadDTO upload = attachmentService.startUpload(capsuleId, user.getEmail(), request, max);
+            logger.info("User {} started upload {} to capsule {}", user.getEmail(), upload.getFileKey(), capsuleId);
+            return ResponseEntity.ok(upload);
+        } catch (AccessDeniedException e) {
+            logger.warn("Access denied: {}", e.getMessage());
+            throw new AppException(e.getMessage(), HttpStatus.FORBIDDEN);
+        } catch (NotFoundException e) {
+            logger.warn("Capsule not found: {}", capsuleId);
+            throw new AppException(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (S3ActionException e) {
+            logger.error("File storage error: {}", e.getMessage(), e);
+            throw new AppException("Upload could not be started", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PostMapping("/{capsuleId}/attachments/uploads/commit")
+    @Operation(summary = "Commit direct upload", description = "Verifies an uploaded file and adds it to the capsule as an attachment")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Attachment added successfully",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = AttachmentResponseDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Uploaded file missing or not as declared"),
+            @ApiResponse(responseCode = "403", description = "Access denied"),
+            @ApiResponse(responseCode = "404", description = "Capsule or upload not found"),
+            @ApiResponse(responseCode = "410", description = "Upload expired before it was committed"),
+            @ApiResponse(responseCode = "413", description = "File size exceeded limit")
+    })
+    public ResponseEntity<AttachmentResponseDTO> commitUpload(
+            @Parameter(description = "Capsule ID the file was uploaded to") @PathVariable UUID capsuleId,
+            @Parameter(hidden = true) @AuthenticationPrincipal CustomUserDetails user,
+            @Valid @RequestBody AttachmentCommitRequestDTO request
+    ) {
+        try {
+            AttachmentResponseDTO attachment = attachmentService.commitUpload(capsuleId, user.getEmail(), request,
+                    maxFileSizeFor(user));
+            logger.info("User {} added new attachment to capsule {}", user.getEmail(), capsuleId);
+            return ResponseEntity.ok(attachment);
+        } catch (AccessDeniedException e) {
+            logger.warn("Access denied: {}", e.getMessage());
+            throw new AppException(e.getMessage(), HttpStatus.FORBIDDEN);
+        } catch (NotFoundException e) {
+            logger.warn("Capsule not found: {}", capsuleId);
+            throw new AppException(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (S3ActionException e) {
+            logger.error("File storage error: {}", e.getMessage(), e);
+            throw new AppException("Upload could not be verified", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/{capsuleId}/attachments/{attachmentId}/url")
+    @Operation(summary = "Get download URL", description = "Returns a short-lived URL to download an attachment file straight from storage")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Download URL issued",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PresignedDownloadDTO.class))),
+            @ApiResponse(responseCode = "403", description = "Access denied to this capsule"),
+            @ApiResponse(responseCode = "404", description = "Attachment not found")
+    })
+    public ResponseEntity<PresignedDownloadDTO> getDownloadUrl(
+            @Parameter(description = "Capsule ID") @PathVariable UUID capsuleId,
+            @Parameter(description = "Attachment ID") @PathVariable UUID attachmentId,
+            @Parameter(hidden = true) @AuthenticationPrincipal CustomUserDetails user
+    ) {
+        if (capsuleAccessService.findOwned(capsuleId, user.getId()).isEmpty()) {
+            logger.warn("User {} tried to download attachment {} of capsule {} without permission",
+                    user.getEmail(), attachmentId, capsuleId);
+            throw new AppException("You do not have access to this capsule", HttpStatus.FORBIDDEN);
+        }
+        try {
+            AttachmentResponseDTO attachment = attachmentService.getAttachment(capsuleId, attachmentId);
+            return ResponseEntity.ok(attachmentService.presignDownload(attachment));
+        } catch (NotFoundException e) {
+            logger.warn("Attachment {} not found in capsule {}", attachmentId, capsuleId);
+            throw new AppException(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (S3ActionException e) {
+            logger.error("File storage error: {}", e.getMessage(), e);
+            throw new AppException("Download URL could not be issued", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @DeleteMapping("/{capsuleId}/attachments/{attachmentId}")
     @Operation(summary = "Delete attachment", description = "Deletes an attachment from a capsule")
     @ApiResponses(value = {
@@ -158,7 +479,7 @@ public class UserAttachmentController {
             @Parameter(description = "Attachment ID") @PathVariable UUID attachmentId,
             @Parameter(hidden = true) @AuthenticationPrincipal CustomUserDetails user
     ) {
-        if (!capsuleService.userHasAccess(capsuleId, user.getEmail())) {
+        if (capsuleAccessService.findOwned(capsuleId, user.getId()).isEmpty()) {
             logger.warn("User {} tried to delete attachment from capsule {} without permission",
                     user.getEmail(), capsuleId);
             throw new AppException("You do not have access to this capsule", HttpStatus.FORBIDDEN);
@@ -2,17 +2,17 @@ package dev.horbatiuk.timecapsule.controllers.user;
 
 import dev.horbatiuk.timecapsule.exception.ErrorResponse;
 import dev.horbatiuk.timecapsule.exception.NotFoundException;
-import dev.horbatiuk.timecapsule.exception.aws.InternalAwsException;
 import dev.horbatiuk.timecapsule.exception.controller.AppException;
-import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.CountMode;
+import dev.horbatiuk.timecapsule.persistence.dto.CursorPageDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleAccessDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleCreateDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.EditCapsuleDTO;
 import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
 import dev.horbatiuk.timecapsule.security.CustomUserDetails;
+import dev.horbatiuk.timecapsule.service.CapsuleAccessService;
 import dev.horbatiuk.timecapsule.service.CapsuleService;
-import dev.horbatiuk.timecapsule.service.aws.EventBridgeScheduledService;
-import dev.horbatiuk.timecapsule.service.aws.S3Service;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -30,10 +30,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-import software.amazon.awssdk.services.scheduler.model.GetScheduleResponse;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -64,29 +61,29 @@ public class UserCapsuleController {
     @Value("${app.premium-user-max-capsules}")
     private int premiumUserMaxCapsules;
 
-    private final CapsuleRepository capsuleRepository;
-    private final S3Service s3Service;
     private final CapsuleService capsuleService;
-    private final EventBridgeScheduledService eventBridgeScheduledService;
+    private final CapsuleAccessService capsuleAccessService;
 
     @GetMapping("/capsules")
-    @Operation(summary = "Get user's capsules", description = "Returns a list of capsules owned by the currently authenticated user")
+    @Operation(summary = "Get user's capsules", description = "Returns a page of capsules owned by the currently authenticated user, newest first")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "List of user's capsules returned",
+            @ApiResponse(responseCode = "200", description = "Page of user's capsules returned",
                     content = @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = CapsuleResponseDTO.class)))
+                            schema = @Schema(implementation = CursorPageDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))
     })
-    public ResponseEntity<List<CapsuleResponseDTO>> getCapsulesByUser(
-            @Parameter(hidden = true) @AuthenticationPrincipal CustomUserDetails user
+    public ResponseEntity<CursorPageDTO<CapsuleResponseDTO>> getCapsulesByUser(
+            @Parameter(hidden = true) @AuthenticationPrincipal CustomUserDetails user,
+            @Parameter(description = "Cursor from the previous page, omit for the first page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (1..100)") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Total count: NONE, ESTIMATED or EXACT") @RequestParam(defaultValue = "NONE") CountMode count
     ) {
-        List<CapsuleResponseDTO> capsuleResponseDTOList =
-                capsuleService.findCapsulesByEmail(user.getEmail());
-        if (capsuleResponseDTOList.isEmpty()) {
-            logger.info("No capsules found for user {}", user.getEmail());
-            return ResponseEntity.ok(new ArrayList<>());
-        }
-        logger.info("Returning {} capsules for user {}", capsuleResponseDTOList.size(), user.getEmail());
-        return ResponseEntity.ok(capsuleResponseDTOList);
+        CursorPageDTO<CapsuleResponseDTO> page =
+                capsuleService.findCapsulePageByUserId(user.getId(), cursor, size, count);
+        logger.info("Returning {} capsules for user {}", page.getItems().size(), user.getEmail());
+        return ResponseEntity.ok(page);
     }
 
     @PostMapping("/capsules")
@@ -138,54 +135,35 @@ public class UserCapsuleController {
         int maxCapsules = userDetails.isPremiumUser()
                 ? premiumUserMaxCapsules
                 : userMaxCapsules;
-        long capsuleCount = capsuleRepository.countByAppUserEmail(userDetails.getEmail());
-        if (capsuleCount >= maxCapsules) {
-            throw new AppException(
-                    "Limit reached, max: " + maxCapsules + " capsules",
-                    HttpStatus.FORBIDDEN
-            );
-        }
         CapsuleResponseDTO created =
-                capsuleService.addNewCapsule(userDetails.getEmail(), dto);
+                capsuleService.addNewCapsule(userDetails.getEmail(), dto, maxCapsules);
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
     @PatchMapping("/capsules/{capsuleId}")
-    @Operation(summary = "Activate capsule", description = "Marks a capsule as active and schedules its delivery using AWS EventBridge")
+    @Operation(summary = "Activate capsule", description = "Marks a capsule as active. Its data upload and "
+            + "AWS EventBridge delivery schedule are set up in the background shortly after")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Capsule activated successfully"),
             @ApiResponse(responseCode = "403", description = "Access denied to this capsule"),
+            @ApiResponse(responseCode = "404", description = "Capsule not found"),
             @ApiResponse(responseCode = "500", description = "Error activating capsule")
     })
     public ResponseEntity<Void> changeCapsuleStatusToActive(
             @AuthenticationPrincipal CustomUserDetails userDetails,
             @PathVariable UUID capsuleId
     ) {
-        if (!capsuleService.userHasAccess(capsuleId, userDetails.getEmail())) {
+        if (capsuleAccessService.findOwned(capsuleId, userDetails.getId()).isEmpty()) {
             logger.warn("User {} tried to access capsule {} without permission", userDetails.getEmail(), capsuleId);
             throw new AppException("You do not have access to this capsule", HttpStatus.FORBIDDEN);
         }
 
         try {
-            GetScheduleResponse scheduleResponse = null;
-            try {
-                scheduleResponse = eventBridgeScheduledService.getSchedule(capsuleId);
-            } catch (NotFoundException e) {
-                logger.info("Schedule not found for capsule {}, will create new one", capsuleId);
-            }
             capsuleService.setCapsuleStatus(capsuleId, CapsuleStatus.ACTIVE);
-            CapsuleResponseDTO capsuleDTO = capsuleService.findCapsuleById(capsuleId);
-            s3Service.uploadCapsuleData(capsuleDTO);
-            if (scheduleResponse != null) {
-                eventBridgeScheduledService.updateSchedule(scheduleResponse, true, capsuleId);
-            } else {
-                eventBridgeScheduledService.createNewSchedule(capsuleId, capsuleDTO.getOpenAt().toInstant());
-            }
             logger.info("Capsule {} activated by user {}", capsuleId, userDetails.getEmail());
             return ResponseEntity.ok().build();
-        } catch (InternalAwsException e) {
-            logger.error("Internal AWS Scheduler error activating capsule {}", capsuleId, e);
-            throw new AppException("Failed to activate capsule: " + capsuleId, HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (NotFoundException e) {
+            throw new AppException("Capsule not found", HttpStatus.NOT_FOUND);
         } catch (Exception e) {
             logger.error("Failed to activate capsule {} for user {}", capsuleId, userDetails.getEmail(), e);
             throw new AppException("Failed to activate capsule: " + capsuleId, HttpStatus.INTERNAL_SERVER_ERROR);
@@ -204,16 +182,16 @@ public class UserCapsuleController {
             @Parameter(description = "ID of the capsule to edit") @PathVariable UUID capsuleId,
             @Valid @RequestBody EditCapsuleDTO editCapsuleDTO
     ) {
-        if (!capsuleService.userHasAccess(capsuleId, userDetails.getEmail())) {
+        CapsuleAccessDTO access = capsuleAccessService.findOwned(capsuleId, userDetails.getId()).orElse(null);
+        if (access == null) {
             logger.warn("User {} tried to edit capsule {} without permission", userDetails.getEmail(), capsuleId);
             throw new AppException("You do not have access to this capsule", HttpStatus.FORBIDDEN);
         }
+        if (access.status() == CapsuleStatus.ACTIVE) {
+            logger.warn("User {} tried to edit capsule with ACTIVE status", userDetails.getEmail());
+            throw new AppException("You can't change activated capsule data", HttpStatus.FORBIDDEN);
+        }
         try {
-            CapsuleResponseDTO capsuleResponseDTO = capsuleService.findCapsuleById(capsuleId);
-            if (capsuleResponseDTO.getStatus().equals(CapsuleStatus.ACTIVE)) {
-                logger.warn("User {} tried to edit capsule with ACTIVE status", userDetails.getEmail());
-                throw new AppException("You can't change activated capsule data", HttpStatus.FORBIDDEN);
-            }
             capsuleService.editCapsule(capsuleId, editCapsuleDTO);
             logger.info("Capsule {} edited by user {}", capsuleId, userDetails.getEmail());
         } catch (NotFoundException e) {
@@ -1,9 +1,11 @@
 package dev.horbatiuk.timecapsule.exception;
 
 import dev.horbatiuk.timecapsule.exception.controller.AppException;
+import dev.horbatiuk.timecapsule.exception.controller.ServiceOverloadedException;
 import jakarta.persistence.EntityNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -26,6 +28,15 @@ public class GlobalExceptionHandler {
         return buildResponse(ex.getMessage(), ex.getStatus());
     }
 
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleServiceOverloaded(ServiceOverloadedException ex) {
+        logger.warn("Service overloaded: {}", ex.getMessage());
+        ResponseEntity<ErrorResponse> response = buildResponse(ex.getMessage(), ex.getStatus());
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response.getBody());
+    }
+
     @ExceptionHandler(MaxUploadSizeExceededException.class)
     public ResponseEntity<ErrorResponse> handleMaxSizeException(MaxUploadSizeExceededException exc) {
         logger.warn("Max upload size exceeded: {}", exc.getMessage());
@@ -0,0 +1,10 @@
+package dev.horbatiuk.timecapsule.exception;
+
+public class SchedulingException extends Exception {
+    public SchedulingException(String message) {
+        super(message);
+    }
+    public SchedulingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
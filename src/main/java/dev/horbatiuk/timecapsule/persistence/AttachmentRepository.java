@@ -1,12 +1,72 @@
 package dev.horbatiuk.timecapsule.persistence;
 
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentKeyDTO;
 import dev.horbatiuk.timecapsule.persistence.entities.Attachment;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.AttachmentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface AttachmentRepository extends JpaRepository<Attachment, UUID> {
     List<Attachment> findByCapsuleId(UUID capsuleId);
+    List<Attachment> findByCapsuleIdAndStatus(UUID capsuleId, AttachmentStatus status);
     void deleteByCapsuleId(UUID capsuleId);
+    Optional<Attachment> findByIdAndCapsuleIdAndStatus(UUID id, UUID capsuleId, AttachmentStatus status);
+    Optional<Attachment> findByCapsuleIdAndFileKey(UUID capsuleId, String fileKey);
+
+    @Query("""
+        SELECT new dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentKeyDTO(a.capsule.id, a.fileKey)
+        FROM Attachment a
+        WHERE a.capsule.appUser.id = :userId
+        """)
+    List<AttachmentKeyDTO> findKeysByUserId(@Param("userId") UUID userId);
+
+    @Modifying
+    @Query("DELETE FROM Attachment a WHERE a.capsule.id IN :capsuleIds")
+    int deleteAllByCapsuleIdIn(@Param("capsuleIds") Collection<UUID> capsuleIds);
+
+    /**
+     * Completes an upload. A PENDING row older than {@code ttlSeconds} is left alone, since the
+     * sweeper may already be deleting its file.
+     *
+     * @return 1 if the row became READY, 0 if it expired or is gone
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE attachments SET status = 'READY'
+        WHERE id = :id AND status = 'PENDING' AND created_at > now() - make_interval(secs => :ttlSeconds)
+        """, nativeQuery = true)
+    int markReady(@Param("id") UUID id, @Param("ttlSeconds") long ttlSeconds);
+
+    /**
+     * Completes a direct upload like {@link #markReady}, taking the name and description the
+     * client gave when committing it.
+     *
+     * @return 1 if the row became READY, 0 if it expired, is gone or was already committed
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE attachments SET status = 'READY', filename = :filename, description = :description
+        WHERE id = :id AND status = 'PENDING' AND created_at > now() - make_interval(secs => :ttlSeconds)
+        """, nativeQuery = true)
+    int commitPending(@Param("id") UUID id, @Param("filename") String filename,
+                      @Param("description") String description, @Param("ttlSeconds") long ttlSeconds);
+
+    @Modifying
+    @Query(value = "DELETE FROM attachments WHERE id = :id AND status = 'PENDING'", nativeQuery = true)
+    int deletePending(@Param("id") UUID id);
+
+    @Query(value = """
+        SELECT * FROM attachments
+        WHERE status = 'PENDING' AND created_at < now() - make_interval(secs => :ttlSeconds)
+        ORDER BY created_at
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Attachment> findExpiredPending(@Param("ttlSeconds") long ttlSeconds, @Param("limit") int limit);
 }
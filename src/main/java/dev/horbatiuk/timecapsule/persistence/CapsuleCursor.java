@@ -0,0 +1,46 @@
+package dev.horbatiuk.timecapsule.persistence;
+
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a capsule listing ordered by {@code created_at DESC, id DESC}: the last row of
+ * the previous page. Handed to clients as an opaque, URL-safe token.
+ */
+public record CapsuleCursor(Timestamp createdAt, UUID id) {
+
+    private static final char SEPARATOR = '|';
+
+    public static CapsuleCursor of(Capsule capsule) {
+        return new CapsuleCursor(capsule.getCreatedAt(), capsule.getId());
+    }
+
+    public String encode() {
+        String raw = createdAt.toLocalDateTime().toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static CapsuleCursor decode(String token) {
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int separator = raw.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        try {
+            return new CapsuleCursor(
+                    Timestamp.valueOf(LocalDateTime.parse(raw.substring(0, separator))),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+}
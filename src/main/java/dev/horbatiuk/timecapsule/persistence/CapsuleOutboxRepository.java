@@ -0,0 +1,115 @@
+package dev.horbatiuk.timecapsule.persistence;
+
+import dev.horbatiuk.timecapsule.persistence.entities.CapsuleOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface CapsuleOutboxRepository extends JpaRepository<CapsuleOutbox, Long> {
+
+    /**
+     * Queues a sync of the capsule in the caller's transaction. Does nothing if one is
+     * already waiting, as the relay reads the capsule's state when it runs.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO capsule_outbox (capsule_id, status, attempts, next_attempt_at, created_at)
+        VALUES (:capsuleId, 'PENDING', 0, now(), now())
+        ON CONFLICT (capsule_id) WHERE status = 'PENDING' DO NOTHING
+        """, nativeQuery = true)
+    int enqueue(@Param("capsuleId") UUID capsuleId);
+
+    /**
+     * Queues another sync for those of the capsules that have one running. Called when
+     * capsules are deleted: the running sync may still schedule the capsule, and the queued
+     * one, which runs after it, then finds the capsule gone and cancels the schedule.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO capsule_outbox (capsule_id, status, attempts, next_attempt_at, created_at)
+        SELECT DISTINCT capsule_id, 'PENDING', 0, now(), now()
+        FROM capsule_outbox
+        WHERE capsule_id IN (:capsuleIds) AND status = 'PROCESSING'
+        ON CONFLICT (capsule_id) WHERE status = 'PENDING' DO NOTHING
+        """, nativeQuery = true)
+    int enqueueIfProcessing(@Param("capsuleIds") Collection<UUID> capsuleIds);
+
+    /**
+     * Leases up to {@code limit} due rows to the caller. Rows whose lease ran out
+     * (the node processing them died) are picked up again.
+     * <p>
+     * Syncs of one capsule run one at a time and in the order they were queued: a row is
+     * only claimed while no other row of its capsule is leased and no older one is waiting.
+     * Otherwise a deactivation could cancel the schedule while an earlier activation is
+     * still uploading, and the activation would then schedule the capsule again.
+     */
+    @Transactional
+    @Query(value = """
+        UPDATE capsule_outbox
+        SET status = 'PROCESSING',
+            attempts = attempts + 1,
+            locked_until = now() + make_interval(secs => :leaseSeconds)
+        WHERE id IN (
+            SELECT c.id FROM capsule_outbox c
+            WHERE ((c.status = 'PENDING' AND c.next_attempt_at <= now())
+                   OR (c.status = 'PROCESSING' AND c.locked_until < now()))
+              AND NOT EXISTS (SELECT 1 FROM capsule_outbox p
+                              WHERE p.capsule_id = c.capsule_id
+                                AND p.id <> c.id
+                                AND ((p.status = 'PROCESSING' AND p.locked_until >= now())
+                                     OR (p.id < c.id AND p.status <> 'DEAD')))
+            ORDER BY c.id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING *
+        """, nativeQuery = true)
+    List<CapsuleOutbox> claimBatch(@Param("limit") int limit, @Param("leaseSeconds") long leaseSeconds);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CapsuleOutbox o WHERE o.id = :id")
+    int markDone(@Param("id") Long id);
+
+    /**
+     * Puts the row back in the queue, unless another sync of the same capsule was queued in
+     * the meantime; that one covers this row, which is then dropped.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        WITH retried AS (
+            UPDATE capsule_outbox
+            SET status = 'PENDING',
+                next_attempt_at = now() + make_interval(secs => :delaySeconds),
+                locked_until = NULL,
+                last_error = :error
+            WHERE id = :id
+              AND NOT EXISTS (SELECT 1 FROM capsule_outbox p
+                              WHERE p.capsule_id = capsule_outbox.capsule_id AND p.status = 'PENDING')
+            RETURNING id
+        )
+        DELETE FROM capsule_outbox
+        WHERE id = :id AND NOT EXISTS (SELECT 1 FROM retried)
+        """, nativeQuery = true)
+    int scheduleRetry(@Param("id") Long id, @Param("delaySeconds") long delaySeconds, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE capsule_outbox
+        SET status = 'DEAD',
+            locked_until = NULL,
+            last_error = :error
+        WHERE id = :id
+        """, nativeQuery = true)
+    int markDead(@Param("id") Long id, @Param("error") String error);
+}
@@ -1,45 +1,75 @@
 package dev.horbatiuk.timecapsule.persistence;
 
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleAccessDTO;
 import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
 import dev.horbatiuk.timecapsule.persistence.entities.User;
-import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface CapsuleRepository extends JpaRepository<Capsule, UUID> {
+public interface CapsuleRepository extends JpaRepository<Capsule, UUID>, JpaSpecificationExecutor<Capsule> {
+    @EntityGraph(attributePaths = {"appUser", "attachments"})
     List<Capsule> findAllByAppUser(User user);
+    @EntityGraph(attributePaths = {"appUser", "attachments"})
     List<Capsule> findAllByAppUser_Id(UUID appUserId);
-    long countByAppUserEmail(String email);
 
     @Query("SELECT c FROM Capsule c JOIN FETCH c.appUser WHERE c.id = :id")
     Optional<Capsule> findByIdWithUser(@Param("id") UUID id);
 
     @Query("""
-        SELECT c FROM Capsule c 
-        JOIN c.appUser u
-        WHERE 
-          c.title = COALESCE(:title, c.title)
-          AND c.status = COALESCE(:status, c.status)
-          AND u.email = COALESCE(:email, u.email)
-          AND u.id = COALESCE(:userId, u.id)
-          AND c.createdAt >= COALESCE(:createdAfter, c.createdAt)
-          AND c.createdAt <= COALESCE(:createdBefore, c.createdAt)
+        SELECT new dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleAccessDTO(c.id, c.appUser.id, c.status)
+        FROM Capsule c
+        WHERE c.id = :id
         """)
-    Page<Capsule> findAllWithFilters(
-            @Param("title") String title,
-            @Param("status") CapsuleStatus status,
-            @Param("email") String email,
-            @Param("createdAfter") Instant createdAfter,
-            @Param("createdBefore") Instant createdBefore,
-            @Param("userId") UUID userId,
-            Pageable pageable
-    );
+    Optional<CapsuleAccessDTO> findAccessById(@Param("id") UUID id);
+
+    @Query("""
+        SELECT new dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleAccessDTO(c.id, c.appUser.id, c.status)
+        FROM Capsule c
+        WHERE c.appUser.id = :userId
+        """)
+    List<CapsuleAccessDTO> findAccessByAppUserId(@Param("userId") UUID userId);
+
+    @Modifying
+    @Query("DELETE FROM Capsule c WHERE c.id IN :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Takes one slot of the capsule's attachment quota and returns the new count, or nothing
+     * when the capsule already has {@code max} attachments or is ACTIVE. The status is checked
+     * on the row being updated, so a capsule activated after the caller last read it gets no
+     * new attachments. See {@link UserRepository#reserveCapsuleSlot}.
+     */
+    @Query(value = """
+        UPDATE capsule
+        SET attachment_count = attachment_count + 1
+        WHERE id = :capsuleId AND attachment_count < :max AND status <> 'ACTIVE'
+        RETURNING attachment_count
+        """, nativeQuery = true)
+    Optional<Integer> reserveAttachmentSlot(@Param("capsuleId") UUID capsuleId, @Param("max") int max);
+
+    @Query(value = "SELECT attachment_count FROM capsule WHERE id = :capsuleId", nativeQuery = true)
+    int countAttachmentSlots(@Param("capsuleId") UUID capsuleId);
+
+    @Modifying
+    @Query(value = """
+        UPDATE capsule
+        SET attachment_count = GREATEST(attachment_count - :count, 0)
+        WHERE id = :capsuleId
+        """, nativeQuery = true)
+    int releaseAttachmentSlots(@Param("capsuleId") UUID capsuleId, @Param("count") int count);
+
+    /**
+     * Row count from planner statistics; {@code -1} if the table has never been analyzed.
+     */
+    @Query(value = "SELECT reltuples::bigint FROM pg_class WHERE oid = 'capsule'::regclass", nativeQuery = true)
+    long estimateCount();
 }
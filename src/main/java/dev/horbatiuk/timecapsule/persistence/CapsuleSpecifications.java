@@ -0,0 +1,116 @@
+package dev.horbatiuk.timecapsule.persistence;
+
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public final class CapsuleSpecifications {
+
+    /**
+     * Order of cursor-paginated listings, served by the {@code (..., created_at, id)} indexes
+     * read backwards.
+     */
+    public static final Sort KEYSET_ORDER = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+
+    private CapsuleSpecifications() {
+    }
+
+    /**
+     * Admin capsule search. Only the filters that are set become predicates, so the planner
+     * sees plain equality and range conditions it can serve from an index.
+     * The owner is fetch-joined for the page query; the count query only joins it when
+     * filtering by email.
+     */
+    public static Specification<Capsule> adminSearch(String email,
+                                                     UUID userId,
+                                                     CapsuleStatus status,
+                                                     String title,
+                                                     Instant openFrom,
+                                                     Instant openTo) {
+        return (root, query, cb) -> {
+            Join<Capsule, User> owner = fetchOwner(root, query);
+
+            List<Predicate> predicates = new ArrayList<>();
+            if (StringUtils.hasText(email)) {
+                if (owner == null) {
+                    owner = root.join("appUser", JoinType.INNER);
+                }
+                predicates.add(cb.equal(owner.get("email"), email));
+            }
+            if (userId != null) {
+                predicates.add(cb.equal(root.get("appUser").get("id"), userId));
+            }
+            if (status != null) {
+                predicates.add(cb.equal(root.get("status"), status));
+            }
+            if (StringUtils.hasText(title)) {
+                predicates.add(cb.equal(root.get("title"), title));
+            }
+            if (openFrom != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("openAt"), Timestamp.from(openFrom)));
+            }
+            if (openTo != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("openAt"), Timestamp.from(openTo)));
+            }
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    /**
+     * Capsules of one user, with the owner fetched for the page query.
+     */
+    public static Specification<Capsule> ownedBy(UUID userId) {
+        return (root, query, cb) -> {
+            fetchOwner(root, query);
+            return cb.equal(root.get("appUser").get("id"), userId);
+        };
+    }
+
+    /**
+     * Rows after {@code cursor} in {@link #KEYSET_ORDER}. Equivalent to
+     * {@code (created_at, id) < (:createdAt, :id)}, spelled out because the criteria API has no
+     * row values; the redundant {@code created_at <= :createdAt} gives the planner an index
+     * range to start from instead of a filter.
+     */
+    public static Specification<Capsule> after(CapsuleCursor cursor) {
+        return (root, query, cb) -> {
+            Path<Timestamp> createdAt = root.get("createdAt");
+            Path<UUID> id = root.get("id");
+            return cb.and(
+                    cb.lessThanOrEqualTo(createdAt, cursor.createdAt()),
+                    cb.or(
+                            cb.lessThan(createdAt, cursor.createdAt()),
+                            cb.and(cb.equal(createdAt, cursor.createdAt()), cb.lessThan(id, cursor.id()))
+                    )
+            );
+        };
+    }
+
+    private static Join<Capsule, User> fetchOwner(Root<Capsule> root, CriteriaQuery<?> query) {
+        if (isCountQuery(query.getResultType())) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        Join<Capsule, User> fetched = (Join<Capsule, User>) root.<Capsule, User>fetch("appUser", JoinType.INNER);
+        return fetched;
+    }
+
+    private static boolean isCountQuery(Class<?> resultType) {
+        return resultType == Long.class || resultType == long.class;
+    }
+}
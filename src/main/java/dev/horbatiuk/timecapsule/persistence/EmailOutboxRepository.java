@@ -0,0 +1,63 @@
+package dev.horbatiuk.timecapsule.persistence;
+
+import dev.horbatiuk.timecapsule.persistence.entities.EmailOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    /**
+     * Leases up to {@code limit} due emails to the caller. Rows whose lease ran out
+     * (the node sending them died) are picked up again.
+     */
+    @Transactional
+    @Query(value = """
+        UPDATE email_outbox
+        SET status = 'SENDING',
+            attempts = attempts + 1,
+            locked_until = now() + make_interval(secs => :leaseSeconds)
+        WHERE id IN (
+            SELECT id FROM email_outbox
+            WHERE (status = 'PENDING' AND next_attempt_at <= now())
+               OR (status = 'SENDING' AND locked_until < now())
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        )
+        RETURNING *
+        """, nativeQuery = true)
+    List<EmailOutbox> claimBatch(@Param("limit") int limit, @Param("leaseSeconds") long leaseSeconds);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM EmailOutbox e WHERE e.id = :id")
+    int markSent(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE email_outbox
+        SET status = 'PENDING',
+            next_attempt_at = now() + make_interval(secs => :delaySeconds),
+            locked_until = NULL,
+            last_error = :error
+        WHERE id = :id
+        """, nativeQuery = true)
+    int scheduleRetry(@Param("id") Long id, @Param("delaySeconds") long delaySeconds, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE email_outbox
+        SET status = 'DEAD',
+            locked_until = NULL,
+            last_error = :error
+        WHERE id = :id
+        """, nativeQuery = true)
+    int markDead(@Param("id") Long id, @Param("error") String error);
+}
@@ -3,13 +3,35 @@ package dev.horbatiuk.timecapsule.persistence;
 import dev.horbatiuk.timecapsule.persistence.entities.RefreshToken;
 import dev.horbatiuk.timecapsule.persistence.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.Optional;
+import java.util.UUID;
 
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
-    Optional<RefreshToken> findByToken(String token);
-    Optional<RefreshToken> findByUser(User user);
+
+    @Query("""
+        SELECT rt FROM RefreshToken rt
+        JOIN FETCH rt.user
+        WHERE rt.tokenHash = :tokenHash
+        """)
+    Optional<RefreshToken> findByTokenHash(@Param("tokenHash") String tokenHash);
+
+    @Query(value = """
+        INSERT INTO refresh_token (token_hash, user_id, expiry_date)
+        VALUES (:tokenHash, :userId, :expiryDate)
+        ON CONFLICT (user_id) DO UPDATE
+            SET token_hash = EXCLUDED.token_hash,
+                expiry_date = EXCLUDED.expiry_date
+        RETURNING id
+        """, nativeQuery = true)
+    Long upsertForUser(@Param("userId") UUID userId,
+                       @Param("tokenHash") String tokenHash,
+                       @Param("expiryDate") Instant expiryDate);
+
     void deleteByUser(User user);
 }
@@ -0,0 +1,27 @@
+package dev.horbatiuk.timecapsule.persistence;
+
+import dev.horbatiuk.timecapsule.persistence.entities.ScheduleReconciliationRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public interface ScheduleReconciliationRunRepository extends JpaRepository<ScheduleReconciliationRun, UUID> {
+
+    /**
+     * Marks runs still RUNNING that were started before {@code before} as FAILED; their node
+     * stopped before they finished.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        UPDATE schedule_reconciliation_run
+        SET status = 'FAILED', finished_at = now(), error = :error
+        WHERE status = 'RUNNING' AND started_at < :before
+        """, nativeQuery = true)
+    int failRunningBefore(@Param("before") Instant before, @Param("error") String error);
+}
@@ -2,6 +2,9 @@ package dev.horbatiuk.timecapsule.persistence;
 
 import dev.horbatiuk.timecapsule.persistence.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -9,4 +12,25 @@ import java.util.UUID;
 public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findUserByEmail(String email);
     Optional<User> findUserById(UUID id);
+
+    /**
+     * Takes one slot of the user's capsule quota and returns the new count, or nothing when
+     * the user already has {@code max} capsules. The row lock taken by the update serializes
+     * concurrent creates of the same user until the calling transaction ends.
+     */
+    @Query(value = """
+        UPDATE app_user
+        SET capsule_count = capsule_count + 1
+        WHERE id = :userId AND capsule_count < :max
+        RETURNING capsule_count
+        """, nativeQuery = true)
+    Optional<Integer> reserveCapsuleSlot(@Param("userId") UUID userId, @Param("max") int max);
+
+    @Modifying
+    @Query(value = """
+        UPDATE app_user
+        SET capsule_count = GREATEST(capsule_count - :count, 0)
+        WHERE id = :userId
+        """, nativeQuery = true)
+    int releaseCapsuleSlots(@Param("userId") UUID userId, @Param("count") int count);
 }
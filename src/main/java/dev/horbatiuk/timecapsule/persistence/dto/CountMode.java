@@ -0,0 +1,16 @@
+package dev.horbatiuk.timecapsule.persistence.dto;
+
+/**
+ * How the total of a cursor-paginated listing is computed, if at all.
+ */
+public enum CountMode {
+    /** No total; the cheapest option, enough for "load more" style clients. */
+    NONE,
+    /**
+     * Planner statistics ({@code pg_class.reltuples}) for unfiltered listings, kept current by
+     * autovacuum. Filtered listings are counted exactly, as their filters are index-backed.
+     */
+    ESTIMATED,
+    /** {@code count(*)} over the filtered rows. */
+    EXACT
+}
@@ -0,0 +1,20 @@
+package dev.horbatiuk.timecapsule.persistence.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@Builder
+public class CursorPageDTO<T> {
+    private List<T> items;
+    /** Pass back as {@code cursor} to get the next page; {@code null} on the last page. */
+    private String nextCursor;
+    /** {@code null} unless a count was requested. */
+    private Long totalElements;
+    private boolean totalEstimated;
+}
@@ -0,0 +1,37 @@
+package dev.horbatiuk.timecapsule.persistence.dto.attachment;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class AttachmentCommitRequestDTO {
+
+    @NotBlank(message = "File key is required")
+    @Size(max = 255, message = "File key must not exceed 255 characters")
+    private String fileKey;
+
+    @NotBlank(message = "Filename is required")
+    @Size(max = 200, message = "Filename must not exceed 200 characters")
+    private String filename;
+
+    @Size(max = 10_000, message = "Description must not exceed 10,000 characters")
+    private String description;
+
+    @NotBlank(message = "Content type is required")
+    private String contentType;
+
+    @Positive(message = "Size must be positive")
+    private long size;
+
+    @Pattern(regexp = "^[A-Za-z0-9+/]{43}=$", message = "Checksum must be a base64 SHA-256 digest")
+    private String checksumSha256;
+}
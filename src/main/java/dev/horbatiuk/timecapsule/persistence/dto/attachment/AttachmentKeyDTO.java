@@ -0,0 +1,12 @@
+package dev.horbatiuk.timecapsule.persistence.dto.attachment;
+
+import java.util.UUID;
+
+/**
+ * Where an attachment's file lives in S3, without the rest of the attachment row.
+ */
+public record AttachmentKeyDTO(
+        UUID capsuleId,
+        String fileKey
+) {
+}
@@ -0,0 +1,32 @@
+package dev.horbatiuk.timecapsule.persistence.dto.attachment;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class AttachmentUploadRequestDTO {
+
+    @NotBlank(message = "Filename is required")
+    @Size(max = 200, message = "Filename must not exceed 200 characters")
+    private String filename;
+
+    @NotBlank(message = "Content type is required")
+    @Size(max = 255, message = "Content type must not exceed 255 characters")
+    private String contentType;
+
+    @Positive(message = "Size must be positive")
+    private long size;
+
+    /** Base64 SHA-256 of the file; when given, S3 rejects an upload with different content. */
+    @Pattern(regexp = "^[A-Za-z0-9+/]{43}=$", message = "Checksum must be a base64 SHA-256 digest")
+    private String checksumSha256;
+}
@@ -0,0 +1,17 @@
+package dev.horbatiuk.timecapsule.persistence.dto.attachment;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class PresignedDownloadDTO {
+    private String url;
+    private Instant expiresAt;
+}
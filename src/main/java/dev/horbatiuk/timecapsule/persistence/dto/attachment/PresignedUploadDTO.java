@@ -0,0 +1,24 @@
+package dev.horbatiuk.timecapsule.persistence.dto.attachment;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Where and how to {@code PUT} a file straight to storage. The request has to carry
+ * {@code headers} exactly as given, and {@code fileKey} is what the upload is committed with.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class PresignedUploadDTO {
+    private String fileKey;
+    private String url;
+    private Map<String, String> headers;
+    private Instant expiresAt;
+}
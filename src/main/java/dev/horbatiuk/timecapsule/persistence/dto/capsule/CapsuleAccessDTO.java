@@ -0,0 +1,19 @@
+package dev.horbatiuk.timecapsule.persistence.dto.capsule;
+
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+
+import java.util.UUID;
+
+/**
+ * The columns access checks need, read from the capsule row alone.
+ */
+public record CapsuleAccessDTO(
+        UUID capsuleId,
+        UUID ownerId,
+        CapsuleStatus status
+) {
+
+    public boolean isOwnedBy(UUID userId) {
+        return ownerId != null && ownerId.equals(userId);
+    }
+}
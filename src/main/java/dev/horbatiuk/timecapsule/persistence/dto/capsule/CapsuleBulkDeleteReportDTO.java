@@ -0,0 +1,23 @@
+package dev.horbatiuk.timecapsule.persistence.dto.capsule;
+
+import lombok.*;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@Builder
+public class CapsuleBulkDeleteReportDTO {
+    private int capsules;
+    private int attachments;
+    private int schedulesDeleted;
+    private int schedulesFailed;
+    private int objectsDeleted;
+    private int objectsFailed;
+    /**
+     * {@code false} when some schedules or S3 objects could not be removed. The capsules are
+     * then kept, so the request can simply be repeated.
+     */
+    private boolean completed;
+}
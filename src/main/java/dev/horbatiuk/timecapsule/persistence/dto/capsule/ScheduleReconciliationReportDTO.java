@@ -0,0 +1,47 @@
+package dev.horbatiuk.timecapsule.persistence.dto.capsule;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.UUID;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@Builder
+public class ScheduleReconciliationReportDTO {
+    /**
+     * {@code true} when mismatches were only reported, not repaired.
+     */
+    private boolean dryRun;
+    private long capsulesChecked;
+    private long schedulesChecked;
+    /**
+     * ACTIVE capsules that have not opened yet but have no schedule.
+     */
+    private long missing;
+    /**
+     * Schedules that are disabled or fire at a different time than the capsule's openAt.
+     */
+    private long stale;
+    /**
+     * Schedules of capsules that are no longer ACTIVE or no longer exist.
+     */
+    private long orphaned;
+    /**
+     * Mismatched capsules queued for a sync; the outbox relay applies their current state.
+     */
+    private long repaired;
+    /**
+     * Schedule lookups and repairs that failed; running again retries them.
+     */
+    private long failed;
+    /**
+     * Up to {@code 50} ids per kind of mismatch, to look into without listing every one.
+     */
+    private List<UUID> missingSample;
+    private List<UUID> staleSample;
+    private List<UUID> orphanedSample;
+}
@@ -0,0 +1,29 @@
+package dev.horbatiuk.timecapsule.persistence.dto.capsule;
+
+import dev.horbatiuk.timecapsule.persistence.entities.enums.ReconciliationRunStatus;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@ToString
+@Builder
+public class ScheduleReconciliationRunDTO {
+    private UUID id;
+    private boolean dryRun;
+    private ReconciliationRunStatus status;
+    private Instant startedAt;
+    private Instant finishedAt;
+    /**
+     * Set once the run has FINISHED.
+     */
+    private ScheduleReconciliationReportDTO report;
+    /**
+     * Why the run FAILED.
+     */
+    private String error;
+}
@@ -1,9 +1,11 @@
 package dev.horbatiuk.timecapsule.persistence.entities;
 
+import dev.horbatiuk.timecapsule.persistence.entities.enums.AttachmentStatus;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.GenericGenerator;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
@@ -33,4 +35,16 @@ public class Attachment {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "capsule_id", nullable = false)
     private Capsule capsule;
+
+    /**
+     * PENDING while the file is being uploaded; only READY attachments are shown.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    @Builder.Default
+    private AttachmentStatus status = AttachmentStatus.READY;
+
+    /** Set by the database, so it compares with {@code now()} in the pending-upload queries. */
+    @Column(name = "created_at", nullable = false, insertable = false, updatable = false)
+    private Instant createdAt;
 }
@@ -6,6 +6,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
@@ -47,6 +49,8 @@ public class Capsule {
     private User appUser;
 
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "capsule")
+    @BatchSize(size = 100)
+    @SQLRestriction("status = 'READY'")
     private List<Attachment> attachments;
 
     @PrePersist
@@ -0,0 +1,50 @@
+package dev.horbatiuk.timecapsule.persistence.entities;
+
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleOutboxStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A capsule whose S3 data and schedule have to be brought in line with its status.
+ */
+@Entity
+@Table(name = "capsule_outbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CapsuleOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "capsule_id", nullable = false)
+    private UUID capsuleId;
+
+    @Column(nullable = false, length = 16)
+    @Enumerated(EnumType.STRING)
+    @Builder.Default
+    private CapsuleOutboxStatus status = CapsuleOutboxStatus.PENDING;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private int attempts = 0;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt;
+
+    private Instant lockedUntil;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
@@ -19,8 +19,9 @@ public class RefreshToken {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false, unique = true)
-    private String token;
+    /** SHA-256 hex digest of the token handed to the client; the raw token is never stored. */
+    @Column(nullable = false, unique = true, length = 64)
+    private String tokenHash;
 
     @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "id", nullable = false)
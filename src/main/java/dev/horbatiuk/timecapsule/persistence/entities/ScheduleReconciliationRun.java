@@ -0,0 +1,50 @@
+package dev.horbatiuk.timecapsule.persistence.entities;
+
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.ScheduleReconciliationReportDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.ReconciliationRunStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One schedule reconciliation started by an admin. Stored so that any node can serve its
+ * report. A run whose node stopped before it finished is marked FAILED by the next run, or
+ * when it is read once it is older than the reconciliation interval.
+ */
+@Entity
+@Table(name = "schedule_reconciliation_run")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScheduleReconciliationRun {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "dry_run", nullable = false)
+    private boolean dryRun;
+
+    @Column(nullable = false, length = 16)
+    @Enumerated(EnumType.STRING)
+    @Builder.Default
+    private ReconciliationRunStatus status = ReconciliationRunStatus.RUNNING;
+
+    @Column(nullable = false)
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    private ScheduleReconciliationReportDTO report;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+}
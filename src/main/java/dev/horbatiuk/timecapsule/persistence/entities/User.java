@@ -7,6 +7,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 
 import java.sql.Timestamp;
 import java.util.HashSet;
@@ -43,10 +44,15 @@ public class User {
     @Builder.Default
     private boolean isVerified = false;
 
+    @Column(nullable = false)
+    @Builder.Default
+    private long tokenVersion = 0;
+
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"))
     @Enumerated(EnumType.STRING)
     @Column(name = "role")
+    @BatchSize(size = 100)
     @Builder.Default
     private Set<UserRole> roles = new HashSet<>();
 
@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
@@ -26,4 +27,10 @@ public class VerificationToken {
     @JoinColumn(name = "user_id", nullable = false, unique = true)
     private User user;
 
+    @Column(nullable = false)
+    private Instant expiryDate;
+
+    public boolean isExpired(Instant now) {
+        return expiryDate.isBefore(now);
+    }
 }
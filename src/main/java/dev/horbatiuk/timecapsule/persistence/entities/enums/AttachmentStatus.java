@@ -0,0 +1,6 @@
+package dev.horbatiuk.timecapsule.persistence.entities.enums;
+
+public enum AttachmentStatus {
+    PENDING,
+    READY
+}
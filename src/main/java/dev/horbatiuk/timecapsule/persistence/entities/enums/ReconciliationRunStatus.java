@@ -0,0 +1,7 @@
+package dev.horbatiuk.timecapsule.persistence.entities.enums;
+
+public enum ReconciliationRunStatus {
+    RUNNING,
+    FINISHED,
+    FAILED
+}
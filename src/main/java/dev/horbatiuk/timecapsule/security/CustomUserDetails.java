@@ -2,15 +2,18 @@ package dev.horbatiuk.timecapsule.security;
 
 import dev.horbatiuk.timecapsule.persistence.entities.User;
 import dev.horbatiuk.timecapsule.persistence.entities.enums.UserRole;
-import lombok.RequiredArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
-@RequiredArgsConstructor
+@AllArgsConstructor
 public class CustomUserDetails implements UserDetails {
 
     /*
@@ -19,37 +22,61 @@ public class CustomUserDetails implements UserDetails {
         Default User - ROLE_USER,
      */
 
-    private final User user;
+    @Getter
+    private final UUID id;
+    private final String email;
+    private final String name;
+    private final String password;
+    private final Set<UserRole> roles;
+    private final boolean verified;
+    @Getter
+    private final long tokenVersion;
+
+    public CustomUserDetails(User user) {
+        this(
+                user.getId(),
+                user.getEmail(),
+                user.getName(),
+                user.getPassword(),
+                user.getRoles() != null ? Set.copyOf(user.getRoles()) : Set.of(),
+                user.isVerified(),
+                user.getTokenVersion()
+        );
+    }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return user.getRoles().stream()
+        return roles.stream()
                 .map(role -> new SimpleGrantedAuthority(role.name()))
                 .collect(Collectors.toSet());
     }
 
     @Override
     public String getUsername() {
-        return user.getName();
+        return name;
     }
 
     @Override
     public String getPassword() {
-        return user.getPassword();
+        return password;
     }
 
-    public boolean isVerified() { return user.isVerified(); }
+    public boolean isVerified() { return verified; }
 
     public String getEmail() {
-        return user.getEmail();
+        return email;
+    }
+
+    public Set<UserRole> getRoles() {
+        return roles;
     }
 
     public boolean isAdmin() {
-        return user.getRoles().contains(UserRole.ROLE_ADMIN);
+        return roles.contains(UserRole.ROLE_ADMIN);
     }
 
     public boolean isPremiumUser() {
-        return user.getRoles().contains(UserRole.ROLE_PREMIUM);
+        return roles.contains(UserRole.ROLE_PREMIUM);
     }
 
 }
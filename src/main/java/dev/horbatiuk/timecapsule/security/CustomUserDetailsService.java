@@ -1,27 +1,65 @@
 package dev.horbatiuk.timecapsule.security;
 
 import dev.horbatiuk.timecapsule.persistence.UserRepository;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private static final Logger logger = LoggerFactory.getLogger(CustomUserDetailsService.class);
+    private final UserPrincipalCache userPrincipalCache;
     private final UserRepository userRepository;
 
     @Override
     public CustomUserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        return userRepository.findUserByEmail(username)
-                .map(CustomUserDetails::new)
+        return userPrincipalCache.find(username)
                 .orElseThrow(() -> {
                     logger.warn("User not found with email: {}", username);
                     return new UsernameNotFoundException("User not found with email: " + username);
                 });
     }
+
+    /**
+     * Checks a principal built from token claims against the user's current token version.
+     * Served from the user principal cache, so steady-state requests do not hit the database.
+     */
+    public Optional<CustomUserDetails> verifyTokenPrincipal(CustomUserDetails tokenPrincipal) {
+        return userPrincipalCache.find(tokenPrincipal.getEmail())
+                .filter(current -> {
+                    boolean valid = current.getId().equals(tokenPrincipal.getId())
+                            && current.getTokenVersion() == tokenPrincipal.getTokenVersion();
+                    if (!valid) {
+                        logger.warn("Revoked token version {} presented for user: {}",
+                                tokenPrincipal.getTokenVersion(), tokenPrincipal.getEmail());
+                    }
+                    return valid;
+                });
+    }
+
+    /**
+     * Stores a password rehashed on login after the configured BCrypt cost factor has changed.
+     * The raw password is unchanged, so issued tokens stay valid.
+     */
+    @Override
+    public CustomUserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        String email = ((CustomUserDetails) userDetails).getEmail();
+        User user = userRepository.findUserByEmail(email)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        userPrincipalCache.evict(email);
+        logger.info("Password hash upgraded for user: {}", user.getId());
+        return new CustomUserDetails(user);
+    }
 }
@@ -1,6 +1,7 @@
 package dev.horbatiuk.timecapsule.security;
 
 import dev.horbatiuk.timecapsule.service.security.JwtService;
+import dev.horbatiuk.timecapsule.service.security.ParsedToken;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -10,6 +11,7 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -27,6 +29,9 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final CustomUserDetailsService userDetailsService;
 
+    @Value("${jwt.claims-authentication:false}")
+    private boolean claimsAuthentication;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     @NonNull HttpServletResponse response,
@@ -44,10 +49,10 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         }
 
         String token = authHeader.substring(7);
-        String username;
+        ParsedToken parsedToken;
 
         try {
-            username = jwtService.extractUsername(token);
+            parsedToken = jwtService.parseToken(token);
         } catch (ExpiredJwtException e) {
             logger.warn("JWT expired: {}", e.getMessage());
             response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "JWT expired");
@@ -58,10 +63,11 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             return;
         }
 
+        String username = parsedToken.subject();
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             try {
-                CustomUserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                if (jwtService.validateToken(token, userDetails)) {
+                CustomUserDetails userDetails = resolveUserDetails(parsedToken);
+                if (userDetails != null && username.equals(userDetails.getEmail())) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities());
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -81,6 +87,13 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private CustomUserDetails resolveUserDetails(ParsedToken parsedToken) {
+        if (claimsAuthentication && parsedToken.principal() != null) {
+            return userDetailsService.verifyTokenPrincipal(parsedToken.principal()).orElse(null);
+        }
+        return userDetailsService.loadUserByUsername(parsedToken.subject());
+    }
+
     private boolean hasBearerToken(String header) {
         return header != null && header.startsWith("Bearer ");
     }
@@ -0,0 +1,75 @@
+package dev.horbatiuk.timecapsule.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.horbatiuk.timecapsule.persistence.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Bounded, TTL-based in-process cache of user principals keyed by email.
+ * Every write to a user's name, password, roles, verification flag or token version
+ * must call {@link #evict(String)} so the next read goes back to the database.
+ * <p>
+ * Eviction only reaches the cache of the node that made the change. Other nodes keep
+ * serving their copy until the {@code ttl} runs out, so a password change or a token
+ * version bump takes up to {@code ttl} to reject old tokens there.
+ */
+@Component
+public class UserPrincipalCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPrincipalCache.class);
+
+    static final String CACHE_NAME = "userPrincipals";
+
+    private final UserRepository userRepository;
+    private final Cache<String, CustomUserDetails> principals;
+
+    public UserPrincipalCache(UserRepository userRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.cache.user-principals.max-size:10000}") long maxSize,
+                              @Value("${app.cache.user-principals.ttl:60s}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, CACHE_NAME);
+        logger.info("User principal cache initialized, max size: {}, ttl: {}", maxSize, ttl);
+    }
+
+    public Optional<CustomUserDetails> find(String email) {
+        return Optional.ofNullable(principals.get(email, this::load));
+    }
+
+    public void evict(String email) {
+        principals.invalidate(email);
+        logger.debug("User principal evicted: {}", email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a concurrent reader may reload the old row before the transaction commits
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    principals.invalidate(email);
+                }
+            });
+        }
+    }
+
+    private CustomUserDetails load(String email) {
+        logger.debug("User principal cache miss: {}", email);
+        return userRepository.findUserByEmail(email)
+                .map(CustomUserDetails::new)
+                .orElse(null);
+    }
+}
@@ -2,56 +2,253 @@ package dev.horbatiuk.timecapsule.service;
 
 import dev.horbatiuk.timecapsule.exception.NotFoundException;
 import dev.horbatiuk.timecapsule.exception.aws.s3.S3ActionException;
+import dev.horbatiuk.timecapsule.exception.controller.AppException;
 import dev.horbatiuk.timecapsule.persistence.AttachmentRepository;
 import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentCommitRequestDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentUploadRequestDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.PresignedDownloadDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.PresignedUploadDTO;
 import dev.horbatiuk.timecapsule.persistence.entities.Attachment;
 import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.AttachmentStatus;
 import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
 import dev.horbatiuk.timecapsule.persistence.mapper.AttachmentMapper;
+import dev.horbatiuk.timecapsule.service.aws.S3PresignService;
 import dev.horbatiuk.timecapsule.service.aws.S3Service;
 import jakarta.persistence.PersistenceException;
 import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.AccessDeniedException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class AttachmentService {
 
     private static final Logger logger = LoggerFactory.getLogger(AttachmentService.class);
 
+    /** Keys handed out by {@link #startUpload}: a random UUID and the file name, never a path. */
+    private static final Pattern FILE_KEY = Pattern.compile(
+            "^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}_[^/\\\\]+$");
+
     private final AttachmentRepository attachmentRepository;
     private final AttachmentMapper attachmentMapper;
     private final S3Service s3Service;
+    private final S3PresignService s3PresignService;
     private final CapsuleRepository capsuleRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration pendingTtl;
 
+    public AttachmentService(AttachmentRepository attachmentRepository,
+                             AttachmentMapper attachmentMapper,
+                             S3Service s3Service,
+                             S3PresignService s3PresignService,
+                             CapsuleRepository capsuleRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.attachment.upload.pending-ttl:PT6H}") Duration pendingTtl) {
+        this.attachmentRepository = attachmentRepository;
+        this.attachmentMapper = attachmentMapper;
+        this.s3Service = s3Service;
+        this.s3PresignService = s3PresignService;
+        this.capsuleRepository = capsuleRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pendingTtl = pendingTtl;
+    }
 
     @Transactional
     public List<AttachmentResponseDTO> getAttachmentsByCapsuleId(UUID capsuleId) {
         logger.debug("Fetching attachments for capsule: {}", capsuleId);
-        return attachmentRepository.findByCapsuleId(capsuleId).stream()
+        return attachmentRepository.findByCapsuleIdAndStatus(capsuleId, AttachmentStatus.READY).stream()
                 .map(attachmentMapper::toDTO)
                 .collect(Collectors.toList());
     }
 
     @Transactional
-    public void addAttachmentToCapsule(UUID capsuleId, String description, String email, MultipartFile file)
+    public AttachmentResponseDTO getAttachment(UUID capsuleId, UUID attachmentId) throws NotFoundException {
+        return attachmentRepository.findByIdAndCapsuleIdAndStatus(attachmentId, capsuleId, AttachmentStatus.READY)
+                .map(attachmentMapper::toDTO)
+                .orElseThrow(() -> new NotFoundException("Attachment not found"));
+    }
+
+    /**
+     * Opens the file of an attachment for streaming; see {@link S3Service#openFile}. The caller
+     * has to write or discard the returned download.
+     */
+    public S3Service.FileDownload openAttachment(AttachmentResponseDTO attachment, String range, String ifNoneMatch)
+            throws S3ActionException {
+        return s3Service.openFile(attachment.getCapsuleId().toString(), attachment.getFileKey(), range, ifNoneMatch);
+    }
+
+    /**
+     * Starts a direct upload: takes a slot of the capsule's quota, records the attachment as
+     * PENDING and signs a {@code PUT} of its file to S3. {@link #commitUpload} flips the row to
+     * READY; an upload that is never committed is removed with its file and slot by
+     * {@link AttachmentUploadSweeper} once it is older than {@code pending-ttl}.
+     */
+    @Transactional(rollbackOn = Exception.class)
+    public PresignedUploadDTO startUpload(UUID capsuleId, String email, AttachmentUploadRequestDTO request,
+                                          int maxAttachments)
+            throws NotFoundException, AccessDeniedException, S3ActionException {
+        Capsule capsule = capsuleRepository.findByIdWithUser(capsuleId)
+                .orElseThrow(() -> new NotFoundException("Capsule not found"));
+
+        if (!capsule.getAppUser().getEmail().equals(email)) {
+            throw new AccessDeniedException("User does not have access to this capsule");
+        }
+
+        if (capsule.getStatus().equals(CapsuleStatus.ACTIVE)) {
+            throw new AccessDeniedException("Cannot modify an active capsule");
+        }
+
+        reserveAttachmentSlot(capsuleId, maxAttachments);
+
+        String fileKey = UUID.randomUUID() + "_" + request.getFilename().replaceAll("[/\\\\\\p{Cntrl}]", "_");
+        attachmentRepository.save(Attachment.builder()
+                .capsule(capsule)
+                .filename(request.getFilename())
+                .fileKey(fileKey)
+                .status(AttachmentStatus.PENDING)
+                .build());
+        return s3PresignService.presignUpload(capsuleId, fileKey, request.getContentType(), request.getSize(),
+                request.getChecksumSha256());
+    }
+
+    /**
+     * Completes an upload started with {@link #startUpload} once its file's size, content type
+     * and, if given, checksum match what the client declared. A file that is rejected here is
+     * deleted together with its PENDING row, since it can never be committed. Committing the
+     * same key again, also concurrently, returns the attachment committed the first time.
+     */
+    public AttachmentResponseDTO commitUpload(UUID capsuleId, String email, AttachmentCommitRequestDTO request,
+                                              long maxFileSize)
+            throws NotFoundException, AccessDeniedException, S3ActionException {
+        String fileKey = request.getFileKey();
+        if (!FILE_KEY.matcher(fileKey).matches()) {
+            throw new AppException("Invalid file key", HttpStatus.BAD_REQUEST);
+        }
+
+        Capsule capsule = capsuleRepository.findByIdWithUser(capsuleId)
+                .orElseThrow(() -> new NotFoundException("Capsule not found"));
+
+        if (!capsule.getAppUser().getEmail().equals(email)) {
+            throw new AccessDeniedException("User does not have access to this capsule");
+        }
+
+        Attachment attachment = attachmentRepository.findByCapsuleIdAndFileKey(capsuleId, fileKey)
+                .orElseThrow(() -> new NotFoundException("Upload not found"));
+        if (attachment.getStatus() == AttachmentStatus.READY) {
+            logger.info("Upload {} to capsule {} was already committed", fileKey, capsuleId);
+            return attachmentMapper.toDTO(attachment);
+        }
+
+        HeadObjectResponse head = s3Service.headFile(capsuleId.toString(), fileKey)
+                .orElseThrow(() -> new AppException("Uploaded file not found", HttpStatus.BAD_REQUEST));
+
+        try {
+            if (capsule.getStatus().equals(CapsuleStatus.ACTIVE)) {
+                throw new AccessDeniedException("Cannot modify an active capsule");
+            }
+            verifyUpload(head, request, maxFileSize);
+        } catch (AppException | AccessDeniedException e) {
+            discardUpload(capsuleId, fileKey);
+            discardPending(capsuleId, attachment.getId());
+            throw e;
+        }
+
+        Integer ready = transactionTemplate.execute(status -> attachmentRepository.commitPending(
+                attachment.getId(), request.getFilename(), request.getDescription(), pendingTtl.toSeconds()));
+        Attachment committed = attachmentRepository.findById(attachment.getId())
+                .filter(row -> row.getStatus() == AttachmentStatus.READY)
+                .orElseThrow(() -> new AppException("Upload expired, start it again", HttpStatus.GONE));
+        if (ready == null || ready == 0) {
+            logger.info("Upload {} to capsule {} was committed concurrently", fileKey, capsuleId);
+        } else {
+            logger.info("Committed upload {} of {} bytes to capsule {}", fileKey, head.contentLength(), capsuleId);
+        }
+        return attachmentMapper.toDTO(committed);
+    }
+
+    public PresignedDownloadDTO presignDownload(AttachmentResponseDTO attachment) throws S3ActionException {
+        return s3PresignService.presignDownload(attachment.getCapsuleId(), attachment.getFileKey(),
+                attachment.getFilename());
+    }
+
+    private static void verifyUpload(HeadObjectResponse head, AttachmentCommitRequestDTO request, long maxFileSize) {
+        Long size = head.contentLength();
+        if (size == null || size != request.getSize()) {
+            throw new AppException("Uploaded file size does not match", HttpStatus.BAD_REQUEST);
+        }
+        if (size > maxFileSize) {
+            throw new AppException("File size exceeded", HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        if (!request.getContentType().equals(head.contentType())) {
+            throw new AppException("Uploaded file content type does not match", HttpStatus.BAD_REQUEST);
+        }
+        if (request.getChecksumSha256() != null && !request.getChecksumSha256().equals(head.checksumSHA256())) {
+            throw new AppException("Uploaded file checksum does not match", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private void discardUpload(UUID capsuleId, String fileKey) {
+        try {
+            s3Service.deleteFile(capsuleId.toString(), fileKey);
+            logger.info("Deleted rejected upload {} of capsule {}", fileKey, capsuleId);
+        } catch (S3ActionException e) {
+            logger.warn("Could not delete rejected upload {} of capsule {}", fileKey, capsuleId, e);
+        }
+    }
+
+    /**
+     * Uploads and records a new attachment if the capsule is below {@code maxAttachments}.
+     * See {@link #addAttachmentToCapsule(UUID, String, String, String, String, long, InputStreamSource, int)}.
+     */
+    public void addAttachmentToCapsule(UUID capsuleId, String description, String email, MultipartFile file,
+                                       int maxAttachments)
             throws S3ActionException, IOException, NotFoundException {
 
         if (file == null || file.isEmpty()) {
             throw new IOException("Attachment file is missing");
         }
+        addAttachmentToCapsule(capsuleId, description, email, file.getOriginalFilename(), file.getContentType(),
+                file.getSize(), file, maxAttachments);
+    }
+
+    /**
+     * Uploads and records a new attachment in two short transactions around the upload, so no
+     * database connection is held while the file is transferred. The first takes the quota
+     * slot with one conditional update of the capsule's counter and records the attachment as
+     * PENDING; the second flips it to READY. A failed upload gives the row and the slot back
+     * straight away; if that fails too, or the node dies mid-upload, {@link AttachmentUploadSweeper}
+     * removes the row and its file once it is older than {@code pending-ttl}.
+     * {@code content} is opened only once the checks have passed and is read once, straight
+     * into storage.
+     */
+    public void addAttachmentToCapsule(UUID capsuleId, String description, String email, String filename,
+                                       String contentType, long size, InputStreamSource content,
+                                       int maxAttachments)
+            throws S3ActionException, IOException, NotFoundException {
+
+        if (size <= 0) {
+            throw new IOException("Attachment file is missing");
+        }
 
         Capsule capsuleEntity = capsuleRepository.findByIdWithUser(capsuleId)
                 .orElseThrow(() -> new NotFoundException("Capsule not found"));
@@ -65,32 +262,73 @@ public class AttachmentService {
         }
 
         // Генерація безпечного імені файлу
-        String originalFilename = Optional.ofNullable(file.getOriginalFilename()).orElse("unnamed_file");
+        String originalFilename = Optional.ofNullable(filename).orElse("unnamed_file");
         String safeFilename = UUID.randomUUID() + "_" + originalFilename;
 
+        UUID attachmentId = transactionTemplate.execute(status -> {
+            reserveAttachmentSlot(capsuleId, maxAttachments);
+            return attachmentRepository.save(Attachment.builder()
+                    .capsule(capsuleEntity)
+                    .filename(originalFilename)
+                    .fileKey(safeFilename)
+                    .description(description)
+                    .status(AttachmentStatus.PENDING)
+                    .build()).getId();
+        });
+
         // Завантаження в S3
-        s3Service.uploadFile(
-                capsuleId.toString(),
-                safeFilename,
-                file.getInputStream(),
-                file.getSize(),
-                file.getContentType()
-        );
-
-        // Збереження в базу
-        Attachment attachment = Attachment.builder()
-                .capsule(capsuleEntity)
-                .filename(originalFilename)
-                .fileKey(safeFilename)
-                .description(description)
-                .build();
+        try (InputStream inputStream = content.getInputStream()) {
+            s3Service.uploadFile(
+                    capsuleId.toString(),
+                    safeFilename,
+                    inputStream,
+                    size,
+                    contentType
+            );
+        } catch (S3ActionException | IOException | RuntimeException e) {
+            discardPending(capsuleId, attachmentId);
+            throw e;
+        }
+
+        Integer ready = transactionTemplate.execute(status ->
+                attachmentRepository.markReady(attachmentId, pendingTtl.toSeconds()));
+        if (ready == null || ready == 0) {
+            // expired while uploading; the sweeper may already have removed the row
+            discardUpload(capsuleId, safeFilename);
+            throw new PersistenceException("Upload of " + safeFilename + " took longer than " + pendingTtl);
+        }
+        logger.info("Attachment {} of {} bytes added to capsule {}", attachmentId, size, capsuleId);
+    }
+
+    /**
+     * Takes a quota slot in the caller's transaction. The capsule may have been activated since
+     * its status was checked, which the reservation itself refuses.
+     */
+    private void reserveAttachmentSlot(UUID capsuleId, int maxAttachments) {
+        if (capsuleRepository.reserveAttachmentSlot(capsuleId, maxAttachments).isPresent()) {
+            return;
+        }
+        boolean active = capsuleRepository.findAccessById(capsuleId)
+                .map(access -> access.status() == CapsuleStatus.ACTIVE)
+                .orElse(false);
+        if (active) {
+            logger.warn("Capsule {} was activated before an attachment could be added", capsuleId);
+            throw new AppException("Cannot modify an active capsule", HttpStatus.FORBIDDEN);
+        }
+        logger.warn("Capsule {} already has the maximum of {} attachments", capsuleId, maxAttachments);
+        throw new AppException("Maximum number of attachments exceeded", HttpStatus.FORBIDDEN);
+    }
 
+    private void discardPending(UUID capsuleId, UUID attachmentId) {
         try {
-            attachmentRepository.save(attachment);
-        } catch (Exception e) {
-            // rollback S3
-            s3Service.deleteFile(capsuleId.toString(), safeFilename);
-            throw new PersistenceException("Failed to save attachment", e);
+            transactionTemplate.executeWithoutResult(status -> {
+                if (attachmentRepository.deletePending(attachmentId) > 0) {
+                    capsuleRepository.releaseAttachmentSlots(capsuleId, 1);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Could not remove pending attachment {} of capsule {}, leaving it to the sweeper",
+                    attachmentId, capsuleId, e);
         }
     }
 
@@ -129,6 +367,7 @@ public class AttachmentService {
         }
 
         attachmentRepository.delete(attachment);
+        capsuleRepository.releaseAttachmentSlots(capsuleId, 1);
         logger.info("Attachment deleted from DB: {}", attachmentId);
     }
 
@@ -151,6 +390,7 @@ public class AttachmentService {
             }
         }
         attachmentRepository.deleteByCapsuleId(capsuleId);
+        capsuleRepository.releaseAttachmentSlots(capsuleId, attachments.size());
         logger.info("All attachments deleted from DB for capsule: {}", capsuleId);
     }
 
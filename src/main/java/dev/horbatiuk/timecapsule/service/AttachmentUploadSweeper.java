@@ -0,0 +1,113 @@
+package dev.horbatiuk.timecapsule.service;
+
+import dev.horbatiuk.timecapsule.exception.aws.s3.S3ActionException;
+import dev.horbatiuk.timecapsule.persistence.AttachmentRepository;
+import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.entities.Attachment;
+import dev.horbatiuk.timecapsule.service.aws.S3Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes attachments left PENDING by uploads that never finished: the node died mid-upload,
+ * the row could not be given back after a failed upload, or a direct upload was signed but
+ * never committed. A row older than
+ * {@code pending-ttl} can no longer become READY (see {@link AttachmentRepository#markReady}),
+ * so its file is deleted first and the row and its quota slot after; a row whose file could
+ * not be deleted stays for the next run. Several nodes may sweep at once: deleting a file or
+ * a row twice is harmless, and the slot is only given back by the node that deleted the row.
+ */
+@Component
+public class AttachmentUploadSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentUploadSweeper.class);
+
+    private final AttachmentRepository attachmentRepository;
+    private final CapsuleRepository capsuleRepository;
+    private final S3Service s3Service;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration pendingTtl;
+    private final int batchSize;
+
+    public AttachmentUploadSweeper(AttachmentRepository attachmentRepository,
+                                   CapsuleRepository capsuleRepository,
+                                   S3Service s3Service,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${app.attachment.upload.pending-ttl:PT6H}") Duration pendingTtl,
+                                   @Value("${app.attachment.upload.sweep-batch-size:500}") int batchSize) {
+        if (batchSize < 1 || batchSize > S3Service.MAX_KEYS_PER_DELETE) {
+            throw new IllegalArgumentException("app.attachment.upload.sweep-batch-size must be between 1 and "
+                    + S3Service.MAX_KEYS_PER_DELETE);
+        }
+        this.attachmentRepository = attachmentRepository;
+        this.capsuleRepository = capsuleRepository;
+        this.s3Service = s3Service;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pendingTtl = pendingTtl;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.attachment.upload.sweep-interval:PT15M}",
+            initialDelayString = "${app.attachment.upload.sweep-initial-delay:PT5M}"
+    )
+    public void sweep() {
+        int total = 0;
+        while (true) {
+            List<Attachment> expired = attachmentRepository.findExpiredPending(pendingTtl.toSeconds(), batchSize);
+            if (expired.isEmpty()) {
+                break;
+            }
+            int removed = sweepBatch(expired);
+            total += removed;
+            // rows that are left would only be found again
+            if (removed < expired.size() || expired.size() < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            logger.info("Removed {} abandoned attachment uploads", total);
+        }
+    }
+
+    /**
+     * @return the number of rows removed
+     */
+    int sweepBatch(List<Attachment> expired) {
+        Map<String, Attachment> byKey = new LinkedHashMap<>();
+        for (Attachment attachment : expired) {
+            byKey.put(s3Service.fileKey(attachment.getCapsule().getId(), attachment.getFileKey()), attachment);
+        }
+        try {
+            s3Service.deleteObjects(new ArrayList<>(byKey.keySet())).forEach(byKey::remove);
+        } catch (S3ActionException e) {
+            logger.warn("Could not delete the files of {} abandoned uploads, retrying on the next run",
+                    expired.size(), e);
+            return 0;
+        }
+
+        List<Attachment> deletable = new ArrayList<>(byKey.values());
+        Integer removed = transactionTemplate.execute(status -> {
+            int count = 0;
+            for (Attachment attachment : deletable) {
+                if (attachmentRepository.deletePending(attachment.getId()) > 0) {
+                    capsuleRepository.releaseAttachmentSlots(attachment.getCapsule().getId(), 1);
+                    count++;
+                }
+            }
+            return count;
+        });
+        return removed == null ? 0 : removed;
+    }
+}
@@ -0,0 +1,51 @@
+package dev.horbatiuk.timecapsule.service;
+
+import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleAccessDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Resolves who owns a capsule from a single primary-key read of the capsule row, without
+ * loading the owner, the attachments or mapping a DTO. Within an HTTP request the result is
+ * kept as a request attribute, so every check for the same capsule in that request shares
+ * one read; it reflects the capsule as it was when first read.
+ */
+@Service
+@RequiredArgsConstructor
+public class CapsuleAccessService {
+
+    static final String ATTRIBUTE_PREFIX = CapsuleAccessService.class.getName() + ".";
+
+    private final CapsuleRepository capsuleRepository;
+
+    /**
+     * @return the capsule if it exists and belongs to {@code userId}; empty otherwise, without
+     * telling the two cases apart
+     */
+    public Optional<CapsuleAccessDTO> findOwned(UUID capsuleId, UUID userId) {
+        return find(capsuleId).filter(access -> access.isOwnedBy(userId));
+    }
+
+    public Optional<CapsuleAccessDTO> find(UUID capsuleId) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null) {
+            return capsuleRepository.findAccessById(capsuleId);
+        }
+
+        String key = ATTRIBUTE_PREFIX + capsuleId;
+        @SuppressWarnings("unchecked")
+        Optional<CapsuleAccessDTO> cached = (Optional<CapsuleAccessDTO>) request.getAttribute(key, RequestAttributes.SCOPE_REQUEST);
+        if (cached != null) {
+            return cached;
+        }
+        Optional<CapsuleAccessDTO> access = capsuleRepository.findAccessById(capsuleId);
+        request.setAttribute(key, access, RequestAttributes.SCOPE_REQUEST);
+        return access;
+    }
+}
@@ -0,0 +1,189 @@
+package dev.horbatiuk.timecapsule.service;
+
+import dev.horbatiuk.timecapsule.exception.controller.AppException;
+import dev.horbatiuk.timecapsule.persistence.AttachmentRepository;
+import dev.horbatiuk.timecapsule.persistence.CapsuleOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.UserRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentKeyDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleAccessDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleBulkDeleteReportDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import dev.horbatiuk.timecapsule.service.aws.S3Service;
+import dev.horbatiuk.timecapsule.service.scheduler.CapsuleScheduler;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deletes every capsule of a user together with what lives outside the database. The
+ * external cleanup runs first. Schedules are removed on a pool of {@code schedule-concurrency}
+ * threads. S3 objects are removed with {@code DeleteObjects}, up to
+ * {@link S3Service#MAX_KEYS_PER_DELETE} keys per request. Attachment and capsule rows are
+ * then removed with set-based deletes in one transaction. If any schedule or object could not
+ * be removed, the rows are kept so that repeating the request picks up what is left.
+ */
+@Service
+public class CapsuleBulkDeleteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CapsuleBulkDeleteService.class);
+
+    static final int ROW_BATCH_SIZE = 1000;
+
+    private final CapsuleRepository capsuleRepository;
+    private final AttachmentRepository attachmentRepository;
+    private final UserRepository userRepository;
+    private final CapsuleOutboxRepository capsuleOutboxRepository;
+    private final S3Service s3Service;
+    private final CapsuleScheduler capsuleScheduler;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor scheduleWorkers;
+
+    public CapsuleBulkDeleteService(CapsuleRepository capsuleRepository,
+                                    AttachmentRepository attachmentRepository,
+                                    UserRepository userRepository,
+                                    CapsuleOutboxRepository capsuleOutboxRepository,
+                                    S3Service s3Service,
+                                    CapsuleScheduler capsuleScheduler,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.capsule.bulk-delete.schedule-concurrency:8}") int scheduleConcurrency) {
+        this.capsuleRepository = capsuleRepository;
+        this.attachmentRepository = attachmentRepository;
+        this.userRepository = userRepository;
+        this.capsuleOutboxRepository = capsuleOutboxRepository;
+        this.s3Service = s3Service;
+        this.capsuleScheduler = capsuleScheduler;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.scheduleWorkers = new ThreadPoolExecutor(
+                scheduleConcurrency, scheduleConcurrency,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "capsule-bulk-delete-" + threadCounter.incrementAndGet())
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduleWorkers.shutdownNow();
+    }
+
+    public CapsuleBulkDeleteReportDTO deleteAllCapsulesByEmail(String email) {
+        User user = userRepository.findUserByEmail(email)
+                .orElseThrow(() -> new AppException("User not found", HttpStatus.NOT_FOUND));
+
+        List<CapsuleAccessDTO> capsules = capsuleRepository.findAccessByAppUserId(user.getId());
+        List<AttachmentKeyDTO> attachments = attachmentRepository.findKeysByUserId(user.getId());
+        logger.info("Bulk delete for {}: {} capsules, {} attachments", email, capsules.size(), attachments.size());
+
+        CapsuleBulkDeleteReportDTO report = CapsuleBulkDeleteReportDTO.builder()
+                .capsules(capsules.size())
+                .attachments(attachments.size())
+                .build();
+        if (capsules.isEmpty()) {
+            report.setCompleted(true);
+            return report;
+        }
+
+        deleteSchedules(email, capsules, report);
+        deleteObjects(email, capsules, attachments, report);
+        if (report.getSchedulesFailed() > 0 || report.getObjectsFailed() > 0) {
+            logger.warn("Bulk delete for {} left {} schedules and {} objects behind, keeping the capsules",
+                    email, report.getSchedulesFailed(), report.getObjectsFailed());
+            return report;
+        }
+
+        List<UUID> capsuleIds = capsules.stream().map(CapsuleAccessDTO::capsuleId).toList();
+        transactionTemplate.executeWithoutResult(status -> deleteRows(user.getId(), capsuleIds));
+        report.setCompleted(true);
+        logger.info("Bulk delete for {} finished: {}", email, report);
+        return report;
+    }
+
+    /**
+     * Only activated capsules have a schedule; cancelling one that is already gone succeeds.
+     */
+    private void deleteSchedules(String email, List<CapsuleAccessDTO> capsules, CapsuleBulkDeleteReportDTO report) {
+        List<Future<?>> pending = new ArrayList<>();
+        for (CapsuleAccessDTO capsule : capsules) {
+            if (capsule.status() != CapsuleStatus.ACTIVE) {
+                continue;
+            }
+            pending.add(scheduleWorkers.submit(() -> {
+                capsuleScheduler.cancel(capsule.capsuleId());
+                return null;
+            }));
+        }
+
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+                report.setSchedulesDeleted(report.getSchedulesDeleted() + 1);
+            } catch (ExecutionException e) {
+                report.setSchedulesFailed(report.getSchedulesFailed() + 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.forEach(f -> f.cancel(true));
+                throw new AppException("Bulk delete interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+        }
+        if (!pending.isEmpty()) {
+            logger.info("Bulk delete for {}: {}/{} schedules removed",
+                    email, report.getSchedulesDeleted(), pending.size());
+        }
+    }
+
+    /**
+     * Attachment files and the JSON written on activation. A capsule that was never activated
+     * has no JSON, which S3 treats as an already deleted key.
+     */
+    private void deleteObjects(String email,
+                               List<CapsuleAccessDTO> capsules,
+                               List<AttachmentKeyDTO> attachments,
+                               CapsuleBulkDeleteReportDTO report) {
+        List<String> keys = new ArrayList<>(attachments.size() + capsules.size());
+        attachments.forEach(a -> keys.add(s3Service.fileKey(a.capsuleId(), a.fileKey())));
+        capsules.forEach(c -> keys.add(s3Service.capsuleDataKey(c.capsuleId())));
+
+        for (int from = 0; from < keys.size(); from += S3Service.MAX_KEYS_PER_DELETE) {
+            List<String> batch = keys.subList(from, Math.min(from + S3Service.MAX_KEYS_PER_DELETE, keys.size()));
+            try {
+                int failed = s3Service.deleteObjects(batch).size();
+                report.setObjectsDeleted(report.getObjectsDeleted() + batch.size() - failed);
+                report.setObjectsFailed(report.getObjectsFailed() + failed);
+            } catch (Exception e) {
+                logger.error("Bulk delete for {}: batch of {} objects failed", email, batch.size(), e);
+                report.setObjectsFailed(report.getObjectsFailed() + batch.size());
+            }
+            logger.info("Bulk delete for {}: {}/{} objects removed", email, report.getObjectsDeleted(), keys.size());
+        }
+    }
+
+    private void deleteRows(UUID userId, List<UUID> capsuleIds) {
+        int deleted = 0;
+        for (int from = 0; from < capsuleIds.size(); from += ROW_BATCH_SIZE) {
+            List<UUID> batch = capsuleIds.subList(from, Math.min(from + ROW_BATCH_SIZE, capsuleIds.size()));
+            attachmentRepository.deleteAllByCapsuleIdIn(batch);
+            deleted += capsuleRepository.deleteAllByIdIn(batch);
+            // the schedules were cancelled before a sync that is still running may recreate them
+            capsuleOutboxRepository.enqueueIfProcessing(batch);
+        }
+        userRepository.releaseCapsuleSlots(userId, deleted);
+    }
+}
@@ -0,0 +1,222 @@
+package dev.horbatiuk.timecapsule.service;
+
+import dev.horbatiuk.timecapsule.exception.NotFoundException;
+import dev.horbatiuk.timecapsule.persistence.CapsuleOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.CapsuleOutbox;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import dev.horbatiuk.timecapsule.service.aws.S3Service;
+import dev.horbatiuk.timecapsule.service.scheduler.CapsuleScheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies capsule status changes queued in {@code capsule_outbox} to S3 and the
+ * {@link CapsuleScheduler}. Each sync reads the capsule's current state and converges to it:
+ * an ACTIVE capsule gets its data uploaded and is scheduled at {@code openAt}, any other
+ * capsule is cancelled. Repeating a sync is harmless, so a row whose lease ran out may simply
+ * be processed again. Failures are retried with backoff until {@code max-attempts}, after
+ * which the row is left in the DEAD state.
+ */
+@Component
+@ConditionalOnProperty(value = "app.capsule.outbox.relay-enabled", havingValue = "true", matchIfMissing = true)
+public class CapsuleOutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(CapsuleOutboxRelay.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final CapsuleOutboxRepository capsuleOutboxRepository;
+    private final CapsuleService capsuleService;
+    private final S3Service s3Service;
+    private final CapsuleScheduler capsuleScheduler;
+    private final ThreadPoolExecutor workers;
+    private final Semaphore inFlight;
+    private final Duration lease;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Counter syncedCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+    private final Timer syncTimer;
+
+    public CapsuleOutboxRelay(CapsuleOutboxRepository capsuleOutboxRepository,
+                              CapsuleService capsuleService,
+                              S3Service s3Service,
+                              CapsuleScheduler capsuleScheduler,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.capsule.outbox.workers:4}") int workerCount,
+                              @Value("${app.capsule.outbox.batch-size:10}") int batchSize,
+                              @Value("${app.capsule.outbox.lease:PT2M}") Duration lease,
+                              @Value("${app.capsule.outbox.max-attempts:10}") int maxAttempts,
+                              @Value("${app.capsule.outbox.initial-backoff:PT10S}") Duration initialBackoff,
+                              @Value("${app.capsule.outbox.max-backoff:PT30M}") Duration maxBackoff) {
+        this.capsuleOutboxRepository = capsuleOutboxRepository;
+        this.capsuleService = capsuleService;
+        this.s3Service = s3Service;
+        this.capsuleScheduler = capsuleScheduler;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.inFlight = new Semaphore(workerCount);
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+                workerCount, workerCount,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerCount),
+                runnable -> new Thread(runnable, "capsule-outbox-" + threadCounter.incrementAndGet())
+        );
+
+        this.syncedCounter = Counter.builder("capsule.outbox.synced").register(meterRegistry);
+        this.retriedCounter = Counter.builder("capsule.outbox.retried").register(meterRegistry);
+        this.deadCounter = Counter.builder("capsule.outbox.dead").register(meterRegistry);
+        this.syncTimer = Timer.builder("capsule.outbox.sync")
+                .description("Latency of syncing one capsule to S3 and the scheduler")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.capsule.outbox.poll-interval:PT1S}")
+    public void relay() {
+        int freeWorkers = inFlight.availablePermits();
+        if (freeWorkers == 0 || workers.isShutdown()) {
+            return;
+        }
+        List<CapsuleOutbox> claimed = capsuleOutboxRepository.claimBatch(freeWorkers * batchSize, lease.toSeconds());
+        if (claimed.isEmpty()) {
+            return;
+        }
+        logger.debug("Claimed {} capsule syncs from the outbox", claimed.size());
+
+        int chunkSize = (claimed.size() + freeWorkers - 1) / freeWorkers;
+        for (int from = 0; from < claimed.size(); from += chunkSize) {
+            List<CapsuleOutbox> chunk = claimed.subList(from, Math.min(from + chunkSize, claimed.size()));
+            inFlight.acquireUninterruptibly();
+            workers.execute(() -> {
+                try {
+                    chunk.forEach(this::process);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+    }
+
+    void process(CapsuleOutbox row) {
+        CapsuleResponseDTO capsule;
+        try {
+            capsule = capsuleService.findCapsuleById(row.getCapsuleId());
+        } catch (NotFoundException e) {
+            removeDeleted(row);
+            return;
+        } catch (Exception e) {
+            handleFailure(row, e);
+            return;
+        }
+
+        try {
+            syncTimer.recordCallable(() -> {
+                sync(capsule);
+                return null;
+            });
+            capsuleOutboxRepository.markDone(row.getId());
+            syncedCounter.increment();
+            logger.info("Capsule {} synced as {}", capsule.getId(), capsule.getStatus());
+        } catch (Exception e) {
+            handleFailure(row, e);
+        }
+    }
+
+    /**
+     * Deletes cancel the schedule without going through the outbox, so a sync that was
+     * already running may have scheduled the capsule again after that.
+     */
+    private void removeDeleted(CapsuleOutbox row) {
+        try {
+            capsuleScheduler.cancel(row.getCapsuleId());
+        } catch (Exception e) {
+            handleFailure(row, e);
+            return;
+        }
+        capsuleOutboxRepository.markDone(row.getId());
+        logger.info("Capsule {} was deleted, schedule cancelled", row.getCapsuleId());
+    }
+
+    private void sync(CapsuleResponseDTO capsule) throws Exception {
+        if (capsule.getStatus() == CapsuleStatus.ACTIVE) {
+            s3Service.uploadCapsuleData(capsule);
+            capsuleScheduler.schedule(capsule.getId(), capsule.getOpenAt().toInstant());
+        } else {
+            capsuleScheduler.cancel(capsule.getId());
+        }
+    }
+
+    private void handleFailure(CapsuleOutbox row, Exception e) {
+        String error = truncate(e.getMessage());
+        if (row.getAttempts() >= maxAttempts) {
+            capsuleOutboxRepository.markDead(row.getId(), error);
+            deadCounter.increment();
+            logger.error("Sync of capsule {} moved to dead letters after {} attempts: {}",
+                    row.getCapsuleId(), row.getAttempts(), error);
+            return;
+        }
+        long delaySeconds = backoffSeconds(row.getAttempts());
+        capsuleOutboxRepository.scheduleRetry(row.getId(), delaySeconds, error);
+        retriedCounter.increment();
+        logger.warn("Sync of capsule {} failed (attempt {}), retrying in {}s: {}",
+                row.getCapsuleId(), row.getAttempts(), delaySeconds, error);
+    }
+
+    /**
+     * Doubles from {@code initial-backoff} up to {@code max-backoff}; the upper half is
+     * randomised so that rows failing together do not retry together.
+     */
+    long backoffSeconds(int attempt) {
+        long base = initialBackoff.toSeconds() << Math.min(Math.max(attempt - 1, 0), 20);
+        long capped = Math.min(base, maxBackoff.toSeconds());
+        long half = Math.max(capped / 2, 1);
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Stopping capsule outbox relay");
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                // leased rows are picked up again once their lease runs out
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
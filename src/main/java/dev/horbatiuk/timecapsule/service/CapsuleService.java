@@ -2,8 +2,13 @@ package dev.horbatiuk.timecapsule.service;
 
 import dev.horbatiuk.timecapsule.exception.NotFoundException;
 import dev.horbatiuk.timecapsule.exception.controller.AppException;
+import dev.horbatiuk.timecapsule.persistence.CapsuleCursor;
+import dev.horbatiuk.timecapsule.persistence.CapsuleOutboxRepository;
 import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.CapsuleSpecifications;
 import dev.horbatiuk.timecapsule.persistence.UserRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.CountMode;
+import dev.horbatiuk.timecapsule.persistence.dto.CursorPageDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleCreateDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.EditCapsuleDTO;
@@ -14,8 +19,7 @@ import dev.horbatiuk.timecapsule.persistence.mapper.CapsuleMapper;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,18 +36,18 @@ public class CapsuleService {
 
     private static final Logger logger = LoggerFactory.getLogger(CapsuleService.class);
 
+    static final int MAX_PAGE_SIZE = 100;
+
     private final CapsuleRepository capsuleRepository;
+    private final CapsuleOutboxRepository capsuleOutboxRepository;
     private final UserRepository userRepository;
     private final CapsuleMapper capsuleMapper;
 
     // ---------------- USER METHODS ----------------
 
-    @Transactional
-    public List<CapsuleResponseDTO> findCapsulesByEmail(String email) {
-        User user = findUserByEmail(email);
-        return capsuleRepository.findAllByAppUser(user).stream()
-                .map(capsuleMapper::toResponseDTO)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public CursorPageDTO<CapsuleResponseDTO> findCapsulePageByUserId(UUID userId, String cursor, int size, CountMode countMode) {
+        return findPage(CapsuleSpecifications.ownedBy(userId), true, cursor, size, countMode);
     }
 
     @Transactional
@@ -53,9 +57,17 @@ public class CapsuleService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Creates a draft capsule if the user is below {@code maxCapsules}. The quota slot is taken
+     * with one conditional update of the user's counter, in the same transaction as the insert,
+     * so parallel requests cannot overshoot the limit and a failed insert gives the slot back.
+     */
     @Transactional
-    public CapsuleResponseDTO addNewCapsule(String email, CapsuleCreateDTO dto) {
+    public CapsuleResponseDTO addNewCapsule(String email, CapsuleCreateDTO dto, int maxCapsules) {
         User user = findUserByEmail(email);
+        if (userRepository.reserveCapsuleSlot(user.getId(), maxCapsules).isEmpty()) {
+            throw new AppException("Limit reached, max: " + maxCapsules + " capsules", HttpStatus.FORBIDDEN);
+        }
         Capsule capsule = new Capsule();
         capsule.setTitle(dto.getTitle());
         capsule.setDescription(dto.getDescription());
@@ -68,17 +80,6 @@ public class CapsuleService {
         return capsuleMapper.toResponseDTO(saved);
     }
 
-    @Transactional
-    public boolean userHasAccess(UUID capsuleId, String email) {
-        try {
-            CapsuleResponseDTO capsule = findCapsuleById(capsuleId);
-            return capsule.getEmail().equals(email);
-        } catch (NotFoundException e) {
-            logger.warn("Access check failed: capsule {} not found", capsuleId);
-            return false;
-        }
-    }
-
     // ---------------- ADMIN METHODS ----------------
 
     @Transactional
@@ -90,29 +91,31 @@ public class CapsuleService {
     }
 
     @Transactional(readOnly = true)
-    public Page<CapsuleResponseDTO> findCapsulesByFilters(
+    public CursorPageDTO<CapsuleResponseDTO> findCapsulesByFilters(
             String email,
             UUID userId,
             CapsuleStatus status,
             String title,
-            OffsetDateTime from,
-            OffsetDateTime to,
-            Pageable pageable
+            OffsetDateTime openFrom,
+            OffsetDateTime openTo,
+            String cursor,
+            int size,
+            CountMode countMode
     ) {
-        logger.debug("Finding capsules with filters - email: {}, userId: {}, status: {}, title: {}, from: {}, to: {}",
-                email, userId, status, title, from, to);
+        logger.debug("Finding capsules with filters - email: {}, userId: {}, status: {}, title: {}, openFrom: {}, openTo: {}",
+                email, userId, status, title, openFrom, openTo);
 
-        Page<Capsule> capsulesPage = capsuleRepository.findAllWithFilters(
-                title,
-                status,
+        Specification<Capsule> filter = CapsuleSpecifications.adminSearch(
                 email,
-                from != null ? from.toInstant() : null,
-                to != null ? to.toInstant() : null,
                 userId,
-                pageable
+                status,
+                title,
+                openFrom != null ? openFrom.toInstant() : null,
+                openTo != null ? openTo.toInstant() : null
         );
-
-        return capsulesPage.map(capsuleMapper::toResponseDTO);
+        boolean filtered = StringUtils.hasText(email) || userId != null || status != null
+                || StringUtils.hasText(title) || openFrom != null || openTo != null;
+        return findPage(filter, filtered, cursor, size, countMode);
     }
 
     @Transactional
@@ -126,10 +129,15 @@ public class CapsuleService {
                 .orElseThrow(() -> new NotFoundException("Capsule not found: " + capsuleId));
     }
 
+    /**
+     * Changes the status and, in the same transaction, queues the S3 data and schedule
+     * update for {@link CapsuleOutboxRelay}. No remote call is made here.
+     */
     @Transactional
     public void setCapsuleStatus(UUID capsuleId, CapsuleStatus newStatus) throws NotFoundException {
         Capsule capsule = findCapsuleEntityById(capsuleId);
         capsule.setStatus(newStatus);
+        capsuleOutboxRepository.enqueue(capsuleId);
         logger.info("Capsule {} status set to {}", capsuleId, newStatus);
     }
 
@@ -148,15 +156,66 @@ public class CapsuleService {
         if (StringUtils.hasText(dto.getTitle())) capsule.setTitle(dto.getTitle());
         if (StringUtils.hasText(dto.getDescription())) capsule.setDescription(dto.getDescription());
         if (dto.getOpenAt() != null) capsule.setOpenAt(dto.getOpenAt());
+        if (capsule.getStatus() == CapsuleStatus.ACTIVE) {
+            // the uploaded data and the schedule are derived from these fields
+            capsuleOutboxRepository.enqueue(capsuleId);
+        }
         logger.info("Admin edited capsule {}", capsuleId);
     }
 
     @Transactional
-    public void deleteAllCapsulesByEmail(String email) {
-        User user = findUserByEmail(email);
-        List<Capsule> capsules = capsuleRepository.findAllByAppUser(user);
-        capsules.forEach(capsuleRepository::delete);
-        logger.info("Deleted {} capsules for user {}", capsules.size(), email);
+    public void deleteCapsule(UUID capsuleId) throws NotFoundException {
+        Capsule capsule = findCapsuleEntityById(capsuleId);
+        capsuleRepository.delete(capsule);
+        userRepository.releaseCapsuleSlots(capsule.getAppUser().getId(), 1);
+        capsuleOutboxRepository.enqueueIfProcessing(List.of(capsuleId));
+        logger.info("Deleted capsule {}", capsuleId);
+    }
+
+    /**
+     * One page of a listing in {@link CapsuleSpecifications#KEYSET_ORDER}. Pages are located
+     * by the cursor rather than an offset, so every page costs the same index range read;
+     * one extra row is fetched to tell whether a next page exists.
+     */
+    private CursorPageDTO<CapsuleResponseDTO> findPage(Specification<Capsule> filter,
+                                                       boolean filtered,
+                                                       String cursor,
+                                                       int size,
+                                                       CountMode countMode) {
+        int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Specification<Capsule> spec = cursor == null || cursor.isBlank()
+                ? filter
+                : filter.and(CapsuleSpecifications.after(decodeCursor(cursor)));
+
+        List<Capsule> rows = capsuleRepository.findBy(spec, query -> query
+                .sortBy(CapsuleSpecifications.KEYSET_ORDER)
+                .limit(limit + 1)
+                .all());
+        boolean hasNext = rows.size() > limit;
+        List<Capsule> page = hasNext ? rows.subList(0, limit) : rows;
+
+        CursorPageDTO.CursorPageDTOBuilder<CapsuleResponseDTO> result = CursorPageDTO.<CapsuleResponseDTO>builder()
+                .items(page.stream().map(capsuleMapper::toResponseDTO).collect(Collectors.toList()))
+                .nextCursor(hasNext ? CapsuleCursor.of(page.get(page.size() - 1)).encode() : null);
+
+        if (countMode == CountMode.ESTIMATED && !filtered) {
+            long estimate = capsuleRepository.estimateCount();
+            if (estimate >= 0) {
+                return result.totalElements(estimate).totalEstimated(true).build();
+            }
+        }
+        if (countMode != null && countMode != CountMode.NONE) {
+            result.totalElements(capsuleRepository.count(filter));
+        }
+        return result.build();
+    }
+
+    private static CapsuleCursor decodeCursor(String cursor) {
+        try {
+            return CapsuleCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new AppException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
     }
 
     private User findUserByEmail(String email) {
@@ -1,19 +1,24 @@
 package dev.horbatiuk.timecapsule.service;
 
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
+import dev.horbatiuk.timecapsule.service.email.EmailOutboxService;
+import dev.horbatiuk.timecapsule.service.email.EmailTemplateRenderer;
+import dev.horbatiuk.timecapsule.service.email.SmtpBatchSender;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
 
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -23,49 +28,86 @@ public class EmailSenderService {
     private static final Logger logger = LoggerFactory.getLogger(EmailSenderService.class);
 
     private static final String VERIFICATION_EMAIL_SUBJECT = "Email Verification";
+    private static final String CAPSULE_OPENED_SUBJECT = "Your time capsule has opened";
+    private static final String CAPSULE_OPENED_TEMPLATE = "email/capsule/capsule-opened";
+    private static final DateTimeFormatter SEALED_DATE_FORMAT = DateTimeFormatter.ofPattern("d MMMM yyyy");
     private static final String COPYRIGHT_NOTICE = "© 2025 TimeCapsule. All rights reserved.";
 
     @Autowired
     private JavaMailSender mailSender;
 
     @Autowired
-    private TemplateEngine templateEngine;
+    private EmailTemplateRenderer emailTemplateRenderer;
 
-    @Async
-    public void sendVerificationEmail(String to, String verificationUrl) throws MessagingException {
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    private SmtpBatchSender smtpBatchSender;
+
+    /**
+     * Renders the verification email and queues it; delivery happens in the background.
+     */
+    public void sendVerificationEmail(String to, String verificationUrl) {
         logger.info("Preparing verification email for recipient: {}", to);
         Map<String, Object> variables = new HashMap<>();
         variables.put("verificationUrl", verificationUrl);
         variables.put("copyrightNotice", COPYRIGHT_NOTICE);
         String htmlContent = buildEmailContent(variables);
-        try {
-            sendEmail(to, htmlContent);
-            logger.info("Verification email sent successfully to: {}", to);
-        } catch (MessagingException e) {
-            logger.error("Failed to send verification email to: {}", to, e);
-            throw new MessagingException(e.getMessage());
-        }
+        emailOutboxService.enqueue(to, VERIFICATION_EMAIL_SUBJECT, htmlContent);
+        logger.info("Verification email queued for: {}", to);
     }
 
-    private void sendEmail(String to, String htmlContent) throws MessagingException {
+    /**
+     * Renders the email sent to the owner when a capsule opens and queues it. Joins the
+     * caller's transaction, see {@link EmailOutboxService#enqueue}.
+     */
+    public void sendCapsuleOpenedEmail(CapsuleResponseDTO capsule) {
+        logger.info("Preparing capsule opened email for capsule: {}", capsule.getId());
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("username", capsule.getUsername());
+        variables.put("title", capsule.getTitle());
+        variables.put("description", capsule.getDescription());
+        variables.put("createdAt", capsule.getCreatedAt().toLocalDateTime().format(SEALED_DATE_FORMAT));
+        variables.put("attachments", capsule.getAttachments() == null ? List.of()
+                : capsule.getAttachments().stream().map(AttachmentResponseDTO::getFilename).toList());
+        variables.put("copyrightNotice", COPYRIGHT_NOTICE);
+        String htmlContent = emailTemplateRenderer.render(CAPSULE_OPENED_TEMPLATE, variables);
+        emailOutboxService.enqueue(capsule.getEmail(), CAPSULE_OPENED_SUBJECT, htmlContent);
+        logger.info("Capsule opened email queued for: {}", capsule.getEmail());
+    }
+
+    public void send(String to, String subject, String htmlContent) throws MessagingException {
+        mailSender.send(createMessage(to, subject, htmlContent));
+        logger.debug("Raw email message sent via JavaMailSender to: {}", to);
+    }
+
+    /**
+     * Sends the messages over a shared SMTP connection, see {@link SmtpBatchSender}.
+     *
+     * @throws MailSendException listing the messages that could not be sent
+     */
+    public void sendBatch(List<MimeMessage> messages) {
+        smtpBatchSender.send(messages);
+        logger.debug("Batch of {} email messages handed to the SMTP server", messages.size());
+    }
+
+    public MimeMessage createMessage(String to, String subject, String htmlContent) throws MessagingException {
         MimeMessage message = mailSender.createMimeMessage();
         try {
             MimeMessageHelper helper = new MimeMessageHelper(message, true);
             helper.setTo(to);
-            helper.setSubject(VERIFICATION_EMAIL_SUBJECT);
+            helper.setSubject(subject);
             helper.setText(htmlContent, true);
         } catch (MessagingException e) {
             logger.error("Failed to construct the email message for: {}", to, e);
             throw new MessagingException("Email sending failed");
         }
-        mailSender.send(message);
-        logger.debug("Raw email message sent via JavaMailSender to: {}", to);
+        return message;
     }
 
     private String buildEmailContent(Map<String, Object> variables) {
         logger.debug("Building email content with variables: {}", variables.keySet());
-        Context context = new Context();
-        context.setVariables(variables);
-        return templateEngine.process("email/verification/verification-email", context);
+        return emailTemplateRenderer.render("email/verification/verification-email", variables);
     }
 }
@@ -5,6 +5,8 @@ import dev.horbatiuk.timecapsule.exception.NotFoundException;
 import dev.horbatiuk.timecapsule.persistence.UserRepository;
 import dev.horbatiuk.timecapsule.persistence.dto.user.UpdateUserInfoRequestDTO;
 import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.security.CustomUserDetails;
+import dev.horbatiuk.timecapsule.security.UserPrincipalCache;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,12 +22,22 @@ public class UserService {
 
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final UserPrincipalCache userPrincipalCache;
 
     public User findUserByEmail(String email) throws NotFoundException {
         return userRepository.findUserByEmail(email)
                 .orElseThrow(() -> new NotFoundException("User not found"));
     }
 
+    /**
+     * Read-only lookup served from the user principal cache; use {@link #findUserByEmail(String)}
+     * when the entity is going to be modified.
+     */
+    public CustomUserDetails findUserDetailsByEmail(String email) throws NotFoundException {
+        return userPrincipalCache.find(email)
+                .orElseThrow(() -> new NotFoundException("User not found"));
+    }
+
     public void updateProfile(String email, UpdateUserInfoRequestDTO requestDTO) throws NotFoundException, ConflictException {
         User user = userRepository.findUserByEmail(email)
                 .orElseThrow(() -> new NotFoundException("User not found"));
@@ -39,9 +51,11 @@ public class UserService {
             }
             String newPasswordEncoded = passwordEncoder.encode(requestDTO.getNewPassword());
             user.setPassword(newPasswordEncoded);
+            user.setTokenVersion(user.getTokenVersion() + 1);
             logger.info("Changing user's ({}) password", user.getId());
         }
         userRepository.save(user);
+        userPrincipalCache.evict(email);
         logger.info("User's ({}) credentials changed success", user.getId());
     }
 
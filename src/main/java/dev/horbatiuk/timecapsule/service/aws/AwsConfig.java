@@ -3,12 +3,14 @@ package dev.horbatiuk.timecapsule.service.aws;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.scheduler.SchedulerClient;
 
 @Configuration
@@ -26,6 +28,7 @@ public class AwsConfig {
     private String region;
 
     @Bean
+    @ConditionalOnExpression("'${app.capsule.scheduler.backend:eventbridge}' != 'embedded'")
     public SchedulerClient schedulerClient() {
         logger.info("Initializing AWS SchedulerClient in region: {}", region);
         SchedulerClient client = SchedulerClient.builder()
@@ -54,4 +57,19 @@ public class AwsConfig {
         logger.debug("AWS S3Client initialized");
         return client;
     }
+
+    @Bean
+    public S3Presigner s3Presigner() {
+        logger.info("Initializing AWS S3Presigner in region: {}", region);
+        S3Presigner presigner = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(
+                        StaticCredentialsProvider.create(
+                                AwsBasicCredentials.create(accessKey, secretKey)
+                        )
+                )
+                .build();
+        logger.debug("AWS S3Presigner initialized");
+        return presigner;
+    }
 }
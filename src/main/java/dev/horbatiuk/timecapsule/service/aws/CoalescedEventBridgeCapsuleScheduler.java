@@ -0,0 +1,370 @@
+package dev.horbatiuk.timecapsule.service.aws;
+
+import dev.horbatiuk.timecapsule.exception.SchedulingException;
+import dev.horbatiuk.timecapsule.service.scheduler.CapsuleScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Groups capsules by opening minute into one EventBridge schedule per minute instead of one
+ * per capsule. A capsule goes into the bucket of the first full minute at or after its
+ * {@code openAt}, so it opens up to a minute late but never early. A bucket with more than
+ * {@code max-capsules-per-schedule} capsules is split over several schedules, its shards;
+ * a capsule stays in the shard it joined until it leaves the bucket.
+ * <p>
+ * {@code capsule.schedule_bucket} and {@code schedule_shard} record which schedule lists a
+ * capsule. A change commits them in a short transaction and queues the shards it touched in
+ * {@code capsule_schedule_sync}; each queued shard is then rewritten from the table with no
+ * transaction open, right away and, if that fails, by {@link #syncPending} until it succeeds.
+ * A sync row is only removed when no change was queued while its schedule was being written,
+ * so the schedules converge to the table even when several nodes change the same shard.
+ * <p>
+ * A capsule whose minute is less than {@code min-lead} away goes into the first bucket at
+ * least that far out. If a shard's minute still passes before its schedule was written, the
+ * capsules that joined it since are moved to such a bucket, so they open late instead of never.
+ */
+@Component
+@ConditionalOnProperty(value = "app.capsule.scheduler.backend", havingValue = "eventbridge-coalesced")
+public class CoalescedEventBridgeCapsuleScheduler implements CapsuleScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoalescedEventBridgeCapsuleScheduler.class);
+
+    static final int BUCKET_LOCK_NAMESPACE = 0x63617073;
+
+    private static final int MAX_SYNC_ROUNDS = 3;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private static final DateTimeFormatter BUCKET_NAME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmm").withZone(ZoneOffset.UTC);
+
+    private static final String SELECT_SHARD_FOR_UPDATE =
+            "SELECT schedule_bucket, schedule_shard FROM capsule WHERE id = :id FOR UPDATE";
+    private static final String LOCK_BUCKET =
+            "SELECT pg_advisory_xact_lock(:namespace, :minute)";
+    private static final String COUNT_SHARD_MEMBERS =
+            "SELECT schedule_shard, count(*) AS members FROM capsule WHERE schedule_bucket = :bucket GROUP BY schedule_shard";
+    private static final String JOIN_SHARD = """
+            UPDATE capsule SET schedule_bucket = :bucket, schedule_shard = :shard, schedule_published = false
+            WHERE id = :id
+            """;
+    private static final String LEAVE_BUCKET = """
+            UPDATE capsule SET schedule_bucket = NULL, schedule_shard = NULL, schedule_published = false
+            WHERE id = :id
+            """;
+    private static final String SELECT_MEMBERS =
+            "SELECT id FROM capsule WHERE schedule_bucket = :bucket AND schedule_shard = :shard ORDER BY id";
+    private static final String SELECT_UNPUBLISHED_FOR_UPDATE = """
+            SELECT id FROM capsule
+            WHERE schedule_bucket = :bucket AND schedule_shard = :shard AND NOT schedule_published
+            ORDER BY id
+            FOR UPDATE
+            """;
+    private static final String MARK_PUBLISHED = """
+            UPDATE capsule SET schedule_published = true
+            WHERE id IN (:ids) AND schedule_bucket = :bucket AND schedule_shard = :shard
+            """;
+    private static final String REQUEST_SYNC = """
+            INSERT INTO capsule_schedule_sync (bucket, shard, version, next_attempt_at)
+            VALUES (:bucket, :shard, 1, now())
+            ON CONFLICT (bucket, shard) DO UPDATE
+                SET version = capsule_schedule_sync.version + 1, next_attempt_at = now()
+            """;
+    private static final String CLAIM_SYNC = """
+            UPDATE capsule_schedule_sync SET locked_until = now() + make_interval(secs => :leaseSeconds)
+            WHERE bucket = :bucket AND shard = :shard AND (locked_until IS NULL OR locked_until < now())
+            RETURNING version
+            """;
+    private static final String SELECT_DUE_SYNCS = """
+            SELECT bucket, shard FROM capsule_schedule_sync
+            WHERE next_attempt_at <= :now AND (locked_until IS NULL OR locked_until < now())
+            ORDER BY bucket, shard
+            LIMIT :limit
+            """;
+    private static final String COMPLETE_SYNC =
+            "DELETE FROM capsule_schedule_sync WHERE bucket = :bucket AND shard = :shard AND version = :version";
+    private static final String DROP_SYNC =
+            "DELETE FROM capsule_schedule_sync WHERE bucket = :bucket AND shard = :shard";
+    private static final String RELEASE_SYNC =
+            "UPDATE capsule_schedule_sync SET locked_until = NULL WHERE bucket = :bucket AND shard = :shard";
+    private static final String RETRY_SYNC = """
+            UPDATE capsule_schedule_sync
+            SET locked_until = NULL, next_attempt_at = now() + make_interval(secs => :delaySeconds), last_error = :error
+            WHERE bucket = :bucket AND shard = :shard
+            """;
+
+    private final EventBridgeScheduledService eventBridgeScheduledService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxCapsulesPerSchedule;
+    private final Duration minLead;
+    private final Duration syncLease;
+    private final Duration syncRetryDelay;
+    private final int syncBatchSize;
+
+    public CoalescedEventBridgeCapsuleScheduler(EventBridgeScheduledService eventBridgeScheduledService,
+                                                NamedParameterJdbcTemplate jdbcTemplate,
+                                                PlatformTransactionManager transactionManager,
+                                                @Value("${app.capsule.scheduler.eventbridge.max-capsules-per-schedule:1000}") int maxCapsulesPerSchedule,
+                                                @Value("${app.capsule.scheduler.eventbridge.min-lead:PT30S}") Duration minLead,
+                                                @Value("${app.capsule.scheduler.eventbridge.sync-lease:PT2M}") Duration syncLease,
+                                                @Value("${app.capsule.scheduler.eventbridge.sync-retry-delay:PT30S}") Duration syncRetryDelay,
+                                                @Value("${app.capsule.scheduler.eventbridge.sync-batch-size:100}") int syncBatchSize) {
+        this.eventBridgeScheduledService = eventBridgeScheduledService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxCapsulesPerSchedule = maxCapsulesPerSchedule;
+        this.minLead = minLead;
+        this.syncLease = syncLease;
+        this.syncRetryDelay = syncRetryDelay;
+        this.syncBatchSize = syncBatchSize;
+    }
+
+    /**
+     * The schedule is written after the capsule's shard was committed; if writing it fails,
+     * the shard stays queued and {@link #syncPending} retries it, so this does not throw.
+     */
+    @Override
+    public void schedule(UUID capsuleId, Instant openAt) throws SchedulingException {
+        moveTo(capsuleId, openAt);
+    }
+
+    @Override
+    public void cancel(UUID capsuleId) throws SchedulingException {
+        moveTo(capsuleId, null);
+    }
+
+    /**
+     * The opening minute of a capsule: {@code openAt} rounded up to a whole minute.
+     */
+    public static Instant bucketOf(Instant openAt) {
+        Instant minute = openAt.truncatedTo(ChronoUnit.MINUTES);
+        return minute.equals(openAt) ? minute : minute.plus(1, ChronoUnit.MINUTES);
+    }
+
+    static String scheduleName(Instant bucket, int shard) {
+        return "capsules-" + BUCKET_NAME_FORMAT.format(bucket) + "-" + shard;
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.capsule.scheduler.eventbridge.sync-interval:PT10S}",
+            initialDelayString = "${app.capsule.scheduler.eventbridge.sync-interval:PT10S}"
+    )
+    public void syncPending() {
+        int synced = syncDue(Instant.now());
+        if (synced > 0) {
+            logger.debug("Synced {} queued batch schedules", synced);
+        }
+    }
+
+    /**
+     * Syncs up to {@code sync-batch-size} queued shards whose next attempt is due at {@code now}.
+     */
+    int syncDue(Instant now) {
+        List<Shard> due = jdbcTemplate.query(SELECT_DUE_SYNCS,
+                new MapSqlParameterSource("now", Timestamp.from(now)).addValue("limit", syncBatchSize),
+                (rs, rowNum) -> new Shard(rs.getTimestamp("bucket").toInstant(), rs.getInt("shard")));
+        due.forEach(shard -> sync(shard, now));
+        return due.size();
+    }
+
+    private void moveTo(UUID capsuleId, Instant openAt) throws SchedulingException {
+        Instant now = Instant.now();
+        List<Shard> changed;
+        try {
+            changed = transactionTemplate.execute(status -> {
+                List<Optional<Shard>> current = jdbcTemplate.query(SELECT_SHARD_FOR_UPDATE, Map.of("id", capsuleId),
+                        (rs, rowNum) -> {
+                            Timestamp bucket = rs.getTimestamp("schedule_bucket");
+                            return Optional.ofNullable(bucket == null ? null : new Shard(bucket.toInstant(), rs.getInt("schedule_shard")));
+                        });
+                if (current.isEmpty()) {
+                    // the capsule is gone, and with it its place in any bucket
+                    return List.of();
+                }
+                Shard previous = current.get(0).orElse(null);
+                Instant target = openAt == null ? null : targetBucket(openAt, previous, now);
+                if (previous == null ? target == null : previous.bucket().equals(target)) {
+                    return List.of();
+                }
+
+                List<Shard> affected = new ArrayList<>(2);
+                if (previous != null) {
+                    affected.add(previous);
+                }
+                if (target == null) {
+                    jdbcTemplate.update(LEAVE_BUCKET, Map.of("id", capsuleId));
+                } else {
+                    affected.add(join(capsuleId, target));
+                }
+                affected.forEach(this::requestSync);
+                return affected;
+            });
+        } catch (RuntimeException e) {
+            throw new SchedulingException("Failed to schedule capsule " + capsuleId + ": " + e.getMessage(), e);
+        }
+        changed.forEach(shard -> sync(shard, now));
+    }
+
+    /**
+     * The bucket a capsule opening at {@code openAt} goes into. One that is due too soon to be
+     * written in time is replaced by the first bucket {@code min-lead} away, unless the capsule
+     * already sits in a bucket between the two.
+     */
+    private Instant targetBucket(Instant openAt, Shard previous, Instant now) {
+        Instant bucket = bucketOf(openAt);
+        Instant earliest = bucketOf(now.plus(minLead));
+        if (!bucket.isBefore(earliest)) {
+            return bucket;
+        }
+        if (previous != null && !previous.bucket().isBefore(bucket) && !previous.bucket().isAfter(earliest)) {
+            return previous.bucket();
+        }
+        return earliest;
+    }
+
+    /**
+     * Puts the capsule into the first shard of the bucket that has room. Holds the bucket's
+     * advisory lock until the transaction ends, so two capsules cannot both take the last place.
+     */
+    private Shard join(UUID capsuleId, Instant bucket) {
+        jdbcTemplate.query(LOCK_BUCKET, new MapSqlParameterSource("namespace", BUCKET_LOCK_NAMESPACE)
+                .addValue("minute", (int) (bucket.getEpochSecond() / 60)), rs -> null);
+        Map<Integer, Integer> members = new HashMap<>();
+        jdbcTemplate.query(COUNT_SHARD_MEMBERS, Map.of("bucket", Timestamp.from(bucket)),
+                rs -> {
+                    members.put(rs.getInt("schedule_shard"), rs.getInt("members"));
+                });
+        int shard = 0;
+        while (members.getOrDefault(shard, 0) >= maxCapsulesPerSchedule) {
+            shard++;
+        }
+        jdbcTemplate.update(JOIN_SHARD, params(new Shard(bucket, shard)).addValue("id", capsuleId));
+        return new Shard(bucket, shard);
+    }
+
+    private void requestSync(Shard shard) {
+        jdbcTemplate.update(REQUEST_SYNC, params(shard));
+    }
+
+    /**
+     * Rewrites the schedule of a queued shard unless another node is already at it. A shard
+     * changed while it was being written is written again, a few rounds at most, after which
+     * {@link #syncPending} takes over.
+     */
+    private void sync(Shard shard, Instant now) {
+        for (int round = 0; round < MAX_SYNC_ROUNDS; round++) {
+            List<Long> claimed = jdbcTemplate.queryForList(CLAIM_SYNC,
+                    params(shard).addValue("leaseSeconds", syncLease.toSeconds()), Long.class);
+            if (claimed.isEmpty()) {
+                return;
+            }
+            try {
+                if (publish(shard, claimed.get(0), now)) {
+                    return;
+                }
+            } catch (Exception e) {
+                String error = truncate(e.getMessage());
+                jdbcTemplate.update(RETRY_SYNC, params(shard)
+                        .addValue("delaySeconds", syncRetryDelay.toSeconds())
+                        .addValue("error", error));
+                logger.warn("Batch schedule {} could not be written, retrying in {}: {}",
+                        scheduleName(shard.bucket(), shard.shard()), syncRetryDelay, error);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the shard's schedule from the table, or deletes it once the shard is empty.
+     *
+     * @return {@code false} if the shard was changed meanwhile and has to be written again
+     */
+    private boolean publish(Shard shard, long version, Instant now) throws Exception {
+        if (!shard.bucket().isAfter(now)) {
+            refire(shard, now);
+            return true;
+        }
+        List<UUID> members = jdbcTemplate.queryForList(SELECT_MEMBERS, params(shard), UUID.class);
+        String name = scheduleName(shard.bucket(), shard.shard());
+        if (members.isEmpty()) {
+            eventBridgeScheduledService.deleteBatchSchedule(name);
+        } else {
+            eventBridgeScheduledService.putBatchSchedule(name, shard.bucket(), members);
+        }
+        Boolean completed = transactionTemplate.execute(status -> {
+            if (!members.isEmpty()) {
+                jdbcTemplate.update(MARK_PUBLISHED, params(shard).addValue("ids", members));
+            }
+            if (jdbcTemplate.update(COMPLETE_SYNC, params(shard).addValue("version", version)) == 1) {
+                return true;
+            }
+            jdbcTemplate.update(RELEASE_SYNC, params(shard));
+            return false;
+        });
+        logger.debug("Batch schedule {} written with {} capsules", name, members.size());
+        return Boolean.TRUE.equals(completed);
+    }
+
+    /**
+     * The shard's minute passed before its schedule was written. EventBridge has opened the
+     * capsules of the last schedule it had, if any; the ones that joined since are moved to
+     * the first bucket {@code min-lead} away and synced from there.
+     */
+    private void refire(Shard shard, Instant now) {
+        Instant target = bucketOf(now.plus(minLead));
+        List<UUID> late = new ArrayList<>();
+        Set<Shard> joined = new LinkedHashSet<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            late.addAll(jdbcTemplate.queryForList(SELECT_UNPUBLISHED_FOR_UPDATE, params(shard), UUID.class));
+            late.forEach(id -> joined.add(join(id, target)));
+            joined.forEach(this::requestSync);
+            jdbcTemplate.update(DROP_SYNC, params(shard));
+        });
+        if (!late.isEmpty()) {
+            logger.warn("Batch schedule {} was due before it was written, {} capsules moved to {}",
+                    scheduleName(shard.bucket(), shard.shard()), late.size(), target);
+        }
+        joined.forEach(next -> sync(next, now));
+    }
+
+    private static MapSqlParameterSource params(Shard shard) {
+        return new MapSqlParameterSource("bucket", Timestamp.from(shard.bucket()))
+                .addValue("shard", shard.shard());
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /**
+     * One batch schedule: a bucket and the shard number within it.
+     */
+    record Shard(Instant bucket, int shard) {
+    }
+}
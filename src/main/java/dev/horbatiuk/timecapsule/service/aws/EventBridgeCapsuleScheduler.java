@@ -0,0 +1,63 @@
+package dev.horbatiuk.timecapsule.service.aws;
+
+import dev.horbatiuk.timecapsule.exception.NotFoundException;
+import dev.horbatiuk.timecapsule.exception.SchedulingException;
+import dev.horbatiuk.timecapsule.service.scheduler.CapsuleScheduler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.scheduler.model.GetScheduleResponse;
+import software.amazon.awssdk.services.scheduler.model.ScheduleState;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One EventBridge schedule per capsule, named after the capsule id, invoking the delivery
+ * Lambda once at {@code openAt}.
+ */
+@Component
+@ConditionalOnProperty(value = "app.capsule.scheduler.backend", havingValue = "eventbridge", matchIfMissing = true)
+@RequiredArgsConstructor
+public class EventBridgeCapsuleScheduler implements CapsuleScheduler {
+
+    private final EventBridgeScheduledService eventBridgeScheduledService;
+
+    @Override
+    public void schedule(UUID capsuleId, Instant openAt) throws SchedulingException {
+        try {
+            GetScheduleResponse schedule;
+            try {
+                schedule = eventBridgeScheduledService.getSchedule(capsuleId);
+            } catch (NotFoundException e) {
+                eventBridgeScheduledService.createNewSchedule(capsuleId, openAt);
+                return;
+            }
+            if (!EventBridgeScheduledService.atExpression(openAt).equals(schedule.scheduleExpression())) {
+                // openAt was changed after the schedule was created
+                deleteIfExists(capsuleId);
+                eventBridgeScheduledService.createNewSchedule(capsuleId, openAt);
+            } else if (schedule.state() != ScheduleState.ENABLED) {
+                eventBridgeScheduledService.updateSchedule(schedule, true, capsuleId);
+            }
+        } catch (Exception e) {
+            throw new SchedulingException("Failed to schedule capsule " + capsuleId + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void cancel(UUID capsuleId) throws SchedulingException {
+        try {
+            deleteIfExists(capsuleId);
+        } catch (Exception e) {
+            throw new SchedulingException("Failed to cancel capsule " + capsuleId + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void deleteIfExists(UUID capsuleId) throws Exception {
+        try {
+            eventBridgeScheduledService.deleteSchedule(capsuleId);
+        } catch (NotFoundException ignored) {
+        }
+    }
+}
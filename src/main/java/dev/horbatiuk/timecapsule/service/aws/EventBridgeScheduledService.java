@@ -7,6 +7,7 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.scheduler.SchedulerClient;
 import software.amazon.awssdk.services.scheduler.model.*;
@@ -15,14 +16,20 @@ import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
+@ConditionalOnExpression("'${app.capsule.scheduler.backend:eventbridge}' != 'embedded'")
 @RequiredArgsConstructor
 public class EventBridgeScheduledService {
 
     private static final Logger logger = LoggerFactory.getLogger(EventBridgeScheduledService.class);
 
+    private static final int LIST_PAGE_SIZE = 100;
+
     private final SchedulerClient schedulerClient;
 
     @Value("${aws.lambda-arn}")
@@ -35,9 +42,7 @@ public class EventBridgeScheduledService {
         String scheduleName = capsuleId.toString();
         String scheduleGroup = "default";
 
-        String scheduleExpression = "at(" + DateTimeFormatter.ISO_LOCAL_DATE_TIME
-                .withZone(ZoneOffset.UTC)
-                .format(openAt.truncatedTo(ChronoUnit.SECONDS)) + ")";
+        String scheduleExpression = atExpression(openAt);
 
         CreateScheduleRequest scheduleRequest = CreateScheduleRequest.builder()
                 .name(scheduleName)
@@ -47,11 +52,7 @@ public class EventBridgeScheduledService {
                 .flexibleTimeWindow(FlexibleTimeWindow.builder()
                         .mode(FlexibleTimeWindowMode.OFF)
                         .build())
-                .target(Target.builder()
-                        .arn(lambdaArn)
-                        .roleArn(schedulerRoleArn)
-                        .input("{\"capsuleId\": \"" + capsuleId + "\"}")
-                        .build())
+                .target(target("{\"capsuleId\": \"" + capsuleId + "\"}"))
                 .build();
         try {
             schedulerClient.createSchedule(scheduleRequest);
@@ -62,6 +63,104 @@ public class EventBridgeScheduledService {
         }
     }
 
+    /**
+     * Creates or replaces a one-time schedule that opens all {@code capsuleIds} at {@code openAt}.
+     * The Lambda receives {@code {"capsuleIds": [...]}}.
+     */
+    public void putBatchSchedule(String scheduleName, Instant openAt, List<UUID> capsuleIds) throws InternalAwsException {
+        String scheduleExpression = atExpression(openAt);
+        String input = capsuleIds.stream()
+                .map(id -> "\"" + id + "\"")
+                .collect(Collectors.joining(", ", "{\"capsuleIds\": [", "]}"));
+        FlexibleTimeWindow window = FlexibleTimeWindow.builder().mode(FlexibleTimeWindowMode.OFF).build();
+        try {
+            try {
+                schedulerClient.updateSchedule(UpdateScheduleRequest.builder()
+                        .name(scheduleName)
+                        .groupName("default")
+                        .scheduleExpression(scheduleExpression)
+                        .actionAfterCompletion(ActionAfterCompletion.DELETE)
+                        .flexibleTimeWindow(window)
+                        .target(target(input))
+                        .build());
+            } catch (ResourceNotFoundException e) {
+                schedulerClient.createSchedule(CreateScheduleRequest.builder()
+                        .name(scheduleName)
+                        .groupName("default")
+                        .scheduleExpression(scheduleExpression)
+                        .actionAfterCompletion(ActionAfterCompletion.DELETE)
+                        .flexibleTimeWindow(window)
+                        .target(target(input))
+                        .build());
+            }
+            logger.info("Batch schedule {} at {} set to {} capsules", scheduleName, scheduleExpression, capsuleIds.size());
+        } catch (Exception e) {
+            logger.error("Failed to put batch schedule {}: {}", scheduleName, e.getMessage());
+            throw new InternalAwsException("Failed to put batch schedule: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return {@code false} if there was no such schedule
+     */
+    public boolean deleteBatchSchedule(String scheduleName) throws InternalAwsException {
+        try {
+            schedulerClient.deleteSchedule(DeleteScheduleRequest.builder()
+                    .name(scheduleName)
+                    .groupName("default")
+                    .build());
+            logger.info("Batch schedule deleted: {}", scheduleName);
+            return true;
+        } catch (ResourceNotFoundException e) {
+            return false;
+        } catch (Exception e) {
+            logger.error("Failed to delete batch schedule {}: {}", scheduleName, e.getMessage());
+            throw new InternalAwsException("Failed to delete batch schedule: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * All schedules in the default group whose name starts with {@code namePrefix}, in no
+     * particular order. Pages through {@code ListSchedules} until the last page.
+     */
+    public List<ScheduleSummary> listSchedules(String namePrefix) throws InternalAwsException {
+        List<ScheduleSummary> schedules = new ArrayList<>();
+        String nextToken = null;
+        try {
+            do {
+                ListSchedulesResponse page = schedulerClient.listSchedules(ListSchedulesRequest.builder()
+                        .groupName("default")
+                        .namePrefix(namePrefix)
+                        .maxResults(LIST_PAGE_SIZE)
+                        .nextToken(nextToken)
+                        .build());
+                schedules.addAll(page.schedules());
+                nextToken = page.nextToken();
+            } while (nextToken != null);
+        } catch (Exception e) {
+            logger.error("Failed to list schedules with prefix {}: {}", namePrefix, e.getMessage());
+            throw new InternalAwsException("Failed to list schedules: " + e.getMessage(), e);
+        }
+        return schedules;
+    }
+
+    private Target target(String input) {
+        return Target.builder()
+                .arn(lambdaArn)
+                .roleArn(schedulerRoleArn)
+                .input(input)
+                .build();
+    }
+
+    /**
+     * The one-time schedule expression {@link #createNewSchedule} uses for {@code openAt}.
+     */
+    public static String atExpression(Instant openAt) {
+        return "at(" + DateTimeFormatter.ISO_LOCAL_DATE_TIME
+                .withZone(ZoneOffset.UTC)
+                .format(openAt.truncatedTo(ChronoUnit.SECONDS)) + ")";
+    }
+
     public GetScheduleResponse getSchedule(UUID capsuleId) throws NotFoundException, InternalAwsException {
         String scheduleName = capsuleId.toString();
         String scheduleGroup = "default";
@@ -0,0 +1,416 @@
+package dev.horbatiuk.timecapsule.service.aws;
+
+import dev.horbatiuk.timecapsule.exception.aws.s3.S3ActionException;
+import dev.horbatiuk.timecapsule.exception.controller.ServiceOverloadedException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsRequest;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Uploads large files to S3 as multipart uploads, sending up to {@code parallelism} parts at
+ * once across all uploads. Each upload reads its stream one part at a time into buffers of
+ * its own, at most {@code buffers-per-upload} of them (by default {@code parallelism + 1}, so
+ * one upload alone can keep every sending slot busy while it reads the next part), and only
+ * takes one of the shared sending slots once a part has been read in full. A client that
+ * sends slowly therefore only holds its own buffers and never keeps other uploads from being
+ * sent.
+ * <p>
+ * All buffers of a node come out of a budget of {@code max-buffers}, which bounds the memory
+ * of all uploads together. An upload that cannot get its first buffer within
+ * {@code buffer-wait} is refused with {@link ServiceOverloadedException} before anything is
+ * sent to S3; after that it only takes more buffers while the budget has some left. A failed part is
+ * retried on its own; once a part has run out of attempts the whole upload is aborted, so S3
+ * does not keep the parts that were sent.
+ * <p>
+ * Uploads that were neither completed nor aborted, because the node died in between, are
+ * aborted by {@link #abortStaleUploads} once they are older than {@code stale-after}.
+ */
+@Component
+public class S3MultipartUploader {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3MultipartUploader.class);
+
+    /** The smallest part S3 accepts, except for the last one. */
+    static final long MIN_PART_SIZE = DataSize.ofMegabytes(5).toBytes();
+    /** The most parts S3 accepts in one upload. */
+    static final int MAX_PARTS = 10_000;
+
+    private final S3Client s3Client;
+    private final String bucketName;
+    private final String filesFolder;
+    private final long threshold;
+    private final int partSize;
+    private final int maxPartAttempts;
+    private final Duration retryBackoff;
+    private final Duration staleAfter;
+    private final int buffersPerUpload;
+    private final Semaphore nodeBuffers;
+    private final Duration bufferWait;
+    private final Semaphore partPermits;
+    private final ThreadPoolExecutor workers;
+
+    public S3MultipartUploader(S3Client s3Client,
+                               @Value("${aws.bucket}") String bucketName,
+                               @Value("${aws.s3.files-folder}") String filesFolder,
+                               @Value("${aws.s3.multipart.threshold:16MB}") DataSize threshold,
+                               @Value("${aws.s3.multipart.part-size:8MB}") DataSize partSize,
+                               @Value("${aws.s3.multipart.parallelism:8}") int parallelism,
+                               @Value("${aws.s3.multipart.buffers-per-upload:0}") int buffersPerUpload,
+                               @Value("${aws.s3.multipart.max-buffers:32}") int maxBuffers,
+                               @Value("${aws.s3.multipart.buffer-wait:PT10S}") Duration bufferWait,
+                               @Value("${aws.s3.multipart.max-part-attempts:3}") int maxPartAttempts,
+                               @Value("${aws.s3.multipart.retry-backoff:PT1S}") Duration retryBackoff,
+                               @Value("${aws.s3.multipart.stale-after:P1D}") Duration staleAfter) {
+        if (partSize.toBytes() < MIN_PART_SIZE || partSize.toBytes() > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("aws.s3.multipart.part-size must be between 5MB and 2GB");
+        }
+        if (buffersPerUpload < 0) {
+            throw new IllegalArgumentException("aws.s3.multipart.buffers-per-upload must not be negative");
+        }
+        if (maxBuffers < 1) {
+            throw new IllegalArgumentException("aws.s3.multipart.max-buffers must be at least 1");
+        }
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+        this.filesFolder = filesFolder;
+        this.threshold = threshold.toBytes();
+        this.partSize = (int) partSize.toBytes();
+        this.maxPartAttempts = maxPartAttempts;
+        this.retryBackoff = retryBackoff;
+        this.staleAfter = staleAfter;
+        this.buffersPerUpload = buffersPerUpload == 0 ? parallelism + 1 : buffersPerUpload;
+        this.nodeBuffers = new Semaphore(maxBuffers);
+        this.bufferWait = bufferWait;
+        this.partPermits = new Semaphore(parallelism);
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+                parallelism, parallelism,
+                0L, TimeUnit.MILLISECONDS,
+                // never holds more than parallelism tasks, each of which owns a permit
+                new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "s3-part-upload-" + threadCounter.incrementAndGet())
+        );
+    }
+
+    /**
+     * Whether a file of {@code contentLength} bytes should be uploaded in parts.
+     */
+    public boolean isMultipart(long contentLength) {
+        return contentLength >= threshold;
+    }
+
+    public void upload(String key, InputStream inputStream, long contentLength, String contentType)
+            throws S3ActionException {
+        long parts = (contentLength + partSize - 1) / partSize;
+        if (parts > MAX_PARTS) {
+            throw new S3ActionException("File of " + contentLength + " bytes needs more than " + MAX_PARTS
+                    + " parts of " + partSize + " bytes");
+        }
+
+        UploadBuffers buffers = new UploadBuffers();
+        try {
+            if (!buffers.reserveFirst()) {
+                logger.warn("No part buffer free for key '{}' within {}", key, bufferWait);
+                throw new ServiceOverloadedException("Too many uploads in progress, please retry later",
+                        Math.max(bufferWait.toSeconds(), 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new S3ActionException("S3 upload interrupted for: " + key, e);
+        }
+        try {
+            upload(key, inputStream, contentLength, contentType, buffers);
+        } finally {
+            buffers.close();
+        }
+    }
+
+    private void upload(String key, InputStream inputStream, long contentLength, String contentType,
+                        UploadBuffers buffers) throws S3ActionException {
+        String uploadId;
+        try {
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .contentType(contentType)
+                    .build()).uploadId();
+        } catch (AwsServiceException | SdkClientException e) {
+            logger.error("Failed to start multipart upload of key '{}': {}", key, e.getMessage());
+            throw new S3ActionException("S3 upload failed for: " + key, e);
+        }
+
+        long started = System.nanoTime();
+        // the first part to fail; the others stop instead of uploading for nothing
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Future<CompletedPart>> pending = new ArrayList<>();
+        try {
+            int partNumber = 0;
+            for (long offset = 0; offset < contentLength && failure.get() == null; offset += partSize) {
+                int length = (int) Math.min(partSize, contentLength - offset);
+                byte[] buffer = buffers.acquire();
+                try {
+                    readFully(inputStream, buffer, length);
+                    partPermits.acquire();
+                } catch (IOException | InterruptedException e) {
+                    buffers.release(buffer);
+                    throw e;
+                }
+                int number = ++partNumber;
+                try {
+                    pending.add(workers.submit(() -> {
+                        try {
+                            return uploadPart(key, uploadId, number, buffer, length, failure);
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                            throw e;
+                        } finally {
+                            partPermits.release();
+                            buffers.release(buffer);
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    partPermits.release();
+                    buffers.release(buffer);
+                    throw e;
+                }
+            }
+
+            List<CompletedPart> completed = new ArrayList<>(pending.size());
+            for (Future<CompletedPart> part : pending) {
+                completed.add(part.get());
+            }
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+                    .build());
+            logger.info("Uploaded {} bytes to key '{}' in {} parts in {}ms", contentLength, key, completed.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (Exception e) {
+            failure.compareAndSet(null, e instanceof ExecutionException ? e.getCause() : e);
+            awaitQuietly(pending);
+            abort(key, uploadId);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = failure.get();
+            logger.error("Multipart upload of key '{}' failed: {}", key, cause.getMessage());
+            throw new S3ActionException("S3 upload failed for: " + key, cause);
+        }
+    }
+
+    private CompletedPart uploadPart(String key, String uploadId, int partNumber, byte[] buffer, int length,
+                                     AtomicReference<Throwable> failure) throws InterruptedException {
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) length)
+                .build();
+        for (int attempt = 1; ; attempt++) {
+            if (failure.get() != null) {
+                throw new IllegalStateException("Upload of key '" + key + "' failed, part " + partNumber + " skipped");
+            }
+            try {
+                // a fresh stream over the same buffer for every attempt, without copying it
+                String eTag = s3Client.uploadPart(request, RequestBody.fromContentProvider(
+                        () -> new ByteArrayInputStream(buffer, 0, length), length, "application/octet-stream")).eTag();
+                return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+            } catch (AwsServiceException | SdkClientException e) {
+                if (attempt >= maxPartAttempts || !isRetryable(e)) {
+                    throw e;
+                }
+                logger.warn("Part {} of key '{}' failed (attempt {}), retrying: {}", partNumber, key, attempt, e.getMessage());
+                Thread.sleep(retryBackoff.toMillis() * attempt);
+            }
+        }
+    }
+
+    private static boolean isRetryable(SdkException e) {
+        if (e instanceof AwsServiceException serviceException) {
+            return serviceException.statusCode() >= 500 || serviceException.isThrottlingException();
+        }
+        return true;
+    }
+
+    /**
+     * The part buffers of one upload, allocated as they are first needed and reused after that.
+     * Each one is taken from the node's budget before it is allocated.
+     */
+    private final class UploadBuffers {
+
+        private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(buffersPerUpload);
+        private int reserved;
+        private int allocated;
+
+        /** Takes the first buffer from the budget, waiting at most {@code buffer-wait}. */
+        boolean reserveFirst() throws InterruptedException {
+            if (!nodeBuffers.tryAcquire(bufferWait.toMillis(), TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            reserved = 1;
+            return true;
+        }
+
+        /**
+         * Only called by the uploading thread. Waits for a buffer of its own once the upload
+         * has as many as it may, or the budget has none left.
+         */
+        byte[] acquire() throws InterruptedException {
+            byte[] buffer = free.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+            if (allocated == reserved && reserved < buffersPerUpload && nodeBuffers.tryAcquire()) {
+                reserved++;
+            }
+            if (allocated < reserved) {
+                allocated++;
+                return new byte[partSize];
+            }
+            return free.take();
+        }
+
+        void release(byte[] buffer) {
+            free.offer(buffer);
+        }
+
+        /** Gives the buffers back to the budget; only once no part is being sent any more. */
+        void close() {
+            nodeBuffers.release(reserved);
+            reserved = 0;
+        }
+    }
+
+    private static void readFully(InputStream inputStream, byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = inputStream.read(buffer, read, length - read);
+            if (count == -1) {
+                throw new IOException("Stream ended after " + read + " of " + length + " bytes of a part");
+            }
+            read += count;
+        }
+    }
+
+    /**
+     * Waits for the parts still being sent, so none of them lands after the abort and every
+     * sending slot is given back.
+     */
+    private static void awaitQuietly(List<Future<CompletedPart>> pending) {
+        boolean interrupted = false;
+        for (Future<CompletedPart> part : pending) {
+            while (true) {
+                try {
+                    part.get();
+                    break;
+                } catch (ExecutionException e) {
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean abort(String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+            return true;
+        } catch (NoSuchUploadException e) {
+            return false;
+        } catch (AwsServiceException | SdkClientException e) {
+            logger.warn("Failed to abort multipart upload of key '{}', left to the stale upload cleanup: {}",
+                    key, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Aborts multipart uploads of attachment files started more than {@code stale-after} ago.
+     * Running it on several nodes at once is harmless.
+     */
+    @Scheduled(fixedDelayString = "${aws.s3.multipart.cleanup-interval:PT1H}",
+            initialDelayString = "${aws.s3.multipart.cleanup-initial-delay:PT5M}")
+    public void abortStaleUploads() {
+        Instant cutoff = Instant.now().minus(staleAfter);
+        String prefix = (filesFolder != null && !filesFolder.isBlank()) ? filesFolder + "/" : null;
+        int aborted = 0;
+        try {
+            for (MultipartUpload upload : s3Client.listMultipartUploadsPaginator(ListMultipartUploadsRequest.builder()
+                    .bucket(bucketName)
+                    .prefix(prefix)
+                    .build()).uploads()) {
+                if (upload.initiated() != null && upload.initiated().isBefore(cutoff)
+                        && abort(upload.key(), upload.uploadId())) {
+                    aborted++;
+                }
+            }
+        } catch (AwsServiceException | SdkClientException e) {
+            logger.error("Failed to list multipart uploads: {}", e.getMessage());
+        }
+        if (aborted > 0) {
+            logger.info("Aborted {} multipart uploads started before {}", aborted, cutoff);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                // uploads cut short here are aborted by the stale upload cleanup
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package dev.horbatiuk.timecapsule.service.aws;
+
+import dev.horbatiuk.timecapsule.exception.aws.s3.S3ActionException;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.PresignedDownloadDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.PresignedUploadDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Issues short-lived URLs that let clients upload and download attachment files straight
+ * from S3. The URLs are signed locally, without a call to AWS, and only ever for keys under
+ * {@code filesFolder/{capsuleId}/}.
+ */
+@Service
+public class S3PresignService {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3PresignService.class);
+
+    private final S3Presigner s3Presigner;
+    private final S3Service s3Service;
+    private final String bucketName;
+    private final Duration urlTtl;
+
+    public S3PresignService(S3Presigner s3Presigner,
+                            S3Service s3Service,
+                            @Value("${aws.bucket}") String bucketName,
+                            @Value("${aws.s3.presigned-url-ttl:PT15M}") Duration urlTtl) {
+        this.s3Presigner = s3Presigner;
+        this.s3Service = s3Service;
+        this.bucketName = bucketName;
+        this.urlTtl = urlTtl;
+    }
+
+    /**
+     * Signs a {@code PUT} of exactly {@code size} bytes of {@code contentType}, and of content
+     * with the given SHA-256 if {@code checksumSha256} is not null, so S3 refuses anything else.
+     */
+    public PresignedUploadDTO presignUpload(UUID capsuleId, String fileKey, String contentType, long size,
+                                            String checksumSha256) throws S3ActionException {
+        String key = s3Service.fileKey(capsuleId, fileKey);
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(size)
+                .checksumSHA256(checksumSha256)
+                .build();
+        try {
+            PresignedPutObjectRequest presigned = s3Presigner.presignPutObject(PutObjectPresignRequest.builder()
+                    .signatureDuration(urlTtl)
+                    .putObjectRequest(request)
+                    .build());
+            logger.info("Presigned upload of {} bytes to key '{}', valid until {}", size, key, presigned.expiration());
+            return new PresignedUploadDTO(fileKey, presigned.url().toString(),
+                    clientHeaders(presigned.signedHeaders()), presigned.expiration());
+        } catch (SdkClientException e) {
+            logger.error("Failed to presign upload to key '{}': {}", key, e.getMessage());
+            throw new S3ActionException("Failed to presign upload for: " + fileKey, e);
+        }
+    }
+
+    /**
+     * Signs a {@code GET} that makes browsers save the file as {@code filename}.
+     */
+    public PresignedDownloadDTO presignDownload(UUID capsuleId, String fileKey, String filename)
+            throws S3ActionException {
+        String key = s3Service.fileKey(capsuleId, fileKey);
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .responseContentDisposition(ContentDisposition.attachment()
+                        .filename(filename, StandardCharsets.UTF_8)
+                        .build()
+                        .toString())
+                .build();
+        try {
+            PresignedGetObjectRequest presigned = s3Presigner.presignGetObject(GetObjectPresignRequest.builder()
+                    .signatureDuration(urlTtl)
+                    .getObjectRequest(request)
+                    .build());
+            logger.info("Presigned download of key '{}', valid until {}", key, presigned.expiration());
+            return new PresignedDownloadDTO(presigned.url().toString(), presigned.expiration());
+        } catch (SdkClientException e) {
+            logger.error("Failed to presign download of key '{}': {}", key, e.getMessage());
+            throw new S3ActionException("Failed to presign download for: " + fileKey, e);
+        }
+    }
+
+    /**
+     * The signed headers the client has to send itself; {@code Host} is set by every HTTP client.
+     */
+    private static Map<String, String> clientHeaders(Map<String, List<String>> signedHeaders) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        signedHeaders.forEach((name, values) -> {
+            if (!HttpHeaders.HOST.equalsIgnoreCase(name)) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+        return headers;
+    }
+}
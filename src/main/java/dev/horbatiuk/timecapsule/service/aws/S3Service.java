@@ -8,19 +8,38 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ChecksumMode;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -28,7 +47,14 @@ public class S3Service {
 
     private static final Logger logger = LoggerFactory.getLogger(S3Service.class);
 
+    /** The most keys S3 accepts in one {@code DeleteObjects} request. */
+    public static final int MAX_KEYS_PER_DELETE = 1000;
+
+    /** How much of a download is held in memory at a time, whatever the size of the file. */
+    static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+
     private final S3Client s3Client;
+    private final S3MultipartUploader multipartUploader;
 
     @Value("${aws.bucket}")
     private String bucketName;
@@ -47,9 +73,28 @@ public class S3Service {
         return key;
     }
 
+    public String fileKey(UUID capsuleId, String filename) {
+        return buildKeyForFile(capsuleId.toString(), filename);
+    }
+
+    public String capsuleDataKey(UUID capsuleId) {
+        return (dataFolder != null && !dataFolder.isBlank())
+                ? dataFolder + "/" + capsuleId + ".json"
+                : capsuleId.toString();
+    }
+
+    /**
+     * Uploads a file with one request, or in parallel parts if it is large enough for
+     * {@link S3MultipartUploader}.
+     */
     public void uploadFile(String capsuleId, String filename, InputStream inputStream,
                            long contentLength, String contentType) throws S3ActionException {
         String key = buildKeyForFile(capsuleId, filename);
+        if (multipartUploader.isMultipart(contentLength)) {
+            multipartUploader.upload(key, inputStream, contentLength, contentType);
+            logger.info("Uploaded file '{}' to bucket '{}' with key '{}'", filename, bucketName, key);
+            return;
+        }
         PutObjectRequest request = PutObjectRequest.builder()
                 .bucket(bucketName)
                 .key(key)
@@ -79,6 +124,43 @@ public class S3Service {
         }
     }
 
+    /**
+     * Removes up to {@link #MAX_KEYS_PER_DELETE} objects with one {@code DeleteObjects} request.
+     * Keys that do not exist count as deleted.
+     *
+     * @return the keys S3 reported it could not delete
+     */
+    public List<String> deleteObjects(List<String> keys) throws S3ActionException {
+        if (keys.size() > MAX_KEYS_PER_DELETE) {
+            throw new IllegalArgumentException("At most " + MAX_KEYS_PER_DELETE + " keys can be deleted at once");
+        }
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder()
+                        .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                        .quiet(true)
+                        .build())
+                .build();
+        try {
+            DeleteObjectsResponse response = s3Client.deleteObjects(request);
+            List<String> failed = response.errors().stream().map(S3Error::key).toList();
+            logger.info("Deleted {} of {} objects from bucket '{}'", keys.size() - failed.size(), keys.size(), bucketName);
+            for (S3Error error : response.errors()) {
+                logger.warn("Failed to delete object '{}': {} {}", error.key(), error.code(), error.message());
+            }
+            return failed;
+        } catch (AwsServiceException | SdkClientException e) {
+            logger.error("Batch delete of {} objects failed: {}", keys.size(), e.getMessage());
+            throw new S3ActionException("Batch delete of " + keys.size() + " objects failed", e);
+        }
+    }
+
+    /**
+     * Reads the whole file into memory; use {@link #openFile} for anything sent to a client.
+     */
     public byte[] getFile(String capsuleId, String filename) throws S3ActionException {
         String key = buildKeyForFile(capsuleId, filename);
         GetObjectRequest request = GetObjectRequest.builder()
@@ -95,6 +177,127 @@ public class S3Service {
         }
     }
 
+    /**
+     * Opens a file for streaming instead of reading it into memory. {@code range} is a single
+     * HTTP byte range such as {@code bytes=0-1023} and {@code ifNoneMatch} the ETags the client
+     * already has; both are handed to S3 as they are and may be null.
+     * <p>
+     * A file matching {@code ifNoneMatch} or a range outside the file is not an error but a
+     * download with status 304 or 416 and no body.
+     */
+    public FileDownload openFile(String capsuleId, String filename, String range, String ifNoneMatch)
+            throws S3ActionException {
+        String key = buildKeyForFile(capsuleId, filename);
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .range(range)
+                .ifNoneMatch(ifNoneMatch)
+                .build();
+        try {
+            ResponseInputStream<GetObjectResponse> body = s3Client.getObject(request);
+            GetObjectResponse response = body.response();
+            logger.info("Opened file '{}' with key '{}' ({} bytes{})", filename, key, response.contentLength(),
+                    response.contentRange() == null ? "" : ", " + response.contentRange());
+            return new FileDownload(response.contentRange() == null ? HttpStatus.OK : HttpStatus.PARTIAL_CONTENT,
+                    body, response.contentLength(), response.contentRange(), response.contentType(), response.eTag());
+        } catch (S3Exception e) {
+            if (e.statusCode() == HttpStatus.NOT_MODIFIED.value()) {
+                return new FileDownload(HttpStatus.NOT_MODIFIED, null, null, null, null, eTagOf(e));
+            }
+            if (e.statusCode() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+                // S3 does not say how long the file is, which the client needs to ask again
+                return new FileDownload(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, null, null,
+                        "bytes */" + contentLength(key, filename), null, null);
+            }
+            logger.error("Failed to open file '{}' with key '{}': {}", filename, key, e.getMessage());
+            throw new S3ActionException("Failed to retrieve file: " + filename, e);
+        } catch (AwsServiceException | SdkClientException e) {
+            logger.error("Failed to open file '{}' with key '{}': {}", filename, key, e.getMessage());
+            throw new S3ActionException("Failed to retrieve file: " + filename, e);
+        }
+    }
+
+    /**
+     * Reads the metadata of a file, including its stored checksum if it was uploaded with one.
+     *
+     * @return empty if there is no such file
+     */
+    public Optional<HeadObjectResponse> headFile(String capsuleId, String filename) throws S3ActionException {
+        String key = buildKeyForFile(capsuleId, filename);
+        HeadObjectRequest request = HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .checksumMode(ChecksumMode.ENABLED)
+                .build();
+        try {
+            return Optional.of(s3Client.headObject(request));
+        } catch (S3Exception e) {
+            if (e.statusCode() == HttpStatus.NOT_FOUND.value()) {
+                return Optional.empty();
+            }
+            logger.error("Failed to read metadata of file '{}' with key '{}': {}", filename, key, e.getMessage());
+            throw new S3ActionException("Failed to retrieve file: " + filename, e);
+        } catch (AwsServiceException | SdkClientException e) {
+            logger.error("Failed to read metadata of file '{}' with key '{}': {}", filename, key, e.getMessage());
+            throw new S3ActionException("Failed to retrieve file: " + filename, e);
+        }
+    }
+
+    private long contentLength(String key, String filename) throws S3ActionException {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key).build()).contentLength();
+        } catch (AwsServiceException | SdkClientException e) {
+            logger.error("Failed to read size of file '{}' with key '{}': {}", filename, key, e.getMessage());
+            throw new S3ActionException("Failed to retrieve file: " + filename, e);
+        }
+    }
+
+    private static String eTagOf(S3Exception e) {
+        AwsErrorDetails details = e.awsErrorDetails();
+        if (details == null || details.sdkHttpResponse() == null) {
+            return null;
+        }
+        return details.sdkHttpResponse().firstMatchingHeader(HttpHeaders.ETAG).orElse(null);
+    }
+
+    /**
+     * A file opened by {@link #openFile}. {@code body} is null unless the status is 200 or 206,
+     * and {@code contentRange} is set for 206 and 416.
+     */
+    public record FileDownload(HttpStatus status,
+                               ResponseInputStream<GetObjectResponse> body,
+                               Long contentLength,
+                               String contentRange,
+                               String contentType,
+                               String eTag) {
+
+        /**
+         * Copies the body to {@code out} through one fixed-size buffer and closes it. If the
+         * copy stops early, for example because the client went away, the S3 connection is
+         * aborted rather than drained to the end of the file.
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            if (body == null) {
+                return;
+            }
+            boolean complete = false;
+            try {
+                byte[] buffer = new byte[DOWNLOAD_BUFFER_SIZE];
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                complete = true;
+            } finally {
+                if (!complete) {
+                    body.abort();
+                }
+                body.close();
+            }
+        }
+    }
+
     public void uploadCapsuleData(CapsuleResponseDTO capsule) throws S3ActionException {
         JSONObject json = new JSONObject();
         json.put("capsuleId", capsule.getId());
@@ -107,9 +310,7 @@ public class S3Service {
         json.put("openAt", formatInstantToJsonString(capsule.getOpenAt().toInstant()));
 
         String capsuleId = capsule.getId().toString();
-        String key = (dataFolder != null && !dataFolder.isBlank())
-                ? dataFolder + "/" + capsuleId + ".json"
-                : capsuleId;
+        String key = capsuleDataKey(capsule.getId());
         PutObjectRequest request = PutObjectRequest.builder()
                 .bucket(bucketName)
                 .key(key)
@@ -0,0 +1,523 @@
+package dev.horbatiuk.timecapsule.service.aws;
+
+import dev.horbatiuk.timecapsule.exception.NotFoundException;
+import dev.horbatiuk.timecapsule.exception.aws.InternalAwsException;
+import dev.horbatiuk.timecapsule.exception.controller.AppException;
+import dev.horbatiuk.timecapsule.persistence.CapsuleOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.ScheduleReconciliationRunRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.ScheduleReconciliationReportDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.ScheduleReconciliationRunDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.ScheduleReconciliationRun;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.ReconciliationRunStatus;
+import dev.horbatiuk.timecapsule.service.CapsuleOutboxRelay;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.amazon.awssdk.services.scheduler.model.GetScheduleResponse;
+import software.amazon.awssdk.services.scheduler.model.ScheduleState;
+import software.amazon.awssdk.services.scheduler.model.ScheduleSummary;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds and repairs drift between ACTIVE capsules and their per-capsule EventBridge schedules.
+ * <p>
+ * {@code ListSchedules} returns schedules in no particular order and capsule ids are uniformly
+ * spread, so the id space is walked in {@code 16^prefix-length} partitions by leading hex
+ * digits. For each partition the schedules are listed with that name prefix and sorted, and the
+ * ACTIVE capsules of the same id range are streamed in id order from the database, so the two
+ * sides are merged holding only one partition of schedules at a time. Schedules are compared
+ * by name, state and, with one {@code GetSchedule} each, their expression, on a pool of
+ * {@code concurrency} threads.
+ * <p>
+ * A mismatch is not repaired from the snapshot read here, which may be stale by the time the
+ * repair runs. Instead a sync of the capsule is queued in the outbox, and the
+ * {@link CapsuleOutboxRelay} schedules or cancels it from the capsule's state at that point.
+ * <p>
+ * A run takes one {@code GetSchedule} call per scheduled capsule, far longer than an HTTP
+ * request may. Admins therefore {@link #start} a run in the background and fetch its report
+ * by id from the {@code schedule_reconciliation_run} table, which any node can serve.
+ * <p>
+ * Only one run at a time is allowed across all nodes: a run holds a PostgreSQL advisory lock
+ * for as long as it lasts, and a run that cannot take it is refused or, when scheduled,
+ * skipped. The lock is taken at session level on a connection of its own, as a run outlasts
+ * any transaction it could be tied to; if the node dies, the connection closes and the lock
+ * is released. Holding the lock also proves that no other run is alive, so runs left
+ * RUNNING by a stopped node are marked FAILED when the next run starts.
+ */
+@Service
+@ConditionalOnProperty(value = "app.capsule.scheduler.backend", havingValue = "eventbridge", matchIfMissing = true)
+public class ScheduleReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleReconciliationService.class);
+
+    static final int SAMPLE_SIZE = 50;
+    static final long RUN_LOCK_KEY = 0x7265636f6e63696cL;
+
+    private static final String TRY_LOCK = "SELECT pg_try_advisory_lock(?)";
+    private static final String UNLOCK = "SELECT pg_advisory_unlock(?)";
+    private static final String INTERRUPTED_ERROR = "The node running the reconciliation stopped before it finished";
+
+    private static final String SELECT_ACTIVE = """
+            SELECT id, open_at FROM capsule
+            WHERE status = 'ACTIVE' AND id >= :from AND id < :to
+            ORDER BY id
+            """;
+    private static final String SELECT_ACTIVE_LAST = """
+            SELECT id, open_at FROM capsule
+            WHERE status = 'ACTIVE' AND id >= :from
+            ORDER BY id
+            """;
+
+    private final EventBridgeScheduledService eventBridgeScheduledService;
+    private final CapsuleOutboxRepository capsuleOutboxRepository;
+    private final ScheduleReconciliationRunRepository runRepository;
+    private final DataSource dataSource;
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService runner;
+    private final Semaphore inFlight;
+    private final int concurrency;
+    private final int prefixLength;
+    private final boolean scheduledRunEnabled;
+    private final Duration interval;
+
+    public ScheduleReconciliationService(EventBridgeScheduledService eventBridgeScheduledService,
+                                         CapsuleOutboxRepository capsuleOutboxRepository,
+                                         ScheduleReconciliationRunRepository runRepository,
+                                         DataSource dataSource,
+                                         PlatformTransactionManager transactionManager,
+                                         @Value("${app.capsule.scheduler.reconciliation.concurrency:8}") int concurrency,
+                                         @Value("${app.capsule.scheduler.reconciliation.prefix-length:2}") int prefixLength,
+                                         @Value("${app.capsule.scheduler.reconciliation.fetch-size:1000}") int fetchSize,
+                                         @Value("${app.capsule.scheduler.reconciliation.enabled:false}") boolean scheduledRunEnabled,
+                                         @Value("${app.capsule.scheduler.reconciliation.interval:PT6H}") Duration interval) {
+        if (prefixLength < 1 || prefixLength > 4) {
+            throw new IllegalArgumentException("app.capsule.scheduler.reconciliation.prefix-length must be between 1 and 4");
+        }
+        this.eventBridgeScheduledService = eventBridgeScheduledService;
+        this.capsuleOutboxRepository = capsuleOutboxRepository;
+        this.runRepository = runRepository;
+        this.dataSource = dataSource;
+        // PostgreSQL only streams with a fetch size inside a transaction
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.concurrency = concurrency;
+        this.prefixLength = prefixLength;
+        this.scheduledRunEnabled = scheduledRunEnabled;
+        this.interval = interval;
+        this.inFlight = new Semaphore(concurrency);
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+                concurrency, concurrency,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "schedule-reconcile-" + threadCounter.incrementAndGet())
+        );
+        this.runner = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "schedule-reconcile-run"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.capsule.scheduler.reconciliation.interval:PT6H}",
+            initialDelayString = "${app.capsule.scheduler.reconciliation.initial-delay:PT10M}"
+    )
+    public void reconcileOnSchedule() {
+        if (!scheduledRunEnabled) {
+            return;
+        }
+        try {
+            reconcile(false);
+        } catch (AppException e) {
+            logger.info("Scheduled reconciliation skipped: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Starts a run in the background; its report is read with {@link #findRun} once it has
+     * finished.
+     *
+     * @param dryRun only report mismatches
+     * @throws AppException with 409 when a run is already in progress on any node
+     */
+    public ScheduleReconciliationRunDTO start(boolean dryRun) {
+        RunLock lock = acquireRunLock();
+        try {
+            ScheduleReconciliationRun run = runRepository.save(ScheduleReconciliationRun.builder()
+                    .id(UUID.randomUUID())
+                    .dryRun(dryRun)
+                    .startedAt(Instant.now())
+                    .build());
+            runner.execute(() -> {
+                try {
+                    complete(run);
+                } finally {
+                    lock.release();
+                }
+            });
+            return toDto(run);
+        } catch (RuntimeException e) {
+            lock.release();
+            if (e instanceof RejectedExecutionException) {
+                throw new AppException("Reconciliation is shutting down", HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A run still RUNNING after a whole reconciliation interval is taken to have been
+     * stopped with its node, and is reported as FAILED.
+     */
+    public ScheduleReconciliationRunDTO findRun(UUID runId) throws NotFoundException {
+        ScheduleReconciliationRun run = runRepository.findById(runId)
+                .orElseThrow(() -> new NotFoundException("Reconciliation run not found"));
+        Instant staleBefore = Instant.now().minus(interval);
+        if (run.getStatus() == ReconciliationRunStatus.RUNNING && run.getStartedAt().isBefore(staleBefore)
+                && runRepository.failRunningBefore(staleBefore, INTERRUPTED_ERROR) > 0) {
+            run = runRepository.findById(runId).orElse(run);
+        }
+        return toDto(run);
+    }
+
+    private void complete(ScheduleReconciliationRun run) {
+        try {
+            run.setReport(runReconciliation(run.isDryRun()));
+            run.setStatus(ReconciliationRunStatus.FINISHED);
+        } catch (Exception e) {
+            logger.error("Schedule reconciliation {} failed", run.getId(), e);
+            run.setError(e.getMessage());
+            run.setStatus(ReconciliationRunStatus.FAILED);
+        }
+        run.setFinishedAt(Instant.now());
+        runRepository.save(run);
+    }
+
+    /**
+     * Runs on the caller's thread; used by the scheduled run.
+     *
+     * @param dryRun only report mismatches
+     * @throws AppException with 409 when a run is already in progress on any node, 502 when
+     *                      schedules could not be listed
+     */
+    public ScheduleReconciliationReportDTO reconcile(boolean dryRun) {
+        RunLock lock = acquireRunLock();
+        try {
+            return runReconciliation(dryRun);
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Takes the run lock, then marks the runs a stopped node left RUNNING as FAILED.
+     *
+     * @throws AppException with 409 when another run holds the lock
+     */
+    private RunLock acquireRunLock() {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        RunLock lock = new RunLock(connection);
+        boolean locked = false;
+        try {
+            locked = Boolean.TRUE.equals(lock.jdbcTemplate.queryForObject(TRY_LOCK, Boolean.class, RUN_LOCK_KEY));
+        } finally {
+            if (!locked) {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
+        if (!locked) {
+            throw new AppException("Reconciliation is already running", HttpStatus.CONFLICT);
+        }
+        try {
+            int interrupted = runRepository.failRunningBefore(Instant.now(), INTERRUPTED_ERROR);
+            if (interrupted > 0) {
+                logger.warn("Marked {} interrupted reconciliation runs as failed", interrupted);
+            }
+        } catch (RuntimeException e) {
+            lock.release();
+            throw e;
+        }
+        return lock;
+    }
+
+    /**
+     * The session-level run lock and the connection holding it.
+     */
+    private final class RunLock {
+
+        private final Connection connection;
+        private final JdbcTemplate jdbcTemplate;
+
+        RunLock(Connection connection) {
+            this.connection = connection;
+            this.jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+        }
+
+        void release() {
+            try {
+                jdbcTemplate.queryForObject(UNLOCK, Boolean.class, RUN_LOCK_KEY);
+            } catch (RuntimeException e) {
+                // a connection that cannot run the unlock is broken, and its session ends with it
+                logger.warn("Failed to release the reconciliation lock: {}", e.getMessage());
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
+    }
+
+    private ScheduleReconciliationReportDTO runReconciliation(boolean dryRun) {
+        try {
+            Run run = new Run(dryRun, Instant.now());
+            int partitions = 1 << (4 * prefixLength);
+            logger.info("Schedule reconciliation started ({} partitions, dry run: {})", partitions, dryRun);
+            try {
+                for (int partition = 0; partition < partitions; partition++) {
+                    reconcilePartition(partition, run);
+                }
+            } finally {
+                // wait for the last lookups and repairs
+                inFlight.acquireUninterruptibly(concurrency);
+                inFlight.release(concurrency);
+            }
+
+            ScheduleReconciliationReportDTO report = run.report();
+            logger.info("Schedule reconciliation finished: {}", report);
+            return report;
+        } catch (InternalAwsException e) {
+            throw new AppException("Failed to list schedules: " + e.getMessage(), HttpStatus.BAD_GATEWAY);
+        }
+    }
+
+    private ScheduleReconciliationRunDTO toDto(ScheduleReconciliationRun run) {
+        return ScheduleReconciliationRunDTO.builder()
+                .id(run.getId())
+                .dryRun(run.isDryRun())
+                .status(run.getStatus())
+                .startedAt(run.getStartedAt())
+                .finishedAt(run.getFinishedAt())
+                .report(run.getReport())
+                .error(run.getError())
+                .build();
+    }
+
+    private void reconcilePartition(int partition, Run run) throws InternalAwsException {
+        String prefix = String.format("%0" + prefixLength + "x", partition);
+        Deque<ScheduleSummary> schedules = new ArrayDeque<>(eventBridgeScheduledService.listSchedules(prefix).stream()
+                .filter(schedule -> capsuleIdOf(schedule.name()) != null)
+                .sorted(Comparator.comparing(ScheduleSummary::name))
+                .toList());
+
+        boolean last = partition == (1 << (4 * prefixLength)) - 1;
+        MapSqlParameterSource params = new MapSqlParameterSource("from", lowestId(partition));
+        if (!last) {
+            params.addValue("to", lowestId(partition + 1));
+        }
+        // uuid order in PostgreSQL is byte order, the same as the order of the lower-case names
+        RowCallbackHandler merge = rs -> {
+            UUID capsuleId = rs.getObject("id", UUID.class);
+            Instant openAt = rs.getTimestamp("open_at").toInstant();
+            String name = capsuleId.toString();
+            while (!schedules.isEmpty() && schedules.peekFirst().name().compareTo(name) < 0) {
+                run.orphaned(schedules.pollFirst());
+            }
+            if (!schedules.isEmpty() && schedules.peekFirst().name().equals(name)) {
+                run.matched(capsuleId, openAt, schedules.pollFirst());
+            } else {
+                run.missing(capsuleId, openAt);
+            }
+        };
+        readOnlyTransaction.executeWithoutResult(status ->
+                streamingJdbcTemplate.query(last ? SELECT_ACTIVE_LAST : SELECT_ACTIVE, params, merge));
+        schedules.forEach(run::orphaned);
+    }
+
+    private UUID lowestId(int partition) {
+        String hex = String.format("%0" + prefixLength + "x", partition) + "0".repeat(32 - prefixLength);
+        return new UUID(Long.parseUnsignedLong(hex.substring(0, 16), 16), Long.parseUnsignedLong(hex.substring(16), 16));
+    }
+
+    /**
+     * @return the capsule a schedule was created for, or {@code null} for schedules not named
+     * after a capsule
+     */
+    static UUID capsuleIdOf(String scheduleName) {
+        try {
+            UUID id = UUID.fromString(scheduleName);
+            return id.toString().equals(scheduleName) ? id : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void submit(Run run, Task task) {
+        inFlight.acquireUninterruptibly();
+        try {
+            workers.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    run.failed.incrementAndGet();
+                    logger.warn("Schedule reconciliation step failed: {}", e.getMessage());
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Counters of one run; updated from the merging thread and the workers.
+     */
+    private class Run {
+        private final boolean dryRun;
+        private final Instant startedAt;
+        private final AtomicLong capsulesChecked = new AtomicLong();
+        private final AtomicLong schedulesChecked = new AtomicLong();
+        private final AtomicLong missing = new AtomicLong();
+        private final AtomicLong stale = new AtomicLong();
+        private final AtomicLong orphaned = new AtomicLong();
+        private final AtomicLong repaired = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final Queue<UUID> missingSample = new ConcurrentLinkedQueue<>();
+        private final Queue<UUID> staleSample = new ConcurrentLinkedQueue<>();
+        private final Queue<UUID> orphanedSample = new ConcurrentLinkedQueue<>();
+
+        Run(boolean dryRun, Instant startedAt) {
+            this.dryRun = dryRun;
+            this.startedAt = startedAt;
+        }
+
+        /**
+         * A capsule whose time has come had its schedule deleted by EventBridge after it ran.
+         */
+        void missing(UUID capsuleId, Instant openAt) {
+            capsulesChecked.incrementAndGet();
+            if (!openAt.isAfter(startedAt)) {
+                return;
+            }
+            sample(missing, missingSample, capsuleId);
+            repair(capsuleId);
+        }
+
+        void matched(UUID capsuleId, Instant openAt, ScheduleSummary summary) {
+            capsulesChecked.incrementAndGet();
+            schedulesChecked.incrementAndGet();
+            if (!openAt.isAfter(startedAt)) {
+                return;
+            }
+            if (summary.state() == ScheduleState.DISABLED) {
+                sample(stale, staleSample, capsuleId);
+                repair(capsuleId);
+                return;
+            }
+            submit(this, () -> {
+                GetScheduleResponse schedule;
+                try {
+                    schedule = eventBridgeScheduledService.getSchedule(capsuleId);
+                } catch (NotFoundException e) {
+                    // ran or was removed since it was listed
+                    return;
+                }
+                if (!EventBridgeScheduledService.atExpression(openAt).equals(schedule.scheduleExpression())) {
+                    sample(stale, staleSample, capsuleId);
+                    if (!dryRun) {
+                        // already on a worker
+                        runRepair(capsuleId);
+                    }
+                }
+            });
+        }
+
+        void orphaned(ScheduleSummary summary) {
+            UUID capsuleId = capsuleIdOf(summary.name());
+            schedulesChecked.incrementAndGet();
+            sample(orphaned, orphanedSample, capsuleId);
+            repair(capsuleId);
+        }
+
+        /**
+         * On a worker, as the merging thread is inside the read-only transaction.
+         */
+        private void repair(UUID capsuleId) {
+            if (!dryRun) {
+                submit(this, () -> runRepair(capsuleId));
+            }
+        }
+
+        private void runRepair(UUID capsuleId) {
+            capsuleOutboxRepository.enqueue(capsuleId);
+            repaired.incrementAndGet();
+        }
+
+        private void sample(AtomicLong counter, Queue<UUID> sample, UUID capsuleId) {
+            if (counter.incrementAndGet() <= SAMPLE_SIZE) {
+                sample.add(capsuleId);
+            }
+        }
+
+        ScheduleReconciliationReportDTO report() {
+            return ScheduleReconciliationReportDTO.builder()
+                    .dryRun(dryRun)
+                    .capsulesChecked(capsulesChecked.get())
+                    .schedulesChecked(schedulesChecked.get())
+                    .missing(missing.get())
+                    .stale(stale.get())
+                    .orphaned(orphaned.get())
+                    .repaired(repaired.get())
+                    .failed(failed.get())
+                    .missingSample(List.copyOf(missingSample))
+                    .staleSample(List.copyOf(staleSample))
+                    .orphanedSample(List.copyOf(orphanedSample))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package dev.horbatiuk.timecapsule.service.email;
+
+import dev.horbatiuk.timecapsule.persistence.EmailOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.entities.EmailOutbox;
+import dev.horbatiuk.timecapsule.service.EmailSenderService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.mail.MailSendException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers queued emails on a bounded worker pool. Rows are leased with
+ * {@code FOR UPDATE SKIP LOCKED}, so several nodes can dispatch from the same outbox.
+ * Each worker sends up to {@code batch-size} emails over a single SMTP connection.
+ * A failed send is retried with exponential backoff and jitter until
+ * {@code max-attempts} is reached, after which the row is left in the DEAD state.
+ */
+@Component
+@ConditionalOnProperty(value = "app.email.outbox.dispatcher-enabled", havingValue = "true", matchIfMissing = true)
+public class EmailOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailSenderService emailSenderService;
+    private final ThreadPoolExecutor workers;
+    private final Semaphore inFlight;
+    private final Duration lease;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+    private final Timer sendTimer;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository,
+                                 EmailSenderService emailSenderService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.email.outbox.workers:4}") int workerCount,
+                                 @Value("${app.email.outbox.batch-size:20}") int batchSize,
+                                 @Value("${app.email.outbox.lease:PT2M}") Duration lease,
+                                 @Value("${app.email.outbox.max-attempts:8}") int maxAttempts,
+                                 @Value("${app.email.outbox.initial-backoff:PT30S}") Duration initialBackoff,
+                                 @Value("${app.email.outbox.max-backoff:PT1H}") Duration maxBackoff) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailSenderService = emailSenderService;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.inFlight = new Semaphore(workerCount);
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+                workerCount, workerCount,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerCount),
+                runnable -> new Thread(runnable, "email-outbox-" + threadCounter.incrementAndGet())
+        );
+
+        this.sentCounter = Counter.builder("email.outbox.sent").register(meterRegistry);
+        this.retriedCounter = Counter.builder("email.outbox.retried").register(meterRegistry);
+        this.deadCounter = Counter.builder("email.outbox.dead").register(meterRegistry);
+        this.sendTimer = Timer.builder("email.outbox.send")
+                .description("SMTP delivery latency of one outbox batch")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.outbox.poll-interval:PT1S}")
+    public void dispatch() {
+        int freeWorkers = inFlight.availablePermits();
+        if (freeWorkers == 0 || workers.isShutdown()) {
+            return;
+        }
+        List<EmailOutbox> claimed = emailOutboxRepository.claimBatch(freeWorkers * batchSize, lease.toSeconds());
+        if (claimed.isEmpty()) {
+            return;
+        }
+        logger.debug("Claimed {} emails from the outbox", claimed.size());
+
+        // spread the claimed rows evenly over the free workers
+        int chunkSize = (claimed.size() + freeWorkers - 1) / freeWorkers;
+        for (int from = 0; from < claimed.size(); from += chunkSize) {
+            List<EmailOutbox> chunk = claimed.subList(from, Math.min(from + chunkSize, claimed.size()));
+            inFlight.acquireUninterruptibly();
+            workers.execute(() -> {
+                try {
+                    deliver(chunk);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+    }
+
+    void deliver(List<EmailOutbox> emails) {
+        Map<MimeMessage, EmailOutbox> messages = new LinkedHashMap<>();
+        for (EmailOutbox email : emails) {
+            try {
+                messages.put(emailSenderService.createMessage(email.getRecipient(), email.getSubject(), email.getBody()), email);
+            } catch (Exception e) {
+                handleFailure(email, e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Map<Object, Exception> failures = Map.of();
+        try {
+            sendTimer.record(() -> emailSenderService.sendBatch(new ArrayList<>(messages.keySet())));
+        } catch (MailSendException e) {
+            failures = e.getFailedMessages();
+        } catch (RuntimeException e) {
+            failures = new HashMap<>();
+            for (MimeMessage message : messages.keySet()) {
+                failures.put(message, e);
+            }
+        }
+
+        for (Map.Entry<MimeMessage, EmailOutbox> entry : messages.entrySet()) {
+            EmailOutbox email = entry.getValue();
+            Exception failure = failures.get(entry.getKey());
+            if (failure != null) {
+                handleFailure(email, failure);
+                continue;
+            }
+            emailOutboxRepository.markSent(email.getId());
+            sentCounter.increment();
+            logger.info("Email {} delivered to: {}", email.getId(), email.getRecipient());
+        }
+    }
+
+    private void handleFailure(EmailOutbox email, Exception e) {
+        String error = truncate(e.getMessage());
+        if (email.getAttempts() >= maxAttempts) {
+            emailOutboxRepository.markDead(email.getId(), error);
+            deadCounter.increment();
+            logger.error("Email {} to {} moved to dead letters after {} attempts: {}",
+                    email.getId(), email.getRecipient(), email.getAttempts(), error);
+            return;
+        }
+        long delaySeconds = backoffSeconds(email.getAttempts());
+        emailOutboxRepository.scheduleRetry(email.getId(), delaySeconds, error);
+        retriedCounter.increment();
+        logger.warn("Email {} to {} failed (attempt {}), retrying in {}s: {}",
+                email.getId(), email.getRecipient(), email.getAttempts(), delaySeconds, error);
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half of the delay is fixed, the other half random.
+     */
+    long backoffSeconds(int attempt) {
+        long base = initialBackoff.toSeconds() << Math.min(Math.max(attempt - 1, 0), 20);
+        long capped = Math.min(base, maxBackoff.toSeconds());
+        long half = Math.max(capped / 2, 1);
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Stopping email outbox dispatcher");
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                // leased rows are picked up again once their lease runs out
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
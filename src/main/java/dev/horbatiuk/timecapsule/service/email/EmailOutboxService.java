@@ -0,0 +1,38 @@
+package dev.horbatiuk.timecapsule.service.email;
+
+import dev.horbatiuk.timecapsule.persistence.EmailOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.entities.EmailOutbox;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Service
+@RequiredArgsConstructor
+public class EmailOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxService.class);
+
+    private final EmailOutboxRepository emailOutboxRepository;
+
+    /**
+     * Stores a rendered email for delivery by {@link EmailOutboxDispatcher}. Joins the caller's
+     * transaction if there is one, so the email is only sent if the surrounding work commits.
+     */
+    @Transactional
+    public EmailOutbox enqueue(String recipient, String subject, String htmlBody) {
+        Instant now = Instant.now();
+        EmailOutbox email = emailOutboxRepository.save(EmailOutbox.builder()
+                .recipient(recipient)
+                .subject(subject)
+                .body(htmlBody)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+        logger.info("Email {} queued for: {}", email.getId(), recipient);
+        return email;
+    }
+}
@@ -0,0 +1,70 @@
+package dev.horbatiuk.timecapsule.service.email;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders email bodies with a template engine of its own, independent of
+ * {@code spring.thymeleaf.cache}: templates are parsed once and kept for the lifetime of
+ * the application, and SpEL expressions are compiled to bytecode after a few evaluations.
+ * Each render then only evaluates the per-recipient expressions; static markup, including
+ * the {@code <style>} block, is written out from the cached template as is.
+ */
+@Component
+public class EmailTemplateRenderer {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailTemplateRenderer.class);
+
+    static final String VERIFICATION_TEMPLATE = "email/verification/verification-email";
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    private final SpringTemplateEngine templateEngine;
+    private final List<String> preloadTemplates;
+
+    public EmailTemplateRenderer(@Value("${app.email.templates.preload:" + VERIFICATION_TEMPLATE + "}") List<String> preloadTemplates) {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resolver.setCacheable(true);
+
+        this.templateEngine = new SpringTemplateEngine();
+        this.templateEngine.setTemplateResolver(resolver);
+        this.templateEngine.setEnableSpringELCompiler(true);
+        this.preloadTemplates = preloadTemplates;
+    }
+
+    /**
+     * Parses the configured templates at startup, so a broken template fails the deployment
+     * instead of the first email, and the first recipient does not pay for parsing.
+     */
+    @PostConstruct
+    public void preload() {
+        for (String template : preloadTemplates) {
+            render(template, Map.of());
+        }
+        logger.info("Preloaded {} email templates", preloadTemplates.size());
+    }
+
+    public String render(String template, Map<String, Object> variables) {
+        Context context = new Context();
+        context.setVariables(variables);
+        StringWriter writer = new StringWriter(INITIAL_BUFFER_SIZE);
+        templateEngine.process(template, context, writer);
+        return writer.toString();
+    }
+}
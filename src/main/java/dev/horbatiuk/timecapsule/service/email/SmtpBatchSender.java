@@ -0,0 +1,197 @@
+package dev.horbatiuk.timecapsule.service.email;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends a list of messages over one SMTP connection instead of opening a new connection
+ * (and repeating the STARTTLS handshake) per message. The connection is recycled after
+ * {@code messages-per-connection} messages and re-established when the server drops it.
+ * Sending is paced to {@code rate-limit} messages per second across all callers.
+ */
+@Component
+public class SmtpBatchSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmtpBatchSender.class);
+
+    private final JavaMailSenderImpl mailSender;
+    private final int messagesPerConnection;
+    private final long permitIntervalNanos;
+    private final AtomicLong nextPermitAt = new AtomicLong(System.nanoTime());
+    private final Counter connectionCounter;
+    private final Counter reconnectCounter;
+
+    public SmtpBatchSender(JavaMailSenderImpl mailSender,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.email.smtp.messages-per-connection:100}") int messagesPerConnection,
+                           @Value("${app.email.smtp.rate-limit:0}") double messagesPerSecond) {
+        this.mailSender = mailSender;
+        this.messagesPerConnection = Math.max(messagesPerConnection, 1);
+        this.permitIntervalNanos = messagesPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / messagesPerSecond) : 0;
+
+        this.connectionCounter = Counter.builder("email.smtp.connections")
+                .description("SMTP connections opened for batch sending")
+                .register(meterRegistry);
+        this.reconnectCounter = Counter.builder("email.smtp.reconnects")
+                .description("SMTP connections re-established after a send failure")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends every message, continuing past individual failures.
+     *
+     * @throws MailSendException listing the messages that could not be sent, like
+     *                           {@link JavaMailSenderImpl#send(MimeMessage...)} does
+     */
+    public void send(List<MimeMessage> messages) {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        Transport transport = null;
+        int sentOnConnection = 0;
+        try {
+            for (int i = 0; i < messages.size(); i++) {
+                MimeMessage message = messages.get(i);
+                if (!acquirePermit()) {
+                    failRemaining(messages, i, new MessagingException("Interrupted while waiting for the send rate limit"), failedMessages);
+                    break;
+                }
+                if (transport == null || sentOnConnection >= messagesPerConnection) {
+                    closeQuietly(transport);
+                    transport = null;
+                    try {
+                        transport = connect();
+                        sentOnConnection = 0;
+                    } catch (MessagingException e) {
+                        logger.error("Could not connect to SMTP server {}:{}", mailSender.getHost(), mailSender.getPort(), e);
+                        failRemaining(messages, i, e, failedMessages);
+                        break;
+                    }
+                }
+                try {
+                    deliver(transport, message);
+                    sentOnConnection++;
+                    continue;
+                } catch (MessagingException e) {
+                    if (transport.isConnected()) {
+                        // rejected by a live server, e.g. an invalid recipient
+                        failedMessages.put(message, e);
+                        continue;
+                    }
+                    logger.warn("SMTP connection lost, reconnecting: {}", e.getMessage());
+                }
+
+                // the server dropped the connection: retry the message once on a fresh one
+                closeQuietly(transport);
+                transport = null;
+                reconnectCounter.increment();
+                try {
+                    transport = connect();
+                    sentOnConnection = 0;
+                } catch (MessagingException e) {
+                    logger.error("Could not reconnect to SMTP server {}:{}", mailSender.getHost(), mailSender.getPort(), e);
+                    failRemaining(messages, i, e, failedMessages);
+                    break;
+                }
+                try {
+                    deliver(transport, message);
+                    sentOnConnection++;
+                } catch (MessagingException e) {
+                    failedMessages.put(message, e);
+                    if (!transport.isConnected()) {
+                        closeQuietly(transport);
+                        transport = null;
+                    }
+                }
+            }
+        } finally {
+            closeQuietly(transport);
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    private void deliver(Transport transport, MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        String messageId = message.getMessageID();
+        message.saveChanges();
+        if (messageId != null) {
+            // saveChanges() generates a new Message-ID, keep the one set by the caller
+            message.setHeader("Message-ID", messageId);
+        }
+        transport.sendMessage(message, message.getAllRecipients());
+    }
+
+    private Transport connect() throws MessagingException {
+        String username = mailSender.getUsername();
+        String password = mailSender.getPassword();
+        if ("".equals(username)) {
+            username = null;
+            password = null;
+        }
+        Transport transport = mailSender.getSession().getTransport(
+                mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp");
+        transport.connect(mailSender.getHost(), mailSender.getPort(), username, password);
+        connectionCounter.increment();
+        return transport;
+    }
+
+    /**
+     * Reserves the next send slot and waits for it. Slots are spaced {@code 1 / rate-limit}
+     * seconds apart and shared by all threads, so the limit holds across parallel workers.
+     */
+    private boolean acquirePermit() {
+        if (permitIntervalNanos == 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        long slot = Math.max(nextPermitAt.getAndAccumulate(now, (next, n) -> Math.max(next, n) + permitIntervalNanos), now);
+        long waitNanos = slot - now;
+        if (waitNanos <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void failRemaining(List<MimeMessage> messages, int from, Exception cause,
+                                      Map<Object, Exception> failedMessages) {
+        for (int i = from; i < messages.size(); i++) {
+            failedMessages.put(messages.get(i), cause);
+        }
+    }
+
+    private static void closeQuietly(Transport transport) {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            logger.debug("Failed to close SMTP connection", e);
+        }
+    }
+}
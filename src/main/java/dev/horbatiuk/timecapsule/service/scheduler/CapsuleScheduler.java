@@ -0,0 +1,28 @@
+package dev.horbatiuk.timecapsule.service.scheduler;
+
+import dev.horbatiuk.timecapsule.exception.SchedulingException;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Opens active capsules when their time comes. The backend is chosen with
+ * {@code app.capsule.scheduler.backend}: {@code eventbridge} (default) keeps one AWS EventBridge
+ * schedule per capsule, {@code eventbridge-coalesced} one per opening minute, see
+ * {@link dev.horbatiuk.timecapsule.service.aws.CoalescedEventBridgeCapsuleScheduler}, and
+ * {@code embedded} opens capsules from this application, see {@link EmbeddedCapsuleScheduler}.
+ * <p>
+ * Both methods may be called repeatedly with the same arguments.
+ */
+public interface CapsuleScheduler {
+
+    /**
+     * Makes sure the capsule opens at {@code openAt}, replacing an earlier time if there was one.
+     */
+    void schedule(UUID capsuleId, Instant openAt) throws SchedulingException;
+
+    /**
+     * Makes sure the capsule does not open; does nothing if it was not scheduled.
+     */
+    void cancel(UUID capsuleId) throws SchedulingException;
+}
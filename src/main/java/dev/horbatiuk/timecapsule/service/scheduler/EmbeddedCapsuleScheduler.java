@@ -0,0 +1,285 @@
+package dev.horbatiuk.timecapsule.service.scheduler;
+
+import dev.horbatiuk.timecapsule.exception.NotFoundException;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
+import dev.horbatiuk.timecapsule.service.CapsuleService;
+import dev.horbatiuk.timecapsule.service.EmailSenderService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens capsules from this application instead of one EventBridge schedule per capsule. The
+ * capsule row is the schedule, so {@link #schedule} and {@link #cancel} only have to drop
+ * what this node holds in memory.
+ * <p>
+ * Every {@code poll-interval} the node claims ACTIVE capsules due within {@code horizon} with
+ * {@code FOR UPDATE SKIP LOCKED}, stamps them with a {@code lease}, and puts them into a
+ * {@link TimingWheel}. A ticker advances the wheel every {@code tick} and hands due capsules
+ * to a worker pool, so a capsule opens within about one tick of {@code openAt} however many
+ * are waiting in the table. Opening sets {@code opened_at} and queues the email to the owner
+ * in one transaction. If that fails, or the node dies, the lease keeps other nodes away
+ * until it runs out, after which the capsule is claimed again.
+ */
+@Component
+@ConditionalOnProperty(value = "app.capsule.scheduler.backend", havingValue = "embedded")
+public class EmbeddedCapsuleScheduler implements CapsuleScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedCapsuleScheduler.class);
+
+    private static final String CLAIM_DUE = """
+            UPDATE capsule SET opening_lease_until = now() + make_interval(secs => :leaseSeconds)
+            WHERE id IN (
+                SELECT id FROM capsule
+                WHERE status = 'ACTIVE'
+                  AND opened_at IS NULL
+                  AND open_at <= :until
+                  AND (opening_lease_until IS NULL OR opening_lease_until < now())
+                ORDER BY open_at
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING id, open_at
+            """;
+    private static final String OPEN = """
+            UPDATE capsule SET opened_at = now(), opening_lease_until = NULL
+            WHERE id = :id AND status = 'ACTIVE' AND opened_at IS NULL AND open_at <= :now
+            """;
+    private static final String RESCHEDULE = """
+            UPDATE capsule SET opening_lease_until = NULL,
+                opened_at = CASE WHEN open_at > :now THEN NULL ELSE opened_at END
+            WHERE id = :id
+            """;
+    private static final String RELEASE = "UPDATE capsule SET opening_lease_until = NULL WHERE id IN (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CapsuleService capsuleService;
+    private final EmailSenderService emailSenderService;
+    private final TimingWheel<UUID> wheel;
+    private final ScheduledExecutorService ticker;
+    private final ThreadPoolExecutor workers;
+    private final Duration horizon;
+    private final Duration lease;
+    private final long tickMillis;
+    private final int batchSize;
+    private final int maxPending;
+    private final Counter openedCounter;
+    private final Counter failedCounter;
+
+    public EmbeddedCapsuleScheduler(NamedParameterJdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    CapsuleService capsuleService,
+                                    EmailSenderService emailSenderService,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.capsule.scheduler.embedded.horizon:PT2M}") Duration horizon,
+                                    @Value("${app.capsule.scheduler.embedded.lease:PT5M}") Duration lease,
+                                    @Value("${app.capsule.scheduler.embedded.tick:100ms}") Duration tick,
+                                    @Value("${app.capsule.scheduler.embedded.wheel-size:4096}") int wheelSize,
+                                    @Value("${app.capsule.scheduler.embedded.batch-size:1000}") int batchSize,
+                                    @Value("${app.capsule.scheduler.embedded.max-pending:200000}") int maxPending,
+                                    @Value("${app.capsule.scheduler.embedded.workers:4}") int workerCount) {
+        if (lease.compareTo(horizon) <= 0) {
+            // a capsule must still be leased when its time comes, or another node could claim it too
+            throw new IllegalArgumentException("app.capsule.scheduler.embedded.lease must be longer than the horizon");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.capsuleService = capsuleService;
+        this.emailSenderService = emailSenderService;
+        this.horizon = horizon;
+        this.lease = lease;
+        this.tickMillis = tick.toMillis();
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "capsule-scheduler-tick"));
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+                workerCount, workerCount,
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "capsule-opener-" + threadCounter.incrementAndGet())
+        );
+
+        this.openedCounter = Counter.builder("capsule.scheduler.opened").register(meterRegistry);
+        this.failedCounter = Counter.builder("capsule.scheduler.open.failed").register(meterRegistry);
+        Gauge.builder("capsule.scheduler.pending", wheel, TimingWheel::size)
+                .description("Capsules claimed by this node and waiting in the timing wheel")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        logger.info("Embedded capsule scheduler started: horizon {}, lease {}, tick {}ms", horizon, lease, tickMillis);
+    }
+
+    /**
+     * Reads the new {@code openAt} on the next poll. A capsule opened earlier opens again
+     * when it is moved into the future.
+     */
+    @Override
+    public void schedule(UUID capsuleId, Instant openAt) {
+        wheel.remove(capsuleId);
+        jdbcTemplate.update(RESCHEDULE, new MapSqlParameterSource("id", capsuleId)
+                .addValue("now", Timestamp.from(Instant.now())));
+    }
+
+    /**
+     * A capsule that is not ACTIVE is never opened, so only the copy in memory is dropped.
+     */
+    @Override
+    public void cancel(UUID capsuleId) {
+        wheel.remove(capsuleId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.capsule.scheduler.embedded.poll-interval:PT5S}")
+    public void poll() {
+        if (workers.isShutdown()) {
+            return;
+        }
+        int claimed = claimDue(Instant.now());
+        if (claimed > 0) {
+            logger.debug("Claimed {} due capsules, {} waiting", claimed, wheel.size());
+        }
+    }
+
+    /**
+     * Claims capsules due before {@code now + horizon}, batch by batch, until none are left
+     * or {@code max-pending} capsules are waiting in the wheel.
+     */
+    int claimDue(Instant now) {
+        Timestamp until = Timestamp.from(now.plus(horizon));
+        int total = 0;
+        while (true) {
+            int limit = Math.min(batchSize, maxPending - wheel.size());
+            if (limit <= 0) {
+                logger.warn("{} capsules waiting to open, not claiming more", wheel.size());
+                return total;
+            }
+            MapSqlParameterSource params = new MapSqlParameterSource("until", until)
+                    .addValue("limit", limit)
+                    .addValue("leaseSeconds", lease.toSeconds());
+            List<DueCapsule> batch = transactionTemplate.execute(status -> jdbcTemplate.query(CLAIM_DUE, params,
+                    (rs, rowNum) -> new DueCapsule(rs.getObject("id", UUID.class), rs.getTimestamp("open_at").toInstant())));
+            if (batch == null || batch.isEmpty()) {
+                return total;
+            }
+            // rounded up, so the capsule is never found not yet due
+            batch.forEach(due -> wheel.add(due.id(), due.openAt().plusNanos(999_999).toEpochMilli()));
+            total += batch.size();
+            if (batch.size() < limit) {
+                return total;
+            }
+        }
+    }
+
+    private void tick() {
+        try {
+            for (UUID capsuleId : wheel.advance(System.currentTimeMillis())) {
+                workers.execute(() -> open(capsuleId, Instant.now()));
+            }
+        } catch (RuntimeException e) {
+            // an exception would cancel the periodic task
+            logger.error("Capsule scheduler tick failed", e);
+        }
+    }
+
+    /**
+     * @return whether the capsule was opened; {@code false} if it was changed since it was
+     * claimed or opening failed
+     */
+    boolean open(UUID capsuleId, Instant now) {
+        try {
+            Boolean opened = transactionTemplate.execute(status -> {
+                int updated = jdbcTemplate.update(OPEN, new MapSqlParameterSource("id", capsuleId)
+                        .addValue("now", Timestamp.from(now)));
+                if (updated == 0) {
+                    // deactivated, moved or already opened; the next poll picks up what is still due
+                    jdbcTemplate.update(RELEASE, Map.of("ids", List.of(capsuleId)));
+                    return false;
+                }
+                emailSenderService.sendCapsuleOpenedEmail(findCapsule(capsuleId));
+                return true;
+            });
+            if (Boolean.TRUE.equals(opened)) {
+                openedCounter.increment();
+                logger.info("Capsule {} opened", capsuleId);
+                return true;
+            }
+            logger.debug("Capsule {} changed since it was claimed, not opening", capsuleId);
+            return false;
+        } catch (Exception e) {
+            failedCounter.increment();
+            logger.error("Failed to open capsule {}, retrying after the lease runs out", capsuleId, e);
+            return false;
+        }
+    }
+
+    private CapsuleResponseDTO findCapsule(UUID capsuleId) {
+        try {
+            return capsuleService.findCapsuleById(capsuleId);
+        } catch (NotFoundException e) {
+            // the row was updated a moment ago in this transaction
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Stopping embedded capsule scheduler");
+        ticker.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        // let other nodes take over now instead of when the leases run out
+        List<UUID> pending = wheel.drain();
+        try {
+            for (int from = 0; from < pending.size(); from += batchSize) {
+                List<UUID> ids = pending.subList(from, Math.min(from + batchSize, pending.size()));
+                jdbcTemplate.update(RELEASE, Map.of("ids", ids));
+            }
+            if (!pending.isEmpty()) {
+                logger.info("Released {} claimed capsules", pending.size());
+            }
+        } catch (Exception e) {
+            logger.warn("Could not release {} claimed capsules, they are claimed again after the lease", pending.size(), e);
+        }
+    }
+
+    record DueCapsule(UUID id, Instant openAt) {
+    }
+}
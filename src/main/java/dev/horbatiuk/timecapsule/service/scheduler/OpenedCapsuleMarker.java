@@ -0,0 +1,77 @@
+package dev.horbatiuk.timecapsule.service.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Sets {@code opened_at} under the EventBridge backends, where capsules are opened by the
+ * schedule's target and the application never sees it happen. An ACTIVE capsule whose
+ * {@code openAt} passed more than {@code after} ago is marked opened, so it leaves
+ * {@code idx_capsule_due} and is not opened a second time once the backend is switched to
+ * {@link EmbeddedCapsuleScheduler}.
+ */
+@Component
+@ConditionalOnExpression("'${app.capsule.scheduler.backend:eventbridge}' != 'embedded'")
+public class OpenedCapsuleMarker {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenedCapsuleMarker.class);
+
+    private static final String MARK_OPENED = """
+            UPDATE capsule SET opened_at = open_at
+            WHERE id IN (
+                SELECT id FROM capsule
+                WHERE status = 'ACTIVE'
+                  AND opened_at IS NULL
+                  AND open_at < :before
+                ORDER BY open_at
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            )
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final Duration after;
+    private final int batchSize;
+
+    public OpenedCapsuleMarker(NamedParameterJdbcTemplate jdbcTemplate,
+                               @Value("${app.capsule.scheduler.mark-opened.after:PT1H}") Duration after,
+                               @Value("${app.capsule.scheduler.mark-opened.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.after = after;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.capsule.scheduler.mark-opened.interval:PT15M}",
+            initialDelayString = "${app.capsule.scheduler.mark-opened.initial-delay:PT5M}"
+    )
+    public void markOpenedCapsules() {
+        int marked = markOpened(Instant.now());
+        if (marked > 0) {
+            logger.info("Marked {} capsules opened by EventBridge", marked);
+        }
+    }
+
+    int markOpened(Instant now) {
+        MapSqlParameterSource params = new MapSqlParameterSource("before", Timestamp.from(now.minus(after)))
+                .addValue("limit", batchSize);
+        int total = 0;
+        while (true) {
+            int marked = jdbcTemplate.update(MARK_OPENED, params);
+            total += marked;
+            if (marked < batchSize) {
+                return total;
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package dev.horbatiuk.timecapsule.service.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timing wheel: {@code size} buckets of {@code tickMillis} each. Adding and removing a
+ * key is O(1), and advancing the clock only looks at the buckets of the ticks that passed, so
+ * the cost of a tick does not grow with the number of pending keys. A key is due no earlier
+ * than its deadline and at most one tick after it, assuming {@link #advance} is called at
+ * least once per tick.
+ * <p>
+ * Deadlines further away than one turn of the wheel are allowed; such keys stay in their
+ * bucket until the turn they are due in. Thread-safe.
+ */
+public class TimingWheel<K> {
+
+    private final long tickMillis;
+    private final ArrayDeque<K>[] buckets;
+    private final Map<K, Long> deadlines = new HashMap<>();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int size, long nowMillis) {
+        if (tickMillis <= 0 || size <= 0) {
+            throw new IllegalArgumentException("tickMillis and size must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedules {@code key} at {@code deadlineMillis}, replacing its previous deadline. A
+     * deadline that has already passed becomes due on the next tick.
+     *
+     * @return {@code false} if the key was already scheduled for the same tick
+     */
+    public synchronized boolean add(K key, long deadlineMillis) {
+        long tick = Math.max(Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis), currentTick + 1);
+        Long previous = deadlines.put(key, tick);
+        if (previous != null && previous == tick) {
+            return false;
+        }
+        // an entry left in the old bucket is skipped once it no longer matches the deadline
+        buckets[bucket(tick)].add(key);
+        return true;
+    }
+
+    public synchronized boolean remove(K key) {
+        return deadlines.remove(key) != null;
+    }
+
+    public synchronized int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Moves the clock to {@code nowMillis}.
+     *
+     * @return the keys that became due, in no particular order
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        if (targetTick <= currentTick) {
+            return List.of();
+        }
+        List<K> due = new ArrayList<>();
+        // after a long pause every bucket is visited once instead of once per missed tick
+        long lastTick = Math.min(targetTick, currentTick + buckets.length);
+        for (long tick = currentTick + 1; tick <= lastTick; tick++) {
+            int index = bucket(tick);
+            Iterator<K> entries = buckets[index].iterator();
+            while (entries.hasNext()) {
+                K key = entries.next();
+                Long deadline = deadlines.get(key);
+                if (deadline == null || bucket(deadline) != index) {
+                    entries.remove();
+                } else if (deadline <= targetTick) {
+                    deadlines.remove(key);
+                    entries.remove();
+                    due.add(key);
+                }
+            }
+        }
+        currentTick = targetTick;
+        return due;
+    }
+
+    /**
+     * Empties the wheel.
+     *
+     * @return the keys that were still pending
+     */
+    public synchronized List<K> drain() {
+        List<K> pending = new ArrayList<>(deadlines.keySet());
+        deadlines.clear();
+        for (ArrayDeque<K> bucket : buckets) {
+            bucket.clear();
+        }
+        return pending;
+    }
+
+    private int bucket(long tick) {
+        return (int) Math.floorMod(tick, (long) buckets.length);
+    }
+}
@@ -2,20 +2,22 @@ package dev.horbatiuk.timecapsule.service.security;
 
 import dev.horbatiuk.timecapsule.exception.ConflictException;
 import dev.horbatiuk.timecapsule.exception.NotFoundException;
+import dev.horbatiuk.timecapsule.exception.controller.ServiceOverloadedException;
 import dev.horbatiuk.timecapsule.persistence.UserRepository;
 import dev.horbatiuk.timecapsule.persistence.dto.security.AuthenticationRequestDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.security.AuthenticationResponseDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.security.RegisterRequestDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.user.UserDTO;
-import dev.horbatiuk.timecapsule.persistence.entities.RefreshToken;
 import dev.horbatiuk.timecapsule.persistence.entities.User;
 import dev.horbatiuk.timecapsule.persistence.entities.VerificationToken;
 import dev.horbatiuk.timecapsule.persistence.entities.enums.UserRole;
 import dev.horbatiuk.timecapsule.security.CustomUserDetails;
+import dev.horbatiuk.timecapsule.security.UserPrincipalCache;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -40,6 +42,7 @@ public class AuthService {
     private final AuthenticationManager authenticationManager;
     private final RefreshTokenService refreshTokenService;
     private final UserVerificationService userVerificationService;
+    private final UserPrincipalCache userPrincipalCache;
 
     public AuthenticationResponseDTO register(RegisterRequestDTO dto) throws ConflictException {
         logger.info("Registering new user with email: {}", dto.getEmail());
@@ -73,9 +76,19 @@ public class AuthService {
     public AuthenticationResponseDTO authenticate(AuthenticationRequestDTO request) throws NotFoundException {
         logger.info("Authenticating user: {}", request.getEmail());
 
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
-        );
+        try {
+            authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
+            );
+        } catch (InternalAuthenticationServiceException e) {
+            // The provider wraps anything thrown while loading the user, including the
+            // timing-attack hash for unknown emails; a saturated hashing pool must still be a 503.
+            if (e.getCause() instanceof ServiceOverloadedException overloaded) {
+                logger.warn("Authentication refused, password hashing is saturated: {}", request.getEmail());
+                throw overloaded;
+            }
+            throw e;
+        }
 
         User user = userRepository.findUserByEmail(request.getEmail())
                 .orElseThrow(() -> {
@@ -90,21 +103,21 @@ public class AuthService {
 
     private AuthenticationResponseDTO generateTokens(User user) {
         String jwt = jwtService.generateToken(new CustomUserDetails(user));
-        RefreshToken refresh = refreshTokenService.createOrUpdateRefreshToken(user.getEmail());
+        String refresh = refreshTokenService.createOrUpdateRefreshToken(user.getId());
         return AuthenticationResponseDTO.builder()
                 .token(jwt)
-                .refreshToken(refresh.getToken())
+                .refreshToken(refresh)
                 .build();
     }
 
     public UserDTO getUserInfo(String email) throws NotFoundException {
         logger.debug("Fetching user info for: {}", email);
-        User user = userRepository.findUserByEmail(email)
+        CustomUserDetails user = userPrincipalCache.find(email)
                 .orElseThrow(() -> {
                     logger.warn("User info fetch failed: not found - {}", email);
                     return new NotFoundException("User not found");
                 });
         logger.info("User info retrieved for: {}", email);
-        return new UserDTO(user.getId(), user.getEmail(), user.getName());
+        return new UserDTO(user.getId(), user.getEmail(), user.getUsername());
     }
 }
@@ -1,38 +1,96 @@
 package dev.horbatiuk.timecapsule.service.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.UserRole;
 import dev.horbatiuk.timecapsule.security.CustomUserDetails;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
-import java.security.Key;
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtService {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtService.class);
 
+    static final String USER_ID_CLAIM = "uid";
+    static final String NAME_CLAIM = "name";
+    static final String ROLES_CLAIM = "roles";
+    static final String VERIFIED_CLAIM = "verified";
+    static final String TOKEN_VERSION_CLAIM = "ver";
+
     @Value("${jwt.secret.key}")
     public String SECRET;
 
     @Value("${jwt.secret.access-token-expiration-ms}")
     private long accessTokenExpiration;
 
+    @Value("${jwt.verification-cache.max-size:10000}")
+    private long verificationCacheMaxSize = 10_000;
+
+    private SecretKey signKey;
+    private JwtParser parser;
+    private Cache<String, ParsedToken> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        logger.debug("Decoding JWT signing key");
+        signKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        parser = Jwts.parser()
+                .verifyWith(signKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verificationCacheMaxSize)
+                .expireAfter(new Expiry<String, ParsedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, ParsedToken value, long currentTime) {
+                        return remainingLifetimeNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, ParsedToken value, long currentTime, long currentDuration) {
+                        return remainingLifetimeNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, ParsedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        logger.info("JWT verification pipeline initialized, cache size: {}", verificationCacheMaxSize);
+    }
+
     public String generateToken(CustomUserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("roles", userDetails.getAuthorities()
+        claims.put(ROLES_CLAIM, userDetails.getAuthorities()
                 .stream()
                 .map(GrantedAuthority::getAuthority)
                 .toList());
+        if (userDetails.getId() != null) {
+            claims.put(USER_ID_CLAIM, userDetails.getId().toString());
+            claims.put(NAME_CLAIM, userDetails.getUsername());
+            claims.put(VERIFIED_CLAIM, userDetails.isVerified());
+            claims.put(TOKEN_VERSION_CLAIM, userDetails.getTokenVersion());
+        }
 
         String email = userDetails.getEmail();
         logger.debug("Generating JWT token for user: {}", email);
@@ -47,64 +105,69 @@ public class JwtService {
 
         logger.debug("Creating JWT with expiration at {}", expiry);
         return Jwts.builder()
-                .setClaims(claims)
-                .setSubject(username)
-                .setIssuedAt(now)
-                .setExpiration(expiry)
-                .signWith(getSignKey(), SignatureAlgorithm.HS256)
+                .claims(claims)
+                .subject(username)
+                .issuedAt(now)
+                .expiration(expiry)
+                .signWith(signKey, Jwts.SIG.HS256)
                 .compact();
     }
 
-    private Key getSignKey() {
-        logger.debug("Decoding JWT signing key");
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET);
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
-
-    public String extractUsername(String token) {
-        String username = extractClaim(token, Claims::getSubject);
-        logger.debug("Extracted username from token: {}", username);
-        return username;
-    }
-
-    public Date extractExpiration(String token) {
-        Date expiration = extractClaim(token, Claims::getExpiration);
-        logger.debug("Extracted expiration from token: {}", expiration);
-        return expiration;
-    }
+    /**
+     * Verifies the token signature and expiration exactly once. Tokens that were already
+     * verified are served from a bounded cache keyed by the token digest until they expire.
+     *
+     * @throws ExpiredJwtException if the token is expired
+     * @throws JwtException        if the token is malformed or its signature is invalid
+     */
+    public ParsedToken parseToken(String token) {
+        String digest = TokenDigest.sha256Hex(token);
+        ParsedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && !cached.isExpired(Instant.now())) {
+            logger.debug("JWT served from verification cache for user: {}", cached.subject());
+            return cached;
+        }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        ParsedToken parsed = new ParsedToken(
+                claims.getSubject(),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration().toInstant(),
+                toUserDetails(claims)
+        );
+        verifiedTokens.put(digest, parsed);
+        logger.debug("JWT verified for user: {}", parsed.subject());
+        return parsed;
     }
 
-    private Claims extractAllClaims(String token) {
-        try {
-            logger.debug("Parsing JWT claims");
-            return Jwts.parser()
-                    .setSigningKey(getSignKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-        } catch (ExpiredJwtException e) {
-            logger.warn("JWT token expired: {}", token);
-            throw new JwtException("JWT token expired");
-        } catch (JwtException e) {
-            logger.warn("Invalid JWT token: {}", token);
-            throw new JwtException("Invalid JWT token");
+    /**
+     * Builds the principal from the claims of a verified token without touching the database.
+     * Returns {@code null} for tokens issued before the identity claims were introduced,
+     * so the caller can fall back to loading the user.
+     */
+    private CustomUserDetails toUserDetails(Claims claims) {
+        String userId = claims.get(USER_ID_CLAIM, String.class);
+        Number tokenVersion = claims.get(TOKEN_VERSION_CLAIM, Number.class);
+        if (userId == null || tokenVersion == null) {
+            logger.debug("Token for {} carries no identity claims", claims.getSubject());
+            return null;
         }
+        Collection<?> roles = claims.get(ROLES_CLAIM, Collection.class);
+        Set<UserRole> userRoles = roles == null ? Set.of() : roles.stream()
+                .map(role -> UserRole.valueOf(role.toString()))
+                .collect(Collectors.toUnmodifiableSet());
+        return new CustomUserDetails(
+                UUID.fromString(userId),
+                claims.getSubject(),
+                claims.get(NAME_CLAIM, String.class),
+                null,
+                userRoles,
+                Boolean.TRUE.equals(claims.get(VERIFIED_CLAIM, Boolean.class)),
+                tokenVersion.longValue()
+        );
     }
 
-    private Boolean isTokenExpired(String token) {
-        boolean expired = extractExpiration(token).before(new Date());
-        logger.debug("Token expiration check: expired={}", expired);
-        return expired;
-    }
-
-    public Boolean validateToken(String token, CustomUserDetails userDetails) {
-        String username = extractUsername(token);
-        boolean valid = username.equals(userDetails.getEmail()) && !isTokenExpired(token);
-        logger.info("JWT validation result for user {}: {}", username, valid ? "valid" : "invalid");
-        return valid;
+    private static long remainingLifetimeNanos(ParsedToken token) {
+        return Math.max(0, Duration.between(Instant.now(), token.expiresAt()).toNanos());
     }
 }
@@ -0,0 +1,24 @@
+package dev.horbatiuk.timecapsule.service.security;
+
+import dev.horbatiuk.timecapsule.security.CustomUserDetails;
+
+import java.time.Instant;
+
+/**
+ * Result of verifying an access token once. Shared by the authentication filter and,
+ * through the request attribute it is stored under, by controllers.
+ *
+ * @param principal user built from the token claims, or {@code null} for tokens
+ *                  issued without identity claims
+ */
+public record ParsedToken(
+        String subject,
+        Instant issuedAt,
+        Instant expiresAt,
+        CustomUserDetails principal
+) {
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
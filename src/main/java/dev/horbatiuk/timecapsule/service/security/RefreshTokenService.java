@@ -15,7 +15,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -27,45 +26,34 @@ public class RefreshTokenService {
     private final RefreshTokenRepository refreshTokenRepository;
     private final UserRepository userRepository;
 
+    /**
+     * Issues a new refresh token for the user, replacing any previous one, in a single
+     * {@code INSERT ... ON CONFLICT} statement. Returns the raw token; only its hash is stored.
+     */
     @Transactional
-    public RefreshToken createOrUpdateRefreshToken(String email) {
-        logger.info("Creating or updating refresh token for user: {}", email);
+    public String createOrUpdateRefreshToken(UUID userId) {
+        logger.info("Creating or updating refresh token for user: {}", userId);
 
-        User user = userRepository.findUserByEmail(email)
-                .orElseThrow(() -> {
-                    logger.warn("User not found while generating refresh token: {}", email);
-                    return new AppException("User not found", HttpStatus.NOT_FOUND);
-                });
-
-        Optional<RefreshToken> existingTokenOpt = refreshTokenRepository.findByUser(user);
-        RefreshToken refreshToken;
-
-        if (existingTokenOpt.isPresent()) {
-            refreshToken = existingTokenOpt.get();
-            refreshToken.setToken(UUID.randomUUID().toString());
-            refreshToken.setExpiryDate(Instant.now().plus(7, ChronoUnit.DAYS));
-            logger.debug("Existing refresh token updated for user: {}", email);
-        } else {
-            refreshToken = RefreshToken.builder()
-                    .user(user)
-                    .token(UUID.randomUUID().toString())
-                    .expiryDate(Instant.now().plus(7, ChronoUnit.DAYS))
-                    .build();
-            logger.debug("New refresh token created for user: {}", email);
-        }
+        String token = UUID.randomUUID().toString();
+        Long id = refreshTokenRepository.upsertForUser(
+                userId,
+                TokenDigest.sha256Hex(token),
+                Instant.now().plus(7, ChronoUnit.DAYS)
+        );
 
-        return refreshTokenRepository.save(refreshToken);
+        logger.debug("Refresh token {} issued for user: {}", id, userId);
+        return token;
     }
 
     @Transactional
     public void verifyExpiration(RefreshToken token) {
-        logger.debug("Verifying refresh token expiration for token: {}", token.getToken());
+        logger.debug("Verifying refresh token expiration for token: {}", token.getId());
         if (token.getExpiryDate().isBefore(Instant.now())) {
-            logger.warn("Refresh token expired: {}", token.getToken());
+            logger.warn("Refresh token expired: {}", token.getId());
             refreshTokenRepository.delete(token);
             throw new AppException("Refresh token expired. Please login again.", HttpStatus.UNAUTHORIZED);
         }
-        logger.debug("Refresh token is valid: {}", token.getToken());
+        logger.debug("Refresh token is valid: {}", token.getId());
     }
 
     @Transactional
@@ -81,10 +69,11 @@ public class RefreshTokenService {
     }
 
     public RefreshToken findByToken(@NotBlank(message = "Refresh token is required") String refreshToken) {
-        logger.debug("Searching for refresh token: {}", refreshToken);
-        return refreshTokenRepository.findByToken(refreshToken)
+        String tokenHash = TokenDigest.sha256Hex(refreshToken);
+        logger.debug("Searching for refresh token: {}", tokenHash);
+        return refreshTokenRepository.findByTokenHash(tokenHash)
                 .orElseThrow(() -> {
-                    logger.warn("Refresh token not found: {}", refreshToken);
+                    logger.warn("Refresh token not found: {}", tokenHash);
                     return new AppException("Refresh token not found.", HttpStatus.NOT_FOUND);
                 });
     }
@@ -0,0 +1,164 @@
+package dev.horbatiuk.timecapsule.service.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deletes expired refresh and verification tokens in small batches, each in its own short
+ * transaction. Batches walk the {@code (expiry_date, id)} index with a keyset cursor, so
+ * dead tuples left by earlier batches are never rescanned.
+ * Every batch takes a transaction-scoped advisory lock; a node that cannot get it stops,
+ * so concurrent runs on several nodes never compete for the same rows.
+ */
+@Service
+@ConditionalOnProperty(value = "app.maintenance.token-purge.enabled", havingValue = "true", matchIfMissing = true)
+public class TokenPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenPurgeService.class);
+
+    static final long PURGE_LOCK_KEY = 0x746f6b656e707267L;
+    static final List<String> TABLES = List.of("refresh_token", "verification_token");
+
+    private static final String SELECT_FIRST_BATCH = """
+            SELECT id, expiry_date FROM %s
+            WHERE expiry_date < LOCALTIMESTAMP
+            ORDER BY expiry_date, id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """;
+    private static final String SELECT_NEXT_BATCH = """
+            SELECT id, expiry_date FROM %s
+            WHERE expiry_date < LOCALTIMESTAMP
+              AND (expiry_date, id) > (:lastExpiry, :lastId)
+            ORDER BY expiry_date, id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """;
+    private static final String DELETE_BATCH = "DELETE FROM %s WHERE id IN (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration pause;
+
+    public TokenPurgeService(NamedParameterJdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.maintenance.token-purge.batch-size:5000}") int batchSize,
+                             @Value("${app.maintenance.token-purge.max-batches-per-run:200}") int maxBatchesPerRun,
+                             @Value("${app.maintenance.token-purge.pause:200ms}") Duration pause) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.pause = pause;
+    }
+
+    @Scheduled(
+            fixedDelayString = "${app.maintenance.token-purge.interval:PT1H}",
+            initialDelayString = "${app.maintenance.token-purge.initial-delay:PT5M}"
+    )
+    public void purgeExpiredTokens() {
+        for (String table : TABLES) {
+            int purged = purge(table);
+            if (purged > 0) {
+                logger.info("Purged {} expired rows from {}", purged, table);
+            }
+        }
+    }
+
+    int purge(String table) {
+        Counter purgedCounter = Counter.builder("maintenance.tokens.purged")
+                .description("Expired token rows deleted by the purge job")
+                .tag("table", table)
+                .register(meterRegistry);
+        Timer batchTimer = Timer.builder("maintenance.tokens.purge.batch")
+                .description("Latency of one purge batch")
+                .tag("table", table)
+                .register(meterRegistry);
+
+        int total = 0;
+        ExpiredRow cursor = null;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            ExpiredRow from = cursor;
+            BatchResult result = batchTimer.record(() -> transactionTemplate.execute(status -> deleteBatch(table, from)));
+            if (result == null) {
+                logger.debug("Purge of {} is running on another node, skipping", table);
+                break;
+            }
+            total += result.deleted();
+            purgedCounter.increment(result.deleted());
+            if (result.deleted() < batchSize || !pause()) {
+                break;
+            }
+            cursor = result.last();
+        }
+        return total;
+    }
+
+    /**
+     * @return {@code null} when another node holds the purge lock
+     */
+    private BatchResult deleteBatch(String table, ExpiredRow cursor) {
+        Boolean locked = jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(:key)", Map.of("key", PURGE_LOCK_KEY), Boolean.class);
+        if (!Boolean.TRUE.equals(locked)) {
+            return null;
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource("limit", batchSize);
+        String select = SELECT_FIRST_BATCH;
+        if (cursor != null) {
+            select = SELECT_NEXT_BATCH;
+            params.addValue("lastExpiry", cursor.expiryDate())
+                    .addValue("lastId", cursor.id());
+        }
+        List<ExpiredRow> rows = jdbcTemplate.query(select.formatted(table), params,
+                (rs, rowNum) -> new ExpiredRow(rs.getObject("id"), rs.getTimestamp("expiry_date")));
+        if (rows.isEmpty()) {
+            return new BatchResult(0, null);
+        }
+
+        List<Object> ids = rows.stream().map(ExpiredRow::id).toList();
+        jdbcTemplate.update(DELETE_BATCH.formatted(table), Map.of("ids", ids));
+        return new BatchResult(rows.size(), rows.get(rows.size() - 1));
+    }
+
+    private boolean pause() {
+        if (pause.isZero()) {
+            return true;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    record ExpiredRow(Object id, Timestamp expiryDate) {
+    }
+
+    record BatchResult(int deleted, ExpiredRow last) {
+    }
+}
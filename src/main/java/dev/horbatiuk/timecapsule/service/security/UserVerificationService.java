@@ -5,20 +5,21 @@ import dev.horbatiuk.timecapsule.exception.controller.AppException;
 import dev.horbatiuk.timecapsule.persistence.VerificationTokenRepository;
 import dev.horbatiuk.timecapsule.persistence.entities.User;
 import dev.horbatiuk.timecapsule.persistence.entities.VerificationToken;
+import dev.horbatiuk.timecapsule.security.UserPrincipalCache;
 import dev.horbatiuk.timecapsule.service.EmailSenderService;
 import dev.horbatiuk.timecapsule.service.UserService;
-import jakarta.mail.MessagingException;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.UUID;
 
 @Service
@@ -30,12 +31,15 @@ public class UserVerificationService {
     private final EmailSenderService emailSenderService;
     private final UserService userService;
     private final VerificationTokenRepository verificationTokenRepository;
+    private final UserPrincipalCache userPrincipalCache;
 
     @Value("${app.base-url}")
     private String baseUrl;
 
-    @Async
-    public void sendVerificationEmail(UUID userId, String email, boolean verified) throws NotFoundException, MessagingException {
+    @Value("${app.verification.token-ttl:7d}")
+    private Duration tokenTtl = Duration.ofDays(7);
+
+    public void sendVerificationEmail(UUID userId, String email, boolean verified) throws NotFoundException {
         if (verified) {
             logger.info("User with email {} is already verified. Skipping email sending.", email);
             return;
@@ -43,35 +47,34 @@ public class UserVerificationService {
         User user = userService.findUserByEmail(email);
         VerificationToken verificationToken = verificationTokenRepository
                 .findVerificationTokenByUser(user)
-                .orElseThrow(() -> {
-                    logger.warn("Verification token not found for user ID: {}", userId);
-                    return new NotFoundException("Verification token not found for user: " + userId);
-                });
+                .orElseGet(() -> VerificationToken.builder().user(user).build());
+        if (verificationToken.getToken() == null || verificationToken.isExpired(Instant.now())) {
+            // expired tokens are purged in the background, so a resend has to issue a fresh one
+            verificationToken.setToken(UUID.randomUUID());
+            verificationToken.setExpiryDate(Instant.now().plus(tokenTtl));
+            verificationTokenRepository.save(verificationToken);
+            logger.info("Verification token renewed for user ID: {}", userId);
+        }
         String frontendBaseUrl = "http://localhost:5173";
         String verificationLink = UriComponentsBuilder.fromHttpUrl(frontendBaseUrl)
                 .path("/verify")
                 .queryParam("token", verificationToken.getToken())
                 .toUriString();
 
-        try {
-            logger.info("Sending verification email to user: {}", email);
-            emailSenderService.sendVerificationEmail(email, verificationLink);
-            logger.info("Verification email sent to: {}", email);
-        } catch (MessagingException e) {
-            logger.error("Failed to send verification email to {}: {}", email, e.getMessage());
-            throw new MessagingException(e.getMessage());
-        }
+        logger.info("Sending verification email to user: {}", email);
+        emailSenderService.sendVerificationEmail(email, verificationLink);
     }
 
 
-    @Async
     public boolean isUserByEmailVerified(String email) throws NotFoundException {
-        User user = userService.findUserByEmail(email);
-        return user.isVerified();
+        return userService.findUserDetailsByEmail(email).isVerified();
     }
 
     @Transactional
     public void addToken(VerificationToken token) {
+        if (token.getExpiryDate() == null) {
+            token.setExpiryDate(Instant.now().plus(tokenTtl));
+        }
         try {
             verificationTokenRepository.save(token);
             logger.info("Verification token saved for user: {}", token.getUser().getEmail());
@@ -89,6 +92,10 @@ public class UserVerificationService {
                     logger.warn("Verification token not found: {}", token);
                     return new NotFoundException("Verification token not found: " + token);
                 });
+        if (verificationToken.isExpired(Instant.now())) {
+            logger.warn("Verification token expired: {}", token);
+            throw new NotFoundException("Verification token expired: " + token);
+        }
         updateUserStatus(verificationToken.getUser().getEmail());
         try {
             verificationTokenRepository.delete(verificationToken);
@@ -108,6 +115,7 @@ public class UserVerificationService {
             return;
         }
         user.setVerified(true);
+        userPrincipalCache.evict(email);
         logger.info("User {} marked as verified.", email);
     }
 }
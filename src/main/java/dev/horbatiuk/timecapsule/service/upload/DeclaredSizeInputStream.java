@@ -0,0 +1,98 @@
+package dev.horbatiuk.timecapsule.service.upload;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Passes on a stream that must hold exactly {@code size} bytes. A read fails as soon as the
+ * stream turns out to be longer or shorter, so a storage upload reading from it fails before
+ * it is complete and nothing past {@code size + 1} bytes is ever read from the client.
+ */
+public class DeclaredSizeInputStream extends FilterInputStream {
+
+    private final long size;
+    private long remaining;
+    private boolean tooLong;
+    private boolean tooShort;
+
+    public DeclaredSizeInputStream(InputStream in, long size) {
+        super(in);
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative");
+        }
+        this.size = size;
+        this.remaining = size;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining == 0) {
+            checkEnd();
+            return -1;
+        }
+        int read = in.read(b, off, (int) Math.min(len, remaining));
+        if (read == -1) {
+            tooShort = true;
+            throw new IOException("File ended after " + (size - remaining) + " of " + size + " declared bytes");
+        }
+        remaining -= read;
+        if (remaining == 0) {
+            // checked before handing over the last bytes, so an upload of the first size bytes cannot complete
+            checkEnd();
+        }
+        return read;
+    }
+
+    private void checkEnd() throws IOException {
+        if (tooLong || in.read() != -1) {
+            tooLong = true;
+            throw new IOException("File is longer than the declared " + size + " bytes");
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] skip = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        int read = read(skip, 0, skip.length);
+        return Math.max(read, 0);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    public boolean isTooLong() {
+        return tooLong;
+    }
+
+    public boolean isTooShort() {
+        return tooShort;
+    }
+}
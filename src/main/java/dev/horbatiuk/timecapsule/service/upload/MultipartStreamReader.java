@@ -0,0 +1,269 @@
+package dev.horbatiuk.timecapsule.service.upload;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a {@code multipart/form-data} body part by part straight from the request stream,
+ * without spooling anything to disk. Only one part can be read at a time: asking for the next
+ * part skips what is left of the current one. The reader holds one buffer of
+ * {@value #BUFFER_SIZE} bytes, whatever the size of the parts.
+ */
+public class MultipartStreamReader {
+
+    static final int BUFFER_SIZE = 8192;
+    private static final int MAX_HEADER_LINE = 8192;
+    private static final int MAX_HEADERS = 16;
+    private static final int MAX_BOUNDARY = 70;
+
+    private final InputStream in;
+    /** CRLF, two dashes and the boundary; the first boundary is found by starting with a CRLF. */
+    private final byte[] delimiter;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private PartInputStream current;
+    private boolean finished;
+
+    public MultipartStreamReader(InputStream in, String boundary) {
+        if (boundary == null || boundary.isEmpty() || boundary.length() > MAX_BOUNDARY) {
+            throw new IllegalArgumentException("Invalid multipart boundary");
+        }
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        limit = 2;
+        // the preamble before the first boundary is read and thrown away like a part
+        current = new PartInputStream();
+    }
+
+    /**
+     * @return the boundary of a {@code multipart/form-data} content type, or null for any other
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            if (!MediaType.MULTIPART_FORM_DATA.includes(mediaType)) {
+                return null;
+            }
+            String boundary = mediaType.getParameter("boundary");
+            if (boundary != null && boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                boundary = boundary.substring(1, boundary.length() - 1);
+            }
+            return boundary == null || boundary.isEmpty() ? null : boundary;
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Moves to the next part.
+     *
+     * @return the part, or null after the closing boundary
+     * @throws IOException if the body is not valid multipart or ends early
+     */
+    public Part next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        current.skipRemaining();
+        if (!fill(2)) {
+            throw new IOException("Multipart body ended after a boundary");
+        }
+        if (buffer[pos] == '-' && buffer[pos + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        String disposition = null;
+        String contentType = null;
+        int headers = 0;
+        // the rest of the boundary line, normally empty
+        readLine();
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            if (++headers > MAX_HEADERS) {
+                throw new IOException("Too many headers in multipart part");
+            }
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IOException("Malformed multipart header");
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Disposition")) {
+                disposition = value;
+            } else if (name.equalsIgnoreCase("Content-Type")) {
+                contentType = value;
+            }
+        }
+        if (disposition == null) {
+            throw new IOException("Multipart part without Content-Disposition");
+        }
+        ContentDisposition parsed;
+        try {
+            parsed = ContentDisposition.parse(disposition);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed Content-Disposition: " + disposition, e);
+        }
+        current = new PartInputStream();
+        return new Part(parsed.getName(), parsed.getFilename(), contentType, current);
+    }
+
+    /**
+     * Reads a line ending in CRLF, as UTF-8 since that is what browsers send for file names.
+     */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            if (!fill(1)) {
+                throw new IOException("Multipart body ended inside the part headers");
+            }
+            byte b = buffer[pos++];
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            if (line.size() >= MAX_HEADER_LINE) {
+                throw new IOException("Multipart header line too long");
+            }
+            line.write(b);
+        }
+    }
+
+    /**
+     * Makes at least {@code needed} unread bytes available, unless the stream ends first.
+     */
+    private boolean fill(int needed) throws IOException {
+        while (limit - pos < needed) {
+            if (eof) {
+                return false;
+            }
+            if (pos > 0) {
+                System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            }
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read == -1) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        }
+        return true;
+    }
+
+    private int indexOfDelimiter() {
+        byte first = delimiter[0];
+        int last = limit - delimiter.length;
+        outer:
+        for (int i = pos; i <= last; i++) {
+            if (buffer[i] != first) {
+                continue;
+            }
+            for (int j = 1; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    public record Part(String name, String filename, String contentType, InputStream body) {
+
+        public boolean isFile() {
+            return filename != null;
+        }
+
+        /**
+         * Reads a form field as UTF-8.
+         *
+         * @throws IOException if the value is longer than {@code maxBytes}
+         */
+        public String readString(int maxBytes) throws IOException {
+            byte[] value = body.readNBytes(maxBytes + 1);
+            if (value.length > maxBytes) {
+                throw new IOException("Form field '" + name + "' is longer than " + maxBytes + " bytes");
+            }
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The body of one part: ends where the next delimiter starts. Closing it does not close the
+     * request stream.
+     */
+    private class PartInputStream extends InputStream {
+
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                fill(delimiter.length);
+                int found = indexOfDelimiter();
+                int available;
+                if (found >= 0) {
+                    available = found - pos;
+                    if (available == 0) {
+                        done = true;
+                        pos += delimiter.length;
+                        return -1;
+                    }
+                } else {
+                    // the tail could be the start of a delimiter cut off by the buffer
+                    available = limit - pos - (delimiter.length - 1);
+                    if (available <= 0) {
+                        if (eof) {
+                            throw new IOException("Multipart body ended inside a part");
+                        }
+                        continue;
+                    }
+                }
+                int count = Math.min(len, available);
+                System.arraycopy(buffer, pos, b, off, count);
+                pos += count;
+                return count;
+            }
+        }
+
+        void skipRemaining() throws IOException {
+            byte[] skip = new byte[BUFFER_SIZE];
+            while (read(skip, 0, skip.length) != -1) {
+                // discard
+            }
+        }
+
+        @Override
+        public void close() {
+            // the request stream belongs to the container
+        }
+    }
+}
@@ -0,0 +1,12 @@
+-- Used by the embedded capsule scheduler (app.capsule.scheduler.backend=embedded).
+-- opening_lease_until: a node has loaded the capsule into its timing wheel and will open it;
+--                      other nodes skip the row until the lease runs out.
+-- opened_at:           set once, when the capsule was opened and its email queued.
+
+ALTER TABLE capsule ADD COLUMN opening_lease_until TIMESTAMP WITH TIME ZONE;
+
+ALTER TABLE capsule ADD COLUMN opened_at TIMESTAMP WITH TIME ZONE;
+
+-- EventBridge has already opened every ACTIVE capsule whose time has passed; the embedded
+-- scheduler must not open them again.
+UPDATE capsule SET opened_at = open_at WHERE status = 'ACTIVE' AND open_at <= now();
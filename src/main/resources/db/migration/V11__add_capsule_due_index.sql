@@ -0,0 +1,5 @@
+-- Due capsules for the embedded scheduler, in open_at order. Opened capsules leave the index,
+-- so the poll only ever reads rows that are still waiting, however many have been opened.
+-- Under the EventBridge backends OpenedCapsuleMarker sets opened_at once open_at has passed.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_capsule_due ON capsule (open_at) WHERE status = 'ACTIVE' AND opened_at IS NULL;
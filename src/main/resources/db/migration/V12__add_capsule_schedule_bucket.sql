@@ -0,0 +1,4 @@
+-- Used by the coalesced EventBridge scheduler (app.capsule.scheduler.backend=eventbridge-coalesced):
+-- the opening minute whose batch schedule currently lists the capsule, NULL when it is in none.
+
+ALTER TABLE capsule ADD COLUMN schedule_bucket TIMESTAMP WITH TIME ZONE;
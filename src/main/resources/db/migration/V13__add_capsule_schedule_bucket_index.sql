@@ -0,0 +1,3 @@
+-- Members of a batch schedule are read by bucket every time the schedule is rewritten.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_capsule_schedule_bucket ON capsule (schedule_bucket) WHERE schedule_bucket IS NOT NULL;
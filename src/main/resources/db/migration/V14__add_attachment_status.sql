@@ -0,0 +1,10 @@
+-- Attachments uploaded through the app are recorded as PENDING before the file goes to S3 and
+-- flipped to READY once it is there; PENDING rows older than app.attachment.upload.pending-ttl
+-- are swept together with their objects. Existing attachments are complete.
+
+ALTER TABLE attachments
+    ADD COLUMN status     VARCHAR(16)              NOT NULL DEFAULT 'READY',
+    ADD COLUMN created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+
+ALTER TABLE attachments
+    ADD CONSTRAINT chk_attachments_status CHECK (status IN ('PENDING', 'READY'));
@@ -0,0 +1,3 @@
+-- The upload sweeper looks for old PENDING rows, which are few compared to READY ones.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_attachments_pending_created_at ON attachments (created_at) WHERE status = 'PENDING';
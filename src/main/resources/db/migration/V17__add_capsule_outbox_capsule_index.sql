@@ -0,0 +1,3 @@
+-- The relay only claims a sync when no other live sync of the same capsule exists, which it looks up by capsule.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_capsuleoutbox_capsule ON capsule_outbox (capsule_id) WHERE status <> 'DEAD';
@@ -0,0 +1,12 @@
+CREATE TABLE schedule_reconciliation_run
+(
+    id          UUID                     NOT NULL,
+    dry_run     BOOLEAN                  NOT NULL,
+    status      VARCHAR(16)              NOT NULL,
+    started_at  TIMESTAMP WITH TIME ZONE NOT NULL,
+    finished_at TIMESTAMP WITH TIME ZONE,
+    report      JSONB,
+    error       TEXT,
+    CONSTRAINT pk_schedulereconciliationrun PRIMARY KEY (id),
+    CONSTRAINT chk_schedulereconciliationrun_status CHECK (status IN ('RUNNING', 'FINISHED', 'FAILED'))
+);
@@ -0,0 +1,3 @@
+-- Direct uploads are committed by (capsule, file key), which must name exactly one attachment.
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uq_attachments_capsule_file_key ON attachments (capsule_id, file_key);
@@ -0,0 +1,27 @@
+-- Coalesced EventBridge scheduler: a capsule keeps its shard within the bucket, so a change
+-- only rewrites the one schedule that lists it, and schedule_published tells whether that
+-- schedule was written since the capsule joined it.
+ALTER TABLE capsule ADD COLUMN schedule_shard INTEGER;
+
+ALTER TABLE capsule ADD COLUMN schedule_published BOOLEAN NOT NULL DEFAULT false;
+
+-- the shards written so far: members in id order, 1000 (the default max-capsules-per-schedule) per shard
+UPDATE capsule c
+SET schedule_shard     = s.shard,
+    schedule_published = true
+FROM (SELECT id, (row_number() OVER (PARTITION BY schedule_bucket ORDER BY id) - 1) / 1000 AS shard
+      FROM capsule
+      WHERE schedule_bucket IS NOT NULL) s
+WHERE s.id = c.id;
+
+-- shards whose schedule has to be rewritten from the capsule table
+CREATE TABLE capsule_schedule_sync
+(
+    bucket          TIMESTAMP WITH TIME ZONE NOT NULL,
+    shard           INTEGER                  NOT NULL,
+    version         BIGINT                   NOT NULL,
+    next_attempt_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    locked_until    TIMESTAMP WITH TIME ZONE,
+    last_error      TEXT,
+    CONSTRAINT pk_capsuleschedulesync PRIMARY KEY (bucket, shard)
+);
@@ -0,0 +1,2 @@
+ALTER TABLE app_user
+    ADD COLUMN token_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,14 @@
+ALTER TABLE refresh_token
+    ADD COLUMN token_hash VARCHAR(64);
+
+UPDATE refresh_token
+SET token_hash = encode(sha256(convert_to(token, 'UTF8')), 'hex');
+
+ALTER TABLE refresh_token
+    ALTER COLUMN token_hash SET NOT NULL;
+
+ALTER TABLE refresh_token
+    ADD CONSTRAINT uc_refreshtoken_token_hash UNIQUE (token_hash);
+
+ALTER TABLE refresh_token
+    DROP COLUMN token;
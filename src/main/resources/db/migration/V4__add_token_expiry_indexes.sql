@@ -0,0 +1,9 @@
+ALTER TABLE verification_token
+    ADD COLUMN expiry_date TIMESTAMP WITHOUT TIME ZONE NOT NULL DEFAULT (LOCALTIMESTAMP + INTERVAL '7 days');
+
+ALTER TABLE verification_token
+    ALTER COLUMN expiry_date DROP DEFAULT;
+
+CREATE INDEX idx_verificationtoken_expiry_date ON verification_token (expiry_date, id);
+
+CREATE INDEX idx_refreshtoken_expiry_date ON refresh_token (expiry_date, id);
@@ -0,0 +1,18 @@
+CREATE TABLE email_outbox
+(
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    recipient       VARCHAR(255)                            NOT NULL,
+    subject         VARCHAR(255)                            NOT NULL,
+    body            TEXT                                    NOT NULL,
+    status          VARCHAR(16)                             NOT NULL,
+    attempts        INTEGER                                 NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP WITH TIME ZONE                NOT NULL,
+    locked_until    TIMESTAMP WITH TIME ZONE,
+    last_error      TEXT,
+    created_at      TIMESTAMP WITH TIME ZONE                NOT NULL,
+    CONSTRAINT pk_emailoutbox PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_emailoutbox_pending ON email_outbox (next_attempt_at) WHERE status = 'PENDING';
+
+CREATE INDEX idx_emailoutbox_sending ON email_outbox (locked_until) WHERE status = 'SENDING';
@@ -0,0 +1,10 @@
+-- Indexes for the admin capsule search. Each one also covers the default createdAt sort,
+-- so a filtered page is read in index order instead of sorting every match.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_capsule_created_at ON capsule (created_at, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_capsule_app_user_created_at ON capsule (app_user_id, created_at, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_capsule_status_created_at ON capsule (status, created_at, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_capsule_open_at ON capsule (open_at);
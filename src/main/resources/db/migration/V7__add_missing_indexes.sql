@@ -0,0 +1,6 @@
+-- Foreign keys and lookup columns that had no index. capsule.app_user_id and capsule.created_at
+-- are already covered as leading columns of the V6 search indexes.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_attachments_capsule_id ON attachments (capsule_id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_user_roles_user_id ON user_roles (user_id);
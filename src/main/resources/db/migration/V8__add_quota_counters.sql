@@ -0,0 +1,21 @@
+ALTER TABLE app_user
+    ADD COLUMN capsule_count INTEGER NOT NULL DEFAULT 0;
+
+ALTER TABLE capsule
+    ADD COLUMN attachment_count INTEGER NOT NULL DEFAULT 0;
+
+UPDATE app_user u
+SET capsule_count = c.total
+FROM (SELECT app_user_id, count(*) AS total FROM capsule GROUP BY app_user_id) c
+WHERE c.app_user_id = u.id;
+
+UPDATE capsule c
+SET attachment_count = a.total
+FROM (SELECT capsule_id, count(*) AS total FROM attachments GROUP BY capsule_id) a
+WHERE a.capsule_id = c.id;
+
+ALTER TABLE app_user
+    ADD CONSTRAINT chk_app_user_capsule_count CHECK (capsule_count >= 0);
+
+ALTER TABLE capsule
+    ADD CONSTRAINT chk_capsule_attachment_count CHECK (attachment_count >= 0);
@@ -0,0 +1,19 @@
+CREATE TABLE capsule_outbox
+(
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    capsule_id      UUID                                    NOT NULL,
+    status          VARCHAR(16)                             NOT NULL,
+    attempts        INTEGER                                 NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP WITH TIME ZONE                NOT NULL,
+    locked_until    TIMESTAMP WITH TIME ZONE,
+    last_error      TEXT,
+    created_at      TIMESTAMP WITH TIME ZONE                NOT NULL,
+    CONSTRAINT pk_capsuleoutbox PRIMARY KEY (id)
+);
+
+-- at most one waiting sync per capsule; further status changes before it runs are absorbed by it
+CREATE UNIQUE INDEX uq_capsuleoutbox_pending_capsule ON capsule_outbox (capsule_id) WHERE status = 'PENDING';
+
+CREATE INDEX idx_capsuleoutbox_pending ON capsule_outbox (next_attempt_at) WHERE status = 'PENDING';
+
+CREATE INDEX idx_capsuleoutbox_processing ON capsule_outbox (locked_until) WHERE status = 'PROCESSING';
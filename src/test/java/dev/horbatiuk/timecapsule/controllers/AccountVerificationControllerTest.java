@@ -6,7 +6,6 @@ import dev.horbatiuk.timecapsule.persistence.entities.User;
 import dev.horbatiuk.timecapsule.security.CustomUserDetails;
 import dev.horbatiuk.timecapsule.service.UserService;
 import dev.horbatiuk.timecapsule.service.security.UserVerificationService;
-import jakarta.mail.MessagingException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -47,13 +46,13 @@ class AccountVerificationControllerTest {
         user.setEmail("test@example.com");
         user.setVerified(false);
 
-        when(userService.findUserByEmail("test@example.com")).thenReturn(user);
+        when(userService.findUserDetailsByEmail("test@example.com")).thenReturn(new CustomUserDetails(user));
         doNothing().when(userVerificationService).sendVerificationEmail(user.getId(), user.getEmail(), user.isVerified());
 
         ResponseEntity<?> response = controller.sendVerificationEmail(userDetails);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(userService).findUserByEmail("test@example.com");
+        verify(userService).findUserDetailsByEmail("test@example.com");
         verify(userVerificationService).sendVerificationEmail(user.getId(), user.getEmail(), user.isVerified());
     }
 
@@ -62,7 +61,7 @@ class AccountVerificationControllerTest {
         CustomUserDetails userDetails = mock(CustomUserDetails.class);
         when(userDetails.getEmail()).thenReturn("missing@example.com");
 
-        when(userService.findUserByEmail("missing@example.com"))
+        when(userService.findUserDetailsByEmail("missing@example.com"))
                 .thenThrow(new NotFoundException("User not found"));
 
         AppException exception = assertThrows(AppException.class, () -> controller.sendVerificationEmail(userDetails));
@@ -72,7 +71,7 @@ class AccountVerificationControllerTest {
     }
 
     @Test
-    void sendVerificationEmail_shouldThrowAppException_whenMessagingFails() throws Exception {
+    void sendVerificationEmail_shouldThrowAppException_whenQueueingFails() throws Exception {
         CustomUserDetails userDetails = mock(CustomUserDetails.class);
         when(userDetails.getEmail()).thenReturn("fail@example.com");
 
@@ -81,14 +80,14 @@ class AccountVerificationControllerTest {
         user.setEmail("fail@example.com");
         user.setVerified(false);
 
-        when(userService.findUserByEmail("fail@example.com")).thenReturn(user);
-        doThrow(new MessagingException("SMTP error")).when(userVerificationService)
+        when(userService.findUserDetailsByEmail("fail@example.com")).thenReturn(new CustomUserDetails(user));
+        doThrow(new RuntimeException("Outbox unavailable")).when(userVerificationService)
                 .sendVerificationEmail(user.getId(), user.getEmail(), user.isVerified());
 
         AppException exception = assertThrows(AppException.class, () -> controller.sendVerificationEmail(userDetails));
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, exception.getStatus());
-        assertEquals("Error sending verification email", exception.getMessage());
+        assertEquals("Could not send verification email", exception.getMessage());
     }
 
     @Test
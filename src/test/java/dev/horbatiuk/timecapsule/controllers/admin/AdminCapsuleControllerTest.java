@@ -1,20 +1,21 @@
 package dev.horbatiuk.timecapsule.controllers.admin;
 
 import dev.horbatiuk.timecapsule.exception.NotFoundException;
-import dev.horbatiuk.timecapsule.exception.aws.InternalAwsException;
+import dev.horbatiuk.timecapsule.exception.SchedulingException;
 import dev.horbatiuk.timecapsule.exception.aws.s3.S3ActionException;
-import dev.horbatiuk.timecapsule.exception.aws.scheduler.CreateScheduleException;
 import dev.horbatiuk.timecapsule.exception.controller.AppException;
-import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.CapsuleOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.CountMode;
+import dev.horbatiuk.timecapsule.persistence.dto.CursorPageDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleBulkDeleteReportDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.EditCapsuleDTO;
-import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
 import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
 import dev.horbatiuk.timecapsule.service.AttachmentService;
+import dev.horbatiuk.timecapsule.service.CapsuleBulkDeleteService;
 import dev.horbatiuk.timecapsule.service.CapsuleService;
-import dev.horbatiuk.timecapsule.service.aws.EventBridgeScheduledService;
-import dev.horbatiuk.timecapsule.service.aws.S3Service;
+import dev.horbatiuk.timecapsule.service.scheduler.CapsuleScheduler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -23,14 +24,9 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import software.amazon.awssdk.services.scheduler.model.GetScheduleResponse;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
-import java.sql.Timestamp;
-import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
@@ -44,16 +40,16 @@ class AdminCapsuleControllerTest {
     private CapsuleService capsuleService;
 
     @Mock
-    private CapsuleRepository capsuleRepository;
+    private CapsuleBulkDeleteService capsuleBulkDeleteService;
 
     @Mock
     private AttachmentService attachmentService;
 
     @Mock
-    private EventBridgeScheduledService eventBridgeScheduledService;
+    private CapsuleScheduler capsuleScheduler;
 
     @Mock
-    private S3Service s3Service;
+    private CapsuleOutboxRepository capsuleOutboxRepository;
 
     @InjectMocks
     private AdminCapsuleController controller;
@@ -69,17 +65,31 @@ class AdminCapsuleControllerTest {
     @Test
     void listCapsules_returnsPage() {
         CapsuleResponseDTO dto = new CapsuleResponseDTO();
-        Page<CapsuleResponseDTO> page = new PageImpl<>(List.of(dto));
+        CursorPageDTO<CapsuleResponseDTO> page = CursorPageDTO.<CapsuleResponseDTO>builder()
+                .items(List.of(dto))
+                .nextCursor("next")
+                .totalElements(1L)
+                .build();
         when(capsuleService.findCapsulesByFilters(
-                eq(null), eq(null), eq(null), eq(null), eq(null), eq(null), any()))
+                eq(null), eq(null), eq(null), eq(null), eq(null), eq(null), eq("cursor"), eq(20), eq(CountMode.EXACT)))
                 .thenReturn(page);
 
-        ResponseEntity<Page<CapsuleResponseDTO>> response = controller.listCapsules(null, null, null, null, null, null, 0, 20, "createdAt,desc");
+        ResponseEntity<CursorPageDTO<CapsuleResponseDTO>> response =
+                controller.listCapsules(null, null, null, null, null, null, "cursor", 20, CountMode.EXACT);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals(1, response.getBody().getTotalElements());
-        verify(capsuleService).findCapsulesByFilters(any(), any(), any(), any(), any(), any(), any());
+        assertEquals("next", response.getBody().getNextCursor());
+    }
+
+    @Test
+    void listCapsules_invalidDate_returnsBadRequest() {
+        ResponseEntity<CursorPageDTO<CapsuleResponseDTO>> response =
+                controller.listCapsules(null, null, null, null, "yesterday", null, null, 20, CountMode.NONE);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(capsuleService);
     }
 
     @Test
@@ -159,87 +169,109 @@ class AdminCapsuleControllerTest {
     }
 
     @Test
-    void setStatus_deactivate_updatesExistingSchedule() throws Exception {
+    void setStatus_onlyChangesStatus() throws Exception {
         UUID capsuleId = UUID.randomUUID();
 
-        CapsuleResponseDTO capsule = new CapsuleResponseDTO();
-        capsule.setStatus(CapsuleStatus.ACTIVE);
-        capsule.setOpenAt(Timestamp.from(Instant.now().plusSeconds(3600))); // ✅ стабільно
-
-        when(capsuleService.findCapsuleById(capsuleId)).thenReturn(capsule);
-
-        GetScheduleResponse schedule = GetScheduleResponse.builder().build();
-        when(eventBridgeScheduledService.getSchedule(capsuleId)).thenReturn(schedule);
-
         ResponseEntity<Void> response =
                 controller.setStatus(capsuleId, CapsuleStatus.INACTIVE);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(capsuleService).setCapsuleStatus(capsuleId, CapsuleStatus.INACTIVE);
+        verifyNoInteractions(capsuleScheduler, capsuleOutboxRepository);
+    }
 
-        verify(capsuleService)
-                .setCapsuleStatus(capsuleId, CapsuleStatus.INACTIVE);
+    @Test
+    void setStatus_notFound() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        doThrow(new NotFoundException("missing")).when(capsuleService).setCapsuleStatus(capsuleId, CapsuleStatus.ACTIVE);
 
-        verify(eventBridgeScheduledService)
-                .updateSchedule(eq(schedule), eq(true), eq(capsuleId)); // ✅ TRUE
+        AppException ex = assertThrows(AppException.class, () -> controller.setStatus(capsuleId, CapsuleStatus.ACTIVE));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatus());
     }
 
     @Test
-    void resyncCapsule_success() throws NotFoundException, CreateScheduleException, InternalAwsException, S3ActionException {
+    void resyncCapsule_queuesSync() throws NotFoundException {
         UUID capsuleId = UUID.randomUUID();
-        CapsuleResponseDTO dto = new CapsuleResponseDTO();
-        dto.setOpenAt(Timestamp.from(Instant.now()));
-        when(capsuleService.findCapsuleById(capsuleId)).thenReturn(dto);
+        when(capsuleService.findCapsuleById(capsuleId)).thenReturn(new CapsuleResponseDTO());
 
         ResponseEntity<Void> response = controller.resyncCapsule(capsuleId);
 
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(s3Service).uploadCapsuleData(dto);
-        verify(eventBridgeScheduledService).deleteSchedule(capsuleId);
-        verify(eventBridgeScheduledService).createNewSchedule(eq(capsuleId), any());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        verify(capsuleOutboxRepository).enqueue(capsuleId);
+        verifyNoInteractions(capsuleScheduler);
+    }
+
+    @Test
+    void resyncCapsule_notFound() throws NotFoundException {
+        UUID capsuleId = UUID.randomUUID();
+        when(capsuleService.findCapsuleById(capsuleId)).thenThrow(new NotFoundException("missing"));
+
+        AppException ex = assertThrows(AppException.class, () -> controller.resyncCapsule(capsuleId));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatus());
+        verifyNoInteractions(capsuleOutboxRepository);
     }
 
     @Test
-    void deleteCapsule_success() throws NotFoundException, InternalAwsException, S3ActionException {
+    void deleteCapsule_success() throws NotFoundException, SchedulingException, S3ActionException {
         UUID capsuleId = UUID.randomUUID();
-        Capsule capsule = new Capsule();
-        when(capsuleService.findCapsuleEntityById(capsuleId)).thenReturn(capsule);
 
         ResponseEntity<Void> response = controller.deleteCapsule(capsuleId);
 
         assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
-        verify(eventBridgeScheduledService).deleteSchedule(capsuleId);
+        verify(capsuleScheduler).cancel(capsuleId);
         verify(attachmentService).deleteAllAttachmentsFromCapsule(capsuleId);
-        verify(capsuleRepository).delete(capsule);
+        verify(capsuleService).deleteCapsule(capsuleId);
     }
 
     @Test
-    void deleteCapsule_scheduleNotFound_skipsAndDeletes() throws NotFoundException, InternalAwsException {
+    void deleteCapsule_cancelFails_keepsCapsule() throws Exception {
         UUID capsuleId = UUID.randomUUID();
-        Capsule capsule = new Capsule();
-        doThrow(new NotFoundException("not")).when(eventBridgeScheduledService).deleteSchedule(capsuleId);
-        when(capsuleService.findCapsuleEntityById(capsuleId)).thenReturn(capsule);
+        doThrow(new SchedulingException("throttled")).when(capsuleScheduler).cancel(capsuleId);
 
-        ResponseEntity<Void> response = controller.deleteCapsule(capsuleId);
+        AppException ex = assertThrows(AppException.class, () -> controller.deleteCapsule(capsuleId));
 
-        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
-        verify(eventBridgeScheduledService).deleteSchedule(capsuleId);
-        verify(capsuleRepository).delete(capsule);
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, ex.getStatus());
+        verify(capsuleService, never()).deleteCapsule(capsuleId);
     }
 
     @Test
     void deleteByEmail_success() {
         String email = "user@example.com";
-        doNothing().when(capsuleService).deleteAllCapsulesByEmail(email);
+        CapsuleBulkDeleteReportDTO report = CapsuleBulkDeleteReportDTO.builder().capsules(3).completed(true).build();
+        when(capsuleBulkDeleteService.deleteAllCapsulesByEmail(email)).thenReturn(report);
 
-        ResponseEntity<Void> response = controller.deleteByEmail(email);
+        ResponseEntity<CapsuleBulkDeleteReportDTO> response = controller.deleteByEmail(email);
 
-        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
-        verify(capsuleService).deleteAllCapsulesByEmail(email);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(report, response.getBody());
+    }
+
+    @Test
+    void deleteByEmail_badGateway_whenIncomplete() {
+        String email = "user@example.com";
+        CapsuleBulkDeleteReportDTO report = CapsuleBulkDeleteReportDTO.builder().capsules(3).objectsFailed(1).build();
+        when(capsuleBulkDeleteService.deleteAllCapsulesByEmail(email)).thenReturn(report);
+
+        ResponseEntity<CapsuleBulkDeleteReportDTO> response = controller.deleteByEmail(email);
+
+        assertEquals(HttpStatus.BAD_GATEWAY, response.getStatusCode());
+        assertSame(report, response.getBody());
+    }
+
+    @Test
+    void deleteByEmail_notFound_whenUserMissing() {
+        String email = "missing@example.com";
+        when(capsuleBulkDeleteService.deleteAllCapsulesByEmail(email))
+                .thenThrow(new AppException("User not found", HttpStatus.NOT_FOUND));
+
+        AppException ex = assertThrows(AppException.class, () -> controller.deleteByEmail(email));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatus());
     }
 
     @Test
     void deleteByEmail_badRequest_forBlank() {
-        ResponseEntity<Void> response = controller.deleteByEmail("");
+        ResponseEntity<CapsuleBulkDeleteReportDTO> response = controller.deleteByEmail("");
         assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
     }
 }
@@ -0,0 +1,80 @@
+package dev.horbatiuk.timecapsule.controllers.admin;
+
+import dev.horbatiuk.timecapsule.exception.NotFoundException;
+import dev.horbatiuk.timecapsule.exception.controller.AppException;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.ScheduleReconciliationRunDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.ReconciliationRunStatus;
+import dev.horbatiuk.timecapsule.service.aws.ScheduleReconciliationService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdminScheduleControllerTest {
+
+    @Mock
+    private ScheduleReconciliationService scheduleReconciliationService;
+
+    @InjectMocks
+    private AdminScheduleController controller;
+
+    @Test
+    void startReconciliation_acceptedWithRunLocation() {
+        ScheduleReconciliationRunDTO run = ScheduleReconciliationRunDTO.builder()
+                .id(UUID.randomUUID())
+                .dryRun(true)
+                .status(ReconciliationRunStatus.RUNNING)
+                .build();
+        when(scheduleReconciliationService.start(true)).thenReturn(run);
+
+        ResponseEntity<ScheduleReconciliationRunDTO> response = controller.startReconciliation(true);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertSame(run, response.getBody());
+        assertEquals("/api/v1/admin/schedules/reconciliation/" + run.getId(),
+                response.getHeaders().getLocation().toString());
+        verify(scheduleReconciliationService, never()).start(false);
+    }
+
+    @Test
+    void startReconciliation_alreadyRunning() {
+        when(scheduleReconciliationService.start(false))
+                .thenThrow(new AppException("Reconciliation is already running", HttpStatus.CONFLICT));
+
+        AppException ex = assertThrows(AppException.class, () -> controller.startReconciliation(false));
+        assertEquals(HttpStatus.CONFLICT, ex.getStatus());
+    }
+
+    @Test
+    void getReconciliation_returnsRun() throws Exception {
+        UUID runId = UUID.randomUUID();
+        ScheduleReconciliationRunDTO run = ScheduleReconciliationRunDTO.builder()
+                .id(runId)
+                .status(ReconciliationRunStatus.FINISHED)
+                .build();
+        when(scheduleReconciliationService.findRun(runId)).thenReturn(run);
+
+        ResponseEntity<ScheduleReconciliationRunDTO> response = controller.getReconciliation(runId);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(run, response.getBody());
+    }
+
+    @Test
+    void getReconciliation_notFound() throws Exception {
+        UUID runId = UUID.randomUUID();
+        when(scheduleReconciliationService.findRun(runId)).thenThrow(new NotFoundException("Reconciliation run not found"));
+
+        AppException ex = assertThrows(AppException.class, () -> controller.getReconciliation(runId));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatus());
+    }
+}
@@ -1,24 +1,49 @@
 package dev.horbatiuk.timecapsule.controllers.user;
 
+import dev.horbatiuk.timecapsule.exception.NotFoundException;
+import dev.horbatiuk.timecapsule.exception.aws.s3.S3ActionException;
 import dev.horbatiuk.timecapsule.exception.controller.AppException;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentCommitRequestDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentUploadRequestDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.PresignedDownloadDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.PresignedUploadDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleAccessDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
 import dev.horbatiuk.timecapsule.security.CustomUserDetails;
 import dev.horbatiuk.timecapsule.service.AttachmentService;
-import dev.horbatiuk.timecapsule.service.CapsuleService;
+import dev.horbatiuk.timecapsule.service.CapsuleAccessService;
+import dev.horbatiuk.timecapsule.service.aws.S3Service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
-
-import java.util.Collections;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -32,7 +57,7 @@ class UserAttachmentControllerTest {
     private AttachmentService attachmentService;
 
     @Mock
-    private CapsuleService capsuleService;
+    private CapsuleAccessService capsuleAccessService;
 
     @Mock
     private CustomUserDetails user;
@@ -41,18 +66,25 @@ class UserAttachmentControllerTest {
     private MultipartFile file;
 
     private static final DataSize maxFileSize = DataSize.ofMegabytes(10);
+    private static final DataSize premiumMaxFileSize = DataSize.ofGigabytes(2);
+
+    private static final String STREAM_BOUNDARY = "----form42";
+
+    private final UUID userId = UUID.randomUUID();
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(user.getId()).thenReturn(userId);
         ReflectionTestUtils.setField(controller, "maxFileSize", maxFileSize);
+        ReflectionTestUtils.setField(controller, "premiumMaxFileSize", premiumMaxFileSize);
     }
 
     @Test
     void getAttachments_accessDenied_throwsAppException() {
         UUID capsuleId = UUID.randomUUID();
         when(user.getEmail()).thenReturn("user@example.com");
-        when(capsuleService.userHasAccess(capsuleId, user.getEmail())).thenReturn(false);
+        when(capsuleAccessService.findOwned(capsuleId, userId)).thenReturn(Optional.empty());
 
         AppException ex = assertThrows(AppException.class, () ->
                 controller.getAttachments(capsuleId, user));
@@ -64,7 +96,7 @@ class UserAttachmentControllerTest {
     void getAttachments_success() {
         UUID capsuleId = UUID.randomUUID();
         when(user.getEmail()).thenReturn("user@example.com");
-        when(capsuleService.userHasAccess(capsuleId, user.getEmail())).thenReturn(true);
+        grantAccess(capsuleId);
 
         List<AttachmentResponseDTO> attachments = List.of(new AttachmentResponseDTO(), new AttachmentResponseDTO());
         when(attachmentService.getAttachmentsByCapsuleId(capsuleId)).thenReturn(attachments);
@@ -78,12 +110,15 @@ class UserAttachmentControllerTest {
     }
 
     @Test
-    void addAttachment_exceedsMaxAttachments_throwsAppException() {
+    void addAttachment_exceedsMaxAttachments_throwsAppException() throws Exception {
         UUID capsuleId = UUID.randomUUID();
+        controller.userMaxAttachmentsPerCapsule = 5;
 
         when(user.isPremiumUser()).thenReturn(false);
-        when(attachmentService.getAttachmentsByCapsuleId(capsuleId))
-                .thenReturn(Collections.nCopies(5, new AttachmentResponseDTO())); // рівно ліміт
+        when(user.getEmail()).thenReturn("user@example.com");
+        when(file.getSize()).thenReturn(500L);
+        doThrow(new AppException("Maximum number of attachments exceeded", HttpStatus.FORBIDDEN))
+                .when(attachmentService).addAttachmentToCapsule(capsuleId, "desc", "user@example.com", file, 5);
 
         AppException ex = assertThrows(AppException.class, () ->
                 controller.addAttachment(capsuleId, user, "desc", file));
@@ -96,8 +131,6 @@ class UserAttachmentControllerTest {
         UUID capsuleId = UUID.randomUUID();
 
         when(user.isPremiumUser()).thenReturn(false);
-        when(attachmentService.getAttachmentsByCapsuleId(capsuleId))
-                .thenReturn(Collections.emptyList());
         when(file.getSize()).thenReturn(maxFileSize.toBytes() + 1);
 
         AppException ex = assertThrows(AppException.class, () ->
@@ -106,6 +139,16 @@ class UserAttachmentControllerTest {
         assertEquals("File size exceeded", ex.getMessage());
     }
 
+    @Test
+    void addAttachment_fileTooLarge_doesNotTouchQuota() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+
+        when(file.getSize()).thenReturn(maxFileSize.toBytes() + 1);
+
+        assertThrows(AppException.class, () -> controller.addAttachment(capsuleId, user, "desc", file));
+        verify(attachmentService, never()).addAttachmentToCapsule(any(), any(), any(), any(), anyInt());
+    }
+
     @Test
     void addAttachment_success() throws Exception {
         UUID capsuleId = UUID.randomUUID();
@@ -116,15 +159,122 @@ class UserAttachmentControllerTest {
 
         when(user.isPremiumUser()).thenReturn(false);
         when(user.getEmail()).thenReturn("user@example.com");
-        when(attachmentService.getAttachmentsByCapsuleId(capsuleId))
-                .thenReturn(Collections.emptyList());
 
         when(file.getSize()).thenReturn(500L);
 
         ResponseEntity<Void> response = controller.addAttachment(capsuleId, user, "desc", file);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(attachmentService).addAttachmentToCapsule(capsuleId, "desc", "user@example.com", file);
+        verify(attachmentService).addAttachmentToCapsule(capsuleId, "desc", "user@example.com", file, 3);
+    }
+
+    @Test
+    void addAttachment_premiumUser_keepsToRegularLimit() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+
+        when(user.isPremiumUser()).thenReturn(true);
+        when(file.getSize()).thenReturn(maxFileSize.toBytes() + 1);
+
+        AppException ex = assertThrows(AppException.class, () ->
+                controller.addAttachment(capsuleId, user, "desc", file));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ex.getStatus());
+        verify(attachmentService, never()).addAttachmentToCapsule(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void addAttachment_premiumUser_fileTooLarge_throwsAppException() {
+        UUID capsuleId = UUID.randomUUID();
+
+        when(user.isPremiumUser()).thenReturn(true);
+        when(file.getSize()).thenReturn(premiumMaxFileSize.toBytes() + 1);
+
+        AppException ex = assertThrows(AppException.class, () ->
+                controller.addAttachment(capsuleId, user, "desc", file));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ex.getStatus());
+    }
+
+    @Test
+    void streamAttachment_success_pipesFilePartIntoService() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        controller.userMaxAttachmentsPerCapsule = 3;
+
+        when(user.isPremiumUser()).thenReturn(false);
+        when(user.getEmail()).thenReturn("user@example.com");
+        AtomicReference<String> uploaded = new AtomicReference<>();
+        doAnswer(inv -> {
+            InputStreamSource content = inv.getArgument(6);
+            uploaded.set(new String(content.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+            return null;
+        }).when(attachmentService).addAttachmentToCapsule(eq(capsuleId), eq("desc"), eq("user@example.com"),
+                eq("notes.txt"), eq("text/plain"), eq(7L), any(), eq(3));
+
+        ResponseEntity<Void> response = controller.streamAttachment(capsuleId, user,
+                multipartRequest(streamForm("desc", "7", "content")));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("content", uploaded.get());
+    }
+
+    @Test
+    void streamAttachment_declaredSizeTooLarge_rejectedBeforeReadingFile() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+
+        when(user.isPremiumUser()).thenReturn(false);
+        String declared = String.valueOf(maxFileSize.toBytes() + 1);
+
+        AppException ex = assertThrows(AppException.class, () ->
+                controller.streamAttachment(capsuleId, user, multipartRequest(streamForm("desc", declared, "content"))));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ex.getStatus());
+        verifyNoInteractions(attachmentService);
+    }
+
+    @Test
+    void streamAttachment_fileLongerThanDeclared_throwsBadRequest() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        controller.userMaxAttachmentsPerCapsule = 3;
+
+        when(user.isPremiumUser()).thenReturn(false);
+        when(user.getEmail()).thenReturn("user@example.com");
+        doAnswer(inv -> {
+            InputStreamSource content = inv.getArgument(6);
+            try {
+                content.getInputStream().readAllBytes();
+            } catch (IOException e) {
+                throw new S3ActionException("S3 upload failed for: notes.txt", e);
+            }
+            return null;
+        }).when(attachmentService).addAttachmentToCapsule(any(), any(), any(), any(), any(), anyLong(), any(), anyInt());
+
+        AppException ex = assertThrows(AppException.class, () ->
+                controller.streamAttachment(capsuleId, user, multipartRequest(streamForm("desc", "3", "content"))));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
+    }
+
+    @Test
+    void streamAttachment_fieldsAfterFile_throwsBadRequest() {
+        UUID capsuleId = UUID.randomUUID();
+        String form = "--" + STREAM_BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"notes.txt\"\r\n\r\n"
+                + "content\r\n"
+                + "--" + STREAM_BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"size\"\r\n\r\n7\r\n"
+                + "--" + STREAM_BOUNDARY + "--\r\n";
+
+        AppException ex = assertThrows(AppException.class, () ->
+                controller.streamAttachment(capsuleId, user, multipartRequest(form)));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
+        verifyNoInteractions(attachmentService);
+    }
+
+    @Test
+    void streamAttachment_notMultipart_throwsBadRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/");
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent("{}".getBytes(StandardCharsets.UTF_8));
+
+        AppException ex = assertThrows(AppException.class, () ->
+                controller.streamAttachment(UUID.randomUUID(), user, request));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
     }
 
     @Test
@@ -133,7 +283,7 @@ class UserAttachmentControllerTest {
         UUID attachmentId = UUID.randomUUID();
 
         when(user.getEmail()).thenReturn("user@example.com");
-        when(capsuleService.userHasAccess(capsuleId, user.getEmail())).thenReturn(false);
+        when(capsuleAccessService.findOwned(capsuleId, userId)).thenReturn(Optional.empty());
 
         AppException ex = assertThrows(AppException.class, () ->
                 controller.deleteAttachment(capsuleId, attachmentId, user));
@@ -147,7 +297,7 @@ class UserAttachmentControllerTest {
         UUID attachmentId = UUID.randomUUID();
 
         when(user.getEmail()).thenReturn("user@example.com");
-        when(capsuleService.userHasAccess(capsuleId, user.getEmail())).thenReturn(true);
+        grantAccess(capsuleId);
 
         ResponseEntity<Void> response = controller.deleteAttachment(capsuleId, attachmentId, user);
 
@@ -161,7 +311,7 @@ class UserAttachmentControllerTest {
         UUID attachmentId = UUID.randomUUID();
 
         when(user.getEmail()).thenReturn("user@example.com");
-        when(capsuleService.userHasAccess(capsuleId, user.getEmail())).thenReturn(true);
+        grantAccess(capsuleId);
 
         doThrow(new IllegalArgumentException("Attachment not found"))
                 .when(attachmentService).deleteAttachmentFromCapsule(capsuleId, attachmentId, "user@example.com");
@@ -178,7 +328,7 @@ class UserAttachmentControllerTest {
         UUID attachmentId = UUID.randomUUID();
 
         when(user.getEmail()).thenReturn("user@example.com");
-        when(capsuleService.userHasAccess(capsuleId, user.getEmail())).thenReturn(true);
+        grantAccess(capsuleId);
 
         doThrow(new SecurityException("Forbidden"))
                 .when(attachmentService).deleteAttachmentFromCapsule(capsuleId, attachmentId, "user@example.com");
@@ -195,7 +345,7 @@ class UserAttachmentControllerTest {
         UUID attachmentId = UUID.randomUUID();
 
         when(user.getEmail()).thenReturn("user@example.com");
-        when(capsuleService.userHasAccess(capsuleId, user.getEmail())).thenReturn(true);
+        grantAccess(capsuleId);
 
         doThrow(new RuntimeException("Unknown error"))
                 .when(attachmentService).deleteAttachmentFromCapsule(capsuleId, attachmentId, "user@example.com");
@@ -205,4 +355,194 @@ class UserAttachmentControllerTest {
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, ex.getStatus());
         assertEquals("Failed to delete attachment", ex.getMessage());
     }
+
+    @Test
+    void downloadAttachment_range_streamsPartialContent() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        UUID attachmentId = UUID.randomUUID();
+        grantAccess(capsuleId);
+        AttachmentResponseDTO attachment = attachment(capsuleId, attachmentId, "photo.png");
+        when(attachmentService.getAttachment(capsuleId, attachmentId)).thenReturn(attachment);
+
+        byte[] part = "0123456789".getBytes(StandardCharsets.UTF_8);
+        S3Service.FileDownload download = new S3Service.FileDownload(HttpStatus.PARTIAL_CONTENT,
+                new ResponseInputStream<>(GetObjectResponse.builder().build(),
+                        AbortableInputStream.create(new ByteArrayInputStream(part))),
+                10L, "bytes 0-9/1000", "image/png", "\"abc\"");
+        when(attachmentService.openAttachment(attachment, "bytes=0-9", null)).thenReturn(download);
+
+        ResponseEntity<StreamingResponseBody> response =
+                controller.downloadAttachment(capsuleId, attachmentId, "bytes=0-9", null, user);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        HttpHeaders headers = response.getHeaders();
+        assertEquals("bytes", headers.getFirst(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("bytes 0-9/1000", headers.getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals("\"abc\"", headers.getETag());
+        assertEquals(10L, headers.getContentLength());
+        assertEquals(MediaType.IMAGE_PNG, headers.getContentType());
+        assertEquals("photo.png", headers.getContentDisposition().getFilename());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertNotNull(response.getBody());
+        response.getBody().writeTo(out);
+        assertArrayEquals(part, out.toByteArray());
+    }
+
+    @Test
+    void downloadAttachment_notModified_hasNoBody() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        UUID attachmentId = UUID.randomUUID();
+        grantAccess(capsuleId);
+        AttachmentResponseDTO attachment = attachment(capsuleId, attachmentId, "photo.png");
+        when(attachmentService.getAttachment(capsuleId, attachmentId)).thenReturn(attachment);
+        when(attachmentService.openAttachment(attachment, null, "\"abc\""))
+                .thenReturn(new S3Service.FileDownload(HttpStatus.NOT_MODIFIED, null, null, null, null, "\"abc\""));
+
+        ResponseEntity<StreamingResponseBody> response =
+                controller.downloadAttachment(capsuleId, attachmentId, null, "\"abc\"", user);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"abc\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void downloadAttachment_rangeNotSatisfiable_reportsFileLength() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        UUID attachmentId = UUID.randomUUID();
+        grantAccess(capsuleId);
+        AttachmentResponseDTO attachment = attachment(capsuleId, attachmentId, "photo.png");
+        when(attachmentService.getAttachment(capsuleId, attachmentId)).thenReturn(attachment);
+        when(attachmentService.openAttachment(attachment, "bytes=5000-", null))
+                .thenReturn(new S3Service.FileDownload(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE,
+                        null, null, "bytes */1000", null, null));
+
+        ResponseEntity<StreamingResponseBody> response =
+                controller.downloadAttachment(capsuleId, attachmentId, "bytes=5000-", null, user);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */1000", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void downloadAttachment_accessDenied_throwsForbidden() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        when(user.getEmail()).thenReturn("user@example.com");
+        when(capsuleAccessService.findOwned(capsuleId, userId)).thenReturn(Optional.empty());
+
+        AppException ex = assertThrows(AppException.class, () ->
+                controller.downloadAttachment(capsuleId, UUID.randomUUID(), null, null, user));
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatus());
+        verify(attachmentService, never()).getAttachment(any(), any());
+    }
+
+    @Test
+    void downloadAttachment_notFound_throwsNotFound() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        UUID attachmentId = UUID.randomUUID();
+        grantAccess(capsuleId);
+        when(attachmentService.getAttachment(capsuleId, attachmentId))
+                .thenThrow(new NotFoundException("Attachment not found"));
+
+        AppException ex = assertThrows(AppException.class, () ->
+                controller.downloadAttachment(capsuleId, attachmentId, null, null, user));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatus());
+    }
+
+    @Test
+    void singleRange_keepsOneRangeAndIgnoresTheRest() {
+        assertEquals("bytes=0-9", UserAttachmentController.singleRange("bytes=0-9"));
+        assertEquals("bytes=100-", UserAttachmentController.singleRange("bytes=100-"));
+        assertEquals("bytes=-500", UserAttachmentController.singleRange("bytes=-500"));
+        assertNull(UserAttachmentController.singleRange("bytes=0-9,20-29"));
+        assertNull(UserAttachmentController.singleRange("lines=1-2"));
+        assertNull(UserAttachmentController.singleRange(null));
+    }
+
+    @Test
+    void startUpload_success_returnsPresignedUpload() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        when(user.getEmail()).thenReturn("user@example.com");
+        when(user.isPremiumUser()).thenReturn(false);
+        ReflectionTestUtils.setField(controller, "userMaxAttachmentsPerCapsule", 5);
+        AttachmentUploadRequestDTO request = new AttachmentUploadRequestDTO("a.png", "image/png", 100, null);
+        PresignedUploadDTO upload = new PresignedUploadDTO("k_a.png", "https://s3/put", Map.of(), Instant.now());
+        when(attachmentService.startUpload(capsuleId, "user@example.com", request, 5)).thenReturn(upload);
+
+        ResponseEntity<PresignedUploadDTO> response = controller.startUpload(capsuleId, user, request);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(upload, response.getBody());
+    }
+
+    @Test
+    void startUpload_fileTooLarge_throwsPayloadTooLarge() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        when(user.getEmail()).thenReturn("user@example.com");
+        AttachmentUploadRequestDTO request =
+                new AttachmentUploadRequestDTO("a.png", "image/png", maxFileSize.toBytes() + 1, null);
+
+        AppException ex = assertThrows(AppException.class, () -> controller.startUpload(capsuleId, user, request));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, ex.getStatus());
+        verify(attachmentService, never()).startUpload(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void commitUpload_accessDenied_throwsForbidden() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        when(user.getEmail()).thenReturn("user@example.com");
+        when(user.isPremiumUser()).thenReturn(true);
+        AttachmentCommitRequestDTO request =
+                new AttachmentCommitRequestDTO("k_a.png", "a.png", "d", "image/png", 100, null);
+        when(attachmentService.commitUpload(capsuleId, "user@example.com", request, premiumMaxFileSize.toBytes()))
+                .thenThrow(new AccessDeniedException("Cannot modify an active capsule"));
+
+        AppException ex = assertThrows(AppException.class, () -> controller.commitUpload(capsuleId, user, request));
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatus());
+    }
+
+    @Test
+    void getDownloadUrl_success() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        UUID attachmentId = UUID.randomUUID();
+        grantAccess(capsuleId);
+        AttachmentResponseDTO attachment = attachment(capsuleId, attachmentId, "photo.png");
+        when(attachmentService.getAttachment(capsuleId, attachmentId)).thenReturn(attachment);
+        PresignedDownloadDTO download = new PresignedDownloadDTO("https://s3/get", Instant.now());
+        when(attachmentService.presignDownload(attachment)).thenReturn(download);
+
+        ResponseEntity<PresignedDownloadDTO> response = controller.getDownloadUrl(capsuleId, attachmentId, user);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(download, response.getBody());
+    }
+
+    private static String streamForm(String description, String size, String content) {
+        return "--" + STREAM_BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"description\"\r\n\r\n" + description + "\r\n"
+                + "--" + STREAM_BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"size\"\r\n\r\n" + size + "\r\n"
+                + "--" + STREAM_BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"notes.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + content + "\r\n"
+                + "--" + STREAM_BOUNDARY + "--\r\n";
+    }
+
+    private static MockHttpServletRequest multipartRequest(String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/");
+        request.setContentType("multipart/form-data; boundary=" + STREAM_BOUNDARY);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private static AttachmentResponseDTO attachment(UUID capsuleId, UUID attachmentId, String filename) {
+        return new AttachmentResponseDTO(attachmentId, filename, "description", "key_" + filename, capsuleId);
+    }
+
+    private void grantAccess(UUID capsuleId) {
+        when(capsuleAccessService.findOwned(capsuleId, userId))
+                .thenReturn(Optional.of(new CapsuleAccessDTO(capsuleId, userId, CapsuleStatus.INACTIVE)));
+    }
 }
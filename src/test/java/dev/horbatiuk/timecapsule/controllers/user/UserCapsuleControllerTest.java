@@ -2,15 +2,16 @@ package dev.horbatiuk.timecapsule.controllers.user;
 
 import dev.horbatiuk.timecapsule.exception.NotFoundException;
 import dev.horbatiuk.timecapsule.exception.controller.AppException;
-import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.CountMode;
+import dev.horbatiuk.timecapsule.persistence.dto.CursorPageDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleAccessDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleCreateDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.EditCapsuleDTO;
 import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
 import dev.horbatiuk.timecapsule.security.CustomUserDetails;
+import dev.horbatiuk.timecapsule.service.CapsuleAccessService;
 import dev.horbatiuk.timecapsule.service.CapsuleService;
-import dev.horbatiuk.timecapsule.service.aws.EventBridgeScheduledService;
-import dev.horbatiuk.timecapsule.service.aws.S3Service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -20,11 +21,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.sql.Timestamp;
-import java.time.Instant;
-import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -35,47 +34,54 @@ class UserCapsuleControllerTest {
     @InjectMocks
     private UserCapsuleController controller;
 
-    @Mock
-    private CapsuleRepository capsuleRepository;
-
     @Mock
     private CapsuleService capsuleService;
 
     @Mock
-    private S3Service s3Service;
-
-    @Mock
-    private EventBridgeScheduledService eventBridgeScheduledService;
+    private CapsuleAccessService capsuleAccessService;
 
     private CustomUserDetails userDetails;
+    private UUID userId;
 
     @BeforeEach
     void setup() {
         MockitoAnnotations.openMocks(this);
 
         userDetails = mock(CustomUserDetails.class);
+        userId = UUID.randomUUID();
         when(userDetails.getEmail()).thenReturn("user@example.com");
+        when(userDetails.getId()).thenReturn(userId);
     }
 
     @Test
-    void getCapsulesByUser_shouldReturnList() {
-        List<CapsuleResponseDTO> list = List.of(new CapsuleResponseDTO());
-        when(capsuleService.findCapsulesByEmail("user@example.com")).thenReturn(list);
-
-        ResponseEntity<List<CapsuleResponseDTO>> response = controller.getCapsulesByUser(userDetails);
+    void getCapsulesByUser_shouldReturnPage() {
+        CursorPageDTO<CapsuleResponseDTO> page = CursorPageDTO.<CapsuleResponseDTO>builder()
+                .items(List.of(new CapsuleResponseDTO()))
+                .nextCursor("next")
+                .build();
+        when(capsuleService.findCapsulePageByUserId(userId, "cursor", 20, CountMode.NONE)).thenReturn(page);
+
+        ResponseEntity<CursorPageDTO<CapsuleResponseDTO>> response =
+                controller.getCapsulesByUser(userDetails, "cursor", 20, CountMode.NONE);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
-        assertEquals(1, response.getBody().size());
+        assertEquals(1, response.getBody().getItems().size());
+        assertEquals("next", response.getBody().getNextCursor());
     }
 
     @Test
-    void getCapsulesByUser_shouldReturnEmptyList() {
-        when(capsuleService.findCapsulesByEmail("user@example.com")).thenReturn(Collections.emptyList());
-
-        ResponseEntity<List<CapsuleResponseDTO>> response = controller.getCapsulesByUser(userDetails);
+    void getCapsulesByUser_shouldReturnEmptyPage() {
+        CursorPageDTO<CapsuleResponseDTO> page = CursorPageDTO.<CapsuleResponseDTO>builder()
+                .items(Collections.emptyList())
+                .build();
+        when(capsuleService.findCapsulePageByUserId(userId, null, 20, CountMode.NONE)).thenReturn(page);
+
+        ResponseEntity<CursorPageDTO<CapsuleResponseDTO>> response =
+                controller.getCapsulesByUser(userDetails, null, 20, CountMode.NONE);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
-        assertTrue(response.getBody().isEmpty());
+        assertTrue(response.getBody().getItems().isEmpty());
+        assertNull(response.getBody().getNextCursor());
     }
 
     @Test
@@ -90,8 +96,7 @@ class UserCapsuleControllerTest {
         when(userDetails.getEmail()).thenReturn("user@example.com");
         when(userDetails.isVerified()).thenReturn(true);
         when(userDetails.isPremiumUser()).thenReturn(false);
-        when(capsuleRepository.countByAppUserEmail("user@example.com")).thenReturn(1L);
-        when(capsuleService.addNewCapsule("user@example.com", dto))
+        when(capsuleService.addNewCapsule("user@example.com", dto, 5))
                 .thenReturn(responseDTO);
         ReflectionTestUtils.setField(controller, "userMaxCapsules", 5);
         ReflectionTestUtils.setField(controller, "premiumUserMaxCapsules", 10);
@@ -100,7 +105,7 @@ class UserCapsuleControllerTest {
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals(responseDTO.getId(), response.getBody().getId());
-        verify(capsuleService).addNewCapsule("user@example.com", dto);
+        verify(capsuleService).addNewCapsule("user@example.com", dto, 5);
     }
 
     @Test
@@ -115,12 +120,16 @@ class UserCapsuleControllerTest {
 
     @Test
     void addNewCapsuleByUser_shouldFail_ifLimitExceeded() {
+        CapsuleCreateDTO dto = new CapsuleCreateDTO();
         when(userDetails.isVerified()).thenReturn(true);
-        when(userDetails.isPremiumUser()).thenReturn(false);
-        when(capsuleRepository.countByAppUserEmail("user@example.com")).thenReturn(3L);
+        when(userDetails.isPremiumUser()).thenReturn(true);
+        ReflectionTestUtils.setField(controller, "userMaxCapsules", 5);
+        ReflectionTestUtils.setField(controller, "premiumUserMaxCapsules", 10);
+        when(capsuleService.addNewCapsule("user@example.com", dto, 10))
+                .thenThrow(new AppException("Limit reached, max: 10 capsules", HttpStatus.FORBIDDEN));
 
         AppException exception = assertThrows(AppException.class, () ->
-                controller.addNewCapsuleByUser(userDetails, new CapsuleCreateDTO())
+                controller.addNewCapsuleByUser(userDetails, dto)
         );
         assertEquals(HttpStatus.FORBIDDEN, exception.getStatus());
     }
@@ -128,23 +137,31 @@ class UserCapsuleControllerTest {
     @Test
     void changeCapsuleStatusToActive_shouldWork() throws Exception {
         UUID capsuleId = UUID.randomUUID();
-        CapsuleResponseDTO dto = new CapsuleResponseDTO();
-        dto.setOpenAt(Timestamp.valueOf(LocalDateTime.now()));
-
-        when(capsuleService.userHasAccess(capsuleId, "user@example.com")).thenReturn(true);
-        when(capsuleService.findCapsuleById(capsuleId)).thenReturn(dto);
+        grantAccess(capsuleId, CapsuleStatus.INACTIVE);
 
         ResponseEntity<Void> response = controller.changeCapsuleStatusToActive(userDetails, capsuleId);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        verify(s3Service).uploadCapsuleData(dto);
-        verify(eventBridgeScheduledService).createNewSchedule(eq(capsuleId), any(Instant.class));
+        verify(capsuleService).setCapsuleStatus(capsuleId, CapsuleStatus.ACTIVE);
+        verify(capsuleService, never()).findCapsuleById(any());
+    }
+
+    @Test
+    void changeCapsuleStatusToActive_shouldFail_ifNotFound() throws Exception {
+        UUID capsuleId = UUID.randomUUID();
+        grantAccess(capsuleId, CapsuleStatus.INACTIVE);
+        doThrow(new NotFoundException("Not found")).when(capsuleService).setCapsuleStatus(capsuleId, CapsuleStatus.ACTIVE);
+
+        AppException exception = assertThrows(AppException.class, () ->
+                controller.changeCapsuleStatusToActive(userDetails, capsuleId)
+        );
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
     }
 
     @Test
     void changeCapsuleStatusToActive_shouldFail_ifNoAccess() {
         UUID capsuleId = UUID.randomUUID();
-        when(capsuleService.userHasAccess(capsuleId, "user@example.com")).thenReturn(false);
+        when(capsuleAccessService.findOwned(capsuleId, userId)).thenReturn(Optional.empty());
 
         AppException exception = assertThrows(AppException.class, () ->
                 controller.changeCapsuleStatusToActive(userDetails, capsuleId)
@@ -157,11 +174,7 @@ class UserCapsuleControllerTest {
         UUID capsuleId = UUID.randomUUID();
         EditCapsuleDTO dto = new EditCapsuleDTO();
 
-        when(userDetails.getEmail()).thenReturn("user@example.com");
-        when(capsuleService.userHasAccess(capsuleId, "user@example.com")).thenReturn(true);
-        CapsuleResponseDTO capsule = mock(CapsuleResponseDTO.class);
-        when(capsule.getStatus()).thenReturn(CapsuleStatus.INACTIVE);
-        when(capsuleService.findCapsuleById(capsuleId)).thenReturn(capsule);
+        grantAccess(capsuleId, CapsuleStatus.INACTIVE);
 
         ResponseEntity<Void> response = controller.editCapsule(userDetails, capsuleId, dto);
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -173,10 +186,8 @@ class UserCapsuleControllerTest {
         UUID capsuleId = UUID.randomUUID();
         EditCapsuleDTO dto = new EditCapsuleDTO();
 
-        when(capsuleService.userHasAccess(capsuleId, "user@example.com")).thenReturn(true);
-        when(userDetails.getEmail()).thenReturn("user@example.com");
-        when(capsuleService.findCapsuleById(capsuleId))
-                .thenThrow(new dev.horbatiuk.timecapsule.exception.NotFoundException("Not found"));
+        grantAccess(capsuleId, CapsuleStatus.INACTIVE);
+        doThrow(new NotFoundException("Not found")).when(capsuleService).editCapsule(capsuleId, dto);
 
         AppException exception = assertThrows(AppException.class, () ->
                 controller.editCapsule(userDetails, capsuleId, dto)
@@ -188,7 +199,7 @@ class UserCapsuleControllerTest {
     void editCapsule_shouldFail_ifNoAccess() {
         UUID capsuleId = UUID.randomUUID();
 
-        when(capsuleService.userHasAccess(capsuleId, "user@example.com")).thenReturn(false);
+        when(capsuleAccessService.findOwned(capsuleId, userId)).thenReturn(Optional.empty());
 
         AppException exception = assertThrows(AppException.class, () ->
                 controller.editCapsule(userDetails, capsuleId, new EditCapsuleDTO())
@@ -196,4 +207,23 @@ class UserCapsuleControllerTest {
 
         assertEquals(HttpStatus.FORBIDDEN, exception.getStatus());
     }
+
+    @Test
+    void editCapsule_shouldFail_ifActive() throws NotFoundException {
+        UUID capsuleId = UUID.randomUUID();
+        grantAccess(capsuleId, CapsuleStatus.ACTIVE);
+
+        AppException exception = assertThrows(AppException.class, () ->
+                controller.editCapsule(userDetails, capsuleId, new EditCapsuleDTO())
+        );
+
+        assertEquals(HttpStatus.FORBIDDEN, exception.getStatus());
+        verify(capsuleService, never()).editCapsule(any(), any());
+        verify(capsuleService, never()).findCapsuleById(any());
+    }
+
+    private void grantAccess(UUID capsuleId, CapsuleStatus status) {
+        when(capsuleAccessService.findOwned(capsuleId, userId))
+                .thenReturn(Optional.of(new CapsuleAccessDTO(capsuleId, userId, status)));
+    }
 }
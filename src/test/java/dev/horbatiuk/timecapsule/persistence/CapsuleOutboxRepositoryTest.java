@@ -0,0 +1,109 @@
+package dev.horbatiuk.timecapsule.persistence;
+
+import dev.horbatiuk.timecapsule.persistence.entities.CapsuleOutbox;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleOutboxStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapsuleOutboxRepositoryTest extends PostgresJpaTest {
+
+    @Autowired
+    private CapsuleOutboxRepository capsuleOutboxRepository;
+
+    @Test
+    void enqueue_ShouldKeepOnePendingRowPerCapsule() {
+        UUID capsuleId = UUID.randomUUID();
+
+        assertEquals(1, capsuleOutboxRepository.enqueue(capsuleId));
+        assertEquals(0, capsuleOutboxRepository.enqueue(capsuleId));
+
+        assertEquals(1, capsuleOutboxRepository.count());
+    }
+
+    @Test
+    void enqueue_ShouldQueueAgain_WhileEarlierSyncIsProcessing() {
+        UUID capsuleId = UUID.randomUUID();
+        capsuleOutboxRepository.enqueue(capsuleId);
+        List<CapsuleOutbox> claimed = capsuleOutboxRepository.claimBatch(10, 60);
+
+        assertEquals(1, capsuleOutboxRepository.enqueue(capsuleId));
+
+        assertEquals(1, claimed.size());
+        assertEquals(CapsuleOutboxStatus.PROCESSING, claimed.get(0).getStatus());
+        assertEquals(1, claimed.get(0).getAttempts());
+    }
+
+    @Test
+    void claimBatch_ShouldNotClaimSecondSync_WhileFirstIsProcessing() {
+        UUID capsuleId = UUID.randomUUID();
+        capsuleOutboxRepository.enqueue(capsuleId);
+        CapsuleOutbox first = capsuleOutboxRepository.claimBatch(10, 60).get(0);
+        capsuleOutboxRepository.enqueue(capsuleId);
+
+        assertTrue(capsuleOutboxRepository.claimBatch(10, 60).isEmpty());
+
+        capsuleOutboxRepository.markDone(first.getId());
+        List<CapsuleOutbox> second = capsuleOutboxRepository.claimBatch(10, 60);
+        assertEquals(1, second.size());
+        assertNotEquals(first.getId(), second.get(0).getId());
+    }
+
+    @Test
+    void claimBatch_ShouldReclaimOlderSyncOnly_WhenItsLeaseRanOut() {
+        UUID capsuleId = UUID.randomUUID();
+        UUID otherCapsuleId = UUID.randomUUID();
+        capsuleOutboxRepository.enqueue(capsuleId);
+        CapsuleOutbox first = capsuleOutboxRepository.claimBatch(10, -1).get(0);
+        capsuleOutboxRepository.enqueue(capsuleId);
+        capsuleOutboxRepository.enqueue(otherCapsuleId);
+
+        List<CapsuleOutbox> claimed = capsuleOutboxRepository.claimBatch(10, 60);
+
+        assertEquals(2, claimed.size());
+        assertTrue(claimed.stream().anyMatch(row -> row.getId().equals(first.getId())), "the older sync goes first");
+        assertTrue(claimed.stream().anyMatch(row -> row.getCapsuleId().equals(otherCapsuleId)));
+    }
+
+    @Test
+    void enqueueIfProcessing_ShouldQueueOnlyCapsulesWithRunningSync() {
+        UUID processing = UUID.randomUUID();
+        UUID idle = UUID.randomUUID();
+        capsuleOutboxRepository.enqueue(processing);
+        capsuleOutboxRepository.claimBatch(10, 60);
+
+        assertEquals(1, capsuleOutboxRepository.enqueueIfProcessing(List.of(processing, idle)));
+        assertEquals(0, capsuleOutboxRepository.enqueueIfProcessing(List.of(processing, idle)));
+
+        assertEquals(2, capsuleOutboxRepository.count());
+    }
+
+    @Test
+    void scheduleRetry_ShouldDropRow_WhenNewerSyncIsPending() {
+        UUID capsuleId = UUID.randomUUID();
+        capsuleOutboxRepository.enqueue(capsuleId);
+        CapsuleOutbox claimed = capsuleOutboxRepository.claimBatch(10, 60).get(0);
+        capsuleOutboxRepository.enqueue(capsuleId);
+
+        capsuleOutboxRepository.scheduleRetry(claimed.getId(), 30, "S3 down");
+
+        assertFalse(capsuleOutboxRepository.existsById(claimed.getId()));
+        assertEquals(1, capsuleOutboxRepository.count());
+    }
+
+    @Test
+    void scheduleRetry_ShouldRequeueRow_WhenNothingElseIsPending() {
+        UUID capsuleId = UUID.randomUUID();
+        capsuleOutboxRepository.enqueue(capsuleId);
+        CapsuleOutbox claimed = capsuleOutboxRepository.claimBatch(10, 60).get(0);
+
+        capsuleOutboxRepository.scheduleRetry(claimed.getId(), 30, "S3 down");
+
+        assertTrue(capsuleOutboxRepository.existsById(claimed.getId()));
+        assertTrue(capsuleOutboxRepository.claimBatch(10, 60).isEmpty(), "retry must wait for its backoff");
+    }
+}
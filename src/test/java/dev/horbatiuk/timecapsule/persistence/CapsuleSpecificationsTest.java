@@ -0,0 +1,155 @@
+package dev.horbatiuk.timecapsule.persistence;
+
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapsuleSpecificationsTest extends PostgresJpaTest {
+
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    private static final PageRequest PAGE = PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "title"));
+
+    @Autowired
+    private CapsuleRepository capsuleRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        alice = persistUser("alice");
+        bob = persistUser("bob");
+        persistCapsule("alice-soon", alice, CapsuleStatus.ACTIVE, NOW.plus(1, ChronoUnit.DAYS));
+        persistCapsule("alice-later", alice, CapsuleStatus.DRAFT, NOW.plus(30, ChronoUnit.DAYS));
+        persistCapsule("bob-soon", bob, CapsuleStatus.ACTIVE, NOW.plus(2, ChronoUnit.DAYS));
+        persistCapsule("bob-later", bob, CapsuleStatus.INACTIVE, NOW.plus(60, ChronoUnit.DAYS));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void adminSearch_ShouldReturnEverything_WhenNoFilters() {
+        Page<Capsule> page = search(null, null, null, null, null, null);
+
+        assertEquals(4, page.getTotalElements());
+    }
+
+    @Test
+    void adminSearch_ShouldFilterOpenAt_NotCreatedAt() {
+        Page<Capsule> page = search(null, null, null, null,
+                NOW.plus(1, ChronoUnit.DAYS), NOW.plus(10, ChronoUnit.DAYS));
+
+        assertEquals(List.of("alice-soon", "bob-soon"), titles(page));
+    }
+
+    @Test
+    void adminSearch_ShouldFilterByOwnerEmail_AndCountMatches() {
+        Page<Capsule> page = capsuleRepository.findAll(
+                CapsuleSpecifications.adminSearch("bob@example.com", null, null, null, null, null),
+                PageRequest.of(0, 1, Sort.by("title")));
+
+        assertEquals(List.of("bob-later"), titles(page));
+        assertEquals(2, page.getTotalElements());
+    }
+
+    @Test
+    void adminSearch_ShouldFilterByUserIdAndStatus() {
+        Page<Capsule> page = search(null, alice, CapsuleStatus.DRAFT, null, null, null);
+
+        assertEquals(List.of("alice-later"), titles(page));
+    }
+
+    @Test
+    void adminSearch_ShouldFilterByTitle() {
+        Page<Capsule> page = search(null, null, null, "bob-soon", null, null);
+
+        assertEquals(List.of("bob-soon"), titles(page));
+    }
+
+    @Test
+    void adminSearch_ShouldFetchOwnerWithPage() {
+        Page<Capsule> page = search(null, null, CapsuleStatus.ACTIVE, null, null, null);
+
+        long statements = countStatements(() -> page.getContent().forEach(c -> c.getAppUser().getEmail()));
+
+        assertEquals(0, statements);
+    }
+
+    @Test
+    void after_ShouldWalkEveryRowOnce_WhenCreatedAtTies() {
+        entityManager.getEntityManager()
+                .createNativeQuery("UPDATE capsule SET created_at = :createdAt WHERE title <> 'bob-later'")
+                .setParameter("createdAt", Timestamp.from(NOW))
+                .executeUpdate();
+        entityManager.clear();
+        List<String> expected = capsuleRepository.findAll(
+                CapsuleSpecifications.adminSearch(null, null, null, null, null, null),
+                CapsuleSpecifications.KEYSET_ORDER).stream().map(Capsule::getTitle).toList();
+
+        List<String> walked = new ArrayList<>();
+        CapsuleCursor cursor = null;
+        while (true) {
+            Specification<Capsule> spec = CapsuleSpecifications.adminSearch(null, null, null, null, null, null);
+            if (cursor != null) {
+                spec = spec.and(CapsuleSpecifications.after(CapsuleCursor.decode(cursor.encode())));
+            }
+            List<Capsule> page = capsuleRepository.findBy(spec,
+                    q -> q.sortBy(CapsuleSpecifications.KEYSET_ORDER).limit(1).all());
+            if (page.isEmpty()) {
+                break;
+            }
+            walked.add(page.get(0).getTitle());
+            cursor = CapsuleCursor.of(page.get(0));
+        }
+
+        assertEquals(4, walked.size());
+        assertEquals(expected, walked);
+    }
+
+    private Page<Capsule> search(String email, User owner, CapsuleStatus status, String title,
+                                 Instant openFrom, Instant openTo) {
+        return capsuleRepository.findAll(CapsuleSpecifications.adminSearch(
+                email, owner != null ? owner.getId() : null, status, title, openFrom, openTo), PAGE);
+    }
+
+    private static List<String> titles(Page<Capsule> page) {
+        return page.getContent().stream().map(Capsule::getTitle).toList();
+    }
+
+    private User persistUser(String name) {
+        return entityManager.persist(User.builder()
+                .name(name)
+                .email(name + "@example.com")
+                .password("hash")
+                .createdAt(Timestamp.from(NOW))
+                .build());
+    }
+
+    private void persistCapsule(String title, User owner, CapsuleStatus status, Instant openAt) {
+        entityManager.persist(Capsule.builder()
+                .title(title)
+                .status(status)
+                .openAt(Timestamp.from(openAt))
+                .appUser(owner)
+                .build());
+    }
+}
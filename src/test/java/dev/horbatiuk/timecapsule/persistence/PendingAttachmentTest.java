@@ -0,0 +1,149 @@
+package dev.horbatiuk.timecapsule.persistence;
+
+import dev.horbatiuk.timecapsule.persistence.entities.Attachment;
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.AttachmentStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingAttachmentTest extends PostgresJpaTest {
+
+    private static final long TTL_SECONDS = Duration.ofHours(6).toSeconds();
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
+    private Capsule capsule;
+
+    @BeforeEach
+    void setUp() {
+        User user = entityManager.persist(User.builder()
+                .name("pending")
+                .email("pending@example.com")
+                .password("hash")
+                .createdAt(Timestamp.from(Instant.now()))
+                .build());
+        capsule = entityManager.persist(Capsule.builder()
+                .title("pending-capsule")
+                .openAt(Timestamp.from(Instant.now().plus(1, ChronoUnit.DAYS)))
+                .appUser(user)
+                .build());
+    }
+
+    @Test
+    void markReady_ShouldFlipFreshPendingRow() {
+        Attachment pending = attachment("a.txt", AttachmentStatus.PENDING);
+
+        assertEquals(1, attachmentRepository.markReady(pending.getId(), TTL_SECONDS));
+        assertEquals(0, attachmentRepository.markReady(pending.getId(), TTL_SECONDS), "already READY");
+
+        entityManager.clear();
+        assertEquals(AttachmentStatus.READY, attachmentRepository.findById(pending.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void markReady_ShouldRefuseExpiredRow_ThatTheSweeperFinds() {
+        Attachment pending = attachment("a.txt", AttachmentStatus.PENDING);
+        age(pending.getId(), Duration.ofHours(7));
+
+        assertEquals(0, attachmentRepository.markReady(pending.getId(), TTL_SECONDS));
+
+        List<Attachment> expired = attachmentRepository.findExpiredPending(TTL_SECONDS, 10);
+        assertEquals(List.of(pending.getId()), expired.stream().map(Attachment::getId).toList());
+    }
+
+    @Test
+    void commitPending_ShouldFlipPendingRowOnce_WithCommittedDetails() {
+        Attachment pending = attachment("a.txt", AttachmentStatus.PENDING);
+
+        assertEquals(1, attachmentRepository.commitPending(pending.getId(), "b.txt", "notes", TTL_SECONDS));
+        assertEquals(0, attachmentRepository.commitPending(pending.getId(), "c.txt", "other", TTL_SECONDS),
+                "already committed");
+
+        entityManager.clear();
+        Attachment committed = attachmentRepository.findById(pending.getId()).orElseThrow();
+        assertEquals(AttachmentStatus.READY, committed.getStatus());
+        assertEquals("b.txt", committed.getFilename());
+        assertEquals("notes", committed.getDescription());
+    }
+
+    @Test
+    void fileKey_ShouldBeUniquePerCapsule() {
+        Attachment first = attachment("a.txt", AttachmentStatus.PENDING);
+
+        assertThrows(DataIntegrityViolationException.class, () -> attachmentRepository.saveAndFlush(Attachment.builder()
+                .capsule(capsule)
+                .filename("a.txt")
+                .fileKey(first.getFileKey())
+                .build()));
+    }
+
+    @Test
+    void findExpiredPending_ShouldSkipFreshAndReadyRows() {
+        attachment("fresh.txt", AttachmentStatus.PENDING);
+        Attachment ready = attachment("ready.txt", AttachmentStatus.READY);
+        age(ready.getId(), Duration.ofDays(30));
+
+        assertTrue(attachmentRepository.findExpiredPending(TTL_SECONDS, 10).isEmpty());
+    }
+
+    @Test
+    void deletePending_ShouldLeaveReadyRows() {
+        Attachment pending = attachment("a.txt", AttachmentStatus.PENDING);
+        Attachment ready = attachment("b.txt", AttachmentStatus.READY);
+
+        assertEquals(1, attachmentRepository.deletePending(pending.getId()));
+        assertEquals(0, attachmentRepository.deletePending(ready.getId()));
+
+        entityManager.clear();
+        assertTrue(attachmentRepository.findById(ready.getId()).isPresent());
+        assertFalse(attachmentRepository.findById(pending.getId()).isPresent());
+    }
+
+    @Test
+    void capsuleAttachments_ShouldOnlyListReadyRows() {
+        attachment("pending.txt", AttachmentStatus.PENDING);
+        attachment("ready.txt", AttachmentStatus.READY);
+
+        entityManager.clear();
+        Capsule loaded = entityManager.find(Capsule.class, capsule.getId());
+
+        assertEquals(List.of("ready.txt"), loaded.getAttachments().stream().map(Attachment::getFilename).toList());
+        assertEquals(List.of("ready.txt"), attachmentRepository
+                .findByCapsuleIdAndStatus(capsule.getId(), AttachmentStatus.READY).stream()
+                .map(Attachment::getFilename).toList());
+    }
+
+    private Attachment attachment(String filename, AttachmentStatus status) {
+        return entityManager.persistAndFlush(Attachment.builder()
+                .capsule(capsule)
+                .filename(filename)
+                .fileKey(UUID.randomUUID() + "_" + filename)
+                .status(status)
+                .build());
+    }
+
+    private void age(UUID attachmentId, Duration age) {
+        entityManager.getEntityManager()
+                .createNativeQuery("UPDATE attachments SET created_at = now() - make_interval(secs => :seconds) WHERE id = :id")
+                .setParameter("seconds", age.toSeconds())
+                .setParameter("id", attachmentId)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,145 @@
+package dev.horbatiuk.timecapsule.persistence;
+
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Races quota reservations from parallel transactions against a real database. Runs without
+ * the test-managed transaction, so every reservation commits or rolls back on its own.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class QuotaCounterTest extends PostgresJpaTest {
+
+    private static final int MAX = 5;
+    private static final int ATTEMPTS = 20;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CapsuleRepository capsuleRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private User user;
+    private Capsule capsule;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        user = userRepository.save(User.builder()
+                .name("quota")
+                .email("quota@example.com")
+                .password("hash")
+                .createdAt(Timestamp.from(Instant.now()))
+                .build());
+        capsule = capsuleRepository.save(Capsule.builder()
+                .title("quota-capsule")
+                .openAt(Timestamp.from(Instant.now().plus(1, ChronoUnit.DAYS)))
+                .appUser(user)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        capsuleRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void reserveCapsuleSlot_ShouldNeverExceedMax_UnderConcurrency() throws Exception {
+        int granted = race(() -> userRepository.reserveCapsuleSlot(user.getId(), MAX).isPresent());
+
+        assertEquals(MAX, granted);
+    }
+
+    @Test
+    void reserveAttachmentSlot_ShouldNeverExceedMax_UnderConcurrency() throws Exception {
+        int granted = race(() -> capsuleRepository.reserveAttachmentSlot(capsule.getId(), MAX).isPresent());
+
+        assertEquals(MAX, granted);
+    }
+
+    @Test
+    void reserveAttachmentSlot_ShouldRefuseActiveCapsule() {
+        capsule.setStatus(CapsuleStatus.ACTIVE);
+        capsuleRepository.save(capsule);
+
+        Boolean granted = transactionTemplate.execute(status ->
+                capsuleRepository.reserveAttachmentSlot(capsule.getId(), MAX).isPresent());
+
+        assertEquals(Boolean.FALSE, granted);
+    }
+
+    @Test
+    void reservation_ShouldBeReturned_WhenTransactionRollsBack() {
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(userRepository.reserveCapsuleSlot(user.getId(), 1).isPresent());
+            status.setRollbackOnly();
+        });
+
+        Boolean granted = transactionTemplate.execute(status ->
+                userRepository.reserveCapsuleSlot(user.getId(), 1).isPresent());
+
+        assertEquals(Boolean.TRUE, granted);
+    }
+
+    @Test
+    void releaseCapsuleSlots_ShouldNotGoBelowZero() {
+        transactionTemplate.executeWithoutResult(status -> userRepository.releaseCapsuleSlots(user.getId(), 3));
+
+        Integer count = transactionTemplate.execute(status ->
+                userRepository.reserveCapsuleSlot(user.getId(), MAX).orElseThrow());
+
+        assertEquals(1, count);
+    }
+
+    private int race(BooleanSupplier reservation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(ATTEMPTS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < ATTEMPTS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return transactionTemplate.execute(status -> reservation.getAsBoolean());
+                }));
+            }
+            start.countDown();
+            int granted = 0;
+            for (Future<Boolean> result : results) {
+                if (Boolean.TRUE.equals(result.get(30, TimeUnit.SECONDS))) {
+                    granted++;
+                }
+            }
+            return granted;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package dev.horbatiuk.timecapsule.persistence;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@code EXPLAIN} for the SQL behind each repository query against a seeded database and
+ * fails when a table larger than {@link #SEQ_SCAN_ROW_THRESHOLD} rows is read sequentially.
+ * <p>
+ * Plans are generic ({@code EXPLAIN (GENERIC_PLAN)}, PostgreSQL 16+) and made with
+ * {@code enable_seqscan} off: the planner then only falls back to a sequential scan when no
+ * index can serve the query at all, so the check does not depend on the seeded data volume.
+ */
+@TestPropertySource(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=dev.horbatiuk.timecapsule.persistence.CapturingStatementInspector")
+class RepositoryQueryPlanTest extends PostgresJpaTest {
+
+    private static final long SEQ_SCAN_ROW_THRESHOLD = 1_000;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private CapsuleRepository capsuleRepository;
+
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private VerificationTokenRepository verificationTokenRepository;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private CapsuleOutboxRepository capsuleOutboxRepository;
+
+    private User user;
+    private Capsule capsule;
+
+    @BeforeEach
+    void setUp() {
+        session().doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("""
+                        INSERT INTO app_user (id, name, email, password, created_at, is_verified, token_version)
+                        SELECT gen_random_uuid(), 'user' || g, 'user' || g || '@example.com', 'hash', now(), true, 0
+                        FROM generate_series(1, 5000) g
+                        """);
+                statement.execute("INSERT INTO user_roles (user_id, role) SELECT id, 'ROLE_USER' FROM app_user");
+                statement.execute("""
+                        WITH owners AS (SELECT id, row_number() OVER (ORDER BY id) AS rn FROM app_user)
+                        INSERT INTO capsule (id, title, status, created_at, open_at, app_user_id)
+                        SELECT gen_random_uuid(), 'capsule-' || g, (ARRAY['ACTIVE', 'INACTIVE', 'DRAFT'])[1 + g % 3],
+                               now() - g * INTERVAL '1 minute', now() + g * INTERVAL '1 hour', owners.id
+                        FROM generate_series(1, 20000) g
+                        JOIN owners ON owners.rn = 1 + g % 5000
+                        """);
+                statement.execute("""
+                        INSERT INTO attachments (id, filename, file_key, capsule_id)
+                        SELECT gen_random_uuid(), 'file-' || n || '.txt', 'capsules/' || c.id || '/' || n, c.id
+                        FROM capsule c CROSS JOIN generate_series(1, 2) n
+                        """);
+                statement.execute("""
+                        INSERT INTO refresh_token (token_hash, user_id, expiry_date)
+                        SELECT md5(id::text) || md5(name), id, now() + INTERVAL '7 days' FROM app_user
+                        """);
+                statement.execute("""
+                        INSERT INTO verification_token (id, token, user_id, expiry_date)
+                        SELECT gen_random_uuid(), gen_random_uuid(), id, now() + INTERVAL '7 days' FROM app_user
+                        """);
+                statement.execute("""
+                        INSERT INTO email_outbox (recipient, subject, body, status, next_attempt_at, created_at)
+                        SELECT 'user' || g || '@example.com', 'Subject', 'Body', 'PENDING', now() + INTERVAL '1 hour', now()
+                        FROM generate_series(1, 5000) g
+                        """);
+                statement.execute("ANALYZE");
+            }
+        });
+        user = userRepository.findUserByEmail("user42@example.com").orElseThrow();
+        capsule = capsuleRepository.findAllByAppUser(user).get(0);
+    }
+
+    @Test
+    void capsuleQueries_ShouldUseIndexes() {
+        assertIndexed("findAllByAppUser", () -> capsuleRepository.findAllByAppUser(user));
+        assertIndexed("findAllByAppUser_Id", () -> capsuleRepository.findAllByAppUser_Id(user.getId()));
+        assertIndexed("reserveAttachmentSlot", () -> capsuleRepository.reserveAttachmentSlot(capsule.getId(), 10));
+        assertIndexed("releaseAttachmentSlots", () -> capsuleRepository.releaseAttachmentSlots(capsule.getId(), 1));
+        assertIndexed("findByIdWithUser", () -> capsuleRepository.findByIdWithUser(capsule.getId()));
+        assertIndexed("findAccessById", () -> capsuleRepository.findAccessById(capsule.getId()));
+        assertIndexed("findAccessByAppUserId", () -> capsuleRepository.findAccessByAppUserId(user.getId()));
+        assertIndexed("deleteAllByIdIn", () -> capsuleRepository.deleteAllByIdIn(List.of(UUID.randomUUID())));
+    }
+
+    @Test
+    void adminSearch_ShouldUseIndexes() {
+        PageRequest page = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "createdAt"));
+        Instant now = Instant.now();
+
+        assertIndexed("adminSearch without filters", () -> capsuleRepository.findAll(
+                CapsuleSpecifications.adminSearch(null, null, null, null, null, null), page));
+        assertIndexed("adminSearch by email", () -> capsuleRepository.findAll(
+                CapsuleSpecifications.adminSearch(user.getEmail(), null, null, null, null, null), page));
+        assertIndexed("adminSearch by userId", () -> capsuleRepository.findAll(
+                CapsuleSpecifications.adminSearch(null, user.getId(), null, null, null, null), page));
+        assertIndexed("adminSearch by status", () -> capsuleRepository.findAll(
+                CapsuleSpecifications.adminSearch(null, null, CapsuleStatus.DRAFT, null, null, null), page));
+        assertIndexed("adminSearch by title", () -> capsuleRepository.findAll(
+                CapsuleSpecifications.adminSearch(null, null, null, "capsule-42", null, null), page));
+        assertIndexed("adminSearch by openAt range", () -> capsuleRepository.findAll(
+                CapsuleSpecifications.adminSearch(null, null, null, null, now, now.plus(1, ChronoUnit.DAYS)), page));
+        assertIndexed("adminSearch by status and openAt range", () -> capsuleRepository.findAll(
+                CapsuleSpecifications.adminSearch(null, null, CapsuleStatus.ACTIVE, null, now, now.plus(1, ChronoUnit.DAYS)), page));
+    }
+
+    @Test
+    void keysetPages_ShouldUseIndexes() {
+        CapsuleCursor cursor = CapsuleCursor.of(capsule);
+
+        assertIndexed("adminSearch page after cursor", () -> capsuleRepository.findBy(
+                CapsuleSpecifications.adminSearch(null, null, null, null, null, null).and(CapsuleSpecifications.after(cursor)),
+                q -> q.sortBy(CapsuleSpecifications.KEYSET_ORDER).limit(21).all()));
+        assertIndexed("adminSearch by status after cursor", () -> capsuleRepository.findBy(
+                CapsuleSpecifications.adminSearch(null, null, CapsuleStatus.DRAFT, null, null, null).and(CapsuleSpecifications.after(cursor)),
+                q -> q.sortBy(CapsuleSpecifications.KEYSET_ORDER).limit(21).all()));
+        assertIndexed("ownedBy page after cursor", () -> capsuleRepository.findBy(
+                CapsuleSpecifications.ownedBy(user.getId()).and(CapsuleSpecifications.after(cursor)),
+                q -> q.sortBy(CapsuleSpecifications.KEYSET_ORDER).limit(21).all()));
+        assertIndexed("estimateCount", () -> capsuleRepository.estimateCount());
+    }
+
+    @Test
+    void attachmentQueries_ShouldUseIndexes() {
+        assertIndexed("findByCapsuleId", () -> attachmentRepository.findByCapsuleId(capsule.getId()));
+        assertIndexed("deleteByCapsuleId", () -> attachmentRepository.deleteByCapsuleId(capsule.getId()));
+        assertIndexed("findKeysByUserId", () -> attachmentRepository.findKeysByUserId(user.getId()));
+        assertIndexed("deleteAllByCapsuleIdIn", () -> attachmentRepository.deleteAllByCapsuleIdIn(List.of(capsule.getId())));
+    }
+
+    @Test
+    void userAndTokenQueries_ShouldUseIndexes() {
+        assertIndexed("findUserByEmail with roles", () -> userRepository.findUserByEmail(user.getEmail()));
+        assertIndexed("findUserById with roles", () -> userRepository.findUserById(user.getId()));
+        assertIndexed("reserveCapsuleSlot", () -> userRepository.reserveCapsuleSlot(user.getId(), 10));
+        assertIndexed("releaseCapsuleSlots", () -> userRepository.releaseCapsuleSlots(user.getId(), 1));
+        assertIndexed("findByTokenHash", () -> refreshTokenRepository.findByTokenHash("0".repeat(64)));
+        assertIndexed("deleteByUser", () -> refreshTokenRepository.deleteByUser(user));
+        assertIndexed("findVerificationTokenByToken", () -> verificationTokenRepository.findVerificationTokenByToken(UUID.randomUUID()));
+        assertIndexed("findVerificationTokenByUser", () -> verificationTokenRepository.findVerificationTokenByUser(user));
+    }
+
+    @Test
+    void emailOutboxQueries_ShouldUseIndexes() {
+        assertIndexed("claimBatch", () -> emailOutboxRepository.claimBatch(10, 120));
+        assertIndexed("capsule outbox claimBatch", () -> capsuleOutboxRepository.claimBatch(10, 120));
+    }
+
+    private void assertIndexed(String query, Runnable invocation) {
+        entityManager.flush();
+        entityManager.clear();
+        List<String> statements = CapturingStatementInspector.capture(invocation);
+        assertFalse(statements.isEmpty(), query + " issued no SQL");
+
+        for (String sql : statements) {
+            String verb = sql.stripLeading().toLowerCase(Locale.ROOT);
+            if (verb.startsWith("insert")) {
+                continue;
+            }
+            List<String> scans = largeSequentialScans(sql);
+            assertTrue(scans.isEmpty(), query + " reads " + scans + " sequentially:\n" + sql);
+        }
+    }
+
+    private List<String> largeSequentialScans(String sql) {
+        return session().doReturningWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET enable_seqscan = off");
+                try (ResultSet rs = statement.executeQuery("EXPLAIN (GENERIC_PLAN, FORMAT JSON) " + toPositionalParameters(sql))) {
+                    rs.next();
+                    JsonNode plan = objectMapper.readTree(rs.getString(1)).get(0).get("Plan");
+                    List<String> scans = new ArrayList<>();
+                    collectSequentialScans(plan, connection, scans);
+                    return scans;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    statement.execute("RESET enable_seqscan");
+                }
+            }
+        });
+    }
+
+    private void collectSequentialScans(JsonNode node, Connection connection, List<String> scans) throws SQLException {
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            String relation = node.path("Relation Name").asText();
+            long rows = tableRows(connection, relation);
+            if (rows > SEQ_SCAN_ROW_THRESHOLD) {
+                scans.add(relation + " (" + rows + " rows)");
+            }
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSequentialScans(child, connection, scans);
+        }
+    }
+
+    private static long tableRows(Connection connection, String relation) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT reltuples::bigint FROM pg_class WHERE relname = ?")) {
+            statement.setString(1, relation);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * JDBC {@code ?} placeholders to the {@code $n} form {@code EXPLAIN (GENERIC_PLAN)} accepts.
+     */
+    private static String toPositionalParameters(String sql) {
+        StringBuilder result = new StringBuilder(sql.length() + 16);
+        int parameter = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                result.append('$').append(++parameter);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private Session session() {
+        return entityManager.getEntityManager().unwrap(Session.class);
+    }
+}
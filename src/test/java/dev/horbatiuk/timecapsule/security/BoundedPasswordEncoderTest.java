@@ -0,0 +1,82 @@
+package dev.horbatiuk.timecapsule.security;
+
+import dev.horbatiuk.timecapsule.exception.controller.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BoundedPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        encoder = new BoundedPasswordEncoder(4, 2, 4, 2, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        encoder.shutdown();
+    }
+
+    @Test
+    void encodeAndMatches_runOnPoolAndRecordLatency() {
+        String hash = encoder.encode("secret");
+
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("other", hash));
+        assertEquals(1, meterRegistry.get("auth.password.hash").tag("operation", "encode").timer().count());
+        assertEquals(2, meterRegistry.get("auth.password.hash").tag("operation", "matches").timer().count());
+        assertEquals(0.0, meterRegistry.get("auth.password.hash.queue").gauge().value());
+    }
+
+    @Test
+    void upgradeEncoding_whenCostDiffers_returnsTrue() {
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("secret")));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("secret")));
+        assertFalse(encoder.upgradeEncoding(null));
+    }
+
+    @Test
+    void encode_whenQueueIsFull_rejectsWithServiceUnavailable() throws Exception {
+        BoundedPasswordEncoder saturated = new BoundedPasswordEncoder(14, 1, 1, 2, meterRegistry);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch started = new CountDownLatch(2);
+            List<Future<String>> pending = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                pending.add(callers.submit(() -> {
+                    started.countDown();
+                    return saturated.encode("secret");
+                }));
+            }
+            started.await(5, TimeUnit.SECONDS);
+            Thread.sleep(200);
+
+            ServiceOverloadedException ex = assertThrows(ServiceOverloadedException.class,
+                    () -> saturated.encode("secret"));
+
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatus());
+            assertEquals(2, ex.getRetryAfterSeconds());
+            assertEquals(1.0, meterRegistry.get("auth.password.hash.rejected").counter().count());
+        } finally {
+            callers.shutdownNow();
+            saturated.shutdown();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -14,45 +15,108 @@ import static org.mockito.Mockito.*;
 
 class CustomUserDetailsServiceTest {
 
+    private UserPrincipalCache userPrincipalCache;
     private UserRepository userRepository;
     private CustomUserDetailsService service;
 
     @BeforeEach
     void setUp() {
+        userPrincipalCache = mock(UserPrincipalCache.class);
         userRepository = mock(UserRepository.class);
-        service = new CustomUserDetailsService(userRepository);
+        service = new CustomUserDetailsService(userPrincipalCache, userRepository);
+    }
+
+    private CustomUserDetails principal(UUID id, boolean verified, long tokenVersion) {
+        User user = new User();
+        user.setId(id);
+        user.setEmail("user@example.com");
+        user.setName("User");
+        user.setPassword("password123");
+        user.setVerified(verified);
+        user.setTokenVersion(tokenVersion);
+        return new CustomUserDetails(user);
     }
 
     @Test
     void loadUserByUsername_userExists_returnsCustomUserDetails() {
         String email = "user@example.com";
-        User user = new User();
-        user.setId(UUID.randomUUID());
-        user.setEmail(email);
-        user.setPassword("password123");
+        CustomUserDetails cached = principal(UUID.randomUUID(), false, 0L);
 
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.of(user));
+        when(userPrincipalCache.find(email)).thenReturn(Optional.of(cached));
 
         CustomUserDetails userDetails = service.loadUserByUsername(email);
 
         assertNotNull(userDetails);
         assertEquals(email, userDetails.getEmail());
-        assertEquals(user.getPassword(), userDetails.getPassword());
+        assertEquals("password123", userDetails.getPassword());
 
-        verify(userRepository, times(1)).findUserByEmail(email);
+        verify(userPrincipalCache, times(1)).find(email);
     }
 
     @Test
     void loadUserByUsername_userNotFound_throwsException() {
         String email = "missing@example.com";
 
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.empty());
+        when(userPrincipalCache.find(email)).thenReturn(Optional.empty());
 
         UsernameNotFoundException exception = assertThrows(UsernameNotFoundException.class,
                 () -> service.loadUserByUsername(email));
 
         assertEquals("User not found with email: " + email, exception.getMessage());
 
-        verify(userRepository, times(1)).findUserByEmail(email);
+        verify(userPrincipalCache, times(1)).find(email);
+    }
+
+    @Test
+    void verifyTokenPrincipal_currentVersion_returnsCurrentPrincipal() {
+        UUID id = UUID.randomUUID();
+        CustomUserDetails tokenPrincipal = new CustomUserDetails(
+                id, "user@example.com", "User", null, Set.of(), false, 2L);
+        when(userPrincipalCache.find("user@example.com")).thenReturn(Optional.of(principal(id, true, 2L)));
+
+        Optional<CustomUserDetails> result = service.verifyTokenPrincipal(tokenPrincipal);
+
+        assertTrue(result.isPresent());
+        assertTrue(result.get().isVerified());
+    }
+
+    @Test
+    void verifyTokenPrincipal_staleVersion_returnsEmpty() {
+        UUID id = UUID.randomUUID();
+        CustomUserDetails tokenPrincipal = new CustomUserDetails(
+                id, "user@example.com", "User", null, Set.of(), true, 1L);
+        when(userPrincipalCache.find("user@example.com")).thenReturn(Optional.of(principal(id, true, 2L)));
+
+        assertTrue(service.verifyTokenPrincipal(tokenPrincipal).isEmpty());
+    }
+
+    @Test
+    void verifyTokenPrincipal_differentUser_returnsEmpty() {
+        CustomUserDetails tokenPrincipal = new CustomUserDetails(
+                UUID.randomUUID(), "user@example.com", "User", null, Set.of(), true, 2L);
+        when(userPrincipalCache.find("user@example.com"))
+                .thenReturn(Optional.of(principal(UUID.randomUUID(), true, 2L)));
+
+        assertTrue(service.verifyTokenPrincipal(tokenPrincipal).isEmpty());
+    }
+
+    @Test
+    void updatePassword_storesNewHashAndEvictsPrincipal() {
+        UUID id = UUID.randomUUID();
+        CustomUserDetails current = principal(id, true, 3L);
+        User user = new User();
+        user.setId(id);
+        user.setEmail("user@example.com");
+        user.setPassword("old-hash");
+        user.setTokenVersion(3L);
+        when(userRepository.findUserByEmail("user@example.com")).thenReturn(Optional.of(user));
+
+        CustomUserDetails updated = service.updatePassword(current, "new-hash");
+
+        assertEquals("new-hash", user.getPassword());
+        assertEquals("new-hash", updated.getPassword());
+        assertEquals(3L, updated.getTokenVersion());
+        verify(userRepository).save(user);
+        verify(userPrincipalCache).evict("user@example.com");
     }
 }
@@ -1,6 +1,7 @@
 package dev.horbatiuk.timecapsule.security;
 
 import dev.horbatiuk.timecapsule.service.security.JwtService;
+import dev.horbatiuk.timecapsule.service.security.ParsedToken;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,6 +10,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -36,6 +41,10 @@ class JwtAuthFilterTest {
         SecurityContextHolder.clearContext();
     }
 
+    private ParsedToken parsedToken(String subject, CustomUserDetails principal) {
+        return new ParsedToken(subject, Instant.now(), Instant.now().plusSeconds(600), principal);
+    }
+
     @Test
     void doFilterInternal_noAuthorizationHeader_callsFilterChain() throws Exception {
         when(request.getHeader("Authorization")).thenReturn(null);
@@ -60,13 +69,14 @@ class JwtAuthFilterTest {
     void doFilterInternal_validToken_setsAuthentication() throws Exception {
         String token = "valid.token.value";
         String username = "user@example.com";
+        ParsedToken parsed = parsedToken(username, null);
 
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.extractUsername(token)).thenReturn(username);
+        when(jwtService.parseToken(token)).thenReturn(parsed);
 
         CustomUserDetails userDetails = mock(CustomUserDetails.class);
+        when(userDetails.getEmail()).thenReturn(username);
         when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
-        when(jwtService.validateToken(token, userDetails)).thenReturn(true);
 
         when(userDetails.getAuthorities()).thenReturn(null); // або порожній список
 
@@ -76,6 +86,7 @@ class JwtAuthFilterTest {
         assertEquals(userDetails, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
         assertInstanceOf(UsernamePasswordAuthenticationToken.class, SecurityContextHolder.getContext().getAuthentication());
 
+        verify(jwtService, times(1)).parseToken(token);
         verify(filterChain).doFilter(request, response);
     }
 
@@ -84,7 +95,7 @@ class JwtAuthFilterTest {
         String token = "expired.token";
 
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.extractUsername(token)).thenThrow(new ExpiredJwtException(null, null, "Expired"));
+        when(jwtService.parseToken(token)).thenThrow(new ExpiredJwtException(null, null, "Expired"));
 
         jwtAuthFilter.doFilterInternal(request, response, filterChain);
 
@@ -97,7 +108,7 @@ class JwtAuthFilterTest {
         String token = "invalid.token";
 
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.extractUsername(token)).thenThrow(new RuntimeException("Invalid"));
+        when(jwtService.parseToken(token)).thenThrow(new RuntimeException("Invalid"));
 
         jwtAuthFilter.doFilterInternal(request, response, filterChain);
 
@@ -106,18 +117,71 @@ class JwtAuthFilterTest {
     }
 
     @Test
-    void doFilterInternal_invalidTokenAfterUsernameExtraction_sendsUnauthorized() throws Exception {
+    void doFilterInternal_subjectDoesNotMatchUser_sendsUnauthorized() throws Exception {
         String token = "valid.token";
 
         when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
-        when(jwtService.extractUsername(token)).thenReturn("user");
+        when(jwtService.parseToken(token)).thenReturn(parsedToken("user", null));
         CustomUserDetails userDetails = mock(CustomUserDetails.class);
+        when(userDetails.getEmail()).thenReturn("other");
         when(userDetailsService.loadUserByUsername("user")).thenReturn(userDetails);
-        when(jwtService.validateToken(token, userDetails)).thenReturn(false);
 
         jwtAuthFilter.doFilterInternal(request, response, filterChain);
 
         verify(response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid JWT token");
         verify(filterChain, never()).doFilter(request, response);
     }
+
+    @Test
+    void doFilterInternal_claimsAuthentication_skipsUserLoad() throws Exception {
+        String token = "claims.token";
+        String username = "user@example.com";
+        ReflectionTestUtils.setField(jwtAuthFilter, "claimsAuthentication", true);
+
+        CustomUserDetails tokenPrincipal = mock(CustomUserDetails.class);
+        when(tokenPrincipal.getEmail()).thenReturn(username);
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtService.parseToken(token)).thenReturn(parsedToken(username, tokenPrincipal));
+        when(userDetailsService.verifyTokenPrincipal(tokenPrincipal)).thenReturn(Optional.of(tokenPrincipal));
+
+        jwtAuthFilter.doFilterInternal(request, response, filterChain);
+
+        assertEquals(tokenPrincipal, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    void doFilterInternal_claimsAuthentication_revokedVersion_sendsUnauthorized() throws Exception {
+        String token = "revoked.token";
+        ReflectionTestUtils.setField(jwtAuthFilter, "claimsAuthentication", true);
+
+        CustomUserDetails tokenPrincipal = mock(CustomUserDetails.class);
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtService.parseToken(token)).thenReturn(parsedToken("user@example.com", tokenPrincipal));
+        when(userDetailsService.verifyTokenPrincipal(tokenPrincipal)).thenReturn(Optional.empty());
+
+        jwtAuthFilter.doFilterInternal(request, response, filterChain);
+
+        verify(response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid JWT token");
+        verify(filterChain, never()).doFilter(request, response);
+    }
+
+    @Test
+    void doFilterInternal_claimsAuthentication_legacyToken_loadsUser() throws Exception {
+        String token = "legacy.token";
+        String username = "user@example.com";
+        ReflectionTestUtils.setField(jwtAuthFilter, "claimsAuthentication", true);
+
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + token);
+        when(jwtService.parseToken(token)).thenReturn(parsedToken(username, null));
+        CustomUserDetails userDetails = mock(CustomUserDetails.class);
+        when(userDetails.getEmail()).thenReturn(username);
+        when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
+
+        jwtAuthFilter.doFilterInternal(request, response, filterChain);
+
+        assertEquals(userDetails, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        verify(filterChain).doFilter(request, response);
+    }
 }
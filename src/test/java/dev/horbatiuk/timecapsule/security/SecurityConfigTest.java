@@ -1,5 +1,6 @@
 package dev.horbatiuk.timecapsule.security;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -33,14 +34,18 @@ class SecurityConfigTest {
 
     @Test
     void passwordEncoder_isBCrypt() {
-        PasswordEncoder encoder = securityConfig.passwordEncoder();
-        assertNotNull(encoder);
-        assertTrue(encoder.matches("password", encoder.encode("password")));
+        BoundedPasswordEncoder encoder = securityConfig.passwordEncoder(4, 1, 8, 1, new SimpleMeterRegistry());
+        try {
+            assertNotNull(encoder);
+            assertTrue(encoder.matches("password", encoder.encode("password")));
+        } finally {
+            encoder.shutdown();
+        }
     }
 
     @Test
     void authenticationProvider_setsUserDetailsServiceAndPasswordEncoder() {
-        AuthenticationProvider provider = securityConfig.authenticationProvider();
+        AuthenticationProvider provider = securityConfig.authenticationProvider(mock(PasswordEncoder.class));
         assertNotNull(provider);
         assertInstanceOf(DaoAuthenticationProvider.class, provider);
     }
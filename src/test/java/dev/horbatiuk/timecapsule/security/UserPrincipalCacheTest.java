@@ -0,0 +1,87 @@
+package dev.horbatiuk.timecapsule.security;
+
+import dev.horbatiuk.timecapsule.persistence.UserRepository;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserPrincipalCacheTest {
+
+    private static final String EMAIL = "user@example.com";
+
+    private UserRepository userRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private UserPrincipalCache cache;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new UserPrincipalCache(userRepository, meterRegistry, 100, Duration.ofMinutes(1));
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail(EMAIL);
+        user.setName(name);
+        return user;
+    }
+
+    @Test
+    void find_loadsOnceAndServesFromCache() {
+        when(userRepository.findUserByEmail(EMAIL)).thenReturn(Optional.of(user("User")));
+
+        CustomUserDetails first = cache.find(EMAIL).orElseThrow();
+        CustomUserDetails second = cache.find(EMAIL).orElseThrow();
+
+        assertSame(first, second);
+        verify(userRepository, times(1)).findUserByEmail(EMAIL);
+    }
+
+    @Test
+    void find_missingUser_isNotCached() {
+        when(userRepository.findUserByEmail(EMAIL)).thenReturn(Optional.empty());
+
+        assertTrue(cache.find(EMAIL).isEmpty());
+        assertTrue(cache.find(EMAIL).isEmpty());
+
+        verify(userRepository, times(2)).findUserByEmail(EMAIL);
+    }
+
+    @Test
+    void evict_forcesReload() {
+        when(userRepository.findUserByEmail(EMAIL))
+                .thenReturn(Optional.of(user("Old Name")))
+                .thenReturn(Optional.of(user("New Name")));
+
+        assertEquals("Old Name", cache.find(EMAIL).orElseThrow().getUsername());
+        cache.evict(EMAIL);
+
+        assertEquals("New Name", cache.find(EMAIL).orElseThrow().getUsername());
+        verify(userRepository, times(2)).findUserByEmail(EMAIL);
+    }
+
+    @Test
+    void find_recordsHitAndMissMetrics() {
+        when(userRepository.findUserByEmail(EMAIL)).thenReturn(Optional.of(user("User")));
+
+        cache.find(EMAIL);
+        cache.find(EMAIL);
+
+        assertEquals(1.0, meterRegistry.get("cache.gets")
+                .tag("cache", UserPrincipalCache.CACHE_NAME).tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets")
+                .tag("cache", UserPrincipalCache.CACHE_NAME).tag("result", "miss")
+                .functionCounter().count());
+    }
+}
@@ -2,27 +2,41 @@ package dev.horbatiuk.timecapsule.service;
 
 import dev.horbatiuk.timecapsule.exception.NotFoundException;
 import dev.horbatiuk.timecapsule.exception.aws.s3.S3ActionException;
+import dev.horbatiuk.timecapsule.exception.controller.AppException;
 import dev.horbatiuk.timecapsule.persistence.AttachmentRepository;
 import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentCommitRequestDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentUploadRequestDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.PresignedUploadDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleAccessDTO;
 import dev.horbatiuk.timecapsule.persistence.entities.Attachment;
 import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
 import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.AttachmentStatus;
 import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
 import dev.horbatiuk.timecapsule.persistence.mapper.AttachmentMapper;
+import dev.horbatiuk.timecapsule.service.aws.S3PresignService;
 import dev.horbatiuk.timecapsule.service.aws.S3Service;
 import jakarta.persistence.PersistenceException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.AccessDeniedException;
+import java.time.Duration;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -37,21 +51,33 @@ class AttachmentServiceTest {
     @Mock
     private S3Service s3Service;
 
+    @Mock
+    private S3PresignService s3PresignService;
+
     @Mock
     private CapsuleRepository capsuleRepository;
 
     @Mock
     private AttachmentMapper attachmentMapper;
 
-    @InjectMocks
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private AttachmentService attachmentService;
 
+    private static final int MAX_ATTACHMENTS = 10;
+    private static final Duration PENDING_TTL = Duration.ofHours(6);
+    private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
+    private static final String CHECKSUM = "47DEQpj8HBSa+/TImW+5JCeuQeRkm5NMpJWZG3hSuFU=";
+
     private UUID capsuleId;
     private UUID attachmentId;
     private String userEmail;
 
     @BeforeEach
     void setUp() {
+        attachmentService = new AttachmentService(attachmentRepository, attachmentMapper, s3Service,
+                s3PresignService, capsuleRepository, transactionManager, PENDING_TTL);
         capsuleId = UUID.randomUUID();
         attachmentId = UUID.randomUUID();
         userEmail = "user@test.com";
@@ -64,17 +90,44 @@ class AttachmentServiceTest {
         Attachment attachment = new Attachment();
         AttachmentResponseDTO dto = new AttachmentResponseDTO();
 
-        when(attachmentRepository.findByCapsuleId(capsuleId)).thenReturn(List.of(attachment));
+        when(attachmentRepository.findByCapsuleIdAndStatus(capsuleId, AttachmentStatus.READY))
+                .thenReturn(List.of(attachment));
         when(attachmentMapper.toDTO(attachment)).thenReturn(dto);
 
         List<AttachmentResponseDTO> result =
                 attachmentService.getAttachmentsByCapsuleId(capsuleId);
 
         assertEquals(1, result.size());
-        verify(attachmentRepository).findByCapsuleId(capsuleId);
+        verify(attachmentRepository).findByCapsuleIdAndStatus(capsuleId, AttachmentStatus.READY);
         verify(attachmentMapper).toDTO(attachment);
     }
 
+    @Test
+    void getAttachment_ReturnsDTO() throws Exception {
+        Attachment attachment = new Attachment();
+        AttachmentResponseDTO dto = new AttachmentResponseDTO();
+        when(attachmentRepository.findByIdAndCapsuleIdAndStatus(attachmentId, capsuleId, AttachmentStatus.READY)).thenReturn(Optional.of(attachment));
+        when(attachmentMapper.toDTO(attachment)).thenReturn(dto);
+
+        assertSame(dto, attachmentService.getAttachment(capsuleId, attachmentId));
+    }
+
+    @Test
+    void getAttachment_OtherCapsule_ThrowsNotFound() {
+        when(attachmentRepository.findByIdAndCapsuleIdAndStatus(attachmentId, capsuleId, AttachmentStatus.READY)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> attachmentService.getAttachment(capsuleId, attachmentId));
+    }
+
+    @Test
+    void openAttachment_OpensFileOfCapsule() throws Exception {
+        AttachmentResponseDTO dto = new AttachmentResponseDTO(attachmentId, "a.txt", "d", "key_a.txt", capsuleId);
+        S3Service.FileDownload download = new S3Service.FileDownload(HttpStatus.NOT_MODIFIED, null, null, null, null, "\"e\"");
+        when(s3Service.openFile(capsuleId.toString(), "key_a.txt", "bytes=0-1", "\"e\"")).thenReturn(download);
+
+        assertSame(download, attachmentService.openAttachment(dto, "bytes=0-1", "\"e\""));
+    }
+
     /* ========================= ADD ========================= */
 
     @Test
@@ -91,11 +144,15 @@ class AttachmentServiceTest {
 
         when(capsuleRepository.findByIdWithUser(capsuleId))
                 .thenReturn(Optional.of(capsule));
+        when(capsuleRepository.reserveAttachmentSlot(capsuleId, MAX_ATTACHMENTS))
+                .thenReturn(Optional.of(1));
 
         when(attachmentRepository.save(any()))
-                .thenAnswer(inv -> inv.getArgument(0));
+                .thenAnswer(inv -> withId(inv.getArgument(0)));
+        when(attachmentRepository.markReady(attachmentId, PENDING_TTL.toSeconds()))
+                .thenReturn(1);
 
-        attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file);
+        attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file, MAX_ATTACHMENTS);
 
         verify(s3Service).uploadFile(
                 eq(capsuleId.toString()),
@@ -105,15 +162,134 @@ class AttachmentServiceTest {
                 eq("text/plain")
         );
 
+        ArgumentCaptor<Attachment> saved = ArgumentCaptor.forClass(Attachment.class);
+        verify(attachmentRepository).save(saved.capture());
+        assertEquals(AttachmentStatus.PENDING, saved.getValue().getStatus());
+        verify(attachmentRepository).markReady(attachmentId, PENDING_TTL.toSeconds());
+    }
+
+    @Test
+    void addAttachmentToCapsule_UploadsBetweenTwoTransactions() throws Exception {
+        User user = new User();
+        user.setEmail(userEmail);
+
+        Capsule capsule = new Capsule();
+        capsule.setId(capsuleId);
+        capsule.setAppUser(user);
+
+        MultipartFile file =
+                new MockMultipartFile("file", "test.txt", "text/plain", "content".getBytes());
+
+        when(capsuleRepository.findByIdWithUser(capsuleId))
+                .thenReturn(Optional.of(capsule));
+        when(capsuleRepository.reserveAttachmentSlot(capsuleId, MAX_ATTACHMENTS))
+                .thenReturn(Optional.of(1));
+        when(attachmentRepository.save(any()))
+                .thenAnswer(inv -> withId(inv.getArgument(0)));
+        when(attachmentRepository.markReady(attachmentId, PENDING_TTL.toSeconds()))
+                .thenReturn(1);
+
+        attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file, MAX_ATTACHMENTS);
+
+        InOrder inOrder = inOrder(transactionManager, attachmentRepository, s3Service);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(attachmentRepository).save(any());
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(s3Service).uploadFile(any(), any(), any(), anyLong(), any());
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(attachmentRepository).markReady(attachmentId, PENDING_TTL.toSeconds());
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void addAttachmentToCapsule_ExpiredBeforeReady_DeletesFileAndFails() throws Exception {
+        User user = new User();
+        user.setEmail(userEmail);
+
+        Capsule capsule = new Capsule();
+        capsule.setId(capsuleId);
+        capsule.setAppUser(user);
+
+        MultipartFile file =
+                new MockMultipartFile("file", "test.txt", "text/plain", "content".getBytes());
+
+        when(capsuleRepository.findByIdWithUser(capsuleId))
+                .thenReturn(Optional.of(capsule));
+        when(capsuleRepository.reserveAttachmentSlot(capsuleId, MAX_ATTACHMENTS))
+                .thenReturn(Optional.of(1));
+        when(attachmentRepository.save(any()))
+                .thenAnswer(inv -> withId(inv.getArgument(0)));
+        when(attachmentRepository.markReady(attachmentId, PENDING_TTL.toSeconds()))
+                .thenReturn(0);
+
+        assertThrows(PersistenceException.class, () ->
+                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file, MAX_ATTACHMENTS)
+        );
+
+        verify(s3Service).deleteFile(eq(capsuleId.toString()), endsWith("_test.txt"));
+    }
+
+
+    @Test
+    void addAttachmentToCapsule_Stream_UploadsFromSourceWithDeclaredSize() throws Exception {
+        User user = new User();
+        user.setEmail(userEmail);
+
+        Capsule capsule = new Capsule();
+        capsule.setId(capsuleId);
+        capsule.setAppUser(user);
+
+        InputStream content = new ByteArrayInputStream("content".getBytes());
+
+        when(capsuleRepository.findByIdWithUser(capsuleId))
+                .thenReturn(Optional.of(capsule));
+        when(capsuleRepository.reserveAttachmentSlot(capsuleId, MAX_ATTACHMENTS))
+                .thenReturn(Optional.of(1));
+        when(attachmentRepository.save(any()))
+                .thenAnswer(inv -> withId(inv.getArgument(0)));
+        when(attachmentRepository.markReady(attachmentId, PENDING_TTL.toSeconds()))
+                .thenReturn(1);
+
+        attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, "test.txt", "text/plain",
+                7L, () -> content, MAX_ATTACHMENTS);
+
+        verify(s3Service).uploadFile(
+                eq(capsuleId.toString()),
+                endsWith("_test.txt"),
+                same(content),
+                eq(7L),
+                eq("text/plain")
+        );
         verify(attachmentRepository).save(any());
     }
 
+    @Test
+    void addAttachmentToCapsule_Stream_NotOpenedWhenCapsuleNotFound() {
+        when(capsuleRepository.findByIdWithUser(capsuleId))
+                .thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () ->
+                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, "test.txt", "text/plain",
+                        7L, () -> {
+                            throw new AssertionError("content must not be opened");
+                        }, MAX_ATTACHMENTS)
+        );
+    }
+
+    @Test
+    void addAttachmentToCapsule_Stream_ZeroSize_ThrowsIOException() {
+        assertThrows(IOException.class, () ->
+                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, "test.txt", "text/plain",
+                        0L, () -> new ByteArrayInputStream(new byte[0]), MAX_ATTACHMENTS)
+        );
+        verifyNoInteractions(capsuleRepository);
+    }
 
     @Test
     void addAttachmentToCapsule_FileNull_ThrowsIOException() {
         assertThrows(IOException.class, () ->
                 attachmentService.addAttachmentToCapsule(
-                        capsuleId, "d", userEmail, null
+                        capsuleId, "d", userEmail, null, MAX_ATTACHMENTS
                 ));
     }
 
@@ -123,7 +299,7 @@ class AttachmentServiceTest {
 
         assertThrows(IOException.class, () ->
                 attachmentService.addAttachmentToCapsule(
-                        capsuleId, "d", userEmail, empty
+                        capsuleId, "d", userEmail, empty, MAX_ATTACHMENTS
                 ));
     }
 
@@ -136,7 +312,7 @@ class AttachmentServiceTest {
                 .thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () ->
-                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file)
+                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file, MAX_ATTACHMENTS)
         );
     }
 
@@ -156,7 +332,7 @@ class AttachmentServiceTest {
                 .thenReturn(Optional.of(capsule));
 
         assertThrows(AccessDeniedException.class, () ->
-                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file)
+                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file, MAX_ATTACHMENTS)
         );
     }
 
@@ -174,18 +350,29 @@ class AttachmentServiceTest {
 
         when(capsuleRepository.findByIdWithUser(capsuleId))
                 .thenReturn(Optional.of(capsule));
+        when(capsuleRepository.reserveAttachmentSlot(capsuleId, MAX_ATTACHMENTS))
+                .thenReturn(Optional.of(1));
+
+        when(attachmentRepository.save(any()))
+                .thenAnswer(inv -> withId(inv.getArgument(0)));
+        when(attachmentRepository.deletePending(attachmentId))
+                .thenReturn(1);
 
         doThrow(new RuntimeException("S3 error"))
                 .when(s3Service)
                 .uploadFile(any(), any(), any(), anyLong(), any());
 
-        assertThrows(RuntimeException.class, () ->
-                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file)
+        RuntimeException ex = assertThrows(RuntimeException.class, () ->
+                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file, MAX_ATTACHMENTS)
         );
+
+        assertEquals("S3 error", ex.getMessage());
+        verify(capsuleRepository).releaseAttachmentSlots(capsuleId, 1);
+        verify(attachmentRepository, never()).markReady(any(), anyLong());
     }
 
     @Test
-    void addAttachmentToCapsule_SaveFails_DeletesS3() throws S3ActionException {
+    void addAttachmentToCapsule_SaveFails_DoesNotUpload() {
         User user = new User();
         user.setEmail(userEmail);
 
@@ -198,16 +385,284 @@ class AttachmentServiceTest {
 
         when(capsuleRepository.findByIdWithUser(capsuleId))
                 .thenReturn(Optional.of(capsule));
+        when(capsuleRepository.reserveAttachmentSlot(capsuleId, MAX_ATTACHMENTS))
+                .thenReturn(Optional.of(1));
 
         doThrow(new PersistenceException("DB fail"))
                 .when(attachmentRepository)
                 .save(any());
 
         assertThrows(PersistenceException.class, () ->
-                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file)
+                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file, MAX_ATTACHMENTS)
         );
 
-        verify(s3Service).deleteFile(eq(capsuleId.toString()), any());
+        verifyNoInteractions(s3Service);
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void addAttachmentToCapsule_QuotaExhausted_DoesNotUpload() {
+        User user = new User();
+        user.setEmail(userEmail);
+
+        Capsule capsule = new Capsule();
+        capsule.setId(capsuleId);
+        capsule.setAppUser(user);
+
+        MultipartFile file =
+                new MockMultipartFile("file", "test.txt", "text/plain", "content".getBytes());
+
+        when(capsuleRepository.findByIdWithUser(capsuleId))
+                .thenReturn(Optional.of(capsule));
+        when(capsuleRepository.reserveAttachmentSlot(capsuleId, MAX_ATTACHMENTS))
+                .thenReturn(Optional.empty());
+
+        AppException ex = assertThrows(AppException.class, () ->
+                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file, MAX_ATTACHMENTS)
+        );
+
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatus());
+        verifyNoInteractions(s3Service);
+        verify(attachmentRepository, never()).save(any());
+    }
+
+    @Test
+    void addAttachmentToCapsule_ActivatedAfterCheck_DoesNotUpload() {
+        User user = new User();
+        user.setEmail(userEmail);
+
+        Capsule capsule = new Capsule();
+        capsule.setId(capsuleId);
+        capsule.setAppUser(user);
+        capsule.setStatus(CapsuleStatus.INACTIVE);
+
+        MultipartFile file =
+                new MockMultipartFile("file", "test.txt", "text/plain", "content".getBytes());
+
+        when(capsuleRepository.findByIdWithUser(capsuleId))
+                .thenReturn(Optional.of(capsule));
+        when(capsuleRepository.reserveAttachmentSlot(capsuleId, MAX_ATTACHMENTS))
+                .thenReturn(Optional.empty());
+        when(capsuleRepository.findAccessById(capsuleId))
+                .thenReturn(Optional.of(new CapsuleAccessDTO(capsuleId, UUID.randomUUID(), CapsuleStatus.ACTIVE)));
+
+        AppException ex = assertThrows(AppException.class, () ->
+                attachmentService.addAttachmentToCapsule(capsuleId, "desc", userEmail, file, MAX_ATTACHMENTS)
+        );
+
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatus());
+        assertEquals("Cannot modify an active capsule", ex.getMessage());
+        verifyNoInteractions(s3Service);
+        verify(attachmentRepository, never()).save(any());
+    }
+
+    /* ========================= DIRECT UPLOAD ========================= */
+
+    @Test
+    void startUpload_ReservesSlotAndRecordsPendingUpload() throws Exception {
+        when(capsuleRepository.findByIdWithUser(capsuleId)).thenReturn(Optional.of(capsule(CapsuleStatus.INACTIVE)));
+        when(capsuleRepository.reserveAttachmentSlot(capsuleId, MAX_ATTACHMENTS)).thenReturn(Optional.of(MAX_ATTACHMENTS));
+        PresignedUploadDTO upload = new PresignedUploadDTO();
+        when(s3PresignService.presignUpload(eq(capsuleId), anyString(), eq("image/png"), eq(100L), eq(CHECKSUM)))
+                .thenReturn(upload);
+
+        assertSame(upload, attachmentService.startUpload(capsuleId, userEmail,
+                new AttachmentUploadRequestDTO("../photos/a.png", "image/png", 100, CHECKSUM), MAX_ATTACHMENTS));
+
+        ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
+        verify(s3PresignService).presignUpload(eq(capsuleId), key.capture(), anyString(), anyLong(), anyString());
+        assertTrue(key.getValue().endsWith("_.._photos_a.png"), key.getValue());
+        ArgumentCaptor<Attachment> saved = ArgumentCaptor.forClass(Attachment.class);
+        verify(attachmentRepository).save(saved.capture());
+        assertEquals(AttachmentStatus.PENDING, saved.getValue().getStatus());
+        assertEquals(key.getValue(), saved.getValue().getFileKey());
+    }
+
+    @Test
+    void startUpload_QuotaFull_ThrowsForbidden() {
+        when(capsuleRepository.findByIdWithUser(capsuleId)).thenReturn(Optional.of(capsule(CapsuleStatus.INACTIVE)));
+        when(capsuleRepository.reserveAttachmentSlot(capsuleId, MAX_ATTACHMENTS)).thenReturn(Optional.empty());
+
+        AppException ex = assertThrows(AppException.class, () -> attachmentService.startUpload(capsuleId, userEmail,
+                new AttachmentUploadRequestDTO("a.png", "image/png", 100, null), MAX_ATTACHMENTS));
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatus());
+        verifyNoInteractions(s3PresignService);
+        verify(attachmentRepository, never()).save(any());
+    }
+
+    @Test
+    void startUpload_ActiveCapsule_ThrowsAccessDenied() {
+        when(capsuleRepository.findByIdWithUser(capsuleId)).thenReturn(Optional.of(capsule(CapsuleStatus.ACTIVE)));
+
+        assertThrows(AccessDeniedException.class, () -> attachmentService.startUpload(capsuleId, userEmail,
+                new AttachmentUploadRequestDTO("a.png", "image/png", 100, null), MAX_ATTACHMENTS));
+        verifyNoInteractions(s3PresignService);
+        verify(capsuleRepository, never()).reserveAttachmentSlot(any(), anyInt());
+    }
+
+    @Test
+    void commitUpload_VerifiedFile_MarksPendingUploadReady() throws Exception {
+        String fileKey = UUID.randomUUID() + "_a.png";
+        Attachment pending = pendingUpload(fileKey);
+        when(capsuleRepository.findByIdWithUser(capsuleId)).thenReturn(Optional.of(capsule(CapsuleStatus.INACTIVE)));
+        when(attachmentRepository.findByCapsuleIdAndFileKey(capsuleId, fileKey)).thenReturn(Optional.of(pending));
+        when(s3Service.headFile(capsuleId.toString(), fileKey)).thenReturn(Optional.of(head(100L, "image/png", CHECKSUM)));
+        when(attachmentRepository.commitPending(attachmentId, "a.png", "description", PENDING_TTL.toSeconds()))
+                .thenReturn(1);
+        Attachment ready = pendingUpload(fileKey);
+        ready.setStatus(AttachmentStatus.READY);
+        when(attachmentRepository.findById(attachmentId)).thenReturn(Optional.of(ready));
+        AttachmentResponseDTO dto = new AttachmentResponseDTO();
+        when(attachmentMapper.toDTO(ready)).thenReturn(dto);
+
+        assertSame(dto, attachmentService.commitUpload(capsuleId, userEmail,
+                commit(fileKey, 100L, "image/png", CHECKSUM), MAX_FILE_SIZE));
+
+        verify(attachmentRepository, never()).save(any());
+        verify(capsuleRepository, never()).reserveAttachmentSlot(any(), anyInt());
+        verify(s3Service, never()).deleteFile(anyString(), anyString());
+    }
+
+    @Test
+    void commitUpload_CommittedConcurrently_ReturnsIt() throws Exception {
+        String fileKey = UUID.randomUUID() + "_a.png";
+        when(capsuleRepository.findByIdWithUser(capsuleId)).thenReturn(Optional.of(capsule(CapsuleStatus.INACTIVE)));
+        when(attachmentRepository.findByCapsuleIdAndFileKey(capsuleId, fileKey))
+                .thenReturn(Optional.of(pendingUpload(fileKey)));
+        when(s3Service.headFile(capsuleId.toString(), fileKey)).thenReturn(Optional.of(head(100L, "image/png", null)));
+        when(attachmentRepository.commitPending(attachmentId, "a.png", "description", PENDING_TTL.toSeconds()))
+                .thenReturn(0);
+        Attachment ready = pendingUpload(fileKey);
+        ready.setStatus(AttachmentStatus.READY);
+        when(attachmentRepository.findById(attachmentId)).thenReturn(Optional.of(ready));
+        AttachmentResponseDTO dto = new AttachmentResponseDTO();
+        when(attachmentMapper.toDTO(ready)).thenReturn(dto);
+
+        assertSame(dto, attachmentService.commitUpload(capsuleId, userEmail,
+                commit(fileKey, 100L, "image/png", null), MAX_FILE_SIZE));
+    }
+
+    @Test
+    void commitUpload_Expired_ThrowsGone() throws Exception {
+        String fileKey = UUID.randomUUID() + "_a.png";
+        Attachment pending = pendingUpload(fileKey);
+        when(capsuleRepository.findByIdWithUser(capsuleId)).thenReturn(Optional.of(capsule(CapsuleStatus.INACTIVE)));
+        when(attachmentRepository.findByCapsuleIdAndFileKey(capsuleId, fileKey)).thenReturn(Optional.of(pending));
+        when(s3Service.headFile(capsuleId.toString(), fileKey)).thenReturn(Optional.of(head(100L, "image/png", null)));
+        when(attachmentRepository.commitPending(attachmentId, "a.png", "description", PENDING_TTL.toSeconds()))
+                .thenReturn(0);
+        when(attachmentRepository.findById(attachmentId)).thenReturn(Optional.of(pending));
+
+        AppException ex = assertThrows(AppException.class, () -> attachmentService.commitUpload(capsuleId, userEmail,
+                commit(fileKey, 100L, "image/png", null), MAX_FILE_SIZE));
+
+        assertEquals(HttpStatus.GONE, ex.getStatus());
+        verify(s3Service, never()).deleteFile(anyString(), anyString());
+    }
+
+    @Test
+    void commitUpload_ChecksumMismatch_DeletesFileAndPendingUpload() throws Exception {
+        String fileKey = UUID.randomUUID() + "_a.png";
+        when(capsuleRepository.findByIdWithUser(capsuleId)).thenReturn(Optional.of(capsule(CapsuleStatus.INACTIVE)));
+        when(attachmentRepository.findByCapsuleIdAndFileKey(capsuleId, fileKey))
+                .thenReturn(Optional.of(pendingUpload(fileKey)));
+        when(s3Service.headFile(capsuleId.toString(), fileKey)).thenReturn(Optional.of(head(100L, "image/png", null)));
+        when(attachmentRepository.deletePending(attachmentId)).thenReturn(1);
+
+        AppException ex = assertThrows(AppException.class, () -> attachmentService.commitUpload(capsuleId, userEmail,
+                commit(fileKey, 100L, "image/png", CHECKSUM), MAX_FILE_SIZE));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
+        verify(s3Service).deleteFile(capsuleId.toString(), fileKey);
+        verify(capsuleRepository).releaseAttachmentSlots(capsuleId, 1);
+        verify(attachmentRepository, never()).commitPending(any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void commitUpload_SizeMismatch_DeletesFile() throws Exception {
+        String fileKey = UUID.randomUUID() + "_a.png";
+        when(capsuleRepository.findByIdWithUser(capsuleId)).thenReturn(Optional.of(capsule(CapsuleStatus.INACTIVE)));
+        when(attachmentRepository.findByCapsuleIdAndFileKey(capsuleId, fileKey))
+                .thenReturn(Optional.of(pendingUpload(fileKey)));
+        when(s3Service.headFile(capsuleId.toString(), fileKey)).thenReturn(Optional.of(head(200L, "image/png", null)));
+
+        assertThrows(AppException.class, () -> attachmentService.commitUpload(capsuleId, userEmail,
+                commit(fileKey, 100L, "image/png", null), MAX_FILE_SIZE));
+        verify(s3Service).deleteFile(capsuleId.toString(), fileKey);
+        verify(attachmentRepository).deletePending(attachmentId);
+    }
+
+    @Test
+    void commitUpload_AlreadyCommitted_ReturnsExisting() throws Exception {
+        String fileKey = UUID.randomUUID() + "_a.png";
+        Attachment existing = new Attachment();
+        AttachmentResponseDTO dto = new AttachmentResponseDTO();
+        when(capsuleRepository.findByIdWithUser(capsuleId)).thenReturn(Optional.of(capsule(CapsuleStatus.INACTIVE)));
+        when(attachmentRepository.findByCapsuleIdAndFileKey(capsuleId, fileKey)).thenReturn(Optional.of(existing));
+        when(attachmentMapper.toDTO(existing)).thenReturn(dto);
+
+        assertSame(dto, attachmentService.commitUpload(capsuleId, userEmail,
+                commit(fileKey, 100L, "image/png", null), MAX_FILE_SIZE));
+        verifyNoInteractions(s3Service);
+        verify(attachmentRepository, never()).commitPending(any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void commitUpload_NotStarted_ThrowsNotFound() {
+        String fileKey = UUID.randomUUID() + "_a.png";
+        when(capsuleRepository.findByIdWithUser(capsuleId)).thenReturn(Optional.of(capsule(CapsuleStatus.INACTIVE)));
+        when(attachmentRepository.findByCapsuleIdAndFileKey(capsuleId, fileKey)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> attachmentService.commitUpload(capsuleId, userEmail,
+                commit(fileKey, 100L, "image/png", null), MAX_FILE_SIZE));
+        verifyNoInteractions(s3Service);
+    }
+
+    @Test
+    void commitUpload_OtherUser_DoesNotTouchFile() {
+        String fileKey = UUID.randomUUID() + "_a.png";
+        when(capsuleRepository.findByIdWithUser(capsuleId)).thenReturn(Optional.of(capsule(CapsuleStatus.INACTIVE)));
+
+        assertThrows(AccessDeniedException.class, () -> attachmentService.commitUpload(capsuleId, "other@test.com",
+                commit(fileKey, 100L, "image/png", null), MAX_FILE_SIZE));
+        verifyNoInteractions(s3Service);
+    }
+
+    @Test
+    void commitUpload_PathInKey_ThrowsBadRequest() {
+        AppException ex = assertThrows(AppException.class, () -> attachmentService.commitUpload(capsuleId, userEmail,
+                commit(UUID.randomUUID() + "_../other/a.png", 100L, "image/png", null), MAX_FILE_SIZE));
+
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
+        verifyNoInteractions(capsuleRepository, s3Service);
+    }
+
+    private Attachment pendingUpload(String fileKey) {
+        return Attachment.builder()
+                .id(attachmentId)
+                .capsule(capsule(CapsuleStatus.INACTIVE))
+                .filename("a.png")
+                .fileKey(fileKey)
+                .status(AttachmentStatus.PENDING)
+                .build();
+    }
+
+    private Capsule capsule(CapsuleStatus status) {
+        User user = new User();
+        user.setEmail(userEmail);
+        Capsule capsule = new Capsule();
+        capsule.setId(capsuleId);
+        capsule.setAppUser(user);
+        capsule.setStatus(status);
+        return capsule;
+    }
+
+    private static HeadObjectResponse head(long size, String contentType, String checksum) {
+        return HeadObjectResponse.builder().contentLength(size).contentType(contentType).checksumSHA256(checksum).build();
+    }
+
+    private static AttachmentCommitRequestDTO commit(String fileKey, long size, String contentType, String checksum) {
+        return new AttachmentCommitRequestDTO(fileKey, "a.png", "description", contentType, size, checksum);
     }
 
     /* ========================= DELETE ONE ========================= */
@@ -236,6 +691,7 @@ class AttachmentServiceTest {
 
         verify(s3Service).deleteFile(capsuleId.toString(), "file");
         verify(attachmentRepository).delete(attachment);
+        verify(capsuleRepository).releaseAttachmentSlots(capsuleId, 1);
     }
 
     @Test
@@ -285,6 +741,7 @@ class AttachmentServiceTest {
         verify(s3Service).deleteFile(capsuleId.toString(), "1");
         verify(s3Service).deleteFile(capsuleId.toString(), "2");
         verify(attachmentRepository).deleteByCapsuleId(capsuleId);
+        verify(capsuleRepository).releaseAttachmentSlots(capsuleId, 2);
     }
 
     @Test
@@ -313,4 +770,9 @@ class AttachmentServiceTest {
                 attachmentService.deleteAllAttachmentsFromCapsule(capsuleId)
         );
     }
+
+    private Attachment withId(Attachment attachment) {
+        attachment.setId(attachmentId);
+        return attachment;
+    }
 }
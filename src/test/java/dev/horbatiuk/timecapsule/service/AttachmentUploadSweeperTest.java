@@ -0,0 +1,149 @@
+package dev.horbatiuk.timecapsule.service;
+
+import dev.horbatiuk.timecapsule.exception.aws.s3.S3ActionException;
+import dev.horbatiuk.timecapsule.persistence.AttachmentRepository;
+import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.entities.Attachment;
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.AttachmentStatus;
+import dev.horbatiuk.timecapsule.service.aws.S3Service;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AttachmentUploadSweeperTest {
+
+    private static final Duration PENDING_TTL = Duration.ofHours(6);
+    private static final int BATCH_SIZE = 2;
+
+    @Mock
+    private AttachmentRepository attachmentRepository;
+
+    @Mock
+    private CapsuleRepository capsuleRepository;
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private AttachmentUploadSweeper sweeper;
+    private final UUID capsuleId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        sweeper = new AttachmentUploadSweeper(attachmentRepository, capsuleRepository, s3Service,
+                transactionManager, PENDING_TTL, BATCH_SIZE);
+    }
+
+    @Test
+    void sweepBatch_DeletesFilesBeforeRowsAndReturnsSlots() throws Exception {
+        stubFileKeys();
+        Attachment first = pending("a.txt");
+        Attachment second = pending("b.txt");
+        when(s3Service.deleteObjects(anyList())).thenReturn(List.of());
+        when(attachmentRepository.deletePending(any())).thenReturn(1);
+
+        assertEquals(2, sweeper.sweepBatch(List.of(first, second)));
+
+        InOrder inOrder = inOrder(s3Service, attachmentRepository);
+        inOrder.verify(s3Service).deleteObjects(List.of(keyOf(first), keyOf(second)));
+        inOrder.verify(attachmentRepository).deletePending(first.getId());
+        inOrder.verify(attachmentRepository).deletePending(second.getId());
+        verify(capsuleRepository, times(2)).releaseAttachmentSlots(capsuleId, 1);
+    }
+
+    @Test
+    void sweepBatch_KeepsRowsWhoseFileWasNotDeleted() throws Exception {
+        stubFileKeys();
+        Attachment first = pending("a.txt");
+        Attachment second = pending("b.txt");
+        when(s3Service.deleteObjects(anyList())).thenReturn(List.of(keyOf(second)));
+        when(attachmentRepository.deletePending(first.getId())).thenReturn(1);
+
+        assertEquals(1, sweeper.sweepBatch(List.of(first, second)));
+
+        verify(attachmentRepository, never()).deletePending(second.getId());
+        verify(capsuleRepository).releaseAttachmentSlots(capsuleId, 1);
+    }
+
+    @Test
+    void sweepBatch_RowRemovedElsewhere_DoesNotReturnSlotTwice() throws Exception {
+        stubFileKeys();
+        Attachment first = pending("a.txt");
+        when(s3Service.deleteObjects(anyList())).thenReturn(List.of());
+        when(attachmentRepository.deletePending(first.getId())).thenReturn(0);
+
+        assertEquals(0, sweeper.sweepBatch(List.of(first)));
+
+        verifyNoInteractions(capsuleRepository);
+    }
+
+    @Test
+    void sweepBatch_StorageFails_KeepsAllRows() throws Exception {
+        stubFileKeys();
+        when(s3Service.deleteObjects(anyList())).thenThrow(new S3ActionException("S3 down", null));
+
+        assertEquals(0, sweeper.sweepBatch(List.of(pending("a.txt"))));
+
+        verify(attachmentRepository, never()).deletePending(any());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void sweep_RepeatsWhileBatchesAreFull() throws Exception {
+        stubFileKeys();
+        when(attachmentRepository.findExpiredPending(PENDING_TTL.toSeconds(), BATCH_SIZE))
+                .thenReturn(List.of(pending("a.txt"), pending("b.txt")))
+                .thenReturn(List.of(pending("c.txt")));
+        when(s3Service.deleteObjects(anyList())).thenReturn(List.of());
+        when(attachmentRepository.deletePending(any())).thenReturn(1);
+
+        sweeper.sweep();
+
+        verify(attachmentRepository, times(2)).findExpiredPending(PENDING_TTL.toSeconds(), BATCH_SIZE);
+        verify(capsuleRepository, times(3)).releaseAttachmentSlots(capsuleId, 1);
+    }
+
+    @Test
+    void constructor_BatchLargerThanOneDeleteRequest_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> new AttachmentUploadSweeper(attachmentRepository,
+                capsuleRepository, s3Service, transactionManager, PENDING_TTL, S3Service.MAX_KEYS_PER_DELETE + 1));
+    }
+
+    private Attachment pending(String filename) {
+        Capsule capsule = new Capsule();
+        capsule.setId(capsuleId);
+        return Attachment.builder()
+                .id(UUID.randomUUID())
+                .capsule(capsule)
+                .filename(filename)
+                .fileKey(UUID.randomUUID() + "_" + filename)
+                .status(AttachmentStatus.PENDING)
+                .build();
+    }
+
+    private void stubFileKeys() {
+        when(s3Service.fileKey(any(), any()))
+                .thenAnswer(inv -> "files/" + inv.getArgument(0) + "/" + inv.getArgument(1));
+    }
+
+    private String keyOf(Attachment attachment) {
+        return "files/" + capsuleId + "/" + attachment.getFileKey();
+    }
+}
@@ -0,0 +1,85 @@
+package dev.horbatiuk.timecapsule.service;
+
+import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleAccessDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CapsuleAccessServiceTest {
+
+    @Mock
+    private CapsuleRepository capsuleRepository;
+
+    @InjectMocks
+    private CapsuleAccessService capsuleAccessService;
+
+    private final UUID capsuleId = UUID.randomUUID();
+    private final UUID ownerId = UUID.randomUUID();
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void findOwned_ShouldReturnCapsule_WhenUserIsOwner() {
+        CapsuleAccessDTO access = new CapsuleAccessDTO(capsuleId, ownerId, CapsuleStatus.INACTIVE);
+        when(capsuleRepository.findAccessById(capsuleId)).thenReturn(Optional.of(access));
+
+        assertEquals(Optional.of(access), capsuleAccessService.findOwned(capsuleId, ownerId));
+    }
+
+    @Test
+    void findOwned_ShouldReturnEmpty_WhenUserIsNotOwner() {
+        when(capsuleRepository.findAccessById(capsuleId))
+                .thenReturn(Optional.of(new CapsuleAccessDTO(capsuleId, ownerId, CapsuleStatus.INACTIVE)));
+
+        assertTrue(capsuleAccessService.findOwned(capsuleId, UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    void findOwned_ShouldReturnEmpty_WhenCapsuleNotFound() {
+        when(capsuleRepository.findAccessById(capsuleId)).thenReturn(Optional.empty());
+
+        assertTrue(capsuleAccessService.findOwned(capsuleId, ownerId).isEmpty());
+    }
+
+    @Test
+    void find_ShouldReadCapsuleOncePerRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(capsuleRepository.findAccessById(capsuleId)).thenReturn(Optional.empty());
+
+        capsuleAccessService.findOwned(capsuleId, ownerId);
+        capsuleAccessService.findOwned(capsuleId, UUID.randomUUID());
+        capsuleAccessService.find(capsuleId);
+
+        verify(capsuleRepository, times(1)).findAccessById(capsuleId);
+    }
+
+    @Test
+    void find_ShouldReadCapsuleEveryTime_OutsideRequest() {
+        when(capsuleRepository.findAccessById(capsuleId)).thenReturn(Optional.empty());
+
+        capsuleAccessService.find(capsuleId);
+        capsuleAccessService.find(capsuleId);
+
+        verify(capsuleRepository, times(2)).findAccessById(capsuleId);
+    }
+}
@@ -0,0 +1,207 @@
+package dev.horbatiuk.timecapsule.service;
+
+import dev.horbatiuk.timecapsule.exception.SchedulingException;
+import dev.horbatiuk.timecapsule.exception.controller.AppException;
+import dev.horbatiuk.timecapsule.persistence.AttachmentRepository;
+import dev.horbatiuk.timecapsule.persistence.CapsuleOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.UserRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentKeyDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleAccessDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleBulkDeleteReportDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import dev.horbatiuk.timecapsule.service.aws.S3Service;
+import dev.horbatiuk.timecapsule.service.scheduler.CapsuleScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CapsuleBulkDeleteServiceTest {
+
+    private static final String EMAIL = "user@example.com";
+
+    @Mock
+    private CapsuleRepository capsuleRepository;
+
+    @Mock
+    private AttachmentRepository attachmentRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private CapsuleOutboxRepository capsuleOutboxRepository;
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private CapsuleScheduler capsuleScheduler;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CapsuleBulkDeleteService service;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        service = new CapsuleBulkDeleteService(capsuleRepository, attachmentRepository, userRepository,
+                capsuleOutboxRepository, s3Service, capsuleScheduler, transactionManager, 4);
+        user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail(EMAIL);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void deleteAllCapsulesByEmail_ShouldDeleteObjectsInBatchesOfAtMost1000() throws Exception {
+        List<CapsuleAccessDTO> capsules = capsules(CapsuleStatus.INACTIVE, CapsuleStatus.DRAFT);
+        List<AttachmentKeyDTO> attachments = IntStream.range(0, 2500)
+                .mapToObj(i -> new AttachmentKeyDTO(capsules.get(i % 2).capsuleId(), "file-" + i))
+                .toList();
+        givenUserWith(capsules, attachments);
+        stubKeys();
+        stubFileKeys();
+        when(s3Service.deleteObjects(anyList())).thenReturn(List.of());
+        when(capsuleRepository.deleteAllByIdIn(anyList())).thenReturn(2);
+
+        CapsuleBulkDeleteReportDTO report = service.deleteAllCapsulesByEmail(EMAIL);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<String>> batches = ArgumentCaptor.forClass(List.class);
+        verify(s3Service, times(3)).deleteObjects(batches.capture());
+        assertEquals(List.of(1000, 1000, 502), batches.getAllValues().stream().map(List::size).toList());
+
+        assertTrue(report.isCompleted());
+        assertEquals(2502, report.getObjectsDeleted());
+        assertEquals(2500, report.getAttachments());
+        verify(attachmentRepository).deleteAllByCapsuleIdIn(ids(capsules));
+        verify(capsuleRepository).deleteAllByIdIn(ids(capsules));
+        verify(capsuleOutboxRepository).enqueueIfProcessing(ids(capsules));
+        verify(userRepository).releaseCapsuleSlots(user.getId(), 2);
+        verify(capsuleScheduler, never()).cancel(any());
+    }
+
+    @Test
+    void deleteAllCapsulesByEmail_ShouldDeleteSchedulesOfActiveCapsulesOnly() throws Exception {
+        List<CapsuleAccessDTO> capsules = capsules(CapsuleStatus.ACTIVE, CapsuleStatus.ACTIVE, CapsuleStatus.INACTIVE);
+        givenUserWith(capsules, List.of());
+        stubKeys();
+        when(s3Service.deleteObjects(anyList())).thenReturn(List.of());
+
+        CapsuleBulkDeleteReportDTO report = service.deleteAllCapsulesByEmail(EMAIL);
+
+        verify(capsuleScheduler).cancel(capsules.get(0).capsuleId());
+        verify(capsuleScheduler).cancel(capsules.get(1).capsuleId());
+        verify(capsuleScheduler, never()).cancel(capsules.get(2).capsuleId());
+        assertEquals(2, report.getSchedulesDeleted());
+        assertTrue(report.isCompleted());
+    }
+
+    @Test
+    void deleteAllCapsulesByEmail_ShouldKeepRows_WhenObjectsAreLeft() throws Exception {
+        List<CapsuleAccessDTO> capsules = capsules(CapsuleStatus.INACTIVE);
+        givenUserWith(capsules, List.of(new AttachmentKeyDTO(capsules.get(0).capsuleId(), "file")));
+        stubKeys();
+        stubFileKeys();
+        when(s3Service.deleteObjects(anyList())).thenReturn(List.of("file"));
+
+        CapsuleBulkDeleteReportDTO report = service.deleteAllCapsulesByEmail(EMAIL);
+
+        assertFalse(report.isCompleted());
+        assertEquals(1, report.getObjectsFailed());
+        assertEquals(1, report.getObjectsDeleted());
+        verifyNoRowsDeleted();
+    }
+
+    @Test
+    void deleteAllCapsulesByEmail_ShouldKeepRows_WhenScheduleDeleteFails() throws Exception {
+        List<CapsuleAccessDTO> capsules = capsules(CapsuleStatus.ACTIVE);
+        givenUserWith(capsules, List.of());
+        stubKeys();
+        when(s3Service.deleteObjects(anyList())).thenReturn(List.of());
+        doThrow(new SchedulingException("throttled")).when(capsuleScheduler).cancel(any());
+
+        CapsuleBulkDeleteReportDTO report = service.deleteAllCapsulesByEmail(EMAIL);
+
+        assertFalse(report.isCompleted());
+        assertEquals(1, report.getSchedulesFailed());
+        verifyNoRowsDeleted();
+    }
+
+    @Test
+    void deleteAllCapsulesByEmail_ShouldCompleteWithoutCalls_WhenUserHasNoCapsules() throws Exception {
+        givenUserWith(List.of(), List.of());
+
+        CapsuleBulkDeleteReportDTO report = service.deleteAllCapsulesByEmail(EMAIL);
+
+        assertTrue(report.isCompleted());
+        verify(s3Service, never()).deleteObjects(anyList());
+        verifyNoRowsDeleted();
+    }
+
+    @Test
+    void deleteAllCapsulesByEmail_ShouldThrowNotFound_WhenUserMissing() {
+        when(userRepository.findUserByEmail(EMAIL)).thenReturn(Optional.empty());
+
+        AppException ex = assertThrows(AppException.class, () -> service.deleteAllCapsulesByEmail(EMAIL));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatus());
+    }
+
+    private void givenUserWith(List<CapsuleAccessDTO> capsules, List<AttachmentKeyDTO> attachments) {
+        when(userRepository.findUserByEmail(EMAIL)).thenReturn(Optional.of(user));
+        when(capsuleRepository.findAccessByAppUserId(user.getId())).thenReturn(capsules);
+        when(attachmentRepository.findKeysByUserId(user.getId())).thenReturn(attachments);
+    }
+
+    private void stubKeys() {
+        when(s3Service.capsuleDataKey(any())).thenAnswer(inv -> inv.getArgument(0).toString() + ".json");
+    }
+
+    private void stubFileKeys() {
+        when(s3Service.fileKey(any(), any())).thenAnswer(inv -> inv.getArgument(1));
+    }
+
+    private void verifyNoRowsDeleted() {
+        verify(attachmentRepository, never()).deleteAllByCapsuleIdIn(anyList());
+        verify(capsuleRepository, never()).deleteAllByIdIn(anyList());
+        verify(userRepository, never()).releaseCapsuleSlots(any(), anyInt());
+    }
+
+    private List<CapsuleAccessDTO> capsules(CapsuleStatus... statuses) {
+        List<CapsuleAccessDTO> capsules = new ArrayList<>();
+        for (CapsuleStatus status : statuses) {
+            capsules.add(new CapsuleAccessDTO(UUID.randomUUID(), user.getId(), status));
+        }
+        return capsules;
+    }
+
+    private static List<UUID> ids(List<CapsuleAccessDTO> capsules) {
+        return capsules.stream().map(CapsuleAccessDTO::capsuleId).toList();
+    }
+}
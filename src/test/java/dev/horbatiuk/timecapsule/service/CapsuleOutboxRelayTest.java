@@ -0,0 +1,154 @@
+package dev.horbatiuk.timecapsule.service;
+
+import dev.horbatiuk.timecapsule.exception.NotFoundException;
+import dev.horbatiuk.timecapsule.exception.SchedulingException;
+import dev.horbatiuk.timecapsule.exception.aws.s3.S3ActionException;
+import dev.horbatiuk.timecapsule.persistence.CapsuleOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.CapsuleOutbox;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import dev.horbatiuk.timecapsule.service.aws.S3Service;
+import dev.horbatiuk.timecapsule.service.scheduler.CapsuleScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CapsuleOutboxRelayTest {
+
+    private CapsuleOutboxRepository capsuleOutboxRepository;
+    private CapsuleService capsuleService;
+    private S3Service s3Service;
+    private CapsuleScheduler capsuleScheduler;
+    private SimpleMeterRegistry meterRegistry;
+    private CapsuleOutboxRelay relay;
+
+    private final UUID capsuleId = UUID.randomUUID();
+    private final Instant openAt = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS);
+
+    @BeforeEach
+    void setUp() {
+        capsuleOutboxRepository = mock(CapsuleOutboxRepository.class);
+        capsuleService = mock(CapsuleService.class);
+        s3Service = mock(S3Service.class);
+        capsuleScheduler = mock(CapsuleScheduler.class);
+        meterRegistry = new SimpleMeterRegistry();
+        relay = new CapsuleOutboxRelay(capsuleOutboxRepository, capsuleService, s3Service, capsuleScheduler,
+                meterRegistry, 2, 5, Duration.ofMinutes(2), 3, Duration.ofSeconds(10), Duration.ofMinutes(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        relay.shutdown();
+    }
+
+    @Test
+    void process_ShouldUploadDataAndSchedule_WhenActive() throws Exception {
+        CapsuleResponseDTO capsule = capsule(CapsuleStatus.ACTIVE);
+        when(capsuleService.findCapsuleById(capsuleId)).thenReturn(capsule);
+
+        relay.process(row(1L, 1));
+
+        verify(s3Service).uploadCapsuleData(capsule);
+        verify(capsuleScheduler).schedule(capsuleId, openAt);
+        verify(capsuleOutboxRepository).markDone(1L);
+        assertEquals(1.0, meterRegistry.counter("capsule.outbox.synced").count());
+    }
+
+    @Test
+    void process_ShouldCancel_WhenNotActive() throws Exception {
+        when(capsuleService.findCapsuleById(capsuleId)).thenReturn(capsule(CapsuleStatus.INACTIVE));
+
+        relay.process(row(1L, 1));
+
+        verify(capsuleScheduler).cancel(capsuleId);
+        verify(s3Service, never()).uploadCapsuleData(any());
+        verify(capsuleOutboxRepository).markDone(1L);
+    }
+
+    @Test
+    void process_ShouldScheduleRetry_WhenSchedulerFails() throws Exception {
+        when(capsuleService.findCapsuleById(capsuleId)).thenReturn(capsule(CapsuleStatus.ACTIVE));
+        doThrow(new SchedulingException("throttled")).when(capsuleScheduler).schedule(capsuleId, openAt);
+
+        relay.process(row(1L, 1));
+
+        verify(capsuleOutboxRepository).scheduleRetry(eq(1L), anyLong(), eq("throttled"));
+        verify(capsuleOutboxRepository, never()).markDone(anyLong());
+    }
+
+    @Test
+    void process_ShouldCancelAndDropRow_WhenCapsuleWasDeleted() throws Exception {
+        when(capsuleService.findCapsuleById(capsuleId)).thenThrow(new NotFoundException("gone"));
+
+        relay.process(row(1L, 1));
+
+        verify(capsuleScheduler).cancel(capsuleId);
+        verify(capsuleOutboxRepository).markDone(1L);
+        verifyNoInteractions(s3Service);
+    }
+
+    @Test
+    void process_ShouldScheduleRetry_WhenCancellingDeletedCapsuleFails() throws Exception {
+        when(capsuleService.findCapsuleById(capsuleId)).thenThrow(new NotFoundException("gone"));
+        doThrow(new SchedulingException("throttled")).when(capsuleScheduler).cancel(capsuleId);
+
+        relay.process(row(1L, 1));
+
+        verify(capsuleOutboxRepository).scheduleRetry(eq(1L), anyLong(), eq("throttled"));
+        verify(capsuleOutboxRepository, never()).markDone(anyLong());
+    }
+
+    @Test
+    void process_ShouldScheduleRetry_WhenUploadFails() throws Exception {
+        when(capsuleService.findCapsuleById(capsuleId)).thenReturn(capsule(CapsuleStatus.ACTIVE));
+        doThrow(new S3ActionException("S3 down")).when(s3Service).uploadCapsuleData(any());
+
+        relay.process(row(1L, 1));
+
+        verify(capsuleOutboxRepository).scheduleRetry(eq(1L), anyLong(), eq("S3 down"));
+        verify(capsuleOutboxRepository, never()).markDone(anyLong());
+        verify(capsuleScheduler, never()).schedule(any(), any());
+    }
+
+    @Test
+    void process_ShouldMarkDead_WhenAttemptsExhausted() throws Exception {
+        when(capsuleService.findCapsuleById(capsuleId)).thenReturn(capsule(CapsuleStatus.ACTIVE));
+        doThrow(new S3ActionException("S3 down")).when(s3Service).uploadCapsuleData(any());
+
+        relay.process(row(1L, 3));
+
+        verify(capsuleOutboxRepository).markDead(1L, "S3 down");
+        verify(capsuleOutboxRepository, never()).scheduleRetry(anyLong(), anyLong(), anyString());
+        assertEquals(1.0, meterRegistry.counter("capsule.outbox.dead").count());
+    }
+
+    private CapsuleResponseDTO capsule(CapsuleStatus status) {
+        CapsuleResponseDTO capsule = new CapsuleResponseDTO();
+        capsule.setId(capsuleId);
+        capsule.setStatus(status);
+        capsule.setOpenAt(Timestamp.from(openAt));
+        return capsule;
+    }
+
+    private CapsuleOutbox row(Long id, int attempts) {
+        return CapsuleOutbox.builder()
+                .id(id)
+                .capsuleId(capsuleId)
+                .attempts(attempts)
+                .build();
+    }
+}
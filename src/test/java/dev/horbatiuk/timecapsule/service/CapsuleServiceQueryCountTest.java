@@ -0,0 +1,131 @@
+package dev.horbatiuk.timecapsule.service;
+
+import dev.horbatiuk.timecapsule.persistence.PostgresJpaTest;
+import dev.horbatiuk.timecapsule.persistence.dto.CountMode;
+import dev.horbatiuk.timecapsule.persistence.dto.CursorPageDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.Attachment;
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.UserRole;
+import dev.horbatiuk.timecapsule.persistence.mapper.CapsuleMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the capsule list endpoints against N+1 loading: the number of SQL statements must
+ * not grow with the number of capsules, owners or attachments returned.
+ */
+@Import({CapsuleService.class, CapsuleServiceQueryCountTest.MapperConfig.class})
+class CapsuleServiceQueryCountTest extends PostgresJpaTest {
+
+    private static final int USERS = 3;
+    private static final int CAPSULES_PER_USER = 6;
+    private static final int ATTACHMENTS_PER_CAPSULE = 2;
+
+    @TestConfiguration
+    @ComponentScan(basePackageClasses = CapsuleMapper.class)
+    static class MapperConfig {
+    }
+
+    @Autowired
+    private CapsuleService capsuleService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final List<User> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int u = 0; u < USERS; u++) {
+            User user = entityManager.persist(User.builder()
+                    .name("user" + u)
+                    .email("user" + u + "@example.com")
+                    .password("hash")
+                    .createdAt(Timestamp.valueOf(LocalDateTime.now()))
+                    .roles(new HashSet<>(Set.of(UserRole.ROLE_USER)))
+                    .build());
+            users.add(user);
+            for (int c = 0; c < CAPSULES_PER_USER; c++) {
+                Capsule capsule = entityManager.persist(Capsule.builder()
+                        .title("capsule-" + u + "-" + c)
+                        .status(CapsuleStatus.DRAFT)
+                        .openAt(Timestamp.valueOf(LocalDateTime.now().plusDays(1)))
+                        .appUser(user)
+                        .build());
+                for (int a = 0; a < ATTACHMENTS_PER_CAPSULE; a++) {
+                    entityManager.persist(Attachment.builder()
+                            .filename("file" + a + ".txt")
+                            .fileKey("capsules/" + c + "/file" + a)
+                            .capsule(capsule)
+                            .build());
+                }
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void findCapsulePageByUserId_ShouldUseConstantNumberOfStatements() {
+        AtomicReference<CursorPageDTO<CapsuleResponseDTO>> result = new AtomicReference<>();
+
+        long statements = countStatements(() -> result.set(capsuleService.findCapsulePageByUserId(
+                users.get(0).getId(), null, 20, CountMode.NONE)));
+
+        assertCapsules(result.get().getItems(), CAPSULES_PER_USER);
+        // capsules with owner, one batch of attachments, one batch of owner roles
+        assertTrue(statements <= 3, "expected at most 3 statements, got " + statements);
+    }
+
+    @Test
+    void findCapsulesByUserId_ShouldUseConstantNumberOfStatements() {
+        AtomicReference<List<CapsuleResponseDTO>> result = new AtomicReference<>();
+
+        long statements = countStatements(() ->
+                result.set(capsuleService.findCapsulesByUserId(users.get(1).getId())));
+
+        assertCapsules(result.get(), CAPSULES_PER_USER);
+        // capsules with owner and attachments, owner roles
+        assertTrue(statements <= 2, "expected at most 2 statements, got " + statements);
+    }
+
+    @Test
+    void findCapsulesByFilters_ShouldUseConstantNumberOfStatementsPerPage() {
+        AtomicReference<CursorPageDTO<CapsuleResponseDTO>> result = new AtomicReference<>();
+
+        long statements = countStatements(() -> result.set(capsuleService.findCapsulesByFilters(
+                null, null, null, null, null, null, null, 10, CountMode.EXACT)));
+
+        assertEquals(USERS * CAPSULES_PER_USER, result.get().getTotalElements());
+        assertCapsules(result.get().getItems(), 10);
+        // page with owners, count, one batch of attachments, one batch of owner roles
+        assertTrue(statements <= 4, "expected at most 4 statements, got " + statements);
+    }
+
+    private static void assertCapsules(List<CapsuleResponseDTO> capsules, int expected) {
+        assertEquals(expected, capsules.size());
+        for (CapsuleResponseDTO capsule : capsules) {
+            assertNotNull(capsule.getEmail());
+            assertNotNull(capsule.getUsername());
+            assertEquals(ATTACHMENTS_PER_CAPSULE, capsule.getAttachments().size());
+        }
+    }
+}
@@ -2,8 +2,12 @@ package dev.horbatiuk.timecapsule.service;
 
 import dev.horbatiuk.timecapsule.exception.NotFoundException;
 import dev.horbatiuk.timecapsule.exception.controller.AppException;
+import dev.horbatiuk.timecapsule.persistence.CapsuleCursor;
+import dev.horbatiuk.timecapsule.persistence.CapsuleOutboxRepository;
 import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
 import dev.horbatiuk.timecapsule.persistence.UserRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.CountMode;
+import dev.horbatiuk.timecapsule.persistence.dto.CursorPageDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleCreateDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.capsule.EditCapsuleDTO;
@@ -17,9 +21,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
@@ -30,6 +33,7 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -42,6 +46,9 @@ class CapsuleServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CapsuleOutboxRepository capsuleOutboxRepository;
+
     @Mock
     private CapsuleMapper capsuleMapper;
 
@@ -65,7 +72,7 @@ class CapsuleServiceTest {
     }
 
     @Test
-    void testFindCapsulesByFilters_ShouldReturnPage() {
+    void testFindCapsulesByFilters_ShouldReturnPageWithExactCount() {
         UUID userId = UUID.randomUUID();
         String email = "test@example.com";
         CapsuleStatus status = CapsuleStatus.ACTIVE;
@@ -74,60 +81,84 @@ class CapsuleServiceTest {
         OffsetDateTime from = OffsetDateTime.now().minusDays(1);
         OffsetDateTime to = OffsetDateTime.now().plusDays(1);
 
-        Capsule capsule1 = new Capsule();
-        Capsule capsule2 = new Capsule();
-        List<Capsule> capsules = List.of(capsule1, capsule2);
+        Capsule capsule1 = capsuleCreatedAt(LocalDateTime.now());
+        Capsule capsule2 = capsuleCreatedAt(LocalDateTime.now().minusHours(1));
 
         CapsuleResponseDTO dto1 = new CapsuleResponseDTO();
         CapsuleResponseDTO dto2 = new CapsuleResponseDTO();
 
-        when(capsuleRepository.findAllWithFilters(
-                title,
-                status,
-                email,
-                from.toInstant(),
-                to.toInstant(),
-                userId,
-                PageRequest.of(0, 10)
-        )).thenReturn(new PageImpl<>(capsules));
-
+        when(capsuleRepository.findBy(any(Specification.class), any())).thenReturn(List.of(capsule1, capsule2));
+        when(capsuleRepository.count(any(Specification.class))).thenReturn(2L);
         when(capsuleMapper.toResponseDTO(capsule1)).thenReturn(dto1);
         when(capsuleMapper.toResponseDTO(capsule2)).thenReturn(dto2);
 
-        Page<CapsuleResponseDTO> result = capsuleService.findCapsulesByFilters(
+        CursorPageDTO<CapsuleResponseDTO> result = capsuleService.findCapsulesByFilters(
                 email,
                 userId,
                 status,
                 title,
                 from,
                 to,
-                PageRequest.of(0, 10)
+                null,
+                10,
+                CountMode.EXACT
         );
 
-        assertEquals(2, result.getContent().size());
+        assertEquals(List.of(dto1, dto2), result.getItems());
+        assertNull(result.getNextCursor());
+        assertEquals(2L, result.getTotalElements());
+        assertFalse(result.isTotalEstimated());
+    }
 
-        verify(capsuleRepository).findAllWithFilters(
-                title,
-                status,
-                email,
-                from.toInstant(),
-                to.toInstant(),
-                userId,
-                PageRequest.of(0, 10)
-        );
+    @Test
+    void testFindCapsulesByFilters_ShouldUseStatisticsForUnfilteredEstimate() {
+        when(capsuleRepository.findBy(any(Specification.class), any())).thenReturn(List.of());
+        when(capsuleRepository.estimateCount()).thenReturn(123_456L);
+
+        CursorPageDTO<CapsuleResponseDTO> result = capsuleService.findCapsulesByFilters(
+                null, null, null, null, null, null, null, 20, CountMode.ESTIMATED);
+
+        assertEquals(123_456L, result.getTotalElements());
+        assertTrue(result.isTotalEstimated());
+        verify(capsuleRepository, never()).count(any(Specification.class));
     }
 
     @Test
-    void testFindCapsulesByEmail_ShouldReturnCapsules() {
-        when(userRepository.findUserByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(capsuleRepository.findAllByAppUser(user)).thenReturn(List.of(capsule));
-        CapsuleResponseDTO dto = new CapsuleResponseDTO();
-        when(capsuleMapper.toResponseDTO(capsule)).thenReturn(dto);
+    void testFindCapsulesByFilters_ShouldCountExactly_WhenStatisticsMissing() {
+        when(capsuleRepository.findBy(any(Specification.class), any())).thenReturn(List.of());
+        when(capsuleRepository.estimateCount()).thenReturn(-1L);
+        when(capsuleRepository.count(any(Specification.class))).thenReturn(7L);
+
+        CursorPageDTO<CapsuleResponseDTO> result = capsuleService.findCapsulesByFilters(
+                null, null, null, null, null, null, null, 20, CountMode.ESTIMATED);
 
-        List<CapsuleResponseDTO> result = capsuleService.findCapsulesByEmail(user.getEmail());
+        assertEquals(7L, result.getTotalElements());
+        assertFalse(result.isTotalEstimated());
+    }
+
+    @Test
+    void testFindCapsulePageByUserId_ShouldReturnNextCursor_WhenMoreRowsExist() {
+        Capsule newest = capsuleCreatedAt(LocalDateTime.of(2030, 1, 3, 10, 0));
+        Capsule middle = capsuleCreatedAt(LocalDateTime.of(2030, 1, 2, 10, 0));
+        Capsule oldest = capsuleCreatedAt(LocalDateTime.of(2030, 1, 1, 10, 0));
+        when(capsuleRepository.findBy(any(Specification.class), any())).thenReturn(List.of(newest, middle, oldest));
+        when(capsuleMapper.toResponseDTO(any(Capsule.class))).thenReturn(new CapsuleResponseDTO());
+
+        CursorPageDTO<CapsuleResponseDTO> result =
+                capsuleService.findCapsulePageByUserId(user.getId(), null, 2, CountMode.NONE);
+
+        assertEquals(2, result.getItems().size());
+        assertEquals(CapsuleCursor.of(middle), CapsuleCursor.decode(result.getNextCursor()));
+        assertNull(result.getTotalElements());
+        verify(capsuleRepository, never()).count(any(Specification.class));
+    }
+
+    @Test
+    void testFindCapsulePageByUserId_ShouldRejectMalformedCursor() {
+        AppException ex = assertThrows(AppException.class,
+                () -> capsuleService.findCapsulePageByUserId(user.getId(), "not a cursor", 20, CountMode.NONE));
 
-        assertEquals(1, result.size());
-        verify(capsuleRepository).findAllByAppUser(user);
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatus());
     }
 
     @Test
@@ -138,6 +169,8 @@ class CapsuleServiceTest {
 
         when(userRepository.findUserByEmail(user.getEmail()))
                 .thenReturn(Optional.of(user));
+        when(userRepository.reserveCapsuleSlot(user.getId(), 5))
+                .thenReturn(Optional.of(1));
         when(capsuleRepository.save(any(Capsule.class)))
                 .thenReturn(savedCapsule);
 
@@ -146,43 +179,62 @@ class CapsuleServiceTest {
                 .thenReturn(response);
 
         CapsuleResponseDTO result =
-                capsuleService.addNewCapsule(user.getEmail(), dto);
+                capsuleService.addNewCapsule(user.getEmail(), dto, 5);
 
         assertNotNull(result);
         verify(capsuleRepository).save(any(Capsule.class));
     }
 
     @Test
-    void testSetCapsuleStatus_ShouldUpdateStatus() throws NotFoundException {
+    void testAddNewCapsule_ShouldRejectWithoutSaving_WhenQuotaExhausted() {
+        when(userRepository.findUserByEmail(user.getEmail()))
+                .thenReturn(Optional.of(user));
+        when(userRepository.reserveCapsuleSlot(user.getId(), 5))
+                .thenReturn(Optional.empty());
+
+        AppException ex = assertThrows(AppException.class,
+                () -> capsuleService.addNewCapsule(user.getEmail(), new CapsuleCreateDTO(), 5));
+
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatus());
+        verify(capsuleRepository, never()).save(any(Capsule.class));
+    }
+
+    @Test
+    void testDeleteCapsule_ShouldReleaseOwnersQuotaSlot() throws NotFoundException {
         when(capsuleRepository.findByIdWithUser(capsuleId))
                 .thenReturn(Optional.of(capsule));
 
-        capsuleService.setCapsuleStatus(capsuleId, CapsuleStatus.ACTIVE);
+        capsuleService.deleteCapsule(capsuleId);
 
-        assertEquals(CapsuleStatus.ACTIVE, capsule.getStatus());
+        verify(capsuleRepository).delete(capsule);
+        verify(userRepository).releaseCapsuleSlots(user.getId(), 1);
+        verify(capsuleOutboxRepository).enqueueIfProcessing(List.of(capsuleId));
     }
 
     @Test
-    void testUserHasAccess_ShouldReturnTrue() {
-        CapsuleResponseDTO dto = new CapsuleResponseDTO();
-        dto.setEmail(user.getEmail());
-
+    void testSetCapsuleStatus_ShouldUpdateStatus() throws NotFoundException {
         when(capsuleRepository.findByIdWithUser(capsuleId))
                 .thenReturn(Optional.of(capsule));
-        when(capsuleMapper.toResponseDTO(capsule))
-                .thenReturn(dto);
 
-        boolean hasAccess = capsuleService.userHasAccess(capsuleId, user.getEmail());
+        capsuleService.setCapsuleStatus(capsuleId, CapsuleStatus.ACTIVE);
 
-        assertTrue(hasAccess);
+        assertEquals(CapsuleStatus.ACTIVE, capsule.getStatus());
+        verify(capsuleOutboxRepository).enqueue(capsuleId);
     }
 
     @Test
-    void testUserHasAccess_ShouldReturnFalse_WhenCapsuleNotFound() {
+    void testEditCapsuleAsAdmin_ShouldQueueSync_WhenCapsuleIsActive() throws NotFoundException {
+        capsule.setStatus(CapsuleStatus.ACTIVE);
         when(capsuleRepository.findByIdWithUser(capsuleId))
-                .thenReturn(Optional.empty());
-        boolean result = capsuleService.userHasAccess(capsuleId, user.getEmail());
-        assertFalse(result);
+                .thenReturn(Optional.of(capsule));
+
+        EditCapsuleDTO dto = new EditCapsuleDTO();
+        dto.setOpenAt(Timestamp.valueOf(LocalDateTime.of(2030, 1, 1, 0, 0)));
+
+        capsuleService.editCapsuleAsAdmin(capsuleId, dto);
+
+        assertEquals(dto.getOpenAt(), capsule.getOpenAt());
+        verify(capsuleOutboxRepository).enqueue(capsuleId);
     }
 
     @Test
@@ -228,4 +280,11 @@ class CapsuleServiceTest {
         when(userRepository.findUserByEmail(user.getEmail())).thenReturn(Optional.empty());
         assertThrows(AppException.class, () -> capsuleService.findCapsulesByUserEmail(user.getEmail()));
     }
+
+    private static Capsule capsuleCreatedAt(LocalDateTime createdAt) {
+        Capsule capsule = new Capsule();
+        capsule.setId(UUID.randomUUID());
+        capsule.setCreatedAt(Timestamp.valueOf(createdAt));
+        return capsule;
+    }
 }
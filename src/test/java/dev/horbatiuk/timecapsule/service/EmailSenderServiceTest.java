@@ -1,5 +1,10 @@
 package dev.horbatiuk.timecapsule.service;
 
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.AttachmentResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
+import dev.horbatiuk.timecapsule.service.email.EmailOutboxService;
+import dev.horbatiuk.timecapsule.service.email.EmailTemplateRenderer;
+import dev.horbatiuk.timecapsule.service.email.SmtpBatchSender;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,10 +16,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.mail.javamail.JavaMailSender;
-import org.thymeleaf.TemplateEngine;
-import org.thymeleaf.context.Context;
+
+import java.sql.Timestamp;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -29,7 +36,13 @@ class EmailSenderServiceTest {
     private JavaMailSender mailSender;
 
     @Mock
-    private TemplateEngine templateEngine;
+    private EmailTemplateRenderer emailTemplateRenderer;
+
+    @Mock
+    private EmailOutboxService emailOutboxService;
+
+    @Mock
+    private SmtpBatchSender smtpBatchSender;
 
     @Mock
     private MimeMessage mimeMessage;
@@ -43,38 +56,82 @@ class EmailSenderServiceTest {
     }
 
     @Test
-    void testSendVerificationEmail_success() throws Exception {
-        when(templateEngine.process(eq("email/verification/verification-email"), any(Context.class)))
+    void testSendVerificationEmail_success() {
+        when(emailTemplateRenderer.render(eq("email/verification/verification-email"), anyMap()))
                 .thenReturn("<html>Email</html>");
 
         emailSenderService.sendVerificationEmail(recipient, verificationUrl);
 
-        verify(mailSender).send(mimeMessage);
+        verify(emailOutboxService).enqueue(recipient, "Email Verification", "<html>Email</html>");
+        verifyNoInteractions(mailSender);
     }
 
     @Test
     void testSendVerificationEmail_TemplateFails() {
-        when(templateEngine.process(eq("email/verification/verification-email"), any(Context.class)))
+        when(emailTemplateRenderer.render(eq("email/verification/verification-email"), anyMap()))
                 .thenThrow(new RuntimeException("Template engine failure"));
 
         assertThrows(RuntimeException.class, () ->
                 emailSenderService.sendVerificationEmail(recipient, verificationUrl)
         );
+        verifyNoInteractions(emailOutboxService);
     }
 
     @Test
-    void testSendVerificationEmail_SendEmailThrowsMessagingException() {
-        when(templateEngine.process(eq("email/verification/verification-email"), any(Context.class)))
-                .thenReturn("<html>Email</html>");
+    void testSendCapsuleOpenedEmail_QueuesForOwner() {
+        CapsuleResponseDTO capsule = new CapsuleResponseDTO();
+        capsule.setTitle("Letter to myself");
+        capsule.setEmail(recipient);
+        capsule.setCreatedAt(Timestamp.valueOf("2024-05-01 10:00:00"));
+        AttachmentResponseDTO attachment = new AttachmentResponseDTO();
+        attachment.setFilename("photo.jpg");
+        capsule.setAttachments(List.of(attachment));
+        when(emailTemplateRenderer.render(eq("email/capsule/capsule-opened"), anyMap()))
+                .thenReturn("<html>Opened</html>");
+
+        emailSenderService.sendCapsuleOpenedEmail(capsule);
+
+        verify(emailTemplateRenderer).render(eq("email/capsule/capsule-opened"), argThat(variables ->
+                "1 May 2024".equals(variables.get("createdAt"))
+                        && List.of("photo.jpg").equals(variables.get("attachments"))));
+        verify(emailOutboxService).enqueue(recipient, "Your time capsule has opened", "<html>Opened</html>");
+    }
+
+    @Test
+    void testSend_success() throws Exception {
+        emailSenderService.send(recipient, "Subject", "<html>Email</html>");
+
+        verify(mailSender).send(mimeMessage);
+    }
 
+    @Test
+    void testSend_SendEmailThrowsMessagingException() {
         doAnswer(invocation -> {
             throw new MessagingException("Simulated email error");
         }).when(mailSender).send(any(MimeMessage.class));
 
         MessagingException exception = assertThrows(MessagingException.class, () ->
-                emailSenderService.sendVerificationEmail(recipient, verificationUrl)
+                emailSenderService.send(recipient, "Subject", "<html>Email</html>")
         );
 
         assertEquals("Simulated email error", exception.getMessage());
     }
+
+    @Test
+    void testCreateMessage_DoesNotSend() throws Exception {
+        MimeMessage message = emailSenderService.createMessage(recipient, "Subject", "<html>Email</html>");
+
+        assertSame(mimeMessage, message);
+        verify(mailSender, never()).send(any(MimeMessage.class));
+    }
+
+    @Test
+    void testSendBatch_DelegatesToBatchSender() {
+        List<MimeMessage> messages = List.of(mimeMessage);
+
+        emailSenderService.sendBatch(messages);
+
+        verify(smtpBatchSender).send(messages);
+        verify(mailSender, never()).send(any(MimeMessage.class));
+    }
 }
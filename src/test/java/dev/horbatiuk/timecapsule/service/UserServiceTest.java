@@ -5,6 +5,8 @@ import dev.horbatiuk.timecapsule.exception.NotFoundException;
 import dev.horbatiuk.timecapsule.persistence.UserRepository;
 import dev.horbatiuk.timecapsule.persistence.dto.user.UpdateUserInfoRequestDTO;
 import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.security.CustomUserDetails;
+import dev.horbatiuk.timecapsule.security.UserPrincipalCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -25,6 +27,9 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserPrincipalCache userPrincipalCache;
+
     @InjectMocks
     private UserService userService;
 
@@ -60,6 +65,25 @@ class UserServiceTest {
         verify(userRepository, times(1)).findUserByEmail(testEmail);
     }
 
+    @Test
+    void findUserDetailsByEmail_ServedFromCache() throws NotFoundException {
+        User user = new User();
+        user.setEmail(testEmail);
+        CustomUserDetails userDetails = new CustomUserDetails(user);
+
+        when(userPrincipalCache.find(testEmail)).thenReturn(Optional.of(userDetails));
+
+        assertEquals(userDetails, userService.findUserDetailsByEmail(testEmail));
+        verify(userRepository, never()).findUserByEmail(anyString());
+    }
+
+    @Test
+    void findUserDetailsByEmail_UserNotFound_ThrowsNotFoundException() {
+        when(userPrincipalCache.find(testEmail)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> userService.findUserDetailsByEmail(testEmail));
+    }
+
     @Test
     void updateProfile_UpdateNameOnly_SavesUpdatedUser() throws NotFoundException, ConflictException {
         User user = new User();
@@ -77,6 +101,7 @@ class UserServiceTest {
 
         assertEquals("New Name", user.getName());
         verify(userRepository).save(user);
+        verify(userPrincipalCache).evict(testEmail);
     }
 
     @Test
@@ -96,7 +121,9 @@ class UserServiceTest {
         userService.updateProfile(testEmail, dto);
 
         assertEquals("encoded-new-password", user.getPassword());
+        assertEquals(1L, user.getTokenVersion());
         verify(userRepository).save(user);
+        verify(userPrincipalCache).evict(testEmail);
     }
 
     @Test
@@ -117,6 +144,7 @@ class UserServiceTest {
 
         assertEquals("Your old password does not match", exception.getMessage());
         verify(userRepository, never()).save(any());
+        verify(userPrincipalCache, never()).evict(anyString());
     }
 
     @Test
@@ -3,6 +3,7 @@ package dev.horbatiuk.timecapsule.service.aws;
 import org.junit.jupiter.api.Test;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.scheduler.SchedulerClient;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -22,9 +23,11 @@ class AwsConfigPlainTest {
 
             S3Client s3Client = context.getBean(S3Client.class);
             SchedulerClient schedulerClient = context.getBean(SchedulerClient.class);
+            S3Presigner s3Presigner = context.getBean(S3Presigner.class);
 
             assertNotNull(s3Client);
             assertNotNull(schedulerClient);
+            assertNotNull(s3Presigner);
         }
     }
 }
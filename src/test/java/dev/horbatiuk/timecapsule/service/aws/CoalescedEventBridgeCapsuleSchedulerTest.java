@@ -0,0 +1,246 @@
+package dev.horbatiuk.timecapsule.service.aws;
+
+import dev.horbatiuk.timecapsule.exception.aws.InternalAwsException;
+import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.PostgresJpaTest;
+import dev.horbatiuk.timecapsule.persistence.UserRepository;
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Bucket bookkeeping against a real database, with EventBridge mocked. Runs without the
+ * test-managed transaction, so a failed write really rolls back.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CoalescedEventBridgeCapsuleSchedulerTest extends PostgresJpaTest {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CapsuleRepository capsuleRepository;
+
+    private EventBridgeScheduledService eventBridgeScheduledService;
+    private CoalescedEventBridgeCapsuleScheduler scheduler;
+    private User user;
+    private final Instant bucket = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MINUTES);
+
+    @BeforeEach
+    void setUp() {
+        eventBridgeScheduledService = mock(EventBridgeScheduledService.class);
+        scheduler = new CoalescedEventBridgeCapsuleScheduler(eventBridgeScheduledService, jdbcTemplate, transactionManager, 2,
+                Duration.ofSeconds(30), Duration.ofMinutes(2), Duration.ofSeconds(30), 100);
+        user = userRepository.save(User.builder()
+                .name("coalesced")
+                .email("coalesced@example.com")
+                .password("hash")
+                .createdAt(Timestamp.from(Instant.now()))
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.getJdbcTemplate().update("DELETE FROM capsule_schedule_sync");
+        capsuleRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void bucketOf_ShouldRoundUpToWholeMinute() {
+        assertEquals(bucket, CoalescedEventBridgeCapsuleScheduler.bucketOf(bucket));
+        assertEquals(bucket.plusSeconds(60), CoalescedEventBridgeCapsuleScheduler.bucketOf(bucket.plusSeconds(1)));
+        assertEquals(bucket.plusSeconds(60), CoalescedEventBridgeCapsuleScheduler.bucketOf(bucket.plusSeconds(59)));
+    }
+
+    @Test
+    void schedule_ShouldListCapsulesOfTheSameMinuteInOneSchedule() throws Exception {
+        UUID first = capsule();
+        UUID second = capsule();
+        String name = CoalescedEventBridgeCapsuleScheduler.scheduleName(bucket, 0);
+
+        scheduler.schedule(first, bucket.minusSeconds(30));
+        scheduler.schedule(second, bucket.minusSeconds(10));
+
+        verify(eventBridgeScheduledService).putBatchSchedule(name, bucket, List.of(first));
+        verify(eventBridgeScheduledService).putBatchSchedule(name, bucket, sorted(first, second));
+    }
+
+    @Test
+    void schedule_ShouldDoNothing_WhenCapsuleIsAlreadyInTheBucket() throws Exception {
+        UUID id = capsule();
+        scheduler.schedule(id, bucket);
+        clearInvocations(eventBridgeScheduledService);
+
+        scheduler.schedule(id, bucket);
+
+        verifyNoInteractions(eventBridgeScheduledService);
+    }
+
+    @Test
+    void schedule_ShouldMoveCapsuleBetweenBuckets() throws Exception {
+        UUID id = capsule();
+        Instant later = bucket.plus(1, ChronoUnit.HOURS);
+        scheduler.schedule(id, bucket);
+
+        scheduler.schedule(id, later);
+
+        verify(eventBridgeScheduledService).putBatchSchedule(
+                CoalescedEventBridgeCapsuleScheduler.scheduleName(later, 0), later, List.of(id));
+        verify(eventBridgeScheduledService).deleteBatchSchedule(CoalescedEventBridgeCapsuleScheduler.scheduleName(bucket, 0));
+        assertEquals(later, bucketColumn(id));
+    }
+
+    @Test
+    void schedule_ShouldPutCapsuleIntoNextShard_WhenBucketIsFull() throws Exception {
+        UUID first = capsule();
+        UUID second = capsule();
+        UUID third = capsule();
+
+        for (UUID id : List.of(first, second, third)) {
+            scheduler.schedule(id, bucket);
+        }
+
+        String firstShard = CoalescedEventBridgeCapsuleScheduler.scheduleName(bucket, 0);
+        verify(eventBridgeScheduledService).putBatchSchedule(firstShard, bucket, List.of(first));
+        verify(eventBridgeScheduledService).putBatchSchedule(firstShard, bucket, sorted(first, second));
+        verify(eventBridgeScheduledService).putBatchSchedule(
+                CoalescedEventBridgeCapsuleScheduler.scheduleName(bucket, 1), bucket, List.of(third));
+        verify(eventBridgeScheduledService, times(2)).putBatchSchedule(eq(firstShard), any(), anyList());
+        verify(eventBridgeScheduledService, never()).deleteBatchSchedule(anyString());
+    }
+
+    @Test
+    void cancel_ShouldRemoveCapsuleFromBucket() throws Exception {
+        UUID stays = capsule();
+        UUID leaves = capsule();
+        scheduler.schedule(stays, bucket);
+        scheduler.schedule(leaves, bucket);
+        clearInvocations(eventBridgeScheduledService);
+
+        scheduler.cancel(leaves);
+
+        verify(eventBridgeScheduledService).putBatchSchedule(
+                CoalescedEventBridgeCapsuleScheduler.scheduleName(bucket, 0), bucket, List.of(stays));
+        assertNull(bucketColumn(leaves));
+    }
+
+    @Test
+    void cancel_ShouldDoNothing_WhenCapsuleIsInNoBucket() throws Exception {
+        scheduler.cancel(capsule());
+        scheduler.cancel(UUID.randomUUID());
+
+        verifyNoInteractions(eventBridgeScheduledService);
+    }
+
+    @Test
+    void schedule_ShouldKeepShardQueued_WhenEventBridgeFails() throws Exception {
+        UUID id = capsule();
+        String name = CoalescedEventBridgeCapsuleScheduler.scheduleName(bucket, 0);
+        doThrow(new InternalAwsException("throttled")).doNothing()
+                .when(eventBridgeScheduledService).putBatchSchedule(anyString(), any(), anyList());
+
+        scheduler.schedule(id, bucket);
+
+        assertEquals(bucket, bucketColumn(id));
+        assertEquals(0, scheduler.syncDue(Instant.now()), "the retry is not due yet");
+        assertEquals(1, scheduler.syncDue(Instant.now().plusSeconds(60)));
+        verify(eventBridgeScheduledService, times(2)).putBatchSchedule(name, bucket, List.of(id));
+        assertEquals(0, queuedSyncs());
+    }
+
+    @Test
+    void schedule_ShouldUseFirstBucketFarEnoughAhead_WhenCapsuleIsDue() throws Exception {
+        UUID id = capsule();
+        Instant openAt = Instant.now().minus(1, ChronoUnit.HOURS);
+
+        scheduler.schedule(id, openAt);
+
+        Instant moved = bucketColumn(id);
+        assertTrue(moved.isAfter(Instant.now()));
+        verify(eventBridgeScheduledService).putBatchSchedule(
+                CoalescedEventBridgeCapsuleScheduler.scheduleName(moved, 0), moved, List.of(id));
+
+        clearInvocations(eventBridgeScheduledService);
+        scheduler.schedule(id, openAt);
+
+        verifyNoInteractions(eventBridgeScheduledService);
+        assertEquals(moved, bucketColumn(id));
+    }
+
+    @Test
+    void syncDue_ShouldMoveUnwrittenCapsules_WhenShardIsDueBeforeItWasWritten() throws Exception {
+        UUID written = capsule();
+        UUID unwritten = capsule();
+        scheduler.schedule(written, bucket);
+        doThrow(new InternalAwsException("throttled")).doNothing()
+                .when(eventBridgeScheduledService).putBatchSchedule(anyString(), any(), anyList());
+        scheduler.schedule(unwritten, bucket);
+        clearInvocations(eventBridgeScheduledService);
+
+        scheduler.syncDue(bucket.plusSeconds(60));
+
+        Instant next = bucket.plus(2, ChronoUnit.MINUTES);
+        assertEquals(bucket, bucketColumn(written), "EventBridge has opened it already");
+        assertEquals(next, bucketColumn(unwritten));
+        verify(eventBridgeScheduledService).putBatchSchedule(
+                CoalescedEventBridgeCapsuleScheduler.scheduleName(next, 0), next, List.of(unwritten));
+        verifyNoMoreInteractions(eventBridgeScheduledService);
+        assertEquals(0, queuedSyncs());
+    }
+
+    private UUID capsule() {
+        return capsuleRepository.save(Capsule.builder()
+                .title("capsule")
+                .status(CapsuleStatus.ACTIVE)
+                .openAt(Timestamp.from(bucket))
+                .appUser(user)
+                .build()).getId();
+    }
+
+    private Instant bucketColumn(UUID id) {
+        Timestamp value = jdbcTemplate.queryForObject("SELECT schedule_bucket FROM capsule WHERE id = :id",
+                Map.of("id", id), Timestamp.class);
+        return value == null ? null : value.toInstant();
+    }
+
+    private int queuedSyncs() {
+        return jdbcTemplate.getJdbcTemplate().queryForObject("SELECT count(*) FROM capsule_schedule_sync", Integer.class);
+    }
+
+    private static List<UUID> sorted(UUID... ids) {
+        // PostgreSQL orders uuids bytewise, which is what UUID.toString order gives
+        return Arrays.stream(ids).sorted(Comparator.comparing(UUID::toString)).toList();
+    }
+}
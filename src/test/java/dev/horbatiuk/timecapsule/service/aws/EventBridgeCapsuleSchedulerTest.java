@@ -0,0 +1,106 @@
+package dev.horbatiuk.timecapsule.service.aws;
+
+import dev.horbatiuk.timecapsule.exception.NotFoundException;
+import dev.horbatiuk.timecapsule.exception.SchedulingException;
+import dev.horbatiuk.timecapsule.exception.aws.InternalAwsException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.scheduler.model.GetScheduleResponse;
+import software.amazon.awssdk.services.scheduler.model.ScheduleState;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+class EventBridgeCapsuleSchedulerTest {
+
+    private EventBridgeScheduledService eventBridgeScheduledService;
+    private EventBridgeCapsuleScheduler scheduler;
+
+    private final UUID capsuleId = UUID.randomUUID();
+    private final Instant openAt = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS);
+
+    @BeforeEach
+    void setUp() {
+        eventBridgeScheduledService = mock(EventBridgeScheduledService.class);
+        scheduler = new EventBridgeCapsuleScheduler(eventBridgeScheduledService);
+    }
+
+    @Test
+    void schedule_ShouldCreateSchedule_WhenNoneExists() throws Exception {
+        when(eventBridgeScheduledService.getSchedule(capsuleId)).thenThrow(new NotFoundException("none"));
+
+        scheduler.schedule(capsuleId, openAt);
+
+        verify(eventBridgeScheduledService).createNewSchedule(capsuleId, openAt);
+    }
+
+    @Test
+    void schedule_ShouldEnableDisabledSchedule() throws Exception {
+        GetScheduleResponse schedule = schedule(EventBridgeScheduledService.atExpression(openAt), ScheduleState.DISABLED);
+        when(eventBridgeScheduledService.getSchedule(capsuleId)).thenReturn(schedule);
+
+        scheduler.schedule(capsuleId, openAt);
+
+        verify(eventBridgeScheduledService).updateSchedule(schedule, true, capsuleId);
+        verify(eventBridgeScheduledService, never()).createNewSchedule(any(), any());
+    }
+
+    @Test
+    void schedule_ShouldRecreateSchedule_WhenOpenAtChanged() throws Exception {
+        GetScheduleResponse schedule = schedule(
+                EventBridgeScheduledService.atExpression(openAt.minus(1, ChronoUnit.HOURS)), ScheduleState.ENABLED);
+        when(eventBridgeScheduledService.getSchedule(capsuleId)).thenReturn(schedule);
+
+        scheduler.schedule(capsuleId, openAt);
+
+        verify(eventBridgeScheduledService).deleteSchedule(capsuleId);
+        verify(eventBridgeScheduledService).createNewSchedule(capsuleId, openAt);
+    }
+
+    @Test
+    void schedule_ShouldLeaveMatchingEnabledScheduleAlone() throws Exception {
+        when(eventBridgeScheduledService.getSchedule(capsuleId))
+                .thenReturn(schedule(EventBridgeScheduledService.atExpression(openAt), ScheduleState.ENABLED));
+
+        scheduler.schedule(capsuleId, openAt);
+
+        verify(eventBridgeScheduledService, never()).createNewSchedule(any(), any());
+        verify(eventBridgeScheduledService, never()).updateSchedule(any(), anyBoolean(), any());
+    }
+
+    @Test
+    void schedule_ShouldWrapAwsFailures() throws Exception {
+        when(eventBridgeScheduledService.getSchedule(capsuleId)).thenThrow(new InternalAwsException("throttled"));
+
+        assertThrows(SchedulingException.class, () -> scheduler.schedule(capsuleId, openAt));
+    }
+
+    @Test
+    void cancel_ShouldIgnoreMissingSchedule() throws Exception {
+        doThrow(new NotFoundException("none")).when(eventBridgeScheduledService).deleteSchedule(capsuleId);
+
+        scheduler.cancel(capsuleId);
+
+        verify(eventBridgeScheduledService).deleteSchedule(capsuleId);
+    }
+
+    @Test
+    void cancel_ShouldWrapAwsFailures() throws Exception {
+        doThrow(new InternalAwsException("throttled")).when(eventBridgeScheduledService).deleteSchedule(capsuleId);
+
+        assertThrows(SchedulingException.class, () -> scheduler.cancel(capsuleId));
+    }
+
+    private static GetScheduleResponse schedule(String expression, ScheduleState state) {
+        return GetScheduleResponse.builder()
+                .scheduleExpression(expression)
+                .state(state)
+                .build();
+    }
+}
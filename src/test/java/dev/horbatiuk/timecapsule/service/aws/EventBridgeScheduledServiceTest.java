@@ -10,6 +10,7 @@ import software.amazon.awssdk.services.scheduler.SchedulerClient;
 import software.amazon.awssdk.services.scheduler.model.*;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -175,6 +176,62 @@ class EventBridgeScheduledServiceTest {
         assertTrue(ex.getMessage().contains("Failed to get schedule"));
     }
 
+    @Test
+    void putBatchSchedule_ShouldReplaceExistingSchedule() throws InternalAwsException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        service.putBatchSchedule("capsules-20250801-1200-0", Instant.parse("2025-08-01T12:00:00Z"), List.of(first, second));
+
+        ArgumentCaptor<UpdateScheduleRequest> captor = ArgumentCaptor.forClass(UpdateScheduleRequest.class);
+        verify(schedulerClient).updateSchedule(captor.capture());
+        verify(schedulerClient, never()).createSchedule(any(CreateScheduleRequest.class));
+        UpdateScheduleRequest req = captor.getValue();
+        assertEquals("capsules-20250801-1200-0", req.name());
+        assertEquals("at(2025-08-01T12:00:00)", req.scheduleExpression());
+        assertEquals(ActionAfterCompletion.DELETE, req.actionAfterCompletion());
+        assertEquals("{\"capsuleIds\": [\"" + first + "\", \"" + second + "\"]}", req.target().input());
+    }
+
+    @Test
+    void putBatchSchedule_ShouldCreateSchedule_WhenMissing() throws InternalAwsException {
+        when(schedulerClient.updateSchedule(any(UpdateScheduleRequest.class)))
+                .thenThrow(ResourceNotFoundException.builder().message("Not found").build());
+
+        service.putBatchSchedule("capsules-20250801-1200-0", Instant.parse("2025-08-01T12:00:00Z"), List.of(UUID.randomUUID()));
+
+        ArgumentCaptor<CreateScheduleRequest> captor = ArgumentCaptor.forClass(CreateScheduleRequest.class);
+        verify(schedulerClient).createSchedule(captor.capture());
+        assertEquals("capsules-20250801-1200-0", captor.getValue().name());
+        assertEquals(lambdaArn, captor.getValue().target().arn());
+    }
+
+    @Test
+    void deleteBatchSchedule_ShouldReportMissingSchedule() throws InternalAwsException {
+        doThrow(ResourceNotFoundException.builder().message("Not found").build())
+                .when(schedulerClient).deleteSchedule(any(DeleteScheduleRequest.class));
+
+        assertFalse(service.deleteBatchSchedule("capsules-20250801-1200-1"));
+    }
+
+    @Test
+    void listSchedules_ShouldFollowNextToken() throws InternalAwsException {
+        ScheduleSummary first = ScheduleSummary.builder().name("a1").build();
+        ScheduleSummary second = ScheduleSummary.builder().name("a2").build();
+        when(schedulerClient.listSchedules(any(ListSchedulesRequest.class)))
+                .thenReturn(ListSchedulesResponse.builder().schedules(List.of(first)).nextToken("page-2").build())
+                .thenReturn(ListSchedulesResponse.builder().schedules(List.of(second)).build());
+
+        List<ScheduleSummary> schedules = service.listSchedules("a");
+
+        assertEquals(List.of(first, second), schedules);
+        ArgumentCaptor<ListSchedulesRequest> captor = ArgumentCaptor.forClass(ListSchedulesRequest.class);
+        verify(schedulerClient, times(2)).listSchedules(captor.capture());
+        assertEquals("a", captor.getAllValues().get(0).namePrefix());
+        assertNull(captor.getAllValues().get(0).nextToken());
+        assertEquals("page-2", captor.getAllValues().get(1).nextToken());
+    }
+
     private static void setField(Object target, String fieldName, Object value) {
         try {
             var field = target.getClass().getDeclaredField(fieldName);
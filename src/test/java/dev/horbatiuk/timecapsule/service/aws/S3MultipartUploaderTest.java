@@ -0,0 +1,370 @@
+package dev.horbatiuk.timecapsule.service.aws;
+
+import dev.horbatiuk.timecapsule.exception.aws.s3.S3ActionException;
+import dev.horbatiuk.timecapsule.exception.controller.ServiceOverloadedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsRequest;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsResponse;
+import software.amazon.awssdk.services.s3.model.MultipartUpload;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.paginators.ListMultipartUploadsIterable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class S3MultipartUploaderTest {
+
+    private static final int PART_SIZE = (int) DataSize.ofMegabytes(5).toBytes();
+    /** The production defaults of parallelism, buffers-per-upload, max-buffers and buffer-wait. */
+    private static final int PARALLELISM = 8;
+    private static final int BUFFERS_PER_UPLOAD = 0;
+    private static final int MAX_BUFFERS = 32;
+    private static final Duration BUFFER_WAIT = Duration.ofSeconds(10);
+    private static final String KEY = "files/capsule/video.mp4";
+
+    private S3Client s3Client;
+    private S3MultipartUploader uploader;
+    private final Map<Integer, byte[]> receivedParts = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        s3Client = mock(S3Client.class);
+        uploader = uploader(BUFFERS_PER_UPLOAD, MAX_BUFFERS, BUFFER_WAIT);
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        uploader.shutdown();
+    }
+
+    private S3MultipartUploader uploader(int buffersPerUpload, int maxBuffers, Duration bufferWait) {
+        return new S3MultipartUploader(s3Client, "test-bucket", "files",
+                DataSize.ofMegabytes(16), DataSize.ofBytes(PART_SIZE), PARALLELISM, buffersPerUpload, maxBuffers,
+                bufferWait, 3, Duration.ofMillis(1), Duration.ofDays(1));
+    }
+
+    @Test
+    void isMultipart_fromThreshold() {
+        assertFalse(uploader.isMultipart(DataSize.ofMegabytes(16).toBytes() - 1));
+        assertTrue(uploader.isMultipart(DataSize.ofMegabytes(16).toBytes()));
+    }
+
+    @Test
+    void upload_sendsPartsAndCompletesInOrder() throws Exception {
+        byte[] content = randomBytes(PART_SIZE * 2 + 1234);
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(inv -> receive(inv.getArgument(0), inv.getArgument(1)));
+
+        uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4");
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> captor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(captor.capture());
+        List<CompletedPart> parts = captor.getValue().multipartUpload().parts();
+        assertEquals(List.of(1, 2, 3), parts.stream().map(CompletedPart::partNumber).toList());
+        assertEquals(List.of("etag-1", "etag-2", "etag-3"), parts.stream().map(CompletedPart::eTag).toList());
+        assertEquals("upload-1", captor.getValue().uploadId());
+
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (int part = 1; part <= 3; part++) {
+            joined.write(receivedParts.get(part));
+        }
+        assertArrayEquals(content, joined.toByteArray());
+        verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void upload_neverSendsMorePartsAtOnceThanParallelism() throws Exception {
+        byte[] content = new byte[PART_SIZE * 10];
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(inv -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                return receive(inv.getArgument(0), inv.getArgument(1));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+
+        uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4");
+
+        assertTrue(maxInFlight.get() <= PARALLELISM, "max in flight " + maxInFlight.get());
+        assertTrue(maxInFlight.get() > 1, "parts were not sent in parallel");
+        assertEquals(10, receivedParts.size());
+    }
+
+    @Test
+    void upload_keepsEverySendingSlotBusyOnItsOwn() throws Exception {
+        byte[] content = new byte[PART_SIZE * PARALLELISM * 2];
+        CountDownLatch allSlotsBusy = new CountDownLatch(PARALLELISM);
+        AtomicBoolean reachedParallelism = new AtomicBoolean(true);
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(inv -> {
+            allSlotsBusy.countDown();
+            if (!allSlotsBusy.await(5, TimeUnit.SECONDS)) {
+                reachedParallelism.set(false);
+            }
+            return receive(inv.getArgument(0), inv.getArgument(1));
+        });
+
+        uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4");
+
+        assertTrue(reachedParallelism.get(), "one upload never had " + PARALLELISM + " parts in flight");
+        assertEquals(PARALLELISM * 2, receivedParts.size());
+    }
+
+    @Test
+    void upload_holdsNoMoreThanItsOwnBuffers() throws Exception {
+        uploader.shutdown();
+        uploader = uploader(2, MAX_BUFFERS, BUFFER_WAIT);
+        byte[] content = new byte[PART_SIZE * 6];
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(inv -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                return receive(inv.getArgument(0), inv.getArgument(1));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+
+        uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4");
+
+        assertTrue(maxInFlight.get() <= 2, "max in flight " + maxInFlight.get());
+        assertEquals(6, receivedParts.size());
+    }
+
+    @Test
+    void upload_isNotHeldUpByUploadsWaitingForTheirClients() throws Exception {
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(inv -> receive(inv.getArgument(0), inv.getArgument(1)));
+        CountDownLatch clientsSend = new CountDownLatch(1);
+        List<Thread> stalled = new ArrayList<>();
+        for (int i = 0; i < PARALLELISM; i++) {
+            // sends its first part, then nothing until the latch opens, then ends early
+            InputStream slowClient = new SequenceInputStream(new ByteArrayInputStream(new byte[PART_SIZE]), new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    try {
+                        clientsSend.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    return -1;
+                }
+            });
+            Thread thread = new Thread(() -> assertThrows(S3ActionException.class, () ->
+                    uploader.upload(KEY, slowClient, PART_SIZE * 3L, "video/mp4")));
+            thread.start();
+            stalled.add(thread);
+        }
+
+        byte[] content = randomBytes(PART_SIZE * 4);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4"));
+
+        clientsSend.countDown();
+        for (Thread thread : stalled) {
+            thread.join(10_000);
+        }
+        verify(s3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void upload_isRefused_WhenNodeHasNoBuffersLeft() throws Exception {
+        uploader.shutdown();
+        uploader = uploader(BUFFERS_PER_UPLOAD, 1, Duration.ofMillis(50));
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(inv -> receive(inv.getArgument(0), inv.getArgument(1)));
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch clientSends = new CountDownLatch(1);
+        // holds the only buffer of the node until the latch opens, then ends early
+        InputStream slowClient = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                reading.countDown();
+                try {
+                    clientSends.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return -1;
+            }
+        };
+        Thread stalled = new Thread(() -> assertThrows(S3ActionException.class, () ->
+                uploader.upload(KEY, slowClient, PART_SIZE * 3L, "video/mp4")));
+        stalled.start();
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+        byte[] content = new byte[PART_SIZE * 4];
+        ServiceOverloadedException ex = assertThrows(ServiceOverloadedException.class, () ->
+                uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4"));
+        assertTrue(ex.getRetryAfterSeconds() >= 1);
+        verify(s3Client, times(1)).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+
+        clientSends.countDown();
+        stalled.join(10_000);
+        // the stalled upload gave its buffer back
+        uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4");
+        verify(s3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void upload_retriesFailedPart() throws Exception {
+        byte[] content = randomBytes(PART_SIZE * 2);
+        AtomicInteger secondPartAttempts = new AtomicInteger();
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(inv -> {
+            UploadPartRequest request = inv.getArgument(0);
+            if (request.partNumber() == 2 && secondPartAttempts.incrementAndGet() == 1) {
+                throw S3Exception.builder().statusCode(503).message("Slow Down").build();
+            }
+            return receive(request, inv.getArgument(1));
+        });
+
+        uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4");
+
+        assertEquals(2, secondPartAttempts.get());
+        assertArrayEquals(content, concat(receivedParts.get(1), receivedParts.get(2)));
+        verify(s3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void upload_abortsWhenPartKeepsFailing() {
+        byte[] content = new byte[PART_SIZE * 4];
+        AtomicInteger secondPartAttempts = new AtomicInteger();
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(inv -> {
+            UploadPartRequest request = inv.getArgument(0);
+            if (request.partNumber() == 2) {
+                secondPartAttempts.incrementAndGet();
+                throw S3Exception.builder().statusCode(500).message("Internal Error").build();
+            }
+            return receive(request, inv.getArgument(1));
+        });
+
+        S3ActionException ex = assertThrows(S3ActionException.class, () ->
+                uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4"));
+
+        assertInstanceOf(S3Exception.class, ex.getCause());
+        assertEquals(3, secondPartAttempts.get());
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void upload_doesNotRetryClientErrors() {
+        byte[] content = new byte[PART_SIZE];
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(403).message("Access Denied").build());
+
+        assertThrows(S3ActionException.class, () ->
+                uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4"));
+
+        verify(s3Client, times(1)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void upload_abortsWhenStreamEndsEarly() {
+        InputStream shortStream = new ByteArrayInputStream(new byte[PART_SIZE + 10]);
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(inv -> receive(inv.getArgument(0), inv.getArgument(1)));
+
+        assertThrows(S3ActionException.class, () ->
+                uploader.upload(KEY, shortStream, PART_SIZE * 3L, "video/mp4"));
+
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void upload_releasesSendingSlotsAfterFailure() throws Exception {
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().statusCode(403).message("Access Denied").build());
+        byte[] content = new byte[PART_SIZE * 5];
+        assertThrows(S3ActionException.class, () ->
+                uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4"));
+
+        reset(s3Client);
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-2").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(inv -> receive(inv.getArgument(0), inv.getArgument(1)));
+
+        // would block forever if the failed upload had kept any of the sending slots
+        uploader.upload(KEY, new ByteArrayInputStream(content), content.length, "video/mp4");
+        verify(s3Client).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void abortStaleUploads_abortsOnlyOldUploads() {
+        ListMultipartUploadsRequest request = ListMultipartUploadsRequest.builder().bucket("test-bucket").prefix("files/").build();
+        when(s3Client.listMultipartUploadsPaginator(any(ListMultipartUploadsRequest.class)))
+                .thenReturn(new ListMultipartUploadsIterable(s3Client, request));
+        when(s3Client.listMultipartUploads(any(ListMultipartUploadsRequest.class)))
+                .thenReturn(ListMultipartUploadsResponse.builder()
+                        .uploads(
+                                MultipartUpload.builder().key("files/a/old").uploadId("old")
+                                        .initiated(Instant.now().minus(Duration.ofDays(2))).build(),
+                                MultipartUpload.builder().key("files/a/new").uploadId("new")
+                                        .initiated(Instant.now().minus(Duration.ofMinutes(5))).build())
+                        .isTruncated(false)
+                        .build());
+
+        uploader.abortStaleUploads();
+
+        ArgumentCaptor<AbortMultipartUploadRequest> captor = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(s3Client).abortMultipartUpload(captor.capture());
+        assertEquals("old", captor.getValue().uploadId());
+        assertEquals("files/a/old", captor.getValue().key());
+    }
+
+    private UploadPartResponse receive(UploadPartRequest request, RequestBody body) throws Exception {
+        try (InputStream stream = body.contentStreamProvider().newStream()) {
+            receivedParts.put(request.partNumber(), stream.readAllBytes());
+        }
+        return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] joined = new byte[first.length + second.length];
+        System.arraycopy(first, 0, joined, 0, first.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+}
@@ -0,0 +1,81 @@
+package dev.horbatiuk.timecapsule.service.aws;
+
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.PresignedDownloadDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.attachment.PresignedUploadDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class S3PresignServiceTest {
+
+    private static final String CHECKSUM = "47DEQpj8HBSa+/TImW+5JCeuQeRkm5NMpJWZG3hSuFU=";
+
+    private final UUID capsuleId = UUID.randomUUID();
+
+    private S3Presigner s3Presigner;
+    private S3Service s3Service;
+    private S3PresignService presignService;
+
+    @BeforeEach
+    void setUp() {
+        // signing happens locally, so a real presigner with fake credentials needs no AWS access
+        s3Presigner = S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret")))
+                .build();
+        s3Service = mock(S3Service.class);
+        presignService = new S3PresignService(s3Presigner, s3Service, "test-bucket", Duration.ofMinutes(15));
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3Presigner.close();
+    }
+
+    @Test
+    void presignUpload_signsSizeTypeAndChecksum() throws Exception {
+        when(s3Service.fileKey(capsuleId, "k_a.png")).thenReturn("files/" + capsuleId + "/k_a.png");
+
+        PresignedUploadDTO upload = presignService.presignUpload(capsuleId, "k_a.png", "image/png", 123, CHECKSUM);
+
+        assertEquals("k_a.png", upload.getFileKey());
+        assertTrue(upload.getUrl().contains("/files/" + capsuleId + "/k_a.png?"), upload.getUrl());
+        assertTrue(upload.getUrl().contains("X-Amz-Expires=900"), upload.getUrl());
+        assertEquals("123", upload.getHeaders().get("content-length"));
+        assertEquals("image/png", upload.getHeaders().get("content-type"));
+        assertEquals(CHECKSUM, upload.getHeaders().get("x-amz-checksum-sha256"));
+        assertFalse(upload.getHeaders().containsKey("host"));
+        assertTrue(upload.getExpiresAt().isAfter(Instant.now().plus(Duration.ofMinutes(14))));
+    }
+
+    @Test
+    void presignUpload_withoutChecksum_doesNotRequireOne() throws Exception {
+        when(s3Service.fileKey(capsuleId, "k_a.png")).thenReturn("files/" + capsuleId + "/k_a.png");
+
+        PresignedUploadDTO upload = presignService.presignUpload(capsuleId, "k_a.png", "image/png", 123, null);
+
+        assertFalse(upload.getHeaders().containsKey("x-amz-checksum-sha256"));
+    }
+
+    @Test
+    void presignDownload_setsContentDisposition() throws Exception {
+        when(s3Service.fileKey(capsuleId, "k_a.png")).thenReturn("files/" + capsuleId + "/k_a.png");
+
+        PresignedDownloadDTO download = presignService.presignDownload(capsuleId, "k_a.png", "a.png");
+
+        assertTrue(download.getUrl().contains("/files/" + capsuleId + "/k_a.png?"), download.getUrl());
+        assertTrue(download.getUrl().contains("response-content-disposition=attachment"), download.getUrl());
+        assertNotNull(download.getExpiresAt());
+    }
+}
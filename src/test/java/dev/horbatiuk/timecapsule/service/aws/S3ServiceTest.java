@@ -5,19 +5,29 @@ import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -26,6 +36,7 @@ import static org.mockito.Mockito.*;
 class S3ServiceTest {
 
     private S3Client s3Client;
+    private S3MultipartUploader multipartUploader;
     private S3Service s3Service;
 
     private final String bucketName = "test-bucket";
@@ -38,7 +49,8 @@ class S3ServiceTest {
     @BeforeEach
     void setUp() {
         s3Client = mock(S3Client.class);
-        s3Service = new S3Service(s3Client);
+        multipartUploader = mock(S3MultipartUploader.class);
+        s3Service = new S3Service(s3Client, multipartUploader);
 
         setField(s3Service, "bucketName", bucketName);
         setField(s3Service, "filesFolder", filesFolder);
@@ -101,6 +113,18 @@ class S3ServiceTest {
         assertEquals("text/plain", request.contentType());
     }
 
+    @Test
+    void uploadFile_largeFile_shouldUploadInParts() throws Exception {
+        long size = 100L * 1024 * 1024;
+        InputStream stream = new ByteArrayInputStream(new byte[0]);
+        when(multipartUploader.isMultipart(size)).thenReturn(true);
+
+        s3Service.uploadFile(capsuleId, filename, stream, size, "video/mp4");
+
+        verify(multipartUploader).upload(filesFolder + "/" + capsuleId + "/" + filename, stream, size, "video/mp4");
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
     @Test
     void uploadCapsuleData_shouldCallPutObjectWithJson() throws Exception {
         CapsuleResponseDTO capsule = new CapsuleResponseDTO();
@@ -192,6 +216,138 @@ class S3ServiceTest {
         assertThrows(S3ActionException.class, () -> s3Service.uploadCapsuleData(capsule));
     }
 
+    @Test
+    void openFile_shouldStreamWholeFile() throws Exception {
+        byte[] content = new byte[200_000];
+        new Random(1).nextBytes(content);
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(responseStream(
+                GetObjectResponse.builder().contentLength((long) content.length).eTag("\"abc\"")
+                        .contentType("image/png").build(),
+                new ByteArrayInputStream(content), new AtomicBoolean()));
+
+        S3Service.FileDownload download = s3Service.openFile(capsuleId, filename, null, null);
+
+        assertEquals(HttpStatus.OK, download.status());
+        assertEquals(200_000L, download.contentLength());
+        assertEquals("\"abc\"", download.eTag());
+        assertEquals("image/png", download.contentType());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        download.writeTo(out);
+        assertArrayEquals(content, out.toByteArray());
+
+        ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3Client).getObject(captor.capture());
+        assertEquals(filesFolder + "/" + capsuleId + "/" + filename, captor.getValue().key());
+        assertNull(captor.getValue().range());
+        assertNull(captor.getValue().ifNoneMatch());
+        verify(s3Client, never()).getObjectAsBytes(any(GetObjectRequest.class));
+    }
+
+    @Test
+    void openFile_shouldPassRangeAndReturnPartialContent() throws Exception {
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(responseStream(
+                GetObjectResponse.builder().contentLength(10L).contentRange("bytes 0-9/1000").eTag("\"abc\"").build(),
+                new ByteArrayInputStream(new byte[10]), new AtomicBoolean()));
+
+        S3Service.FileDownload download = s3Service.openFile(capsuleId, filename, "bytes=0-9", "\"old\"");
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, download.status());
+        assertEquals("bytes 0-9/1000", download.contentRange());
+
+        ArgumentCaptor<GetObjectRequest> captor = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(s3Client).getObject(captor.capture());
+        assertEquals("bytes=0-9", captor.getValue().range());
+        assertEquals("\"old\"", captor.getValue().ifNoneMatch());
+    }
+
+    @Test
+    void openFile_shouldReturnNotModified_whenETagMatches() throws Exception {
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenThrow(S3Exception.builder()
+                .statusCode(304)
+                .awsErrorDetails(AwsErrorDetails.builder()
+                        .sdkHttpResponse(SdkHttpResponse.builder().statusCode(304).putHeader("ETag", "\"abc\"").build())
+                        .build())
+                .build());
+
+        S3Service.FileDownload download = s3Service.openFile(capsuleId, filename, null, "\"abc\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, download.status());
+        assertEquals("\"abc\"", download.eTag());
+        assertNull(download.body());
+    }
+
+    @Test
+    void openFile_shouldReturnFileLength_whenRangeNotSatisfiable() throws Exception {
+        when(s3Client.getObject(any(GetObjectRequest.class)))
+                .thenThrow(S3Exception.builder().statusCode(416).message("InvalidRange").build());
+        when(s3Client.headObject(any(HeadObjectRequest.class)))
+                .thenReturn(HeadObjectResponse.builder().contentLength(1000L).build());
+
+        S3Service.FileDownload download = s3Service.openFile(capsuleId, filename, "bytes=5000-", null);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, download.status());
+        assertEquals("bytes */1000", download.contentRange());
+        assertNull(download.body());
+    }
+
+    @Test
+    void openFile_shouldThrowS3ActionException_whenObjectIsMissing() {
+        when(s3Client.getObject(any(GetObjectRequest.class)))
+                .thenThrow(NoSuchKeyException.builder().statusCode(404).message("missing").build());
+        assertThrows(S3ActionException.class, () -> s3Service.openFile(capsuleId, filename, null, null));
+    }
+
+    @Test
+    void headFile_shouldRequestChecksum() throws Exception {
+        when(s3Client.headObject(any(HeadObjectRequest.class)))
+                .thenReturn(HeadObjectResponse.builder().contentLength(5L).checksumSHA256("c").build());
+
+        HeadObjectResponse head = s3Service.headFile(capsuleId, filename).orElseThrow();
+
+        assertEquals(5L, head.contentLength());
+        ArgumentCaptor<HeadObjectRequest> captor = ArgumentCaptor.forClass(HeadObjectRequest.class);
+        verify(s3Client).headObject(captor.capture());
+        assertEquals(filesFolder + "/" + capsuleId + "/" + filename, captor.getValue().key());
+        assertEquals(ChecksumMode.ENABLED, captor.getValue().checksumMode());
+    }
+
+    @Test
+    void headFile_shouldReturnEmpty_whenFileIsMissing() throws Exception {
+        when(s3Client.headObject(any(HeadObjectRequest.class)))
+                .thenThrow(NoSuchKeyException.builder().statusCode(404).build());
+
+        assertTrue(s3Service.headFile(capsuleId, filename).isEmpty());
+    }
+
+    @Test
+    void fileDownload_shouldAbortConnection_whenCopyFails() throws Exception {
+        AtomicBoolean aborted = new AtomicBoolean();
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(responseStream(
+                GetObjectResponse.builder().contentLength(1_000_000L).build(),
+                new ByteArrayInputStream(new byte[1_000_000]), aborted));
+        S3Service.FileDownload download = s3Service.openFile(capsuleId, filename, null, null);
+
+        OutputStream brokenClient = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class, () -> download.writeTo(brokenClient));
+        assertTrue(aborted.get());
+    }
+
+    private static ResponseInputStream<GetObjectResponse> responseStream(GetObjectResponse response, InputStream content,
+                                                                         AtomicBoolean aborted) {
+        return new ResponseInputStream<>(response, AbortableInputStream.create(content, () -> aborted.set(true)));
+    }
+
     @Test
     void formatInstantToJsonString_shouldFormatWithoutSecondsOrMillis() {
         Instant instant = Instant.parse("2025-07-30T12:30:45Z");
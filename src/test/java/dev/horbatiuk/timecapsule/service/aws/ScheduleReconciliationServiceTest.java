@@ -0,0 +1,292 @@
+package dev.horbatiuk.timecapsule.service.aws;
+
+import dev.horbatiuk.timecapsule.exception.aws.InternalAwsException;
+import dev.horbatiuk.timecapsule.exception.controller.AppException;
+import dev.horbatiuk.timecapsule.persistence.CapsuleOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.PostgresJpaTest;
+import dev.horbatiuk.timecapsule.persistence.ScheduleReconciliationRunRepository;
+import dev.horbatiuk.timecapsule.persistence.UserRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.ScheduleReconciliationReportDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.ScheduleReconciliationRunDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.ScheduleReconciliationRun;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.ReconciliationRunStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import software.amazon.awssdk.services.scheduler.model.GetScheduleResponse;
+import software.amazon.awssdk.services.scheduler.model.ScheduleState;
+import software.amazon.awssdk.services.scheduler.model.ScheduleSummary;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Merges listed schedules with capsules read from a real database. EventBridge and the
+ * outbox are mocked. Runs without the test-managed transaction, since the capsules are
+ * streamed in a transaction of the service's own.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ScheduleReconciliationServiceTest extends PostgresJpaTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CapsuleRepository capsuleRepository;
+
+    @Autowired
+    private ScheduleReconciliationRunRepository runRepository;
+
+    private EventBridgeScheduledService eventBridgeScheduledService;
+    private CapsuleOutboxRepository capsuleOutboxRepository;
+    private ScheduleReconciliationService service;
+    private User user;
+    private final List<ScheduleSummary> schedules = new ArrayList<>();
+    private final Instant openAt = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS);
+
+    private UUID inSync;
+    private UUID missing;
+    private UUID disabled;
+    private UUID moved;
+    private UUID orphan;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        eventBridgeScheduledService = mock(EventBridgeScheduledService.class);
+        capsuleOutboxRepository = mock(CapsuleOutboxRepository.class);
+        service = service();
+        user = userRepository.save(User.builder()
+                .name("reconcile")
+                .email("reconcile@example.com")
+                .password("hash")
+                .createdAt(Timestamp.from(Instant.now()))
+                .build());
+
+        inSync = capsule(CapsuleStatus.ACTIVE, openAt);
+        missing = capsule(CapsuleStatus.ACTIVE, openAt);
+        disabled = capsule(CapsuleStatus.ACTIVE, openAt);
+        moved = capsule(CapsuleStatus.ACTIVE, openAt);
+        capsule(CapsuleStatus.ACTIVE, Instant.now().minus(1, ChronoUnit.HOURS)); // already ran
+        orphan = capsule(CapsuleStatus.INACTIVE, openAt);
+
+        schedule(inSync, ScheduleState.ENABLED, openAt);
+        schedule(disabled, ScheduleState.DISABLED, openAt);
+        schedule(moved, ScheduleState.ENABLED, openAt.minus(1, ChronoUnit.HOURS));
+        schedule(orphan, ScheduleState.ENABLED, openAt);
+        schedules.add(ScheduleSummary.builder().name("capsules-20250801-1200-0").state(ScheduleState.ENABLED).build());
+
+        when(eventBridgeScheduledService.listSchedules(anyString())).thenAnswer(inv -> schedules.stream()
+                .filter(s -> s.name().startsWith(inv.getArgument(0)))
+                .toList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        runRepository.deleteAll();
+        capsuleRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void reconcile_ShouldOnlyReport_WhenDryRun() throws Exception {
+        ScheduleReconciliationReportDTO report = service.reconcile(true);
+
+        assertTrue(report.isDryRun());
+        assertEquals(5, report.getCapsulesChecked(), "the orphan's capsule is not ACTIVE");
+        assertEquals(4, report.getSchedulesChecked());
+        assertEquals(List.of(missing), report.getMissingSample());
+        assertEquals(Set.of(disabled, moved), Set.copyOf(report.getStaleSample()));
+        assertEquals(List.of(orphan), report.getOrphanedSample());
+        assertEquals(0, report.getRepaired());
+        verifyNoInteractions(capsuleOutboxRepository);
+    }
+
+    @Test
+    void reconcile_ShouldQueueSyncsForMismatchesOnly() throws Exception {
+        ScheduleReconciliationReportDTO report = service.reconcile(false);
+
+        verify(capsuleOutboxRepository).enqueue(missing);
+        verify(capsuleOutboxRepository).enqueue(disabled);
+        verify(capsuleOutboxRepository).enqueue(moved);
+        verify(capsuleOutboxRepository).enqueue(orphan);
+        verify(capsuleOutboxRepository, never()).enqueue(inSync);
+        assertEquals(4, report.getRepaired());
+        assertEquals(0, report.getFailed());
+    }
+
+    @Test
+    void reconcile_ShouldFailWithBadGateway_WhenSchedulesCannotBeListed() throws Exception {
+        when(eventBridgeScheduledService.listSchedules(anyString())).thenThrow(new InternalAwsException("throttled"));
+
+        AppException ex = assertThrows(AppException.class, () -> service.reconcile(true));
+
+        assertEquals(HttpStatus.BAD_GATEWAY, ex.getStatus());
+    }
+
+    @Test
+    void start_ShouldStoreReport_WhenRunFinishes() throws Exception {
+        ScheduleReconciliationRunDTO started = service.start(true);
+
+        assertEquals(ReconciliationRunStatus.RUNNING, started.getStatus());
+        ScheduleReconciliationRunDTO finished = awaitFinished(started.getId());
+        assertEquals(ReconciliationRunStatus.FINISHED, finished.getStatus());
+        assertNotNull(finished.getFinishedAt());
+        assertEquals(List.of(missing), finished.getReport().getMissingSample());
+        assertEquals(List.of(orphan), finished.getReport().getOrphanedSample());
+    }
+
+    @Test
+    void start_ShouldStoreError_WhenRunFails() throws Exception {
+        when(eventBridgeScheduledService.listSchedules(anyString())).thenThrow(new InternalAwsException("throttled"));
+
+        ScheduleReconciliationRunDTO finished = awaitFinished(service.start(false).getId());
+
+        assertEquals(ReconciliationRunStatus.FAILED, finished.getStatus());
+        assertNull(finished.getReport());
+        assertTrue(finished.getError().contains("throttled"));
+    }
+
+    @Test
+    void start_ShouldConflict_WhileRunIsInProgress() throws Exception {
+        CountDownLatch listing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(eventBridgeScheduledService.listSchedules(anyString())).thenAnswer(inv -> {
+            listing.countDown();
+            release.await();
+            return List.of();
+        });
+        UUID runId = service.start(true).getId();
+        assertTrue(listing.await(10, TimeUnit.SECONDS));
+
+        AppException ex = assertThrows(AppException.class, () -> service.start(false));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatus());
+        release.countDown();
+        assertEquals(ReconciliationRunStatus.FINISHED, awaitFinished(runId).getStatus());
+    }
+
+    @Test
+    void start_ShouldConflict_WhileRunIsInProgressOnAnotherNode() throws Exception {
+        CountDownLatch listing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(eventBridgeScheduledService.listSchedules(anyString())).thenAnswer(inv -> {
+            listing.countDown();
+            release.await();
+            return List.of();
+        });
+        UUID runId = service.start(true).getId();
+        assertTrue(listing.await(10, TimeUnit.SECONDS));
+        ScheduleReconciliationService otherNode = service();
+
+        try {
+            assertEquals(HttpStatus.CONFLICT, assertThrows(AppException.class, () -> otherNode.start(false)).getStatus());
+            assertEquals(HttpStatus.CONFLICT, assertThrows(AppException.class, () -> otherNode.reconcile(false)).getStatus());
+        } finally {
+            otherNode.shutdown();
+        }
+
+        release.countDown();
+        assertEquals(ReconciliationRunStatus.FINISHED, awaitFinished(runId).getStatus());
+        verifyNoInteractions(capsuleOutboxRepository);
+    }
+
+    @Test
+    void reconcile_ShouldFailRunsLeftRunningByStoppedNode() throws Exception {
+        UUID interrupted = runningRun(Instant.now().minus(1, ChronoUnit.MINUTES));
+
+        service.reconcile(true);
+
+        ScheduleReconciliationRunDTO run = service.findRun(interrupted);
+        assertEquals(ReconciliationRunStatus.FAILED, run.getStatus());
+        assertNotNull(run.getFinishedAt());
+        assertNotNull(run.getError());
+    }
+
+    @Test
+    void findRun_ShouldReportFailed_WhenRunningLongerThanInterval() throws Exception {
+        UUID stale = runningRun(Instant.now().minus(7, ChronoUnit.HOURS));
+        UUID recent = runningRun(Instant.now().minus(1, ChronoUnit.MINUTES));
+
+        assertEquals(ReconciliationRunStatus.FAILED, service.findRun(stale).getStatus());
+        assertEquals(ReconciliationRunStatus.RUNNING, service.findRun(recent).getStatus());
+    }
+
+    @Test
+    void capsuleIdOf_ShouldIgnoreSchedulesNotNamedAfterACapsule() {
+        UUID id = UUID.randomUUID();
+
+        assertEquals(id, ScheduleReconciliationService.capsuleIdOf(id.toString()));
+        assertNull(ScheduleReconciliationService.capsuleIdOf(id.toString().toUpperCase()));
+        assertNull(ScheduleReconciliationService.capsuleIdOf("capsules-20250801-1200-0"));
+    }
+
+    private ScheduleReconciliationService service() {
+        return new ScheduleReconciliationService(eventBridgeScheduledService, capsuleOutboxRepository, runRepository,
+                dataSource, transactionManager, 2, 1, 2, false, Duration.ofHours(6));
+    }
+
+    private UUID runningRun(Instant startedAt) {
+        return runRepository.save(ScheduleReconciliationRun.builder()
+                .id(UUID.randomUUID())
+                .dryRun(false)
+                .startedAt(startedAt)
+                .build()).getId();
+    }
+
+    private ScheduleReconciliationRunDTO awaitFinished(UUID runId) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        ScheduleReconciliationRunDTO run = service.findRun(runId);
+        while (run.getStatus() == ReconciliationRunStatus.RUNNING && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            run = service.findRun(runId);
+        }
+        return run;
+    }
+
+    private UUID capsule(CapsuleStatus status, Instant openAt) {
+        return capsuleRepository.save(Capsule.builder()
+                .title("capsule")
+                .status(status)
+                .openAt(Timestamp.from(openAt))
+                .appUser(user)
+                .build()).getId();
+    }
+
+    private void schedule(UUID capsuleId, ScheduleState state, Instant at) throws Exception {
+        schedules.add(ScheduleSummary.builder().name(capsuleId.toString()).state(state).build());
+        when(eventBridgeScheduledService.getSchedule(capsuleId)).thenReturn(GetScheduleResponse.builder()
+                .scheduleExpression(EventBridgeScheduledService.atExpression(at))
+                .state(state)
+                .build());
+    }
+}
@@ -0,0 +1,172 @@
+package dev.horbatiuk.timecapsule.service.email;
+
+import dev.horbatiuk.timecapsule.persistence.EmailOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.entities.EmailOutbox;
+import dev.horbatiuk.timecapsule.service.EmailSenderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class EmailOutboxDispatcherTest {
+
+    private EmailOutboxRepository emailOutboxRepository;
+    private EmailSenderService emailSenderService;
+    private SimpleMeterRegistry meterRegistry;
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        emailOutboxRepository = mock(EmailOutboxRepository.class);
+        emailSenderService = mock(EmailSenderService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new EmailOutboxDispatcher(emailOutboxRepository, emailSenderService, meterRegistry,
+                2, 5, Duration.ofMinutes(2), 3, Duration.ofSeconds(30), Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void deliver_ShouldSendBatchAndDeleteRows_WhenSent() throws Exception {
+        EmailOutbox first = email(1L, 1);
+        EmailOutbox second = email(2L, 1);
+        MimeMessage firstMessage = mock(MimeMessage.class);
+        MimeMessage secondMessage = mock(MimeMessage.class);
+        when(emailSenderService.createMessage("user@example.com", "Subject", "<html>Body</html>"))
+                .thenReturn(firstMessage, secondMessage);
+
+        dispatcher.deliver(List.of(first, second));
+
+        verify(emailSenderService).sendBatch(List.of(firstMessage, secondMessage));
+        verify(emailOutboxRepository).markSent(1L);
+        verify(emailOutboxRepository).markSent(2L);
+        assertEquals(2.0, meterRegistry.counter("email.outbox.sent").count());
+    }
+
+    @Test
+    void deliver_ShouldScheduleRetryOnlyForFailedMessages() throws Exception {
+        MimeMessage sentMessage = mock(MimeMessage.class);
+        MimeMessage failedMessage = mock(MimeMessage.class);
+        when(emailSenderService.createMessage("user@example.com", "Subject", "<html>Body</html>"))
+                .thenReturn(sentMessage, failedMessage);
+        doThrow(new MailSendException(Map.of(failedMessage, new MessagingException("SMTP down"))))
+                .when(emailSenderService).sendBatch(anyList());
+
+        dispatcher.deliver(List.of(email(1L, 1), email(2L, 1)));
+
+        verify(emailOutboxRepository).markSent(1L);
+        verify(emailOutboxRepository).scheduleRetry(eq(2L), anyLong(), eq("SMTP down"));
+        verify(emailOutboxRepository, never()).markSent(2L);
+        verify(emailOutboxRepository, never()).markDead(anyLong(), anyString());
+    }
+
+    @Test
+    void deliver_ShouldScheduleRetryForAll_WhenBatchFailsUnexpectedly() throws Exception {
+        when(emailSenderService.createMessage(anyString(), anyString(), anyString()))
+                .thenReturn(mock(MimeMessage.class), mock(MimeMessage.class));
+        doThrow(new IllegalStateException("Not connected")).when(emailSenderService).sendBatch(anyList());
+
+        dispatcher.deliver(List.of(email(1L, 1), email(2L, 1)));
+
+        verify(emailOutboxRepository).scheduleRetry(eq(1L), anyLong(), eq("Not connected"));
+        verify(emailOutboxRepository).scheduleRetry(eq(2L), anyLong(), eq("Not connected"));
+        verify(emailOutboxRepository, never()).markSent(anyLong());
+    }
+
+    @Test
+    void deliver_ShouldMarkDead_WhenAttemptsExhausted() throws Exception {
+        MimeMessage message = mock(MimeMessage.class);
+        when(emailSenderService.createMessage(anyString(), anyString(), anyString())).thenReturn(message);
+        doThrow(new MailSendException(Map.of(message, new MessagingException("Mailbox unavailable"))))
+                .when(emailSenderService).sendBatch(anyList());
+
+        dispatcher.deliver(List.of(email(3L, 3)));
+
+        verify(emailOutboxRepository).markDead(3L, "Mailbox unavailable");
+        verify(emailOutboxRepository, never()).scheduleRetry(anyLong(), anyLong(), anyString());
+        assertEquals(1.0, meterRegistry.counter("email.outbox.dead").count());
+    }
+
+    @Test
+    void deliver_ShouldScheduleRetry_WhenMessageCannotBeBuilt() throws Exception {
+        when(emailSenderService.createMessage(anyString(), anyString(), anyString()))
+                .thenThrow(new MessagingException("Email sending failed"));
+
+        dispatcher.deliver(List.of(email(4L, 1)));
+
+        verify(emailOutboxRepository).scheduleRetry(eq(4L), anyLong(), eq("Email sending failed"));
+        verify(emailSenderService, never()).sendBatch(anyList());
+    }
+
+    @Test
+    void backoffSeconds_ShouldGrowExponentiallyWithinJitterBounds() {
+        for (int i = 0; i < 50; i++) {
+            long first = dispatcher.backoffSeconds(1);
+            assertTrue(first >= 15 && first <= 30, "first retry out of range: " + first);
+
+            long third = dispatcher.backoffSeconds(3);
+            assertTrue(third >= 60 && third <= 120, "third retry out of range: " + third);
+        }
+    }
+
+    @Test
+    void backoffSeconds_ShouldBeCappedByMaxBackoff() {
+        for (int i = 0; i < 50; i++) {
+            long delay = dispatcher.backoffSeconds(30);
+            assertTrue(delay >= 1800 && delay <= 3600, "capped retry out of range: " + delay);
+        }
+    }
+
+    @Test
+    void dispatch_ShouldClaimBatchPerFreeWorkerAndSplitIt() throws Exception {
+        List<EmailOutbox> claimed = List.of(email(4L, 1), email(5L, 1), email(6L, 1));
+        when(emailOutboxRepository.claimBatch(10, 120)).thenReturn(claimed);
+        when(emailSenderService.createMessage(anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> mock(MimeMessage.class));
+
+        dispatcher.dispatch();
+        dispatcher.shutdown();
+
+        verify(emailSenderService, times(2)).sendBatch(anyList());
+        verify(emailOutboxRepository).markSent(4L);
+        verify(emailOutboxRepository).markSent(5L);
+        verify(emailOutboxRepository).markSent(6L);
+    }
+
+    @Test
+    void dispatch_ShouldNotClaim_AfterShutdown() {
+        dispatcher.shutdown();
+
+        dispatcher.dispatch();
+
+        verify(emailOutboxRepository, never()).claimBatch(anyInt(), anyLong());
+    }
+
+    private static EmailOutbox email(Long id, int attempts) {
+        return EmailOutbox.builder()
+                .id(id)
+                .recipient("user@example.com")
+                .subject("Subject")
+                .body("<html>Body</html>")
+                .attempts(attempts)
+                .build();
+    }
+}
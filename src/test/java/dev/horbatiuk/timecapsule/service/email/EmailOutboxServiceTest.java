@@ -0,0 +1,47 @@
+package dev.horbatiuk.timecapsule.service.email;
+
+import dev.horbatiuk.timecapsule.persistence.EmailOutboxRepository;
+import dev.horbatiuk.timecapsule.persistence.entities.EmailOutbox;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.EmailStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailOutboxServiceTest {
+
+    @Mock
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @InjectMocks
+    private EmailOutboxService emailOutboxService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(emailOutboxRepository.save(any(EmailOutbox.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void enqueue_ShouldSavePendingEmailDueNow() {
+        emailOutboxService.enqueue("user@example.com", "Subject", "<html>Body</html>");
+
+        ArgumentCaptor<EmailOutbox> captor = ArgumentCaptor.forClass(EmailOutbox.class);
+        verify(emailOutboxRepository).save(captor.capture());
+        EmailOutbox saved = captor.getValue();
+        assertEquals("user@example.com", saved.getRecipient());
+        assertEquals("Subject", saved.getSubject());
+        assertEquals("<html>Body</html>", saved.getBody());
+        assertEquals(EmailStatus.PENDING, saved.getStatus());
+        assertEquals(0, saved.getAttempts());
+        assertNotNull(saved.getNextAttemptAt());
+        assertNull(saved.getLockedUntil());
+    }
+}
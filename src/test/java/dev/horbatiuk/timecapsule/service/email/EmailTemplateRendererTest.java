@@ -0,0 +1,70 @@
+package dev.horbatiuk.timecapsule.service.email;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thymeleaf.exceptions.TemplateInputException;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailTemplateRendererTest {
+
+    private EmailTemplateRenderer renderer;
+
+    @BeforeEach
+    void setUp() {
+        renderer = new EmailTemplateRenderer(List.of(EmailTemplateRenderer.VERIFICATION_TEMPLATE));
+        renderer.preload();
+    }
+
+    @Test
+    void render_ShouldFillInRecipientVariables() {
+        String html = renderer.render(EmailTemplateRenderer.VERIFICATION_TEMPLATE,
+                Map.of("verificationUrl", "https://example.com/verify?token=abc"));
+
+        assertTrue(html.contains("href=\"https://example.com/verify?token=abc\""));
+        assertTrue(html.contains("<small>https://example.com/verify?token=abc</small>"));
+        assertTrue(html.contains("<style>"));
+    }
+
+    @Test
+    void render_ShouldEscapeVariables() {
+        String html = renderer.render(EmailTemplateRenderer.VERIFICATION_TEMPLATE,
+                Map.of("verificationUrl", "<script>alert(1)</script>"));
+
+        assertFalse(html.contains("<script>"));
+        assertTrue(html.contains("&lt;script&gt;"));
+    }
+
+    @Test
+    void render_ShouldNotLeakVariablesBetweenRecipients() {
+        String first = renderer.render(EmailTemplateRenderer.VERIFICATION_TEMPLATE, Map.of("verificationUrl", "https://a"));
+        String second = renderer.render(EmailTemplateRenderer.VERIFICATION_TEMPLATE, Map.of("verificationUrl", "https://b"));
+
+        assertFalse(second.contains("https://a"));
+        assertEquals(first.replace("https://a", "https://b"), second);
+    }
+
+    @Test
+    void render_ShouldListCapsuleAttachments() {
+        String html = renderer.render("email/capsule/capsule-opened", Map.of(
+                "username", "Dan",
+                "title", "Letter to myself",
+                "createdAt", "1 May 2024",
+                "attachments", List.of("photo.jpg", "voice.m4a")));
+
+        assertTrue(html.contains("Hello, Dan,"));
+        assertTrue(html.contains("<strong>Letter to myself</strong>"));
+        assertTrue(html.contains("<li>photo.jpg</li>"));
+        assertTrue(html.contains("<li>voice.m4a</li>"));
+    }
+
+    @Test
+    void preload_ShouldFail_WhenTemplateIsMissing() {
+        EmailTemplateRenderer broken = new EmailTemplateRenderer(List.of("email/missing/missing-email"));
+
+        assertThrows(TemplateInputException.class, broken::preload);
+    }
+}
@@ -0,0 +1,142 @@
+package dev.horbatiuk.timecapsule.service.email;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmtpBatchSenderTest {
+
+    private FakeSmtpServer server;
+    private JavaMailSenderImpl mailSender;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        server = new FakeSmtpServer();
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(server.port());
+        Properties properties = new Properties();
+        properties.put("mail.smtp.connectiontimeout", "2000");
+        properties.put("mail.smtp.timeout", "2000");
+        mailSender.setJavaMailProperties(properties);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    void send_ShouldDeliverAllMessagesOverOneConnection() throws Exception {
+        SmtpBatchSender sender = new SmtpBatchSender(mailSender, meterRegistry, 100, 0);
+
+        sender.send(messages(10));
+
+        assertEquals(10, server.recipients().size());
+        assertEquals(1, server.connections());
+        assertEquals(1.0, meterRegistry.counter("email.smtp.connections").count());
+    }
+
+    @Test
+    void send_ShouldOpenNewConnection_AfterMessagesPerConnection() throws Exception {
+        SmtpBatchSender sender = new SmtpBatchSender(mailSender, meterRegistry, 4, 0);
+
+        sender.send(messages(10));
+
+        assertEquals(10, server.recipients().size());
+        assertEquals(3, server.connections());
+    }
+
+    @Test
+    void send_ShouldReconnectAndRetry_WhenServerDropsConnection() throws Exception {
+        server.dropConnectionAfter(3);
+        SmtpBatchSender sender = new SmtpBatchSender(mailSender, meterRegistry, 100, 0);
+
+        sender.send(messages(7));
+
+        assertEquals(7, server.recipients().size());
+        assertEquals(3, server.connections());
+        assertEquals(2.0, meterRegistry.counter("email.smtp.reconnects").count());
+    }
+
+    @Test
+    void send_ShouldReportRejectedMessage_AndKeepSendingTheRest() throws Exception {
+        server.rejectRecipient("user2@example.com");
+        SmtpBatchSender sender = new SmtpBatchSender(mailSender, meterRegistry, 100, 0);
+        List<MimeMessage> messages = messages(5);
+
+        MailSendException exception = assertThrows(MailSendException.class, () -> sender.send(messages));
+
+        assertEquals(1, exception.getFailedMessages().size());
+        assertTrue(exception.getFailedMessages().containsKey(messages.get(2)));
+        assertEquals(4, server.recipients().size());
+        assertEquals(1, server.connections());
+    }
+
+    @Test
+    void send_ShouldFailAllMessages_WhenServerUnreachable() throws Exception {
+        server.close();
+        SmtpBatchSender sender = new SmtpBatchSender(mailSender, meterRegistry, 100, 0);
+        List<MimeMessage> messages = messages(3);
+
+        MailSendException exception = assertThrows(MailSendException.class, () -> sender.send(messages));
+
+        assertEquals(3, exception.getFailedMessages().size());
+    }
+
+    @Test
+    void send_ShouldHonorRateLimit() throws Exception {
+        SmtpBatchSender sender = new SmtpBatchSender(mailSender, meterRegistry, 100, 50);
+
+        long start = System.nanoTime();
+        sender.send(messages(11));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // 11 messages at 50/s: the first goes out immediately, the rest 20 ms apart
+        assertTrue(elapsedMillis >= 190, "sent too fast: " + elapsedMillis + " ms");
+        assertEquals(11, server.recipients().size());
+    }
+
+    @Test
+    void send_ShouldOpenOneConnection_WhereSingleSendsOpenOneEach() throws Exception {
+        int count = 20;
+        SmtpBatchSender sender = new SmtpBatchSender(mailSender, meterRegistry, 100, 0);
+
+        for (MimeMessage message : messages(count)) {
+            mailSender.send(message);
+        }
+        assertEquals(count, server.connections());
+
+        sender.send(messages(count));
+        assertEquals(count + 1, server.connections());
+        assertEquals(2 * count, server.recipients().size());
+    }
+
+    private List<MimeMessage> messages(int count) throws MessagingException {
+        List<MimeMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, true);
+            helper.setFrom("noreply@example.com");
+            helper.setTo("user" + i + "@example.com");
+            helper.setSubject("Subject " + i);
+            helper.setText("<html>Body " + i + "</html>", true);
+            messages.add(message);
+        }
+        return messages;
+    }
+}
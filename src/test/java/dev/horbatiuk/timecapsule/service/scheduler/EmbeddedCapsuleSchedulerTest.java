@@ -0,0 +1,161 @@
+package dev.horbatiuk.timecapsule.service.scheduler;
+
+import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.PostgresJpaTest;
+import dev.horbatiuk.timecapsule.persistence.UserRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import dev.horbatiuk.timecapsule.service.CapsuleService;
+import dev.horbatiuk.timecapsule.service.EmailSenderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Claims and opens capsules against a real database. Runs without the test-managed
+ * transaction, so a failed opening really rolls back.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EmbeddedCapsuleSchedulerTest extends PostgresJpaTest {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CapsuleRepository capsuleRepository;
+
+    private CapsuleService capsuleService;
+    private EmailSenderService emailSenderService;
+    private EmbeddedCapsuleScheduler scheduler;
+    private User user;
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        capsuleService = mock(CapsuleService.class);
+        emailSenderService = mock(EmailSenderService.class);
+        when(capsuleService.findCapsuleById(any())).thenReturn(new CapsuleResponseDTO());
+        scheduler = new EmbeddedCapsuleScheduler(jdbcTemplate, transactionManager, capsuleService, emailSenderService,
+                new SimpleMeterRegistry(), Duration.ofMinutes(2), Duration.ofMinutes(5), Duration.ofMillis(100),
+                64, 2, 100, 1);
+        user = userRepository.save(User.builder()
+                .name("scheduler")
+                .email("scheduler@example.com")
+                .password("hash")
+                .createdAt(Timestamp.from(now))
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+        capsuleRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void claimDue_ShouldClaimActiveCapsulesWithinHorizonOnce() {
+        capsule(CapsuleStatus.ACTIVE, now.minusSeconds(5));
+        capsule(CapsuleStatus.ACTIVE, now.plusSeconds(60));
+        capsule(CapsuleStatus.ACTIVE, now.plusSeconds(60));
+        capsule(CapsuleStatus.ACTIVE, now.plus(1, ChronoUnit.DAYS));
+        capsule(CapsuleStatus.INACTIVE, now.minusSeconds(5));
+
+        // batches of two: the first one is full, so a second one is read
+        assertEquals(3, scheduler.claimDue(now));
+        assertEquals(0, scheduler.claimDue(now), "leased capsules must not be claimed again");
+    }
+
+    @Test
+    void open_ShouldMarkCapsuleOpenedAndQueueEmail() {
+        UUID id = capsule(CapsuleStatus.ACTIVE, now.minusSeconds(1));
+        scheduler.claimDue(now);
+
+        assertTrue(scheduler.open(id, now));
+
+        verify(emailSenderService).sendCapsuleOpenedEmail(any());
+        assertNotNull(column(id, "opened_at"));
+        assertNull(column(id, "opening_lease_until"));
+        assertEquals(0, scheduler.claimDue(now.plusSeconds(600)));
+        assertFalse(scheduler.open(id, now), "a capsule opens only once");
+    }
+
+    @Test
+    void open_ShouldReleaseLease_WhenCapsuleWasDeactivated() {
+        UUID id = capsule(CapsuleStatus.ACTIVE, now.minusSeconds(1));
+        scheduler.claimDue(now);
+        jdbcTemplate.update("UPDATE capsule SET status = 'INACTIVE' WHERE id = :id", Map.of("id", id));
+
+        assertFalse(scheduler.open(id, now));
+
+        verifyNoInteractions(emailSenderService);
+        assertNull(column(id, "opening_lease_until"));
+        assertNull(column(id, "opened_at"));
+    }
+
+    @Test
+    void open_ShouldKeepLease_WhenEmailCannotBeQueued() {
+        UUID id = capsule(CapsuleStatus.ACTIVE, now.minusSeconds(1));
+        scheduler.claimDue(now);
+        doThrow(new IllegalStateException("template broken")).when(emailSenderService).sendCapsuleOpenedEmail(any());
+
+        assertFalse(scheduler.open(id, now));
+
+        assertNull(column(id, "opened_at"));
+        assertNotNull(column(id, "opening_lease_until"));
+    }
+
+    @Test
+    void schedule_ShouldReopenCapsule_WhenMovedIntoFuture() {
+        UUID id = capsule(CapsuleStatus.ACTIVE, now.minusSeconds(1));
+        scheduler.claimDue(now);
+        scheduler.open(id, now);
+        Instant later = now.plusSeconds(30);
+        jdbcTemplate.update("UPDATE capsule SET open_at = :openAt WHERE id = :id",
+                Map.of("id", id, "openAt", Timestamp.from(later)));
+
+        scheduler.schedule(id, later);
+
+        assertNull(column(id, "opened_at"));
+        assertEquals(1, scheduler.claimDue(now));
+    }
+
+    private UUID capsule(CapsuleStatus status, Instant openAt) {
+        return capsuleRepository.save(Capsule.builder()
+                .title("capsule")
+                .status(status)
+                .openAt(Timestamp.from(openAt))
+                .appUser(user)
+                .build()).getId();
+    }
+
+    private Object column(UUID id, String column) {
+        return jdbcTemplate.queryForObject("SELECT " + column + " FROM capsule WHERE id = :id",
+                Map.of("id", id), Object.class);
+    }
+}
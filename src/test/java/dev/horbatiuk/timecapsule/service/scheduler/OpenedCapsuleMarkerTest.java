@@ -0,0 +1,167 @@
+package dev.horbatiuk.timecapsule.service.scheduler;
+
+import dev.horbatiuk.timecapsule.persistence.CapsuleRepository;
+import dev.horbatiuk.timecapsule.persistence.PostgresJpaTest;
+import dev.horbatiuk.timecapsule.persistence.UserRepository;
+import dev.horbatiuk.timecapsule.persistence.dto.capsule.CapsuleResponseDTO;
+import dev.horbatiuk.timecapsule.persistence.entities.Capsule;
+import dev.horbatiuk.timecapsule.persistence.entities.User;
+import dev.horbatiuk.timecapsule.persistence.entities.enums.CapsuleStatus;
+import dev.horbatiuk.timecapsule.service.CapsuleService;
+import dev.horbatiuk.timecapsule.service.EmailSenderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Capsules opened by EventBridge, either before V10 added {@code opened_at} or afterwards,
+ * must not be opened again by the embedded scheduler once the backend is switched.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OpenedCapsuleMarkerTest extends PostgresJpaTest {
+
+    private static final String MIGRATION_SCHEMA = "migration_test";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcConnectionDetails connectionDetails;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CapsuleRepository capsuleRepository;
+
+    private EmbeddedCapsuleScheduler scheduler;
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        capsuleRepository.deleteAll();
+        userRepository.deleteAll();
+        jdbcTemplate.getJdbcTemplate().execute("DROP SCHEMA IF EXISTS " + MIGRATION_SCHEMA + " CASCADE");
+    }
+
+    @Test
+    void migration_ShouldMarkPastDueCapsulesOpened() throws Exception {
+        DriverManagerDataSource dataSource = migrationSchemaDataSource();
+        flyway(dataSource, "9").migrate();
+        NamedParameterJdbcTemplate migrationJdbc = new NamedParameterJdbcTemplate(dataSource);
+        UUID userId = UUID.randomUUID();
+        migrationJdbc.update("""
+                INSERT INTO app_user (id, name, email, password, created_at, is_verified)
+                VALUES (:id, 'migrated', 'migrated@example.com', 'hash', :createdAt, true)
+                """, Map.of("id", userId, "createdAt", Timestamp.from(now)));
+        UUID opened = migratedCapsule(migrationJdbc, userId, now.minus(1, ChronoUnit.DAYS));
+        UUID waiting = migratedCapsule(migrationJdbc, userId, now.plusSeconds(30));
+
+        flyway(dataSource, null).migrate();
+
+        assertNotNull(migrationJdbc.queryForObject("SELECT opened_at FROM capsule WHERE id = :id",
+                Map.of("id", opened), Object.class));
+        scheduler = scheduler(migrationJdbc, new DataSourceTransactionManager(dataSource));
+        assertEquals(1, scheduler.claimDue(now), "only the capsule still waiting is claimed");
+        assertNotNull(migrationJdbc.queryForObject("SELECT opening_lease_until FROM capsule WHERE id = :id",
+                Map.of("id", waiting), Object.class));
+    }
+
+    @Test
+    void markOpened_ShouldMarkCapsulesEventBridgeHasHadTimeToOpen() throws Exception {
+        User user = userRepository.save(User.builder()
+                .name("marker")
+                .email("marker@example.com")
+                .password("hash")
+                .createdAt(Timestamp.from(now))
+                .build());
+        capsule(user, CapsuleStatus.ACTIVE, now.minus(2, ChronoUnit.HOURS));
+        capsule(user, CapsuleStatus.ACTIVE, now.minus(3, ChronoUnit.HOURS));
+        capsule(user, CapsuleStatus.INACTIVE, now.minus(2, ChronoUnit.HOURS));
+        capsule(user, CapsuleStatus.ACTIVE, now.minus(10, ChronoUnit.MINUTES));
+        OpenedCapsuleMarker marker = new OpenedCapsuleMarker(jdbcTemplate, Duration.ofHours(1), 1);
+
+        // batches of one: every full batch is followed by another
+        assertEquals(2, marker.markOpened(now));
+        assertEquals(0, marker.markOpened(now));
+
+        scheduler = scheduler(jdbcTemplate, transactionManager);
+        assertEquals(1, scheduler.claimDue(now), "only the capsule within the grace period is claimed");
+    }
+
+    private DriverManagerDataSource migrationSchemaDataSource() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                connectionDetails.getJdbcUrl(), connectionDetails.getUsername(), connectionDetails.getPassword());
+        Properties properties = new Properties();
+        properties.setProperty("currentSchema", MIGRATION_SCHEMA);
+        dataSource.setConnectionProperties(properties);
+        return dataSource;
+    }
+
+    private Flyway flyway(DriverManagerDataSource dataSource, String target) {
+        var configuration = Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(MIGRATION_SCHEMA)
+                .locations("classpath:db/migration")
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"));
+        if (target != null) {
+            configuration.target(target);
+        }
+        return configuration.load();
+    }
+
+    private UUID migratedCapsule(NamedParameterJdbcTemplate migrationJdbc, UUID userId, Instant openAt) {
+        UUID id = UUID.randomUUID();
+        migrationJdbc.update("""
+                INSERT INTO capsule (id, title, status, created_at, open_at, app_user_id)
+                VALUES (:id, 'migrated', 'ACTIVE', :createdAt, :openAt, :userId)
+                """, Map.of("id", id, "createdAt", Timestamp.from(now), "openAt", Timestamp.from(openAt),
+                "userId", userId));
+        return id;
+    }
+
+    private void capsule(User user, CapsuleStatus status, Instant openAt) {
+        capsuleRepository.save(Capsule.builder()
+                .title("capsule")
+                .status(status)
+                .openAt(Timestamp.from(openAt))
+                .appUser(user)
+                .build());
+    }
+
+    private EmbeddedCapsuleScheduler scheduler(NamedParameterJdbcTemplate jdbc, PlatformTransactionManager tm)
+            throws Exception {
+        CapsuleService capsuleService = mock(CapsuleService.class);
+        when(capsuleService.findCapsuleById(any())).thenReturn(new CapsuleResponseDTO());
+        return new EmbeddedCapsuleScheduler(jdbc, tm, capsuleService, mock(EmailSenderService.class),
+                new SimpleMeterRegistry(), Duration.ofMinutes(2), Duration.ofMinutes(5), Duration.ofMillis(100),
+                64, 100, 100, 1);
+    }
+}
@@ -0,0 +1,94 @@
+package dev.horbatiuk.timecapsule.service.scheduler;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    private TimingWheel<String> wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel<>(100, 8, START);
+    }
+
+    @Test
+    void advance_ShouldReturnKeyOnlyOnceItsDeadlinePassed() {
+        wheel.add("a", START + 250);
+
+        assertTrue(wheel.advance(START + 200).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(START + 300));
+        assertTrue(wheel.advance(START + 400).isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_ShouldKeepKeysDueInALaterTurn() {
+        // 8 buckets of 100ms: a deadline 2.5s away wraps around the wheel three times
+        wheel.add("far", START + 2_500);
+        wheel.add("near", START + 100);
+
+        assertEquals(List.of("near"), wheel.advance(START + 100));
+        for (long now = START + 200; now < START + 2_500; now += 100) {
+            assertTrue(wheel.advance(now).isEmpty(), "fired early at " + (now - START));
+        }
+        assertEquals(List.of("far"), wheel.advance(START + 2_500));
+    }
+
+    @Test
+    void advance_ShouldFireEverythingDue_AfterALongPause() {
+        IntStream.range(0, 50).forEach(i -> wheel.add("k" + i, START + 100L * (i + 1)));
+
+        Set<String> due = new HashSet<>(wheel.advance(START + 60_000));
+
+        assertEquals(50, due.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void add_ShouldFireOverdueKeyOnNextTick() {
+        wheel.advance(START + 1_000);
+        wheel.add("late", START);
+
+        assertEquals(List.of("late"), wheel.advance(START + 1_100));
+    }
+
+    @Test
+    void add_ShouldReplaceDeadline() {
+        wheel.add("a", START + 200);
+        assertFalse(wheel.add("a", START + 200));
+        assertTrue(wheel.add("a", START + 500));
+
+        assertTrue(wheel.advance(START + 400).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(START + 500));
+        assertTrue(wheel.advance(START + 2_000).isEmpty());
+    }
+
+    @Test
+    void remove_ShouldStopKeyFromFiring() {
+        wheel.add("a", START + 100);
+
+        assertTrue(wheel.remove("a"));
+
+        assertTrue(wheel.advance(START + 1_000).isEmpty());
+        assertFalse(wheel.remove("a"));
+    }
+
+    @Test
+    void drain_ShouldReturnPendingKeys() {
+        wheel.add("a", START + 100);
+        wheel.add("b", START + 5_000);
+
+        assertEquals(Set.of("a", "b"), new HashSet<>(wheel.drain()));
+        assertTrue(wheel.advance(START + 10_000).isEmpty());
+    }
+}
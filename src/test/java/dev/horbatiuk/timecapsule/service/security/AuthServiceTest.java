@@ -2,14 +2,16 @@ package dev.horbatiuk.timecapsule.service.security;
 
 import dev.horbatiuk.timecapsule.exception.ConflictException;
 import dev.horbatiuk.timecapsule.exception.NotFoundException;
+import dev.horbatiuk.timecapsule.exception.controller.ServiceOverloadedException;
 import dev.horbatiuk.timecapsule.persistence.UserRepository;
 import dev.horbatiuk.timecapsule.persistence.dto.security.AuthenticationRequestDTO;
+import dev.horbatiuk.timecapsule.persistence.dto.security.AuthenticationResponseDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.security.RegisterRequestDTO;
 import dev.horbatiuk.timecapsule.persistence.dto.user.UserDTO;
-import dev.horbatiuk.timecapsule.persistence.entities.RefreshToken;
 import dev.horbatiuk.timecapsule.persistence.entities.User;
 import dev.horbatiuk.timecapsule.persistence.entities.VerificationToken;
 import dev.horbatiuk.timecapsule.security.CustomUserDetails;
+import dev.horbatiuk.timecapsule.security.UserPrincipalCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -17,13 +19,18 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -50,6 +57,9 @@ class AuthServiceTest {
     @Mock
     private UserVerificationService userVerificationService;
 
+    @Mock
+    private UserPrincipalCache userPrincipalCache;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -70,17 +80,16 @@ class AuthServiceTest {
         when(userRepository.findUserByEmail(dto.getEmail())).thenReturn(Optional.empty());
         when(passwordEncoder.encode(dto.getPassword())).thenReturn("encoded-password");
 
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setToken("mocked-refresh-token");
-        when(refreshTokenService.createOrUpdateRefreshToken(dto.getEmail())).thenReturn(refreshToken);
+        when(refreshTokenService.createOrUpdateRefreshToken(any())).thenReturn("mocked-refresh-token");
 
-        authService.register(dto);
+        AuthenticationResponseDTO response = authService.register(dto);
 
         ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
         verify(userRepository).save(userCaptor.capture());
         verify(userVerificationService).addToken(any(VerificationToken.class));
         verify(jwtService).generateToken(any(CustomUserDetails.class));
-        verify(refreshTokenService).createOrUpdateRefreshToken(dto.getEmail());
+        verify(refreshTokenService).createOrUpdateRefreshToken(any());
+        assertEquals("mocked-refresh-token", response.getRefreshToken());
 
         User savedUser = userCaptor.getValue();
         assertEquals(dto.getEmail(), savedUser.getEmail());
@@ -97,27 +106,61 @@ class AuthServiceTest {
         verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
     }
 
+    @Test
+    void authenticate_WhenUnknownEmailAndHashingPoolSaturated_ThrowsServiceOverloaded() {
+        AuthenticationRequestDTO request = new AuthenticationRequestDTO("unknown@example.com", "password");
+        ServiceOverloadedException busy = new ServiceOverloadedException("Server is busy, please retry later", 3);
+        PasswordEncoder saturated = mock(PasswordEncoder.class);
+        when(saturated.encode(anyString())).thenThrow(busy);
+        when(saturated.matches(anyString(), anyString())).thenThrow(busy);
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(username -> {
+            throw new UsernameNotFoundException("User not found");
+        });
+        provider.setPasswordEncoder(saturated);
+        AuthService service = new AuthService(userRepository, passwordEncoder, jwtService,
+                new ProviderManager(provider), refreshTokenService, userVerificationService, userPrincipalCache);
+
+        ServiceOverloadedException thrown =
+                assertThrows(ServiceOverloadedException.class, () -> service.authenticate(request));
+
+        assertEquals(3, thrown.getRetryAfterSeconds());
+        verifyNoInteractions(userRepository, jwtService, refreshTokenService);
+    }
+
+    @Test
+    void authenticate_WhenProviderWrapsServiceOverloaded_UnwrapsIt() {
+        AuthenticationRequestDTO request = new AuthenticationRequestDTO("unknown@example.com", "password");
+        ServiceOverloadedException busy = new ServiceOverloadedException("Server is busy, please retry later", 1);
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenThrow(new InternalAuthenticationServiceException(busy.getMessage(), busy));
+
+        ServiceOverloadedException thrown =
+                assertThrows(ServiceOverloadedException.class, () -> authService.authenticate(request));
+
+        assertSame(busy, thrown);
+        verify(userRepository, never()).findUserByEmail(any());
+    }
+
     @Test
     void authenticate_WhenUserExists_GeneratesTokens() throws NotFoundException {
         AuthenticationRequestDTO request = new AuthenticationRequestDTO("email@example.com", "password");
-        User user = User.builder().email(request.getEmail()).build();
+        User user = User.builder().id(UUID.randomUUID()).email(request.getEmail()).build();
         when(userRepository.findUserByEmail(request.getEmail())).thenReturn(Optional.of(user));
+        when(refreshTokenService.createOrUpdateRefreshToken(user.getId())).thenReturn("mocked-refresh-token");
 
-        RefreshToken refreshToken = new RefreshToken();
-        refreshToken.setToken("mocked-refresh-token");
-        when(refreshTokenService.createOrUpdateRefreshToken(request.getEmail())).thenReturn(refreshToken);
-
-        authService.authenticate(request);
+        AuthenticationResponseDTO response = authService.authenticate(request);
 
         verify(authenticationManager).authenticate(any(UsernamePasswordAuthenticationToken.class));
         verify(jwtService).generateToken(any(CustomUserDetails.class));
-        verify(refreshTokenService).createOrUpdateRefreshToken(request.getEmail());
+        verify(refreshTokenService).createOrUpdateRefreshToken(user.getId());
+        assertEquals("mocked-refresh-token", response.getRefreshToken());
     }
 
     @Test
     void getUserInfo_WhenUserNotFound_ThrowsNotFoundException() {
         String email = "notfound@example.com";
-        when(userRepository.findUserByEmail(email)).thenReturn(Optional.empty());
+        when(userPrincipalCache.find(email)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> authService.getUserInfo(email));
     }
@@ -129,12 +172,13 @@ class AuthServiceTest {
                 .email("test@example.com")
                 .name("John Doe")
                 .build();
-        when(userRepository.findUserByEmail(user.getEmail())).thenReturn(Optional.of(user));
+        when(userPrincipalCache.find(user.getEmail())).thenReturn(Optional.of(new CustomUserDetails(user)));
 
         UserDTO result = authService.getUserInfo(user.getEmail());
 
         assertEquals(user.getId(), result.getId());
         assertEquals(user.getEmail(), result.getEmail());
         assertEquals(user.getName(), result.getName());
+        verify(userRepository, never()).findUserByEmail(anyString());
     }
 }
@@ -1,13 +1,16 @@
 package dev.horbatiuk.timecapsule.service.security;
 
+import dev.horbatiuk.timecapsule.persistence.entities.enums.UserRole;
 import dev.horbatiuk.timecapsule.security.CustomUserDetails;
+import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Collections;
-import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.mock;
@@ -25,6 +28,7 @@ class JwtServiceTest {
         String secretKey = "YmFzZTY0c2VjcmV0YmFzZTY0c2VjcmV0YmFzZTY0c2VjcmV0YmFzZTY0c2VjcmV0";
         ReflectionTestUtils.setField(jwtService, "SECRET", secretKey);
         ReflectionTestUtils.setField(jwtService, "accessTokenExpiration", 3600000L);
+        jwtService.init();
 
         userDetails = mock(CustomUserDetails.class);
         when(userDetails.getEmail()).thenReturn("test@example.com");
@@ -38,42 +42,61 @@ class JwtServiceTest {
     }
 
     @Test
-    void extractUsername_ShouldReturnCorrectUsername() {
-        String token = jwtService.generateToken(userDetails);
-        String username = jwtService.extractUsername(token);
-        assertEquals("test@example.com", username);
+    void parseToken_ShouldRestorePrincipalFromClaims() {
+        UUID id = UUID.randomUUID();
+        CustomUserDetails principal = new CustomUserDetails(
+                id, "claims@example.com", "Claims User", "hash",
+                Set.of(UserRole.ROLE_USER, UserRole.ROLE_PREMIUM), true, 3L);
+
+        String token = jwtService.generateToken(principal);
+        CustomUserDetails restored = jwtService.parseToken(token).principal();
+
+        assertNotNull(restored);
+        assertEquals(id, restored.getId());
+        assertEquals("claims@example.com", restored.getEmail());
+        assertEquals("Claims User", restored.getUsername());
+        assertNull(restored.getPassword());
+        assertTrue(restored.isVerified());
+        assertTrue(restored.isPremiumUser());
+        assertEquals(3L, restored.getTokenVersion());
     }
 
     @Test
-    void validateToken_ShouldReturnTrue_WhenTokenIsValid() {
+    void parseToken_ShouldReturnNoPrincipal_ForTokenWithoutIdentityClaims() {
         String token = jwtService.generateToken(userDetails);
-        boolean isValid = jwtService.validateToken(token, userDetails);
-        assertTrue(isValid);
+        assertNull(jwtService.parseToken(token).principal());
     }
 
     @Test
-    void validateToken_ShouldReturnFalse_WhenUsernameIsWrong() {
+    void parseToken_ShouldReturnSameInstance_ForAlreadyVerifiedToken() {
         String token = jwtService.generateToken(userDetails);
 
-        CustomUserDetails wrongUser = mock(CustomUserDetails.class);
-        when(wrongUser.getEmail()).thenReturn("wrong@example.com");
+        ParsedToken first = jwtService.parseToken(token);
+        ParsedToken second = jwtService.parseToken(token);
 
-        assertFalse(jwtService.validateToken(token, wrongUser));
+        assertEquals("test@example.com", first.subject());
+        assertTrue(first.expiresAt().isAfter(first.issuedAt()));
+        assertSame(first, second);
     }
 
     @Test
-    void extractExpiration_ShouldReturnFutureDate() {
+    void parseToken_ShouldRejectTamperedToken() {
         String token = jwtService.generateToken(userDetails);
-        Date expiration = jwtService.extractExpiration(token);
-        assertTrue(expiration.after(new Date()));
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtService.parseToken(tampered));
+    }
+
+    @Test
+    void parseToken_ShouldRejectMalformedToken() {
+        assertThrows(JwtException.class, () -> jwtService.parseToken("invalid.token.value"));
     }
 
     @Test
-    void extractClaim_ShouldThrowException_OnInvalidToken() {
-        String invalidToken = "invalid.token.value";
+    void parseToken_ShouldThrowExpiredJwtException_ForExpiredToken() {
+        ReflectionTestUtils.setField(jwtService, "accessTokenExpiration", -1000L);
+        String token = jwtService.generateToken(userDetails);
 
-        JwtException exception = assertThrows(JwtException.class, () ->
-                jwtService.extractUsername(invalidToken));
-        assertEquals("Invalid JWT token", exception.getMessage());
+        assertThrows(ExpiredJwtException.class, () -> jwtService.parseToken(token));
     }
 }
@@ -45,51 +45,37 @@ class RefreshTokenServiceTest {
     }
 
     @Test
-    void createOrUpdateRefreshToken_ShouldCreateNewToken_IfNotExists() {
-        when(userRepository.findUserByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(refreshTokenRepository.findByUser(user)).thenReturn(Optional.empty());
-        ArgumentCaptor<RefreshToken> tokenCaptor = ArgumentCaptor.forClass(RefreshToken.class);
-        when(refreshTokenRepository.save(tokenCaptor.capture())).thenAnswer(inv -> inv.getArgument(0));
-
-        RefreshToken token = refreshTokenService.createOrUpdateRefreshToken(user.getEmail());
-
-        assertNotNull(token.getToken());
-        assertNotNull(token.getExpiryDate());
-        assertEquals(user, token.getUser());
+    void createOrUpdateRefreshToken_ShouldUpsertHashOfReturnedToken() {
+        ArgumentCaptor<String> hashCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Instant> expiryCaptor = ArgumentCaptor.forClass(Instant.class);
+        when(refreshTokenRepository.upsertForUser(eq(user.getId()), hashCaptor.capture(), expiryCaptor.capture()))
+                .thenReturn(1L);
+
+        String token = refreshTokenService.createOrUpdateRefreshToken(user.getId());
+
+        assertNotNull(token);
+        assertEquals(TokenDigest.sha256Hex(token), hashCaptor.getValue());
+        assertNotEquals(token, hashCaptor.getValue());
+        assertTrue(expiryCaptor.getValue().isAfter(Instant.now()));
+        verifyNoInteractions(userRepository);
     }
 
     @Test
-    void createOrUpdateRefreshToken_ShouldUpdateToken_IfExists() {
-        RefreshToken existingToken = RefreshToken.builder()
-                .id(1L)
-                .user(user)
-                .token("old-token")
-                .expiryDate(Instant.now().minusSeconds(60))
-                .build();
-
-        when(userRepository.findUserByEmail(user.getEmail())).thenReturn(Optional.of(user));
-        when(refreshTokenRepository.findByUser(user)).thenReturn(Optional.of(existingToken));
-        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(inv -> inv.getArgument(0));
+    void createOrUpdateRefreshToken_ShouldIssueNewTokenEachTime() {
+        when(refreshTokenRepository.upsertForUser(eq(user.getId()), anyString(), any(Instant.class)))
+                .thenReturn(1L);
 
-        RefreshToken updatedToken = refreshTokenService.createOrUpdateRefreshToken(user.getEmail());
+        String first = refreshTokenService.createOrUpdateRefreshToken(user.getId());
+        String second = refreshTokenService.createOrUpdateRefreshToken(user.getId());
 
-        assertNotEquals("old-token", updatedToken.getToken());
-        assertTrue(updatedToken.getExpiryDate().isAfter(Instant.now()));
-    }
-
-    @Test
-    void createOrUpdateRefreshToken_ShouldThrow_WhenUserNotFound() {
-        when(userRepository.findUserByEmail(user.getEmail())).thenReturn(Optional.empty());
-
-        AppException ex = assertThrows(AppException.class,
-                () -> refreshTokenService.createOrUpdateRefreshToken(user.getEmail()));
-        assertEquals(HttpStatus.NOT_FOUND, ex.getStatus());
+        assertNotEquals(first, second);
+        verify(refreshTokenRepository, times(2)).upsertForUser(eq(user.getId()), anyString(), any(Instant.class));
     }
 
     @Test
     void verifyExpiration_ShouldThrowAndDelete_WhenTokenExpired() {
         RefreshToken token = RefreshToken.builder()
-                .token(UUID.randomUUID().toString())
+                .tokenHash(TokenDigest.sha256Hex(UUID.randomUUID().toString()))
                 .expiryDate(Instant.now().minusSeconds(60))
                 .build();
 
@@ -102,7 +88,7 @@ class RefreshTokenServiceTest {
     @Test
     void verifyExpiration_ShouldPass_WhenTokenIsValid() {
         RefreshToken token = RefreshToken.builder()
-                .token(UUID.randomUUID().toString())
+                .tokenHash(TokenDigest.sha256Hex(UUID.randomUUID().toString()))
                 .expiryDate(Instant.now().plusSeconds(60))
                 .build();
 
@@ -132,22 +118,23 @@ class RefreshTokenServiceTest {
     void findByToken_ShouldReturnToken_WhenFound() {
         String tokenValue = UUID.randomUUID().toString();
         RefreshToken token = RefreshToken.builder()
-                .token(tokenValue)
+                .tokenHash(TokenDigest.sha256Hex(tokenValue))
                 .user(user)
                 .expiryDate(Instant.now().plusSeconds(3600))
                 .build();
 
-        when(refreshTokenRepository.findByToken(tokenValue)).thenReturn(Optional.of(token));
+        when(refreshTokenRepository.findByTokenHash(TokenDigest.sha256Hex(tokenValue))).thenReturn(Optional.of(token));
 
         RefreshToken found = refreshTokenService.findByToken(tokenValue);
 
-        assertEquals(tokenValue, found.getToken());
+        assertEquals(token, found);
+        assertEquals(user, found.getUser());
     }
 
     @Test
     void findByToken_ShouldThrow_WhenNotFound() {
         String tokenValue = UUID.randomUUID().toString();
-        when(refreshTokenRepository.findByToken(tokenValue)).thenReturn(Optional.empty());
+        when(refreshTokenRepository.findByTokenHash(TokenDigest.sha256Hex(tokenValue))).thenReturn(Optional.empty());
 
         AppException ex = assertThrows(AppException.class,
                 () -> refreshTokenService.findByToken(tokenValue));
@@ -0,0 +1,95 @@
+package dev.horbatiuk.timecapsule.service.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TokenPurgeServiceTest {
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private TokenPurgeService purgeService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        purgeService = new TokenPurgeService(jdbcTemplate, mock(PlatformTransactionManager.class),
+                meterRegistry, 2, 10, Duration.ZERO);
+    }
+
+    private static TokenPurgeService.ExpiredRow row(long id) {
+        return new TokenPurgeService.ExpiredRow(id, new Timestamp(id * 1000));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenBatches(List<TokenPurgeService.ExpiredRow> first, List<TokenPurgeService.ExpiredRow> second) {
+        when(jdbcTemplate.query(anyString(), any(SqlParameterSource.class), any(RowMapper.class)))
+                .thenReturn(first)
+                .thenReturn(second);
+    }
+
+    @Test
+    void purge_whenLockHeldElsewhere_deletesNothing() {
+        when(jdbcTemplate.queryForObject(anyString(), anyMap(), eq(Boolean.class))).thenReturn(false);
+
+        int purged = purgeService.purge("refresh_token");
+
+        assertEquals(0, purged);
+        verify(jdbcTemplate, never()).update(anyString(), anyMap());
+    }
+
+    @Test
+    void purge_deletesInBatchesUntilShortBatch() {
+        when(jdbcTemplate.queryForObject(anyString(), anyMap(), eq(Boolean.class))).thenReturn(true);
+        givenBatches(List.of(row(1), row(2)), List.of(row(3)));
+
+        int purged = purgeService.purge("refresh_token");
+
+        assertEquals(3, purged);
+        verify(jdbcTemplate).update("DELETE FROM refresh_token WHERE id IN (:ids)", Map.of("ids", List.of(1L, 2L)));
+        verify(jdbcTemplate).update("DELETE FROM refresh_token WHERE id IN (:ids)", Map.of("ids", List.of(3L)));
+        assertEquals(3.0, meterRegistry.get("maintenance.tokens.purged")
+                .tag("table", "refresh_token").counter().count());
+        assertEquals(2, meterRegistry.get("maintenance.tokens.purge.batch")
+                .tag("table", "refresh_token").timer().count());
+    }
+
+    @Test
+    void purge_secondBatchContinuesFromKeysetCursor() {
+        when(jdbcTemplate.queryForObject(anyString(), anyMap(), eq(Boolean.class))).thenReturn(true);
+        givenBatches(List.of(row(1), row(2)), List.of());
+
+        purgeService.purge("verification_token");
+
+        verify(jdbcTemplate).query(
+                contains("(expiry_date, id) > (:lastExpiry, :lastId)"),
+                argThat((SqlParameterSource params) -> params.hasValue("lastId")
+                        && Long.valueOf(2L).equals(params.getValue("lastId"))),
+                any(RowMapper.class));
+        verify(jdbcTemplate, times(1)).update(anyString(), anyMap());
+    }
+
+    @Test
+    void purgeExpiredTokens_coversRefreshAndVerificationTokens() {
+        when(jdbcTemplate.queryForObject(anyString(), anyMap(), eq(Boolean.class))).thenReturn(true);
+        givenBatches(List.of(), List.of());
+
+        purgeService.purgeExpiredTokens();
+
+        verify(jdbcTemplate).query(contains("FROM refresh_token"), any(SqlParameterSource.class), any(RowMapper.class));
+        verify(jdbcTemplate).query(contains("FROM verification_token"), any(SqlParameterSource.class), any(RowMapper.class));
+    }
+}
@@ -5,11 +5,13 @@ import dev.horbatiuk.timecapsule.exception.controller.AppException;
 import dev.horbatiuk.timecapsule.persistence.VerificationTokenRepository;
 import dev.horbatiuk.timecapsule.persistence.entities.User;
 import dev.horbatiuk.timecapsule.persistence.entities.VerificationToken;
+import dev.horbatiuk.timecapsule.security.CustomUserDetails;
+import dev.horbatiuk.timecapsule.security.UserPrincipalCache;
 import dev.horbatiuk.timecapsule.service.EmailSenderService;
 import dev.horbatiuk.timecapsule.service.UserService;
-import jakarta.mail.MessagingException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -17,6 +19,7 @@ import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -37,6 +40,9 @@ class UserVerificationServiceTest {
     @Mock
     private VerificationTokenRepository verificationTokenRepository;
 
+    @Mock
+    private UserPrincipalCache userPrincipalCache;
+
     private final UUID userId = UUID.randomUUID();
     private final UUID tokenUUID = UUID.randomUUID();
     private final String email = "test@example.com";
@@ -59,6 +65,7 @@ class UserVerificationServiceTest {
         token = VerificationToken.builder()
                 .token(tokenUUID)
                 .user(user)
+                .expiryDate(Instant.now().plusSeconds(3600))
                 .build();
     }
 
@@ -83,24 +90,33 @@ class UserVerificationServiceTest {
     }
 
     @Test
-    void sendVerificationEmail_ShouldThrowNotFoundException_WhenTokenNotFound() throws NotFoundException {
+    void sendVerificationEmail_ShouldIssueNewToken_WhenTokenNotFound() throws Exception {
         when(userService.findUserByEmail(email)).thenReturn(user);
         when(verificationTokenRepository.findVerificationTokenByUser(user)).thenReturn(Optional.empty());
+        ArgumentCaptor<VerificationToken> captor = ArgumentCaptor.forClass(VerificationToken.class);
 
-        NotFoundException ex = assertThrows(NotFoundException.class, () ->
-                userVerificationService.sendVerificationEmail(userId, email, false));
-        assertTrue(ex.getMessage().contains("Verification token not found"));
+        userVerificationService.sendVerificationEmail(userId, email, false);
+
+        verify(verificationTokenRepository).save(captor.capture());
+        VerificationToken issued = captor.getValue();
+        assertEquals(user, issued.getUser());
+        assertNotNull(issued.getToken());
+        assertTrue(issued.getExpiryDate().isAfter(Instant.now()));
+        verify(emailSenderService).sendVerificationEmail(eq(email), contains(issued.getToken().toString()));
     }
 
     @Test
-    void sendVerificationEmail_ShouldThrowMessagingException_WhenEmailFails() throws Exception {
+    void sendVerificationEmail_ShouldRenewToken_WhenTokenExpired() throws Exception {
+        token.setExpiryDate(Instant.now().minusSeconds(60));
         when(userService.findUserByEmail(email)).thenReturn(user);
         when(verificationTokenRepository.findVerificationTokenByUser(user)).thenReturn(Optional.of(token));
-        doThrow(new MessagingException("Email failed")).when(emailSenderService)
-                .sendVerificationEmail(anyString(), anyString());
 
-        assertThrows(MessagingException.class, () ->
-                userVerificationService.sendVerificationEmail(userId, email, false));
+        userVerificationService.sendVerificationEmail(userId, email, false);
+
+        verify(verificationTokenRepository).save(token);
+        assertNotEquals(tokenUUID, token.getToken());
+        assertTrue(token.getExpiryDate().isAfter(Instant.now()));
+        verify(emailSenderService).sendVerificationEmail(eq(email), contains(token.getToken().toString()));
     }
 
     @Test
@@ -109,6 +125,16 @@ class UserVerificationServiceTest {
         verify(verificationTokenRepository).save(token);
     }
 
+    @Test
+    void addToken_ShouldSetExpiry_WhenMissing() {
+        token.setExpiryDate(null);
+
+        userVerificationService.addToken(token);
+
+        assertTrue(token.getExpiryDate().isAfter(Instant.now()));
+        verify(verificationTokenRepository).save(token);
+    }
+
     @Test
     void addToken_ShouldThrowAppException_WhenDataAccessFails() {
         doThrow(mock(DataAccessException.class)).when(verificationTokenRepository).save(token);
@@ -130,6 +156,18 @@ class UserVerificationServiceTest {
         assertTrue(user.isVerified());
     }
 
+    @Test
+    void verifyToken_ShouldThrow_WhenTokenExpired() throws NotFoundException {
+        token.setExpiryDate(Instant.now().minusSeconds(60));
+        when(verificationTokenRepository.findVerificationTokenByToken(tokenUUID)).thenReturn(Optional.of(token));
+
+        NotFoundException ex = assertThrows(NotFoundException.class, () ->
+                userVerificationService.verifyToken(tokenUUID));
+        assertTrue(ex.getMessage().contains("Verification token expired"));
+        verify(userService, never()).findUserByEmail(anyString());
+        assertFalse(user.isVerified());
+    }
+
     @Test
     void verifyToken_ShouldThrow_WhenTokenNotFound() {
         when(verificationTokenRepository.findVerificationTokenByToken(tokenUUID)).thenReturn(Optional.empty());
@@ -160,6 +198,7 @@ class UserVerificationServiceTest {
 
         verify(userService).findUserByEmail(email);
         assertTrue(user.isVerified());
+        verifyNoInteractions(userPrincipalCache);
     }
 
     @Test
@@ -170,5 +209,15 @@ class UserVerificationServiceTest {
         userVerificationService.updateUserStatus(email);
 
         assertTrue(user.isVerified());
+        verify(userPrincipalCache).evict(email);
+    }
+
+    @Test
+    void isUserByEmailVerified_ShouldUseCachedPrincipal() throws NotFoundException {
+        user.setVerified(true);
+        when(userService.findUserDetailsByEmail(email)).thenReturn(new CustomUserDetails(user));
+
+        assertTrue(userVerificationService.isUserByEmailVerified(email));
+        verify(userService, never()).findUserByEmail(anyString());
     }
 }
@@ -0,0 +1,53 @@
+package dev.horbatiuk.timecapsule.service.upload;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeclaredSizeInputStreamTest {
+
+    @Test
+    void read_exactlyDeclaredSize_returnsAllBytes() throws Exception {
+        DeclaredSizeInputStream in = new DeclaredSizeInputStream(stream("content"), 7);
+
+        assertEquals("content", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        assertFalse(in.isTooLong());
+        assertFalse(in.isTooShort());
+    }
+
+    @Test
+    void read_longerThanDeclared_failsBeforeHandingOverTheLastBytes() {
+        DeclaredSizeInputStream in = new DeclaredSizeInputStream(stream("content and more"), 7);
+        byte[] buffer = new byte[7];
+
+        assertThrows(IOException.class, () -> in.read(buffer, 0, buffer.length));
+        assertTrue(in.isTooLong());
+        assertFalse(in.isTooShort());
+    }
+
+    @Test
+    void read_shorterThanDeclared_fails() {
+        DeclaredSizeInputStream in = new DeclaredSizeInputStream(stream("short"), 7);
+
+        assertThrows(IOException.class, in::readAllBytes);
+        assertTrue(in.isTooShort());
+        assertFalse(in.isTooLong());
+    }
+
+    @Test
+    void read_neverReadsMoreThanOneByteBeyondDeclaredSize() {
+        ByteArrayInputStream source = stream("x".repeat(1000));
+        DeclaredSizeInputStream in = new DeclaredSizeInputStream(source, 10);
+
+        assertThrows(IOException.class, in::readAllBytes);
+        assertEquals(1000 - 11, source.available());
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,136 @@
+package dev.horbatiuk.timecapsule.service.upload;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartStreamReaderTest {
+
+    private static final String BOUNDARY = "----form42";
+
+    @Test
+    void next_readsFieldsAndFileInOrder() throws Exception {
+        MultipartStreamReader reader = reader(form("hello", "file content"), Integer.MAX_VALUE);
+
+        MultipartStreamReader.Part description = reader.next();
+        assertEquals("description", description.name());
+        assertFalse(description.isFile());
+        assertEquals("hello", description.readString(100));
+
+        MultipartStreamReader.Part file = reader.next();
+        assertEquals("file", file.name());
+        assertEquals("notes.txt", file.filename());
+        assertEquals("text/plain", file.contentType());
+        assertTrue(file.isFile());
+        assertEquals("file content", new String(file.body().readAllBytes(), StandardCharsets.UTF_8));
+
+        assertNull(reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void next_skipsWhatIsLeftOfThePreviousPart() throws Exception {
+        MultipartStreamReader reader = reader(form("not read", "file content"), Integer.MAX_VALUE);
+
+        reader.next();
+        MultipartStreamReader.Part file = reader.next();
+
+        assertEquals("file", file.name());
+        assertEquals("file content", new String(file.body().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void body_keepsBytesThatOnlyLookLikeTheBoundary() throws Exception {
+        // a cut-off delimiter, and the boundary without the CRLF in front of it
+        String content = "a\r\n--" + BOUNDARY.substring(0, 5) + "\r\n-x--" + BOUNDARY + "z";
+        MultipartStreamReader reader = reader(form("d", content), Integer.MAX_VALUE);
+
+        reader.next();
+        assertEquals(content, new String(reader.next().body().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void body_readsLargeFileArrivingOneByteAtATime() throws Exception {
+        String content = "0123456789\r\n-".repeat(2000);
+        MultipartStreamReader reader = reader(form("d", content), 1);
+
+        reader.next();
+        byte[] read = reader.next().body().readAllBytes();
+
+        assertEquals(content.length(), read.length);
+        assertEquals(content, new String(read, StandardCharsets.UTF_8));
+        assertNull(reader.next());
+    }
+
+    @Test
+    void body_skipsPreamble() throws Exception {
+        MultipartStreamReader reader = reader("ignored preamble\r\n" + form("hello", "x"), Integer.MAX_VALUE);
+
+        assertEquals("hello", reader.next().readString(100));
+    }
+
+    @Test
+    void body_endingInsidePart_throwsIOException() throws Exception {
+        String truncated = form("hello", "file content");
+        truncated = truncated.substring(0, truncated.indexOf("file content") + 4);
+        MultipartStreamReader reader = reader(truncated, Integer.MAX_VALUE);
+
+        reader.next();
+        InputStream body = reader.next().body();
+
+        assertThrows(IOException.class, body::readAllBytes);
+    }
+
+    @Test
+    void next_partWithoutContentDisposition_throwsIOException() {
+        String body = "--" + BOUNDARY + "\r\nContent-Type: text/plain\r\n\r\nx\r\n--" + BOUNDARY + "--\r\n";
+
+        assertThrows(IOException.class, () -> reader(body, Integer.MAX_VALUE).next());
+    }
+
+    @Test
+    void readString_longerThanLimit_throwsIOException() throws Exception {
+        MultipartStreamReader reader = reader(form("a".repeat(101), "x"), Integer.MAX_VALUE);
+
+        MultipartStreamReader.Part description = reader.next();
+
+        assertThrows(IOException.class, () -> description.readString(100));
+    }
+
+    @Test
+    void boundaryOf_readsBoundaryOfFormDataOnly() {
+        assertEquals("abc", MultipartStreamReader.boundaryOf("multipart/form-data; boundary=abc"));
+        assertEquals("a b", MultipartStreamReader.boundaryOf("multipart/form-data; boundary=\"a b\""));
+        assertNull(MultipartStreamReader.boundaryOf("multipart/form-data"));
+        assertNull(MultipartStreamReader.boundaryOf("application/json"));
+        assertNull(MultipartStreamReader.boundaryOf("not a media type"));
+        assertNull(MultipartStreamReader.boundaryOf(null));
+    }
+
+    private static String form(String description, String content) {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"description\"\r\n\r\n"
+                + description + "\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"notes.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + content + "\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+    }
+
+    private static MultipartStreamReader reader(String body, int maxRead) {
+        InputStream in = new FilterInputStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, maxRead));
+            }
+        };
+        return new MultipartStreamReader(in, BOUNDARY);
+    }
+}